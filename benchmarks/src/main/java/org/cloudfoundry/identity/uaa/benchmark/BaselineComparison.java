@@ -0,0 +1,98 @@
+package org.cloudfoundry.identity.uaa.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Compares a JMH JSON result file with a baseline result file of the same benchmarks.
+ *
+ * Benchmarks are matched by name and parameters. The process exits with status 1 if any of them
+ * got worse than the baseline by more than the tolerance, e.g. {@code 0.10} for 10%. Throughput
+ * is worse when lower, all other modes when higher. Benchmarks missing from either file are
+ * reported but not counted as regressions.
+ *
+ * Usage: {@code BaselineComparison <results.json> <baseline.json> [tolerance]}
+ */
+public final class BaselineComparison {
+
+    private BaselineComparison() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: BaselineComparison <results.json> <baseline.json> [tolerance]");
+            System.exit(2);
+        }
+        File results = new File(args[0]);
+        File baseline = new File(args[1]);
+        double tolerance = args.length > 2 ? Double.parseDouble(args[2]) : 0.10;
+        if (!baseline.isFile()) {
+            System.out.println("No baseline at " + baseline + ", nothing to compare");
+            return;
+        }
+        int regressions = compare(read(results), read(baseline), tolerance);
+        if (regressions > 0) {
+            System.err.println(regressions + " benchmark(s) regressed by more than " + Math.round(tolerance * 100) + "%");
+            System.exit(1);
+        }
+    }
+
+    static int compare(Map<String, JsonNode> results, Map<String, JsonNode> baseline, double tolerance) {
+        int regressions = 0;
+        for (Map.Entry<String, JsonNode> entry : results.entrySet()) {
+            JsonNode base = baseline.get(entry.getKey());
+            if (base == null) {
+                System.out.printf("NEW         %s%n", entry.getKey());
+                continue;
+            }
+            double score = entry.getValue().path("primaryMetric").path("score").asDouble();
+            double baseScore = base.path("primaryMetric").path("score").asDouble();
+            boolean higherIsBetter = "thrpt".equals(entry.getValue().path("mode").asText());
+            double change = baseScore == 0 ? 0 : (score - baseScore) / baseScore;
+            double loss = higherIsBetter ? -change : change;
+            boolean regressed = loss > tolerance;
+            if (regressed) {
+                regressions++;
+            }
+            System.out.printf("%-11s %s: %.3f -> %.3f %s (%+.1f%%)%n",
+                    regressed ? "REGRESSION" : "OK",
+                    entry.getKey(),
+                    baseScore,
+                    score,
+                    entry.getValue().path("primaryMetric").path("scoreUnit").asText(),
+                    change * 100);
+        }
+        for (String key : baseline.keySet()) {
+            if (!results.containsKey(key)) {
+                System.out.printf("MISSING     %s%n", key);
+            }
+        }
+        return regressions;
+    }
+
+    static Map<String, JsonNode> read(File file) throws IOException {
+        Map<String, JsonNode> benchmarks = new LinkedHashMap<>();
+        for (JsonNode benchmark : new ObjectMapper().readTree(file)) {
+            benchmarks.put(key(benchmark), benchmark);
+        }
+        return benchmarks;
+    }
+
+    private static String key(JsonNode benchmark) {
+        Map<String, String> params = new TreeMap<>();
+        Iterator<Map.Entry<String, JsonNode>> fields = benchmark.path("params").fields();
+        while (fields.hasNext()) {
+            Map.Entry<String, JsonNode> field = fields.next();
+            params.put(field.getKey(), field.getValue().asText());
+        }
+        String threads = benchmark.path("threads").asText("1");
+        return benchmark.path("benchmark").asText() + params + " threads=" + threads;
+    }
+}
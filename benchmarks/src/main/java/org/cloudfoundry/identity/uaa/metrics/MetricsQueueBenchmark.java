@@ -0,0 +1,81 @@
+package org.cloudfoundry.identity.uaa.metrics;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link MetricsQueue#offer} as called by the metrics filter at the end of every request, by one
+ * thread and by several threads sharing a queue.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MetricsQueueBenchmark {
+
+    @Param({"0", "5"})
+    public int queries;
+
+    // whether a QueryMetric is kept for each query, as in the full mode of QueryFilter
+    @Param({"true", "false"})
+    public boolean details;
+
+    private MetricsQueue queue;
+    private RequestMetric[] metrics;
+
+    @Setup
+    public void setup() {
+        queue = new MetricsQueue();
+        UrlGroup group = new UrlGroup().setPattern("/oauth/token/**").setGroup("/oauth-oidc").setCategory("api").setLimit(1000);
+        int[] statusCodes = {200, 200, 200, 302, 401, 500};
+        metrics = new RequestMetric[statusCodes.length];
+        for (int i = 0; i < metrics.length; i++) {
+            RequestMetric metric = RequestMetric.start("/oauth/token", group, 1000);
+            for (int q = 0; q < queries; q++) {
+                if (details) {
+                    metric.addQuery(new QueryMetric("select * from users where id = ?", 1000 + q, 2 + q, q == 0));
+                } else {
+                    metric.recordQuery(2 + q, q == 0);
+                }
+            }
+            metric.stop(statusCodes[i], 1000 + 10 * (i + 1));
+            metrics[i] = metric;
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public boolean offer(ThreadCursor cursor) {
+        return queue.offer(metrics[cursor.next(metrics.length)]);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public boolean offerContended(ThreadCursor cursor) {
+        return queue.offer(metrics[cursor.next(metrics.length)]);
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadCursor {
+        private int position;
+
+        int next(int length) {
+            position = position + 1 == length ? 0 : position + 1;
+            return position;
+        }
+    }
+}
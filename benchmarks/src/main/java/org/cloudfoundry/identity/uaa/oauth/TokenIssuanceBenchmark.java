@@ -0,0 +1,69 @@
+package org.cloudfoundry.identity.uaa.oauth;
+
+import org.cloudfoundry.identity.uaa.benchmark.BenchmarkKeys;
+import org.cloudfoundry.identity.uaa.zone.IdentityZoneHolder;
+import org.cloudfoundry.identity.uaa.zone.TokenPolicy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link UaaTokenServices#createAccessToken} for a password grant, with in memory users and clients.
+ * Requesting {@code openid} adds the id token.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TokenIssuanceBenchmark {
+
+    @Param({"RSA", "EC", "HMAC"})
+    public BenchmarkKeys keyType;
+
+    @Param({"read", "read,write,openid"})
+    public String scopes;
+
+    private TokenTestSupport tokenSupport;
+    private List<String> requestedScopes;
+
+    @Setup
+    public void setup() throws Exception {
+        tokenSupport = new TokenTestSupport(null, null);
+        TokenPolicy tokenPolicy = IdentityZoneHolder.get().getConfig().getTokenPolicy();
+        tokenPolicy.setKeys(Collections.singletonMap(BenchmarkKeys.KEY_ID, keyType.getSigningKey()));
+        tokenPolicy.setActiveKeyId(BenchmarkKeys.KEY_ID);
+        requestedScopes = Arrays.asList(scopes.split(","));
+    }
+
+    @TearDown(Level.Iteration)
+    public void forgetTokens() {
+        tokenSupport.clear();
+    }
+
+    @TearDown
+    public void tearDown() {
+        IdentityZoneHolder.clear();
+    }
+
+    @Benchmark
+    public CompositeToken createAccessToken() {
+        return tokenSupport.getCompositeAccessToken(requestedScopes);
+    }
+}
@@ -0,0 +1,61 @@
+package org.cloudfoundry.identity.uaa.oauth.jwt;
+
+import org.cloudfoundry.identity.uaa.benchmark.BenchmarkKeys;
+import org.cloudfoundry.identity.uaa.oauth.KeyInfo;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtHelperBenchmark {
+
+    @Param({"RSA", "EC", "HMAC"})
+    public BenchmarkKeys keyType;
+
+    @Param({"0", "20", "200"})
+    public int extraClaims;
+
+    private KeyInfo keyInfo;
+    private Map<String, Object> claims;
+    private String token;
+
+    @Setup
+    public void setup() {
+        keyInfo = keyType.keyInfo();
+        claims = BenchmarkKeys.accessTokenClaims(extraClaims);
+        token = JwtHelper.encode(claims, keyInfo).getEncoded();
+    }
+
+    @Benchmark
+    public String encode() {
+        return JwtHelper.encode(claims, keyInfo).getEncoded();
+    }
+
+    @Benchmark
+    public String decode() {
+        return JwtHelper.decode(token).getClaims();
+    }
+
+    @Benchmark
+    public Jwt decodeAndVerify() {
+        Jwt jwt = JwtHelper.decode(token);
+        jwt.verifySignature(keyInfo.getVerifier());
+        return jwt;
+    }
+}
@@ -0,0 +1,118 @@
+package org.cloudfoundry.identity.uaa.resources.jdbc;
+
+import org.cloudfoundry.identity.uaa.db.beans.FlywayConfiguration;
+import org.cloudfoundry.identity.uaa.scim.ScimUser;
+import org.cloudfoundry.identity.uaa.scim.jdbc.JdbcScimUserProvisioning;
+import org.cloudfoundry.identity.uaa.util.TimeServiceImpl;
+import org.cloudfoundry.identity.uaa.util.beans.PasswordEncoderConfig;
+import org.cloudfoundry.identity.uaa.zone.IdentityZone;
+import org.cloudfoundry.identity.uaa.zone.JdbcIdentityZoneProvisioning;
+import org.cloudfoundry.identity.uaa.zone.beans.IdentityZoneManagerImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.ImportResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.security.crypto.password.NoOpPasswordEncoder;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SCIM filter parsing with {@link SimpleSearchQueryConverter#convert} and a full user query
+ * against the embedded HSQLDB of the {@code default} profile, seeded with {@link #USERS} users.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ScimFilterBenchmark {
+
+    private static final int USERS = 1000;
+
+    public enum Filter {
+        SIMPLE("userName eq \"user-42\""),
+        COMPOUND("userName eq \"user-42\" and origin eq \"uaa\""),
+        COMPLEX("(userName sw \"user-4\" or email co \"@example.com\") and active eq true"
+                + " and origin eq \"uaa\" and familyName pr");
+
+        private final String expression;
+
+        Filter(String expression) {
+            this.expression = expression;
+        }
+    }
+
+    @Param({"SIMPLE", "COMPOUND", "COMPLEX"})
+    public Filter filter;
+
+    private final SimpleSearchQueryConverter converter = new SimpleSearchQueryConverter();
+    private AnnotationConfigApplicationContext context;
+    private JdbcScimUserProvisioning users;
+
+    @Setup
+    public void setup() {
+        context = new AnnotationConfigApplicationContext();
+        context.getEnvironment().setActiveProfiles("default");
+        context.register(DatabaseConfiguration.class, PasswordEncoderConfig.class,
+                FlywayConfiguration.FlywayConfigurationWithMigration.class);
+        context.refresh();
+
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+        NamedParameterJdbcTemplate namedJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+        users = new JdbcScimUserProvisioning(
+                namedJdbcTemplate,
+                new JdbcPagingListFactory(namedJdbcTemplate, context.getBean(LimitSqlAdapter.class)),
+                NoOpPasswordEncoder.getInstance(),
+                new IdentityZoneManagerImpl(),
+                new JdbcIdentityZoneProvisioning(jdbcTemplate),
+                new SimpleSearchQueryConverter(),
+                new SimpleSearchQueryConverter(),
+                new TimeServiceImpl(),
+                true);
+        for (int i = 0; i < USERS; i++) {
+            ScimUser user = new ScimUser(null, "user-" + i, "Given" + i, "Family" + i);
+            user.addEmail("user-" + i + "@example.com");
+            users.createUser(user, "password", IdentityZone.getUaaZoneId());
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.getBean(JdbcTemplate.class).update("delete from users where username like 'user-%'");
+        context.close();
+    }
+
+    @Benchmark
+    public SearchQueryConverter.ProcessedFilter convert() {
+        return converter.convert(filter.expression, "userName", true, IdentityZone.getUaaZoneId());
+    }
+
+    @Benchmark
+    public List<ScimUser> query() {
+        return users.query(filter.expression, "userName", true, IdentityZone.getUaaZoneId());
+    }
+
+    @Configuration
+    @ImportResource(locations = {
+            "classpath:spring/env.xml",
+            "classpath:spring/data-source.xml",
+            "classpath:spring/jdbc-test-base-add-flyway.xml"
+    })
+    static class DatabaseConfiguration {
+    }
+}
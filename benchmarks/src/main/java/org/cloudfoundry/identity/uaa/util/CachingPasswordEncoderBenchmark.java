@@ -0,0 +1,82 @@
+package org.cloudfoundry.identity.uaa.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link CachingPasswordEncoder#matches} for cached client secrets, next to the BCrypt check it
+ * saves. The contended variants check the secrets of {@code clients} clients from all cores, as the
+ * token endpoint does under load.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CachingPasswordEncoderBenchmark {
+
+    @Param({"1", "100"})
+    public int clients;
+
+    private BCryptPasswordEncoder bcrypt;
+    private CachingPasswordEncoder cachingPasswordEncoder;
+    private String[] secrets;
+    private String[] encodedSecrets;
+
+    @Setup
+    public void setup() throws Exception {
+        bcrypt = new BCryptPasswordEncoder();
+        cachingPasswordEncoder = new CachingPasswordEncoder(bcrypt);
+        secrets = new String[clients];
+        encodedSecrets = new String[clients];
+        for (int i = 0; i < clients; i++) {
+            secrets[i] = "benchmark-secret-" + i;
+            encodedSecrets[i] = cachingPasswordEncoder.encode(secrets[i]);
+            cachingPasswordEncoder.matches(secrets[i], encodedSecrets[i]);
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public boolean cachedMatch(ClientCursor cursor) {
+        int client = cursor.next(clients);
+        return cachingPasswordEncoder.matches(secrets[client], encodedSecrets[client]);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public boolean cachedMatchContended(ClientCursor cursor) {
+        int client = cursor.next(clients);
+        return cachingPasswordEncoder.matches(secrets[client], encodedSecrets[client]);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public boolean bcryptMatch() {
+        return bcrypt.matches(secrets[0], encodedSecrets[0]);
+    }
+
+    @State(Scope.Thread)
+    public static class ClientCursor {
+        private int position;
+
+        int next(int length) {
+            position = position + 1 >= length ? 0 : position + 1;
+            return position;
+        }
+    }
+}
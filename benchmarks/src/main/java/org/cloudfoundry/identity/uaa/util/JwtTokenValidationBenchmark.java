@@ -0,0 +1,68 @@
+package org.cloudfoundry.identity.uaa.util;
+
+import org.cloudfoundry.identity.uaa.benchmark.BenchmarkKeys;
+import org.cloudfoundry.identity.uaa.oauth.KeyInfoService;
+import org.cloudfoundry.identity.uaa.oauth.jwt.JwtHelper;
+import org.cloudfoundry.identity.uaa.zone.IdentityZone;
+import org.cloudfoundry.identity.uaa.zone.IdentityZoneHolder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The validation chain run by check_token and introspect for an access token signed by this UAA.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtTokenValidationBenchmark {
+
+    @Param({"RSA", "EC", "HMAC"})
+    public BenchmarkKeys keyType;
+
+    @Param({"0", "20", "200"})
+    public int extraClaims;
+
+    private KeyInfoService keyInfoService;
+    private String token;
+
+    @Setup
+    public void setup() {
+        IdentityZone zone = IdentityZone.getUaa();
+        zone.getConfig().getTokenPolicy().setKeys(Collections.singletonMap(BenchmarkKeys.KEY_ID, keyType.getSigningKey()));
+        IdentityZoneHolder.set(zone);
+        keyInfoService = new KeyInfoService("http://localhost:8080/uaa");
+        Map<String, Object> claims = BenchmarkKeys.accessTokenClaims(extraClaims);
+        token = JwtHelper.encode(claims, keyType.keyInfo()).getEncoded();
+    }
+
+    @TearDown
+    public void tearDown() {
+        IdentityZoneHolder.clear();
+    }
+
+    @Benchmark
+    public Map<String, Object> validateAccessToken() {
+        return JwtTokenSignedByThisUAA.buildAccessTokenValidator(token, keyInfoService)
+                .checkIssuer(BenchmarkKeys.ISSUER)
+                .checkExpiry()
+                .checkJti()
+                .getClaims();
+    }
+}
@@ -0,0 +1,93 @@
+package org.cloudfoundry.identity.uaa.web.beans;
+
+import org.cloudfoundry.identity.uaa.authentication.UaaAuthentication;
+import org.cloudfoundry.identity.uaa.authentication.UaaAuthenticationDetails;
+import org.cloudfoundry.identity.uaa.authentication.UaaPrincipal;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextImpl;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Round trip of the security context of a logged in user through the session attribute codecs,
+ * as done for every request that updates a JDBC session. The encoded size of the context is
+ * printed during setup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SessionAttributeCodecBenchmark {
+
+    public enum Codec {
+        JAVA, COMPACT, COMPACT_COMPRESSED
+    }
+
+    @Param({"JAVA", "COMPACT", "COMPACT_COMPRESSED"})
+    public Codec codec;
+
+    private SessionAttributeCodec sessionAttributeCodec;
+    private SecurityContextImpl securityContext;
+    private byte[] encoded;
+
+    @Setup
+    public void setup() {
+        ClassLoader classLoader = getClass().getClassLoader();
+        switch (codec) {
+            case JAVA:
+                sessionAttributeCodec = UaaJdbcSessionConfig.sessionAttributeCodec("java", classLoader, 0);
+                break;
+            case COMPACT:
+                sessionAttributeCodec = UaaJdbcSessionConfig.sessionAttributeCodec("compact", classLoader, 0);
+                break;
+            default:
+                sessionAttributeCodec = UaaJdbcSessionConfig.sessionAttributeCodec("compact", classLoader, 1);
+                break;
+        }
+        UaaAuthentication authentication = new UaaAuthentication(
+                new UaaPrincipal("7c0ad2a6-3b2c-4c64-9b0f-5d0d8ee8e4b1", "marissa", "marissa@test.org", "uaa", null, "uaa"),
+                null,
+                List.of(new SimpleGrantedAuthority("openid"),
+                        new SimpleGrantedAuthority("uaa.user"),
+                        new SimpleGrantedAuthority("scim.me"),
+                        new SimpleGrantedAuthority("password.write"),
+                        new SimpleGrantedAuthority("cloud_controller.read"),
+                        new SimpleGrantedAuthority("cloud_controller.write")),
+                Set.of("cn=developers,ou=groups,dc=test,dc=com"),
+                Map.of("costCenter", List.of("Denver,CO"), "manager", List.of("John the Sloth")),
+                new UaaAuthenticationDetails(false, "cf", "10.0.0.1", "5F3B3B0D2C1F0C7F8F4B6E2A1D9C8B7A"),
+                true,
+                System.currentTimeMillis(),
+                -1);
+        authentication.setAuthenticationMethods(Set.of("pwd"));
+        securityContext = new SecurityContextImpl(authentication);
+        encoded = sessionAttributeCodec.encode(securityContext);
+        System.out.printf("%n%s: security context is %d bytes%n", codec, encoded.length);
+    }
+
+    @Benchmark
+    public byte[] encode() {
+        return sessionAttributeCodec.encode(securityContext);
+    }
+
+    @Benchmark
+    public Object decode() {
+        return sessionAttributeCodec.decode(encoded);
+    }
+}
@@ -0,0 +1,25 @@
+package org.cloudfoundry.identity.uaa.metrics;
+
+/**
+ * Authentication and password change counters of the audit service, since startup.
+ */
+public interface AuditMetrics {
+
+    int getUserAuthenticationCount();
+
+    int getUserAuthenticationFailureCount();
+
+    int getUserNotFoundCount();
+
+    int getClientAuthenticationCount();
+
+    int getClientAuthenticationFailureCount();
+
+    int getPrincipalAuthenticationFailureCount();
+
+    int getPrincipalNotFoundCount();
+
+    int getUserPasswordChanges();
+
+    int getUserPasswordFailures();
+}
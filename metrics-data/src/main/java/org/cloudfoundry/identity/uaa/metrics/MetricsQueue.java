@@ -19,16 +19,16 @@ import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
-import org.cloudfoundry.identity.uaa.metrics.MetricsUtil.MutableDouble;
-import org.cloudfoundry.identity.uaa.metrics.MetricsUtil.MutableLong;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import static com.fasterxml.jackson.annotation.JsonInclude.Include.NON_NULL;
 import static java.util.Optional.ofNullable;
-import static org.cloudfoundry.identity.uaa.metrics.MetricsUtil.addAverages;
 
 @JsonIgnoreProperties(ignoreUnknown = true)
 @JsonInclude(NON_NULL)
@@ -36,102 +36,68 @@ public class MetricsQueue  {
 
     public static final int MAX_ENTRIES = 5;
 
-    private ConcurrentLinkedDeque<RequestMetric> queue;
-    private Map<StatusCodeGroup, RequestMetricSummary> statistics;
+    // ring of the last MAX_ENTRIES requests, written at offered % MAX_ENTRIES
+    private final AtomicReferenceArray<RequestMetric> lastRequests = new AtomicReferenceArray<>(MAX_ENTRIES);
+    private final AtomicLong offered = new AtomicLong();
+    private final Map<StatusCodeGroup, RequestMetricSummary> statistics;
 
     public MetricsQueue() {
         this(null,null);
     }
 
     @JsonCreator
-    public MetricsQueue(@JsonProperty("lastRequests") ConcurrentLinkedDeque<RequestMetric> queue,
+    public MetricsQueue(@JsonProperty("lastRequests") List<RequestMetric> queue,
                         @JsonProperty("detailed") Map<StatusCodeGroup, RequestMetricSummary> statistics) {
-        this.queue = ofNullable(queue).orElse(new ConcurrentLinkedDeque<>());
-        this.statistics = ofNullable(statistics).orElse(new ConcurrentHashMap<>());
+        if (queue != null) {
+            queue.forEach(this::remember);
+        }
+        this.statistics = new ConcurrentHashMap<>(ofNullable(statistics).orElse(Map.of()));
     }
 
     public boolean offer(RequestMetric metric) {
-        queue.offer(metric);
-        //remove earliest entries
-        while (queue.size() > MAX_ENTRIES) {
-            queue.removeFirst();
-        }
+        remember(metric);
 
-        StatusCodeGroup statusCode = StatusCodeGroup.valueOf(metric.getStatusCode());
-        if (!statistics.containsKey(statusCode)) {
-            statistics.putIfAbsent(statusCode, new RequestMetricSummary());
-        }
-        RequestMetricSummary totals = statistics.get(statusCode);
+        RequestMetricSummary totals = statistics.computeIfAbsent(StatusCodeGroup.valueOf(metric.getStatusCode()), group -> new RequestMetricSummary());
         long time = metric.getRequestCompleteTime() - metric.getRequestStartTime();
         totals.add(time,
                    time < metric.getUriGroup().getLimit(),
                    metric.getNrOfDatabaseQueries(),
                    metric.getDatabaseQueryTime(),
-                   metric.getQueries().stream().filter(QueryMetric::isIntolerable).count(),
-                   metric.getQueries().stream().filter(QueryMetric::isIntolerable).mapToLong(q -> q.getRequestCompleteTime()-q.getRequestStartTime()).sum()
+                   metric.getIntolerableQueries(),
+                   metric.getIntolerableQueryTime()
         );
         return true;
     }
 
+    private void remember(RequestMetric metric) {
+        lastRequests.set((int) (offered.getAndIncrement() % MAX_ENTRIES), metric);
+    }
+
     public Map<StatusCodeGroup, RequestMetricSummary> getDetailed() {
         return statistics;
     }
 
-
-    public ConcurrentLinkedDeque<RequestMetric> getLastRequests() {
-        return queue;
+    /**
+     * @return up to {@link #MAX_ENTRIES} of the most recent requests, oldest first
+     */
+    public List<RequestMetric> getLastRequests() {
+        long end = offered.get();
+        List<RequestMetric> result = new ArrayList<>(MAX_ENTRIES);
+        for (long i = Math.max(0, end - MAX_ENTRIES); i < end; i++) {
+            RequestMetric metric = lastRequests.get((int) (i % MAX_ENTRIES));
+            if (metric != null) {
+                result.add(metric);
+            }
+        }
+        return result;
     }
 
     @JsonProperty("summary")
     public RequestMetricSummary getTotals() {
-        MutableLong count = new MutableLong(0);
-        MutableDouble averageTime = new MutableDouble(0);
-        MutableLong intolerableCount = new MutableLong(0);
-        MutableDouble averageIntolerableTime = new MutableDouble(0);
-        MutableLong databaseQueryCount = new MutableLong(0);
-        MutableDouble averageDatabaseQueryTime = new MutableDouble(0);
-        MutableLong databaseIntolerableQueryCount = new MutableLong(0);
-        MutableDouble averageDatabaseIntolerableQueryTime = new MutableDouble(0);
-        statistics.forEach((key, summary) -> {
-            averageTime.set(addAverages(count.get(),
-                    averageTime.get(),
-                    summary.getCount(),
-                    summary.getAverageTime())
-            );
-            count.add(summary.getCount());
-
-            averageIntolerableTime.set(addAverages(intolerableCount.get(),
-                    averageIntolerableTime.get(),
-                    summary.getIntolerableCount(),
-                    summary.getAverageIntolerableTime())
-            );
-            intolerableCount.add(summary.getIntolerableCount());
-
-            averageDatabaseQueryTime.set(addAverages(databaseQueryCount.get(),
-                    averageDatabaseQueryTime.get(),
-                    summary.getDatabaseQueryCount(),
-                    summary.getAverageDatabaseQueryTime()
-                    )
-            );
-            databaseQueryCount.add(summary.getDatabaseQueryCount());
-
-            averageDatabaseIntolerableQueryTime.set(addAverages(databaseIntolerableQueryCount.get(),
-                    averageDatabaseIntolerableQueryTime.get(),
-                    summary.getDatabaseIntolerableQueryCount(),
-                    summary.getAverageDatabaseIntolerableQueryTime()
-                    )
-            );
-            databaseIntolerableQueryCount.add(summary.getDatabaseIntolerableQueryCount());
-
-        });
-        return new RequestMetricSummary(count.get(),
-                                        averageTime.get(),
-                                        intolerableCount.get(),
-                                        averageIntolerableTime.get(),
-                                        databaseQueryCount.get(),
-                                        averageDatabaseQueryTime.get(),
-                                        databaseIntolerableQueryCount.get(),
-                                        averageDatabaseIntolerableQueryTime.get());
+        boolean histograms = statistics.values().stream().allMatch(RequestMetricSummary::hasHistogram);
+        RequestMetricSummary totals = histograms ? new RequestMetricSummary() : new RequestMetricSummary(0, 0, 0, 0, 0, 0, 0, 0);
+        statistics.values().forEach(totals::add);
+        return totals;
     }
 
 }
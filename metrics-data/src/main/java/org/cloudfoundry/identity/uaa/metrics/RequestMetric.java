@@ -18,7 +18,8 @@ package org.cloudfoundry.identity.uaa.metrics;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 @JsonIgnoreProperties(ignoreUnknown = true)
@@ -28,7 +29,12 @@ public class RequestMetric {
     private int statusCode;
     private long requestStartTime;
     private long requestCompleteTime;
-    private List<QueryMetric> queries = new LinkedList<>();
+    private long nrOfDatabaseQueries;
+    private long databaseQueryTime;
+    private long intolerableQueries;
+    private long intolerableQueryTime;
+    // details of the queries that were kept, see QueryFilter
+    private List<QueryMetric> queries;
 
     public static RequestMetric start(String uri, UrlGroup group, long start) {
         RequestMetric metric = new RequestMetric();
@@ -44,12 +50,28 @@ public class RequestMetric {
     }
 
     public void addQuery(QueryMetric query) {
+        recordQuery(query.getRequestCompleteTime() - query.getRequestStartTime(), query.isIntolerable());
+        if (queries == null) {
+            queries = new ArrayList<>();
+        }
         queries.add(query);
     }
 
+    /**
+     * Counts a query without keeping its details.
+     */
+    public void recordQuery(long elapsed, boolean intolerable) {
+        nrOfDatabaseQueries++;
+        databaseQueryTime += elapsed;
+        if (intolerable) {
+            intolerableQueries++;
+            intolerableQueryTime += elapsed;
+        }
+    }
+
     @JsonIgnore
     protected List<QueryMetric> getQueries() {
-        return queries;
+        return queries == null ? Collections.emptyList() : queries;
     }
 
     public String getUri() {
@@ -69,11 +91,19 @@ public class RequestMetric {
     }
 
     public long getNrOfDatabaseQueries() {
-        return queries.size();
+        return nrOfDatabaseQueries;
     }
 
     public long getDatabaseQueryTime() {
-        return queries.stream().mapToLong(q -> q.getRequestCompleteTime() - q.getRequestStartTime()).sum();
+        return databaseQueryTime;
+    }
+
+    long getIntolerableQueries() {
+        return intolerableQueries;
+    }
+
+    long getIntolerableQueryTime() {
+        return intolerableQueryTime;
     }
 
     public UrlGroup getUriGroup() {
@@ -18,20 +18,46 @@ import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
-import static org.cloudfoundry.identity.uaa.metrics.MetricsUtil.addToAverage;
+import java.util.concurrent.atomic.LongAdder;
 
+/**
+ * Request counters of one status code group. Counters are striped so concurrent requests do
+ * not contend, and request times are kept in a {@link LatencyHistogram} for percentiles.
+ *
+ * Instances read from JSON carry no histogram; they report the percentiles they were written with.
+ */
 @JsonIgnoreProperties(ignoreUnknown = true)
 public class RequestMetricSummary {
-    long count = 0;
-    double averageTime = 0;
-    long intolerableCount = 0;
-    double averageIntolerableTime = 0;
-    long databaseQueryCount = 0;
-    double averageDatabaseQueryTime = 0;
-    long databaseIntolerableQueryCount = 0;
-    double averageDatabaseIntolerableQueryTime = 0;
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalTime = new LongAdder();
+    private final LongAdder intolerableCount = new LongAdder();
+    private final LongAdder totalIntolerableTime = new LongAdder();
+    private final LongAdder databaseQueryCount = new LongAdder();
+    private final LongAdder totalDatabaseQueryTime = new LongAdder();
+    private final LongAdder databaseIntolerableQueryCount = new LongAdder();
+    private final LongAdder totalDatabaseIntolerableQueryTime = new LongAdder();
+    private final LatencyHistogram histogram;
+    private long medianTime;
+    private long p95Time;
+    private long p99Time;
+    private long maxTime;
 
     public RequestMetricSummary() {
+        this.histogram = new LatencyHistogram();
+    }
+
+    public RequestMetricSummary(long count,
+                                double averageTime,
+                                long intolerableCount,
+                                double averageIntolerableTime,
+                                long databaseQueryCount,
+                                double averageDatabaseQueryTime,
+                                long databaseIntolerableQueryCount,
+                                double averageDatabaseIntolerableQueryTime) {
+        this(count, averageTime, intolerableCount, averageIntolerableTime,
+             databaseQueryCount, averageDatabaseQueryTime,
+             databaseIntolerableQueryCount, averageDatabaseIntolerableQueryTime,
+             0, 0, 0, 0);
     }
 
     @JsonCreator
@@ -42,60 +68,127 @@ public class RequestMetricSummary {
                                 @JsonProperty("databaseQueryCount") long databaseQueryCount,
                                 @JsonProperty("averageDatabaseQueryTime") double averageDatabaseQueryTime,
                                 @JsonProperty("databaseIntolerableQueryCount") long databaseIntolerableQueryCount,
-                                @JsonProperty("averageDatabaseIntolerableQueryTime") double averageDatabaseIntolerableQueryTime) {
-        this.count = count;
-        this.averageTime = averageTime;
-        this.intolerableCount = intolerableCount;
-        this.averageIntolerableTime = averageIntolerableTime;
-        this.databaseQueryCount = databaseQueryCount;
-        this.averageDatabaseQueryTime = averageDatabaseQueryTime;
-        this.databaseIntolerableQueryCount = databaseIntolerableQueryCount;
-        this.averageDatabaseIntolerableQueryTime = averageDatabaseIntolerableQueryTime;
-    }
-
-    public synchronized void add(long time, boolean tolerable, long dbQueries, long dbTime, long failedDbQueries, long failedDbQueryTime) {
-        averageTime = addToAverage(count, averageTime, 1, time);
-        count++;
+                                @JsonProperty("averageDatabaseIntolerableQueryTime") double averageDatabaseIntolerableQueryTime,
+                                @JsonProperty("medianTime") long medianTime,
+                                @JsonProperty("p95Time") long p95Time,
+                                @JsonProperty("p99Time") long p99Time,
+                                @JsonProperty("maxTime") long maxTime) {
+        this.histogram = null;
+        this.count.add(count);
+        this.totalTime.add(Math.round(averageTime * count));
+        this.intolerableCount.add(intolerableCount);
+        this.totalIntolerableTime.add(Math.round(averageIntolerableTime * intolerableCount));
+        this.databaseQueryCount.add(databaseQueryCount);
+        this.totalDatabaseQueryTime.add(Math.round(averageDatabaseQueryTime * databaseQueryCount));
+        this.databaseIntolerableQueryCount.add(databaseIntolerableQueryCount);
+        this.totalDatabaseIntolerableQueryTime.add(Math.round(averageDatabaseIntolerableQueryTime * databaseIntolerableQueryCount));
+        this.medianTime = medianTime;
+        this.p95Time = p95Time;
+        this.p99Time = p99Time;
+        this.maxTime = maxTime;
+    }
+
+    public void add(long time, boolean tolerable, long dbQueries, long dbTime, long failedDbQueries, long failedDbQueryTime) {
+        count.increment();
+        totalTime.add(time);
         if (!tolerable) {
-            averageIntolerableTime = addToAverage(intolerableCount, averageIntolerableTime, 1, time);
-            ++intolerableCount;
+            intolerableCount.increment();
+            totalIntolerableTime.add(time);
         }
-        averageDatabaseQueryTime = addToAverage(databaseQueryCount, averageDatabaseQueryTime, dbQueries, dbTime);
-        databaseQueryCount += dbQueries;
+        if (dbQueries != 0) {
+            databaseQueryCount.add(dbQueries);
+            totalDatabaseQueryTime.add(dbTime);
+        }
+        if (failedDbQueries != 0) {
+            databaseIntolerableQueryCount.add(failedDbQueries);
+            totalDatabaseIntolerableQueryTime.add(failedDbQueryTime);
+        }
+        if (histogram != null) {
+            histogram.record(time);
+        }
+    }
 
-        averageDatabaseIntolerableQueryTime = addToAverage(databaseIntolerableQueryCount, averageDatabaseIntolerableQueryTime, failedDbQueries, failedDbQueryTime);
-        databaseIntolerableQueryCount += failedDbQueries;
+    /**
+     * Adds the counters of {@code other} to this summary. Histograms are merged when both sides
+     * have one, otherwise the percentiles become the highest of the two, an upper bound.
+     */
+    void add(RequestMetricSummary other) {
+        count.add(other.getCount());
+        totalTime.add(other.totalTime.sum());
+        intolerableCount.add(other.getIntolerableCount());
+        totalIntolerableTime.add(other.totalIntolerableTime.sum());
+        databaseQueryCount.add(other.getDatabaseQueryCount());
+        totalDatabaseQueryTime.add(other.totalDatabaseQueryTime.sum());
+        databaseIntolerableQueryCount.add(other.getDatabaseIntolerableQueryCount());
+        totalDatabaseIntolerableQueryTime.add(other.totalDatabaseIntolerableQueryTime.sum());
+        if (histogram != null && other.histogram != null) {
+            histogram.add(other.histogram);
+        } else {
+            medianTime = Math.max(getMedianTime(), other.getMedianTime());
+            p95Time = Math.max(getP95Time(), other.getP95Time());
+            p99Time = Math.max(getP99Time(), other.getP99Time());
+            maxTime = Math.max(getMaxTime(), other.getMaxTime());
+        }
+    }
+
+    boolean hasHistogram() {
+        return histogram != null;
     }
 
     public long getCount() {
-        return count;
+        return count.sum();
     }
 
     public double getAverageTime() {
-        return averageTime;
+        return average(totalTime, count);
     }
 
     public long getIntolerableCount() {
-        return intolerableCount;
+        return intolerableCount.sum();
     }
 
     public double getAverageIntolerableTime() {
-        return averageIntolerableTime;
+        return average(totalIntolerableTime, intolerableCount);
     }
 
     public long getDatabaseQueryCount() {
-        return databaseQueryCount;
+        return databaseQueryCount.sum();
     }
 
     public double getAverageDatabaseQueryTime() {
-        return averageDatabaseQueryTime;
+        return average(totalDatabaseQueryTime, databaseQueryCount);
     }
 
     public long getDatabaseIntolerableQueryCount() {
-        return databaseIntolerableQueryCount;
+        return databaseIntolerableQueryCount.sum();
     }
 
     public double getAverageDatabaseIntolerableQueryTime() {
-        return averageDatabaseIntolerableQueryTime;
+        return average(totalDatabaseIntolerableQueryTime, databaseIntolerableQueryCount);
+    }
+
+    @JsonProperty("medianTime")
+    public long getMedianTime() {
+        return histogram != null ? histogram.getValueAtPercentile(50) : medianTime;
+    }
+
+    @JsonProperty("p95Time")
+    public long getP95Time() {
+        return histogram != null ? histogram.getValueAtPercentile(95) : p95Time;
+    }
+
+    @JsonProperty("p99Time")
+    public long getP99Time() {
+        return histogram != null ? histogram.getValueAtPercentile(99) : p99Time;
+    }
+
+    @JsonProperty("maxTime")
+    public long getMaxTime() {
+        return histogram != null ? histogram.getMax() : maxTime;
+    }
+
+    private static double average(LongAdder total, LongAdder count) {
+        long n = count.sum();
+        return n == 0 ? 0 : (double) total.sum() / n;
     }
 }
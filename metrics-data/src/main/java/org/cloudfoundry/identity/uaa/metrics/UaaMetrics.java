@@ -28,4 +28,6 @@ public interface UaaMetrics {
     Map<String, String> getSummary();
 
     String getGlobals();
+
+    String getSlowQueries();
 }
@@ -0,0 +1,20 @@
+package org.cloudfoundry.identity.uaa.metrics;
+
+import java.util.Map;
+
+/**
+ * In-process view of the request metrics that {@link UaaMetrics} publishes as JSON over JMX.
+ */
+public interface UaaRequestMetrics {
+
+    long getInflightCount();
+
+    long getIdleTime();
+
+    long getUpTime();
+
+    /**
+     * @return the live metrics per URL group, including {@link MetricsUtil#GLOBAL_GROUP}
+     */
+    Map<String, MetricsQueue> getMetricsQueues();
+}
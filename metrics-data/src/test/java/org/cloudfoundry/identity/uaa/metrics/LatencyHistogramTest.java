@@ -0,0 +1,81 @@
+package org.cloudfoundry.identity.uaa.metrics;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.allOf;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class LatencyHistogramTest {
+
+    private LatencyHistogram histogram;
+
+    @BeforeEach
+    void setup() {
+        histogram = new LatencyHistogram();
+    }
+
+    @Test
+    void empty() {
+        assertEquals(0, histogram.getValueAtPercentile(50));
+        assertEquals(0, histogram.getMax());
+    }
+
+    @Test
+    void smallValuesAreExact() {
+        for (int i = 1; i <= 20; i++) {
+            histogram.record(i);
+        }
+        assertEquals(10, histogram.getValueAtPercentile(50));
+        assertEquals(19, histogram.getValueAtPercentile(95));
+        assertEquals(20, histogram.getValueAtPercentile(100));
+    }
+
+    @Test
+    void percentilesWithinRelativeError() {
+        for (int i = 1; i <= 10000; i++) {
+            histogram.record(i);
+        }
+        assertWithinError(5000, histogram.getValueAtPercentile(50));
+        assertWithinError(9900, histogram.getValueAtPercentile(99));
+        assertEquals(10000, histogram.getMax());
+    }
+
+    @Test
+    void bucketsAreContiguous() {
+        for (long value = 0; value < 100_000; value++) {
+            int index = LatencyHistogram.indexOf(value);
+            assertThat(LatencyHistogram.upperBoundOf(index), greaterThanOrEqualTo(value));
+            if (index > 0) {
+                assertThat(LatencyHistogram.upperBoundOf(index - 1), lessThanOrEqualTo(value - 1));
+            }
+        }
+    }
+
+    @Test
+    void outOfRangeValues() {
+        histogram.record(-5);
+        histogram.record(LatencyHistogram.MAX_VALUE * 2);
+        assertEquals(0, histogram.getValueAtPercentile(50));
+        assertEquals(LatencyHistogram.MAX_VALUE * 2, histogram.getMax());
+        assertThat(histogram.getValueAtPercentile(100), greaterThanOrEqualTo(LatencyHistogram.MAX_VALUE));
+    }
+
+    @Test
+    void add() {
+        LatencyHistogram other = new LatencyHistogram();
+        histogram.record(10);
+        other.record(20);
+        other.record(30);
+        histogram.add(other);
+        assertEquals(20, histogram.getValueAtPercentile(50));
+        assertEquals(30, histogram.getMax());
+    }
+
+    private static void assertWithinError(long expected, long actual) {
+        assertThat(actual, allOf(greaterThanOrEqualTo(expected), lessThanOrEqualTo(expected + expected / 16)));
+    }
+}
@@ -61,6 +61,16 @@ class MetricsQueueTest {
         assertEquals(3.5, summary.getAverageDatabaseIntolerableQueryTime(), DELTA);
     }
 
+    @Test
+    void percentiles() {
+        RequestMetricSummary summary = queue.getTotals();
+        assertEquals(5, summary.getMedianTime());
+        assertEquals(MAX_TIME + 1, summary.getP99Time());
+        assertEquals(MAX_TIME + 1, summary.getMaxTime());
+        assertEquals(MAX_TIME + 1, queue.getDetailed().get(StatusCodeGroup.SUCCESS).getMaxTime());
+        assertEquals(5, queue.getDetailed().get(StatusCodeGroup.SERVER_ERROR).getP95Time());
+    }
+
     @Test
     void json_serialize() {
         String json = JsonUtils.writeValueAsString(queue);
@@ -70,6 +80,8 @@ class MetricsQueueTest {
         MetricsQueue deserialized = JsonUtils.readValue(json, MetricsQueue.class);
         assertNotNull(deserialized);
         validateMetricsQueue(deserialized);
+        assertEquals(MAX_TIME + 1, deserialized.getDetailed().get(StatusCodeGroup.SUCCESS).getMaxTime());
+        assertEquals(MAX_TIME + 1, deserialized.getTotals().getMaxTime());
     }
 
     @Test
@@ -109,6 +121,22 @@ class MetricsQueueTest {
         assertEquals(2, totals.getDatabaseIntolerableQueryCount());
     }
 
+    @Test
+    void offerCountedQueries() {
+        queue = new MetricsQueue();
+        RequestMetric metric = RequestMetric.start("uri", uriGroup, 0);
+        metric.recordQuery(2, false);
+        metric.recordQuery(3, false);
+        metric.addQuery(new QueryMetric("query1", 0, 4, true));
+        metric.stop(200, 10);
+        queue.offer(metric);
+        RequestMetricSummary totals = queue.getTotals();
+        assertEquals(3, totals.getDatabaseQueryCount());
+        assertEquals(3, totals.getAverageDatabaseQueryTime(), DELTA);
+        assertEquals(1, totals.getDatabaseIntolerableQueryCount());
+        assertEquals(1, metric.getQueries().size());
+    }
+
     private static void validateMetricsQueue(MetricsQueue queue) {
         Map<StatusCodeGroup, RequestMetricSummary> summary = queue.getDetailed();
         assertNotNull(summary);
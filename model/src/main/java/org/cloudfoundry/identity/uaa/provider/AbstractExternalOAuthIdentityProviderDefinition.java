@@ -20,6 +20,7 @@ import lombok.Getter;
 
 import java.lang.reflect.ParameterizedType;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
 
@@ -172,6 +173,13 @@ public abstract class AbstractExternalOAuthIdentityProviderDefinition<T extends
         return (Class) parameterizedType.getActualTypeArguments()[0];
     }
 
+    @Override
+    public AbstractExternalOAuthIdentityProviderDefinition<T> copy() {
+        AbstractExternalOAuthIdentityProviderDefinition<T> copy = (AbstractExternalOAuthIdentityProviderDefinition<T>) super.copy();
+        copy.scopes = scopes == null ? null : new ArrayList<>(scopes);
+        return copy;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -16,12 +16,14 @@ package org.cloudfoundry.identity.uaa.provider;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 
 @JsonIgnoreProperties(ignoreUnknown = true)
-public class AbstractIdentityProviderDefinition {
+public class AbstractIdentityProviderDefinition implements Cloneable {
     public static final String EMAIL_DOMAIN_ATTR = "emailDomain";
     public static final String PROVIDER_DESCRIPTION = "providerDescription";
 
@@ -55,6 +57,22 @@ public class AbstractIdentityProviderDefinition {
         this.providerDescription = description;
     }
 
+    /**
+     * @return a copy of this definition, including copies of its collections, that can be
+     * modified without affecting this one
+     */
+    public AbstractIdentityProviderDefinition copy() {
+        AbstractIdentityProviderDefinition copy;
+        try {
+            copy = (AbstractIdentityProviderDefinition) super.clone();
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalStateException(e);
+        }
+        copy.emailDomain = emailDomain == null ? null : new ArrayList<>(emailDomain);
+        copy.additionalConfiguration = additionalConfiguration == null ? null : new HashMap<>(additionalConfiguration);
+        return copy;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
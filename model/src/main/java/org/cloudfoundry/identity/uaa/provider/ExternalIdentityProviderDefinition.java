@@ -81,6 +81,14 @@ public class ExternalIdentityProviderDefinition extends AbstractIdentityProvider
         this.addShadowUserOnLogin = addShadowUserOnLogin;
     }
 
+    @Override
+    public ExternalIdentityProviderDefinition copy() {
+        ExternalIdentityProviderDefinition copy = (ExternalIdentityProviderDefinition) super.copy();
+        copy.externalGroupsWhitelist = externalGroupsWhitelist == null ? null : new LinkedList<>(externalGroupsWhitelist);
+        copy.attributeMappings = attributeMappings == null ? null : new HashMap<>(attributeMappings);
+        return copy;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -17,6 +17,7 @@ import com.fasterxml.jackson.annotation.JsonInclude;
 import org.cloudfoundry.identity.uaa.login.Prompt;
 
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -93,6 +94,14 @@ implements Cloneable {
         return super.clone();
     }
 
+    @Override
+    public OIDCIdentityProviderDefinition copy() {
+        OIDCIdentityProviderDefinition copy = (OIDCIdentityProviderDefinition) super.copy();
+        copy.prompts = prompts == null ? null : new ArrayList<>(prompts);
+        copy.additionalAuthzParameters = additionalAuthzParameters == null ? null : new HashMap<>(additionalAuthzParameters);
+        return copy;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -251,6 +251,13 @@ public class SamlIdentityProviderDefinition extends ExternalIdentityProviderDefi
         this.skipSslValidation = skipSslValidation;
     }
 
+    @Override
+    public SamlIdentityProviderDefinition copy() {
+        SamlIdentityProviderDefinition copy = (SamlIdentityProviderDefinition) super.copy();
+        copy.authnContext = authnContext == null ? null : new ArrayList<>(authnContext);
+        return copy;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
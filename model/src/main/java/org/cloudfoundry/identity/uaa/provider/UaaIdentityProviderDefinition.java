@@ -14,6 +14,8 @@ package org.cloudfoundry.identity.uaa.provider;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 
+import java.util.Date;
+
 @JsonIgnoreProperties(ignoreUnknown = true)
 public class UaaIdentityProviderDefinition extends AbstractIdentityProviderDefinition {
 
@@ -57,4 +59,28 @@ public class UaaIdentityProviderDefinition extends AbstractIdentityProviderDefin
         this.disableInternalUserManagement = disableInternalUserManagement;
     }
 
+    @Override
+    public UaaIdentityProviderDefinition copy() {
+        UaaIdentityProviderDefinition copy = (UaaIdentityProviderDefinition) super.copy();
+        if (passwordPolicy != null) {
+            copy.passwordPolicy = new PasswordPolicy(
+                    passwordPolicy.getMinLength(),
+                    passwordPolicy.getMaxLength(),
+                    passwordPolicy.getRequireUpperCaseCharacter(),
+                    passwordPolicy.getRequireLowerCaseCharacter(),
+                    passwordPolicy.getRequireDigit(),
+                    passwordPolicy.getRequireSpecialCharacter(),
+                    passwordPolicy.getExpirePasswordInMonths());
+            copy.passwordPolicy.setPasswordNewerThan(passwordPolicy.getPasswordNewerThan() == null ?
+                    null : new Date(passwordPolicy.getPasswordNewerThan().getTime()));
+        }
+        if (lockoutPolicy != null) {
+            copy.lockoutPolicy = new LockoutPolicy(
+                    lockoutPolicy.getCountFailuresWithin(),
+                    lockoutPolicy.getLockoutAfterFailures(),
+                    lockoutPolicy.getLockoutPeriodSeconds());
+        }
+        return copy;
+    }
+
 }
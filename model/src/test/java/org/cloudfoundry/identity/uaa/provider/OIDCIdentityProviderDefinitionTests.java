@@ -21,6 +21,7 @@ import org.junit.Test;
 
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
@@ -57,6 +58,25 @@ public class OIDCIdentityProviderDefinitionTests {
         assertEquals("jwt", def2.getAdditionalAuthzParameters().get("token_format"));
     }
 
+    @Test
+    public void copyDoesNotShareState() {
+        OIDCIdentityProviderDefinition def = JsonUtils.readValue(defaultJson, OIDCIdentityProviderDefinition.class);
+        def.setScopes(new ArrayList<>(Arrays.asList("openid")));
+        def.setEmailDomain(new ArrayList<>(Arrays.asList("example.com")));
+        def.setRelyingPartySecret("secret");
+
+        OIDCIdentityProviderDefinition copy = def.copy();
+
+        assertEquals(def, copy);
+        copy.getScopes().add("profile");
+        copy.getEmailDomain().add("example.org");
+        copy.setRelyingPartySecret(null);
+        assertEquals(Arrays.asList("openid"), def.getScopes());
+        assertEquals(Arrays.asList("example.com"), def.getEmailDomain());
+        assertEquals("secret", def.getRelyingPartySecret());
+        assertEquals("jwt", copy.getAdditionalAuthzParameters().get("token_format"));
+    }
+
     @Test
     public void serialize_prompts() {
         OIDCIdentityProviderDefinition def = JsonUtils.readValue(defaultJson, OIDCIdentityProviderDefinition.class);
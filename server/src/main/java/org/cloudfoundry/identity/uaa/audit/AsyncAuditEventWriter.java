@@ -0,0 +1,500 @@
+package org.cloudfoundry.identity.uaa.audit;
+
+import org.cloudfoundry.identity.uaa.util.JsonUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jmx.export.annotation.ManagedMetric;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.jmx.support.MetricType;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Writes audit records to sec_audit on a single background thread.
+ *
+ * Callers enqueue into a bounded queue and return immediately. The writer drains the queue
+ * and inserts events with JDBC batches of up to {@code batchSize} rows, at the latest
+ * {@code flushIntervalMillis} after the oldest pending event was queued. Other statements,
+ * such as the deletes issued when a login succeeds, are executed in queue order so they never
+ * overtake an earlier insert.
+ *
+ * When the queue is full the {@link OverflowPolicy} decides whether the caller waits, the
+ * event is dropped, or it is appended to a local spill file. Once a record has been spilled
+ * all following statements are appended to the spill file as well, until the writer has
+ * written the queue and replays the file, so a spilled login failure is never written after
+ * the reset that followed it. A spill file left behind by an earlier run is replayed on start,
+ * before any new work is accepted. Statements other than inserts are never dropped, they wait
+ * for room unless the policy is {@code SPILL}.
+ *
+ * Only the operations in {@link Operation} are accepted. The spill file records the operation
+ * and its fields, never SQL, and lines naming anything else are refused on replay.
+ */
+@ManagedResource(
+        objectName = "cloudfoundry.identity:name=AuditEventWriter",
+        description = "UAA Asynchronous Audit Writer Metrics"
+)
+public class AsyncAuditEventWriter {
+
+    private static final Logger logger = LoggerFactory.getLogger(AsyncAuditEventWriter.class);
+
+    static final String INSERT_SQL = "insert into sec_audit (principal_id, event_type, origin, event_data, identity_zone_id, created) values (?,?,?,?,?,?)";
+    static final String RESET_FAILURES_SQL = "delete from sec_audit where principal_id=? and identity_zone_id=? and event_type=?";
+    static final String DELETE_EXPIRED_SQL = "delete from sec_audit where created < ?";
+
+    // how long a producer waits for room before letting go of the read lock and trying again
+    private static final long OFFER_WAIT_MILLIS = 10;
+
+    enum Operation {
+        INSERT_EVENT(INSERT_SQL),
+        RESET_FAILURES(RESET_FAILURES_SQL),
+        DELETE_EXPIRED(DELETE_EXPIRED_SQL);
+
+        private final String sql;
+
+        Operation(String sql) {
+            this.sql = sql;
+        }
+    }
+
+    public enum OverflowPolicy {
+        BLOCK, DROP, SPILL
+    }
+
+    private final JdbcTemplate template;
+    private final BlockingQueue<Entry> queue;
+    private final int batchSize;
+    private final long flushIntervalMillis;
+    private final OverflowPolicy overflowPolicy;
+    private final File spillFile;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile Thread thread;
+    private volatile boolean running;
+    private volatile boolean spilling;
+
+    private final LongAdder written = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder spilled = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder totalLatency = new LongAdder();
+    private final AtomicLong maxLatency = new AtomicLong();
+
+    public AsyncAuditEventWriter(JdbcTemplate template,
+                                 int queueCapacity,
+                                 int batchSize,
+                                 long flushIntervalMillis,
+                                 OverflowPolicy overflowPolicy,
+                                 File spillFile) {
+        if (overflowPolicy == OverflowPolicy.SPILL && spillFile == null) {
+            throw new IllegalArgumentException("A spill file is required for overflow policy SPILL");
+        }
+        this.template = template;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSize = batchSize;
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.overflowPolicy = overflowPolicy;
+        this.spillFile = spillFile;
+    }
+
+    public void start() {
+        lock.writeLock().lock();
+        try {
+            if (running) {
+                return;
+            }
+            writeSpillFile();
+            running = true;
+            thread = new Thread(this::run, "uaa-audit-writer");
+            thread.setDaemon(true);
+            thread.start();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Stops accepting work and waits for the pending records to be written.
+     */
+    public void stop() {
+        Thread writerThread;
+        lock.writeLock().lock();
+        try {
+            if (!running) {
+                return;
+            }
+            running = false;
+            writerThread = thread;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        try {
+            writerThread.join(TimeUnit.SECONDS.toMillis(30));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public void insert(AuditEvent event, String zoneId) {
+        enqueue(new Entry(Operation.INSERT_EVENT, new Object[]{
+                event.getPrincipalId(),
+                event.getType().getCode(),
+                JdbcAuditService.truncate(event.getOrigin()),
+                JdbcAuditService.truncate(event.getData()),
+                zoneId,
+                new Timestamp(event.getTime())
+        }));
+    }
+
+    /**
+     * Removes the recorded login failures of a user, in order with the events queued before.
+     */
+    public void resetFailures(String principalId, String zoneId) {
+        enqueue(new Entry(Operation.RESET_FAILURES, new Object[]{
+                principalId, zoneId, AuditEventType.UserAuthenticationFailure.getCode()
+        }));
+    }
+
+    /**
+     * Removes all records created before the given time.
+     */
+    public void deleteExpired(Timestamp createdBefore) {
+        enqueue(new Entry(Operation.DELETE_EXPIRED, new Object[]{createdBefore}));
+    }
+
+    private void enqueue(Entry entry) {
+        // the read lock keeps stop() from ending the writer between the check and the offer. It is
+        // never held while waiting without a bound, the writer thread may need the write lock to make room.
+        while (true) {
+            lock.readLock().lock();
+            try {
+                if (!running) {
+                    break;
+                }
+                if (accept(entry) || queue.offer(entry, OFFER_WAIT_MILLIS, TimeUnit.MILLISECONDS)) {
+                    return;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                dropped.increment();
+                return;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+        write(List.of(entry));
+    }
+
+    /**
+     * Queues, spills or drops the entry. Returns false if the caller has to wait for room.
+     */
+    private boolean accept(Entry entry) {
+        if (spilling) {
+            spill(entry);
+            return true;
+        }
+        if (queue.offer(entry)) {
+            return true;
+        }
+        OverflowPolicy policy = overflowPolicy;
+        if (entry.operation != Operation.INSERT_EVENT && policy == OverflowPolicy.DROP) {
+            policy = OverflowPolicy.BLOCK;
+        }
+        switch (policy) {
+            case BLOCK:
+                return false;
+            case SPILL:
+                spilling = true;
+                spill(entry);
+                return true;
+            default:
+                dropped.increment();
+                logger.debug("Audit queue is full, dropping record");
+                return true;
+        }
+    }
+
+    private void run() {
+        List<Entry> pending = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty() || spilling) {
+            if (spilling && queue.isEmpty()) {
+                replaySpilled();
+                continue;
+            }
+            try {
+                Entry first = queue.poll(flushIntervalMillis, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                pending.add(first);
+                long deadline = first.queuedAt + flushIntervalMillis;
+                while (pending.size() < batchSize) {
+                    long wait = deadline - System.currentTimeMillis();
+                    Entry next = wait > 0 ? queue.poll(wait, TimeUnit.MILLISECONDS) : queue.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    pending.add(next);
+                }
+            } catch (InterruptedException e) {
+                lock.writeLock().lock();
+                try {
+                    running = false;
+                } finally {
+                    lock.writeLock().unlock();
+                }
+                queue.drainTo(pending);
+            }
+            write(pending);
+            pending.clear();
+        }
+    }
+
+    /**
+     * Writes entries in order, batching consecutive inserts.
+     */
+    private void write(List<Entry> entries) {
+        List<Object[]> inserts = new ArrayList<>();
+        for (Entry entry : entries) {
+            if (entry.operation == Operation.INSERT_EVENT) {
+                inserts.add(entry.args);
+                continue;
+            }
+            flushInserts(inserts);
+            try {
+                template.update(entry.operation.sql, entry.args);
+            } catch (RuntimeException e) {
+                failed.increment();
+                logger.warn("Unable to write audit record", e);
+            }
+        }
+        flushInserts(inserts);
+        long now = System.currentTimeMillis();
+        for (Entry entry : entries) {
+            long latency = now - entry.queuedAt;
+            totalLatency.add(latency);
+            maxLatency.accumulateAndGet(latency, Math::max);
+        }
+        completed.add(entries.size());
+    }
+
+    private void flushInserts(List<Object[]> inserts) {
+        if (inserts.isEmpty()) {
+            return;
+        }
+        try {
+            template.batchUpdate(INSERT_SQL, inserts);
+            written.add(inserts.size());
+            batches.increment();
+        } catch (RuntimeException e) {
+            failed.add(inserts.size());
+            logger.warn("Unable to write " + inserts.size() + " audit events", e);
+        }
+        inserts.clear();
+    }
+
+    private synchronized void spill(Entry entry) {
+        Map<String, Object> line = new LinkedHashMap<>();
+        line.put("op", entry.operation.name());
+        Object[] args = entry.args;
+        switch (entry.operation) {
+            case INSERT_EVENT:
+                line.put("principalId", args[0]);
+                line.put("eventType", args[1]);
+                line.put("origin", args[2]);
+                line.put("data", args[3]);
+                line.put("zoneId", args[4]);
+                line.put("created", ((Timestamp) args[5]).getTime());
+                break;
+            case RESET_FAILURES:
+                line.put("principalId", args[0]);
+                line.put("zoneId", args[1]);
+                break;
+            default:
+                line.put("createdBefore", ((Timestamp) args[0]).getTime());
+        }
+        try (BufferedWriter writer = Files.newBufferedWriter(spillFile.toPath(), StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            writer.write(JsonUtils.writeValueAsString(line));
+            writer.newLine();
+            spilled.increment();
+        } catch (IOException e) {
+            dropped.increment();
+            logger.warn("Unable to spill audit record to " + spillFile, e);
+        }
+    }
+
+    /**
+     * Writes the records of the spill file and removes it. While the writer is running the file is
+     * replayed by the writer thread, after the records queued before it.
+     */
+    @ManagedOperation(description = "Write the records from the audit spill file to the database")
+    public void replaySpillFile() {
+        lock.writeLock().lock();
+        try {
+            if (running) {
+                spilling = spilling || (spillFile != null && spillFile.exists());
+            } else {
+                writeSpillFile();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Called by the writer thread once the queue is empty. New statements are queued again
+     * after the spill file has been read, and are written after the spilled ones.
+     */
+    private void replaySpilled() {
+        List<Entry> entries;
+        lock.writeLock().lock();
+        try {
+            entries = readSpillFile();
+            spilling = false;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        write(entries);
+    }
+
+    private void writeSpillFile() {
+        List<Entry> entries = readSpillFile();
+        if (!entries.isEmpty()) {
+            write(entries);
+        }
+    }
+
+    private synchronized List<Entry> readSpillFile() {
+        List<Entry> entries = new ArrayList<>();
+        if (spillFile == null || !spillFile.exists()) {
+            return entries;
+        }
+        try {
+            for (String line : Files.readAllLines(spillFile.toPath(), StandardCharsets.UTF_8)) {
+                try {
+                    entries.add(readSpilled(JsonUtils.readValueAsMap(line)));
+                } catch (RuntimeException e) {
+                    failed.increment();
+                    logger.warn("Refusing audit spill record that is not a known operation: " + line);
+                }
+            }
+            Files.delete(spillFile.toPath());
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Unable to replay audit spill file " + spillFile, e);
+            return new ArrayList<>();
+        }
+        logger.info("Replaying " + entries.size() + " spilled audit records");
+        return entries;
+    }
+
+    private static Entry readSpilled(Map<String, Object> record) {
+        Operation operation = Operation.valueOf(text(record, "op"));
+        switch (operation) {
+            case INSERT_EVENT:
+                return new Entry(operation, new Object[]{
+                        text(record, "principalId"),
+                        number(record, "eventType").intValue(),
+                        text(record, "origin"),
+                        text(record, "data"),
+                        text(record, "zoneId"),
+                        new Timestamp(number(record, "created").longValue())
+                });
+            case RESET_FAILURES:
+                return new Entry(operation, new Object[]{
+                        text(record, "principalId"),
+                        text(record, "zoneId"),
+                        AuditEventType.UserAuthenticationFailure.getCode()
+                });
+            default:
+                return new Entry(operation, new Object[]{
+                        new Timestamp(number(record, "createdBefore").longValue())
+                });
+        }
+    }
+
+    private static String text(Map<String, Object> record, String field) {
+        if (record.get(field) instanceof String value) {
+            return value;
+        }
+        throw new IllegalArgumentException("Missing or invalid field " + field);
+    }
+
+    private static Number number(Map<String, Object> record, String field) {
+        if (record.get(field) instanceof Number value) {
+            return value;
+        }
+        throw new IllegalArgumentException("Missing or invalid field " + field);
+    }
+
+    @ManagedMetric(metricType = MetricType.GAUGE, category = "performance", displayName = "Audit Queue Depth")
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    @ManagedMetric(metricType = MetricType.COUNTER, category = "performance", displayName = "Audit Events Written")
+    public long getWrittenCount() {
+        return written.sum();
+    }
+
+    @ManagedMetric(metricType = MetricType.COUNTER, category = "performance", displayName = "Audit Batches Written")
+    public long getBatchCount() {
+        return batches.sum();
+    }
+
+    @ManagedMetric(metricType = MetricType.COUNTER, category = "performance", displayName = "Audit Records Dropped")
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    @ManagedMetric(metricType = MetricType.COUNTER, category = "performance", displayName = "Audit Records Spilled")
+    public long getSpilledCount() {
+        return spilled.sum();
+    }
+
+    @ManagedMetric(metricType = MetricType.COUNTER, category = "performance", displayName = "Audit Records Failed")
+    public long getFailedCount() {
+        return failed.sum();
+    }
+
+    @ManagedMetric(metricType = MetricType.GAUGE, category = "performance", displayName = "Average Audit Write Latency (ms)")
+    public long getAverageLatency() {
+        long count = completed.sum();
+        return count == 0 ? 0 : totalLatency.sum() / count;
+    }
+
+    @ManagedMetric(metricType = MetricType.GAUGE, category = "performance", displayName = "Max Audit Write Latency (ms)")
+    public long getMaxLatency() {
+        return maxLatency.get();
+    }
+
+    private static final class Entry {
+        private final Operation operation;
+        private final Object[] args;
+        private final long queuedAt = System.currentTimeMillis();
+
+        private Entry(Operation operation, Object[] args) {
+            this.operation = operation;
+            this.args = args;
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package org.cloudfoundry.identity.uaa.audit;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import org.cloudfoundry.identity.uaa.util.TimeService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.jmx.export.annotation.ManagedMetric;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.jmx.support.MetricType;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.cloudfoundry.identity.uaa.audit.AuditEventType.UserAuthenticationFailure;
+
+/**
+ * Keeps the consecutive failed logins of each principal in memory, answering lockout
+ * queries without touching the sec_audit table.
+ *
+ * When a {@code writeThrough} delegate is configured, failures and resets are handed to it
+ * on a background thread, so the counters survive a restart: the first time a principal is
+ * seen, its recent failures are loaded from the delegate. The queue towards the delegate is
+ * bounded; under overload writes are dropped rather than slowing down logins.
+ */
+@ManagedResource(
+        objectName = "cloudfoundry.identity:name=LoginFailureCounter",
+        description = "UAA In-Memory Login Failure Counter Metrics"
+)
+public class InMemoryUnsuccessfulLoginCountingAuditService implements UaaAuditService, DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(InMemoryUnsuccessfulLoginCountingAuditService.class);
+
+    public static final int DEFAULT_MAX_PRINCIPALS = 100_000;
+    public static final int DEFAULT_MAX_FAILURES_PER_PRINCIPAL = 100;
+    public static final int DEFAULT_WRITE_QUEUE_SIZE = 10_000;
+    private static final Duration SAVE_DATA_PERIOD = Duration.ofDays(1L);
+
+    private final TimeService timeService;
+    private final JdbcUnsuccessfulLoginCountingAuditService writeThrough;
+    private final int maxFailuresPerPrincipal;
+    private final Cache<String, FailureWindow> windows;
+    private final ThreadPoolExecutor writer;
+    private final LongAdder droppedWrites = new LongAdder();
+
+    public InMemoryUnsuccessfulLoginCountingAuditService(TimeService timeService,
+                                                         JdbcUnsuccessfulLoginCountingAuditService writeThrough) {
+        this(timeService, writeThrough, DEFAULT_MAX_PRINCIPALS, DEFAULT_MAX_FAILURES_PER_PRINCIPAL, DEFAULT_WRITE_QUEUE_SIZE);
+    }
+
+    /**
+     * @param writeThrough optional, may be null to keep the counters in memory only
+     * @param maxFailuresPerPrincipal the most recent failures retained per principal; must not
+     *                                be lower than any configured lockoutAfterFailures
+     */
+    public InMemoryUnsuccessfulLoginCountingAuditService(TimeService timeService,
+                                                         JdbcUnsuccessfulLoginCountingAuditService writeThrough,
+                                                         int maxPrincipals,
+                                                         int maxFailuresPerPrincipal,
+                                                         int writeQueueSize) {
+        this.timeService = timeService;
+        this.writeThrough = writeThrough;
+        this.maxFailuresPerPrincipal = maxFailuresPerPrincipal;
+        this.windows = CacheBuilder.newBuilder()
+                .maximumSize(maxPrincipals)
+                .expireAfterAccess(SAVE_DATA_PERIOD.toMillis(), TimeUnit.MILLISECONDS)
+                .build();
+        if (writeThrough == null) {
+            this.writer = null;
+        } else {
+            this.writer = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                    new LinkedBlockingQueue<>(writeQueueSize),
+                    runnable -> {
+                        Thread thread = new Thread(runnable, "uaa-login-failure-writer");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+        }
+    }
+
+    @Override
+    public List<AuditEvent> find(String principalId, long after, String zoneId) {
+        return window(principalId, zoneId).failuresAfter(after);
+    }
+
+    @Override
+    public void log(AuditEvent auditEvent, String zoneId) {
+        switch (auditEvent.getType()) {
+            case UserAuthenticationSuccess, PasswordChangeSuccess, UserAccountUnlockedEvent:
+                window(auditEvent.getPrincipalId(), zoneId).reset();
+                break;
+            case UserAuthenticationFailure:
+                window(auditEvent.getPrincipalId(), zoneId).add(new AuditEvent(
+                        UserAuthenticationFailure,
+                        auditEvent.getPrincipalId(),
+                        auditEvent.getOrigin(),
+                        auditEvent.getData(),
+                        timeService.getCurrentTimeMillis(),
+                        zoneId,
+                        null,
+                        null));
+                break;
+            default:
+                return;
+        }
+        if (writer != null) {
+            try {
+                writer.execute(() -> writeThrough.log(auditEvent, zoneId));
+            } catch (RejectedExecutionException e) {
+                droppedWrites.increment();
+                logger.debug("Login failure write-through queue is full, dropping event for principal:" + auditEvent.getPrincipalId());
+            }
+        }
+    }
+
+    @Override
+    public void destroy() {
+        if (writer != null) {
+            writer.shutdown();
+        }
+    }
+
+    @ManagedMetric(metricType = MetricType.GAUGE, displayName = "Tracked Principals")
+    public long getTrackedPrincipals() {
+        return windows.size();
+    }
+
+    @ManagedMetric(metricType = MetricType.GAUGE, displayName = "Pending Write-Through Events")
+    public int getPendingWrites() {
+        return writer == null ? 0 : writer.getQueue().size();
+    }
+
+    @ManagedMetric(metricType = MetricType.COUNTER, displayName = "Dropped Write-Through Events")
+    public long getDroppedWrites() {
+        return droppedWrites.sum();
+    }
+
+    private FailureWindow window(String principalId, String zoneId) {
+        try {
+            return windows.get(zoneId + ":" + principalId, () -> load(principalId, zoneId));
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            logger.warn("Unable to load login failures for principal:" + principalId, e.getCause());
+            return windows.asMap().computeIfAbsent(zoneId + ":" + principalId, k -> new FailureWindow(maxFailuresPerPrincipal));
+        }
+    }
+
+    private FailureWindow load(String principalId, String zoneId) {
+        FailureWindow window = new FailureWindow(maxFailuresPerPrincipal);
+        if (writeThrough != null) {
+            List<AuditEvent> stored = writeThrough.find(principalId, timeService.getCurrentTimeMillis() - SAVE_DATA_PERIOD.toMillis(), zoneId);
+            for (int i = stored.size() - 1; i >= 0; i--) {
+                window.add(stored.get(i));
+            }
+        }
+        return window;
+    }
+
+    /**
+     * Ring buffer holding the most recent failures of one principal.
+     */
+    private static final class FailureWindow {
+        private final AuditEvent[] failures;
+        private int next;
+        private int size;
+
+        private FailureWindow(int capacity) {
+            this.failures = new AuditEvent[capacity];
+        }
+
+        private synchronized void add(AuditEvent failure) {
+            failures[next] = failure;
+            next = (next + 1) % failures.length;
+            size = Math.min(size + 1, failures.length);
+        }
+
+        private synchronized void reset() {
+            Arrays.fill(failures, null);
+            next = 0;
+            size = 0;
+        }
+
+        /**
+         * @return failures after the given time, most recent first, as returned by
+         * {@link JdbcAuditService#find(String, long, String)}
+         */
+        private synchronized List<AuditEvent> failuresAfter(long after) {
+            if (size == 0) {
+                return Collections.emptyList();
+            }
+            List<AuditEvent> result = new ArrayList<>(size);
+            for (int i = 1; i <= size; i++) {
+                AuditEvent failure = failures[(next - i + failures.length) % failures.length];
+                if (failure.getTime() <= after) {
+                    break;
+                }
+                result.add(failure);
+            }
+            return result;
+        }
+    }
+}
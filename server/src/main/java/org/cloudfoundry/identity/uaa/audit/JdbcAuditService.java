@@ -24,6 +24,7 @@ import java.util.List;
 public class JdbcAuditService implements UaaAuditService {
 
     private final JdbcTemplate template;
+    private volatile AsyncAuditEventWriter asyncWriter;
 
     public JdbcAuditService(JdbcTemplate template) {
         this.template = template;
@@ -42,15 +43,29 @@ public class JdbcAuditService implements UaaAuditService {
 
     @Override
     public void log(AuditEvent auditEvent, String zoneId) {
-        String origin = auditEvent.getOrigin();
-        String data = auditEvent.getData();
-        origin = origin == null ? "" : origin;
-        origin = origin.length() > 255 ? origin.substring(0, 255) : origin;
-        data = data == null ? "" : data;
-        data = data.length() > 255 ? data.substring(0, 255) : data;
+        if (asyncWriter != null) {
+            asyncWriter.insert(auditEvent, zoneId);
+            return;
+        }
         template.update("insert into sec_audit (principal_id, event_type, origin, event_data, identity_zone_id) values (?,?,?,?,?)",
-                        auditEvent.getPrincipalId(), auditEvent.getType().getCode(), origin,
-                        data, zoneId);
+                        auditEvent.getPrincipalId(), auditEvent.getType().getCode(), truncate(auditEvent.getOrigin()),
+                        truncate(auditEvent.getData()), zoneId);
+    }
+
+    /**
+     * Hands inserts and deletes to the given writer instead of running them on the calling thread.
+     */
+    public void setAsyncWriter(AsyncAuditEventWriter asyncWriter) {
+        this.asyncWriter = asyncWriter;
+    }
+
+    protected AsyncAuditEventWriter getAsyncWriter() {
+        return asyncWriter;
+    }
+
+    static String truncate(String value) {
+        value = value == null ? "" : value;
+        return value.length() > 255 ? value.substring(0, 255) : value;
     }
 
     private class AuditEventRowMapper implements RowMapper<AuditEvent> {
@@ -1,7 +1,10 @@
 package org.cloudfoundry.identity.uaa.audit;
 
+import org.cloudfoundry.identity.uaa.db.purge.ExpiredDataSweeper;
+import org.cloudfoundry.identity.uaa.resources.jdbc.LimitSqlAdapter;
 import org.cloudfoundry.identity.uaa.util.TimeService;
 import org.cloudfoundry.identity.uaa.util.TimeServiceImpl;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Component;
 
@@ -17,7 +20,7 @@ import static org.cloudfoundry.identity.uaa.audit.AuditEventType.UserAuthenticat
  * failed logins.
  */
 @Component("jdbcAuditService")
-public class JdbcUnsuccessfulLoginCountingAuditService extends JdbcAuditService {
+public class JdbcUnsuccessfulLoginCountingAuditService extends JdbcAuditService implements ExpiredDataSweeper {
 
     private final TimeService timeService;
 
@@ -25,6 +28,8 @@ public class JdbcUnsuccessfulLoginCountingAuditService extends JdbcAuditService
     private final Duration timeBetweenDelete;
 
     private AtomicLong lastDelete;
+    private volatile boolean lazySweepEnabled = true;
+    private LimitSqlAdapter limitSqlAdapter;
 
     public JdbcUnsuccessfulLoginCountingAuditService(
             final JdbcTemplate template,
@@ -52,17 +57,53 @@ public class JdbcUnsuccessfulLoginCountingAuditService extends JdbcAuditService
     }
 
     private void resetAuthenticationEvents(AuditEvent auditEvent, String zoneId, AuditEventType eventType) {
-        getJdbcTemplate().update("delete from sec_audit where principal_id=? and identity_zone_id=? and event_type=?", auditEvent.getPrincipalId(), zoneId, eventType.getCode());
+        AsyncAuditEventWriter asyncWriter = getAsyncWriter();
+        if (asyncWriter != null && eventType == UserAuthenticationFailure) {
+            asyncWriter.resetFailures(auditEvent.getPrincipalId(), zoneId);
+        } else {
+            getJdbcTemplate().update("delete from sec_audit where principal_id=? and identity_zone_id=? and event_type=?", auditEvent.getPrincipalId(), zoneId, eventType.getCode());
+        }
     }
 
     protected void periodicDelete() {
+        if (!lazySweepEnabled) {
+            return;
+        }
         long now = timeService.getCurrentTimeMillis();
         long lastCheck = lastDelete.get();
         if (now - lastCheck > timeBetweenDelete.toMillis() && lastDelete.compareAndSet(lastCheck, now)) {
-            getJdbcTemplate().update("delete from sec_audit where created < ?",
-                    new Timestamp(System.currentTimeMillis()
-                            - saveDataPeriod.toMillis()));
+            Timestamp expiredBefore = new Timestamp(System.currentTimeMillis() - saveDataPeriod.toMillis());
+            AsyncAuditEventWriter asyncWriter = getAsyncWriter();
+            if (asyncWriter != null) {
+                asyncWriter.deleteExpired(expiredBefore);
+            } else {
+                getJdbcTemplate().update("delete from sec_audit where created < ?", expiredBefore);
+            }
+        }
+    }
+
+    @Override
+    public String getSweepName() {
+        return "sec_audit";
+    }
+
+    @Override
+    public int deleteExpired(long now, int maxRows) {
+        Timestamp expiredBefore = new Timestamp(now - saveDataPeriod.toMillis());
+        if (limitSqlAdapter == null) {
+            return getJdbcTemplate().update("delete from sec_audit where created < ?", expiredBefore);
         }
+        return getJdbcTemplate().update(limitSqlAdapter.getDeleteExpiredQuery("sec_audit", "id", "created", maxRows), expiredBefore);
+    }
+
+    @Override
+    public void setLazySweepEnabled(boolean lazySweepEnabled) {
+        this.lazySweepEnabled = lazySweepEnabled;
+    }
+
+    @Autowired(required = false)
+    public void setLimitSqlAdapter(LimitSqlAdapter limitSqlAdapter) {
+        this.limitSqlAdapter = limitSqlAdapter;
     }
 
 }
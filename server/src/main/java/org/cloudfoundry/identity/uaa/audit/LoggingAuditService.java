@@ -1,6 +1,7 @@
 package org.cloudfoundry.identity.uaa.audit;
 
 import org.cloudfoundry.identity.uaa.logging.LogSanitizerUtil;
+import org.cloudfoundry.identity.uaa.metrics.AuditMetrics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.jmx.export.annotation.ManagedMetric;
@@ -26,7 +27,7 @@ import java.util.concurrent.atomic.AtomicInteger;
     description = "UAA Audit Metrics"
 )
 @Component("loggingAuditService")
-public class LoggingAuditService implements UaaAuditService {
+public class LoggingAuditService implements UaaAuditService, AuditMetrics {
 
     private Logger logger = LoggerFactory.getLogger("UAA.Audit");
 
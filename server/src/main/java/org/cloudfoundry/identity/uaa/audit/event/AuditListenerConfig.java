@@ -1,9 +1,18 @@
 package org.cloudfoundry.identity.uaa.audit.event;
 
+import org.cloudfoundry.identity.uaa.audit.AsyncAuditEventWriter;
+import org.cloudfoundry.identity.uaa.audit.InMemoryUnsuccessfulLoginCountingAuditService;
+import org.cloudfoundry.identity.uaa.audit.JdbcUnsuccessfulLoginCountingAuditService;
 import org.cloudfoundry.identity.uaa.audit.UaaAuditService;
+import org.cloudfoundry.identity.uaa.util.TimeService;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.util.StringUtils;
+
+import java.io.File;
 
 @Configuration
 public class AuditListenerConfig {
@@ -17,9 +26,61 @@ public class AuditListenerConfig {
 
     @Bean
     public AuditListener jdbcAuditListener(
-            @Qualifier("jdbcAuditService") UaaAuditService jdbcAuditService
+            @Qualifier("lockoutAuditService") UaaAuditService lockoutAuditService
+    ) {
+        return new AuditListener(lockoutAuditService);
+    }
+
+    /**
+     * Backend counting failed logins for the lockout policy, either the sec_audit table
+     * ({@code authentication.failureCounter.store: jdbc}, the default) or memory.
+     */
+    @Bean
+    public UaaAuditService lockoutAuditService(
+            @Qualifier("jdbcAuditService") JdbcUnsuccessfulLoginCountingAuditService jdbcAuditService,
+            TimeService timeService,
+            @Value("${authentication.failureCounter.store:jdbc}") String store,
+            @Value("${authentication.failureCounter.writeThrough:true}") boolean writeThrough,
+            @Value("${authentication.failureCounter.maxFailuresPerPrincipal:" + InMemoryUnsuccessfulLoginCountingAuditService.DEFAULT_MAX_FAILURES_PER_PRINCIPAL + "}") int maxFailuresPerPrincipal
+    ) {
+        if ("memory".equalsIgnoreCase(store)) {
+            return new InMemoryUnsuccessfulLoginCountingAuditService(
+                    timeService,
+                    writeThrough ? jdbcAuditService : null,
+                    InMemoryUnsuccessfulLoginCountingAuditService.DEFAULT_MAX_PRINCIPALS,
+                    maxFailuresPerPrincipal,
+                    InMemoryUnsuccessfulLoginCountingAuditService.DEFAULT_WRITE_QUEUE_SIZE);
+        }
+        return jdbcAuditService;
+    }
+
+    /**
+     * Writer for sec_audit records, only started with {@code audit.async.enabled: true}.
+     * Until then all audit records are written on the request thread.
+     */
+    @Bean(destroyMethod = "stop")
+    public AsyncAuditEventWriter auditEventWriter(
+            @Qualifier("jdbcAuditService") JdbcUnsuccessfulLoginCountingAuditService jdbcAuditService,
+            JdbcTemplate jdbcTemplate,
+            @Value("${audit.async.enabled:false}") boolean enabled,
+            @Value("${audit.async.queueCapacity:10000}") int queueCapacity,
+            @Value("${audit.async.batchSize:100}") int batchSize,
+            @Value("${audit.async.flushIntervalMillis:200}") long flushIntervalMillis,
+            @Value("${audit.async.overflowPolicy:BLOCK}") AsyncAuditEventWriter.OverflowPolicy overflowPolicy,
+            @Value("${audit.async.spillFile:}") String spillFile
     ) {
-        return new AuditListener(jdbcAuditService);
+        AsyncAuditEventWriter writer = new AsyncAuditEventWriter(
+                jdbcTemplate,
+                queueCapacity,
+                batchSize,
+                flushIntervalMillis,
+                overflowPolicy,
+                StringUtils.hasText(spillFile) ? new File(spillFile) : null);
+        if (enabled) {
+            writer.start();
+            jdbcAuditService.setAsyncWriter(writer);
+        }
+        return writer;
     }
 
 }
@@ -4,6 +4,7 @@ import org.cloudfoundry.identity.uaa.authentication.event.IdentityProviderAuthen
 import org.cloudfoundry.identity.uaa.constants.OriginKeys;
 import org.cloudfoundry.identity.uaa.impl.config.EnvironmentPropertiesFactoryBean;
 import org.cloudfoundry.identity.uaa.provider.LdapIdentityProviderDefinition;
+import org.cloudfoundry.identity.uaa.provider.ldap.PooledLdapContextSource;
 import org.cloudfoundry.identity.uaa.scim.ScimGroupExternalMembershipManager;
 import org.cloudfoundry.identity.uaa.scim.ScimGroupProvisioning;
 import org.cloudfoundry.identity.uaa.util.LdapUtils;
@@ -16,12 +17,15 @@ import org.springframework.context.support.ClassPathXmlApplicationContext;
 import org.springframework.context.support.GenericApplicationContext;
 import org.springframework.context.support.PropertySourcesPlaceholderConfigurer;
 import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.core.env.MapPropertySource;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.AuthenticationException;
 
 import java.nio.file.ProviderNotFoundException;
+import java.util.Collections;
+import java.util.Map;
 
 public class DynamicLdapAuthenticationManager implements AuthenticationManager {
     private final LdapIdentityProviderDefinition definition;
@@ -32,7 +36,8 @@ public class DynamicLdapAuthenticationManager implements AuthenticationManager {
     private AuthenticationManager manager;
     private AuthenticationManager ldapManagerActual;
     private ApplicationEventPublisher eventPublisher;
-
+    private Map<String, Object> connectionPoolProperties = Collections.emptyMap();
+    private PooledLdapContextSource connectionPool;
 
     public DynamicLdapAuthenticationManager(LdapIdentityProviderDefinition definition,
                                             ScimGroupExternalMembershipManager scimGroupExternalMembershipManager,
@@ -57,6 +62,7 @@ public class DynamicLdapAuthenticationManager implements AuthenticationManager {
         }
         if (context==null) {
             ConfigurableEnvironment environment = LdapUtils.getLdapConfigurationEnvironment(definition);
+            environment.getPropertySources().addLast(new MapPropertySource("ldapConnectionPool", connectionPoolProperties));
             //create parent BeanFactory to inject singletons from the parent
             DefaultListableBeanFactory parentBeanFactory = new DefaultListableBeanFactory();
             parentBeanFactory.registerSingleton("externalGroupMembershipManager", scimGroupExternalMembershipManager);
@@ -76,6 +82,7 @@ public class DynamicLdapAuthenticationManager implements AuthenticationManager {
             context.addBeanFactoryPostProcessor(placeholderConfigurer);
             context.refresh();
             ldapManagerActual = (AuthenticationManager)context.getBean("ldapAuthenticationManager");
+            connectionPool = context.getBeanProvider(PooledLdapContextSource.class).getIfAvailable();
             AuthenticationManager shadowUserManager = (AuthenticationManager)context.getBean("ldapLoginAuthenticationMgr");
 
             //chain the LDAP with the shadow account creation manager
@@ -99,6 +106,21 @@ public class DynamicLdapAuthenticationManager implements AuthenticationManager {
         return definition;
     }
 
+    /**
+     * @return the pool of the LDAP contexts used to search the directory, or null if the LDAP
+     * context has not been created yet
+     */
+    public PooledLdapContextSource getConnectionPool() {
+        return connectionPool;
+    }
+
+    /**
+     * Settings for the connection pool, as {@link PooledLdapContextSource} property names
+     */
+    public void setConnectionPoolProperties(Map<String, Object> connectionPoolProperties) {
+        this.connectionPoolProperties = connectionPoolProperties;
+    }
+
 
     @Override
     public Authentication authenticate(Authentication authentication) throws AuthenticationException {
@@ -118,6 +140,7 @@ public class DynamicLdapAuthenticationManager implements AuthenticationManager {
         ClassPathXmlApplicationContext applicationContext = context;
         if (applicationContext != null) {
             context = null;
+            connectionPool = null;
             applicationContext.destroy();
         }
     }
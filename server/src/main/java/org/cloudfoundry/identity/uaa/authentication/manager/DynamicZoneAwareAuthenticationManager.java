@@ -12,6 +12,8 @@
  *******************************************************************************/
 package org.cloudfoundry.identity.uaa.authentication.manager;
 
+import org.cloudfoundry.identity.uaa.audit.event.AbstractUaaEvent;
+import org.cloudfoundry.identity.uaa.audit.event.EntityDeletedEvent;
 import org.cloudfoundry.identity.uaa.authentication.AccountNotVerifiedException;
 import org.cloudfoundry.identity.uaa.authentication.AuthenticationPolicyRejectionException;
 import org.cloudfoundry.identity.uaa.authentication.PasswordChangeRequiredException;
@@ -23,35 +25,58 @@ import org.cloudfoundry.identity.uaa.provider.IdentityProvider;
 import org.cloudfoundry.identity.uaa.provider.IdentityProviderProvisioning;
 import org.cloudfoundry.identity.uaa.provider.JdbcIdentityProviderProvisioning;
 import org.cloudfoundry.identity.uaa.provider.LdapIdentityProviderDefinition;
+import org.cloudfoundry.identity.uaa.provider.ldap.PooledLdapContextSource;
 import org.cloudfoundry.identity.uaa.scim.ScimGroupExternalMembershipManager;
 import org.cloudfoundry.identity.uaa.scim.ScimGroupProvisioning;
+import org.cloudfoundry.identity.uaa.util.JsonUtils;
 import org.cloudfoundry.identity.uaa.util.ObjectUtils;
 import org.cloudfoundry.identity.uaa.zone.IdentityZone;
 import org.cloudfoundry.identity.uaa.zone.IdentityZoneHolder;
+import org.cloudfoundry.identity.uaa.zone.event.IdentityProviderModifiedEvent;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.ApplicationEventPublisherAware;
+import org.springframework.context.ApplicationListener;
 import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.jmx.export.annotation.ManagedMetric;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.jmx.support.MetricType;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.ProviderNotFoundException;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.AuthenticationException;
 
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Stream;
 
-public class DynamicZoneAwareAuthenticationManager implements AuthenticationManager, ApplicationEventPublisherAware {
+/**
+ * Authenticates against the internal user store and the LDAP provider of the current zone.
+ *
+ * The LDAP authentication manager of a zone, and with it the pool of its LDAP connections, is
+ * created on first use and replaced when the LDAP provider of the zone changes. It is closed when
+ * the provider is deactivated or deleted, or the zone is deleted.
+ */
+@ManagedResource(
+        objectName = "cloudfoundry.identity:name=LdapConnectionPools",
+        description = "UAA LDAP Connection Pool Metrics"
+)
+public class DynamicZoneAwareAuthenticationManager implements AuthenticationManager, ApplicationEventPublisherAware, ApplicationListener<AbstractUaaEvent> {
 
     private final IdentityProviderProvisioning provisioning;
     private final AuthenticationManager internalUaaAuthenticationManager;
-    private final ConcurrentMap<IdentityZone, DynamicLdapAuthenticationManager> ldapAuthManagers = new ConcurrentHashMap<>();
+    // keyed by zone id
+    private final ConcurrentMap<String, DynamicLdapAuthenticationManager> ldapAuthManagers = new ConcurrentHashMap<>();
     private final ScimGroupExternalMembershipManager scimGroupExternalMembershipManager;
     private final ScimGroupProvisioning scimGroupProvisioning;
     private final LdapLoginAuthenticationManager ldapLoginAuthenticationManager;
     private ApplicationEventPublisher eventPublisher;
+    private final Map<String, Object> ldapConnectionPoolProperties = new HashMap<>();
 
     public DynamicZoneAwareAuthenticationManager(final @Qualifier("identityProviderProvisioning") IdentityProviderProvisioning provisioning,
                                                  AuthenticationManager internalUaaAuthenticationManager,
@@ -108,12 +133,15 @@ public class DynamicZoneAwareAuthenticationManager implements AuthenticationMana
             delegates.add(uaaConfig);
         }
 
-        if (ldapProvider.isActive() && (origin == null || origin.equals("ldap"))) {
+        if (!ldapProvider.isActive()) {
+            evictLdapAuthenticationManager(zone.getId());
+        } else if (origin == null || origin.equals("ldap")) {
             //has LDAP IDP config changed since last time?
             DynamicLdapAuthenticationManager existing = getLdapAuthenticationManager(zone, ldapProvider);
             if (!existing.getDefinition().equals(ldapProvider.getConfig())) {
-                ldapAuthManagers.remove(zone);
-                existing.destroy();
+                if (ldapAuthManagers.remove(zone.getId(), existing)) {
+                    existing.destroy();
+                }
             }
             DynamicLdapAuthenticationManager ldapAuthenticationManager = getLdapAuthenticationManager(zone, ldapProvider);
             AuthenticationManagerConfiguration ldapConfig =
@@ -146,7 +174,7 @@ public class DynamicZoneAwareAuthenticationManager implements AuthenticationMana
     }
 
     public DynamicLdapAuthenticationManager getLdapAuthenticationManager(IdentityZone zone, IdentityProvider provider) {
-        DynamicLdapAuthenticationManager ldapMgr = ldapAuthManagers.get(zone);
+        DynamicLdapAuthenticationManager ldapMgr = ldapAuthManagers.get(zone.getId());
         if (ldapMgr!=null) {
             return ldapMgr;
         }
@@ -159,16 +187,89 @@ public class DynamicZoneAwareAuthenticationManager implements AuthenticationMana
             scimGroupProvisioning,
             ldapLoginAuthenticationManager);
         ldapMgr.setApplicationEventPublisher(eventPublisher);
-        ldapAuthManagers.putIfAbsent(zone, ldapMgr);
-        return ldapAuthManagers.get(zone);
+        ldapMgr.setConnectionPoolProperties(ldapConnectionPoolProperties);
+        DynamicLdapAuthenticationManager existing = ldapAuthManagers.putIfAbsent(zone.getId(), ldapMgr);
+        return existing != null ? existing : ldapMgr;
     }
 
     public void destroy() {
-        for (Map.Entry<IdentityZone, DynamicLdapAuthenticationManager> entry : ldapAuthManagers.entrySet()) {
+        for (Map.Entry<String, DynamicLdapAuthenticationManager> entry : ldapAuthManagers.entrySet()) {
             entry.getValue().destroy();
         }
     }
 
+    @Override
+    public void onApplicationEvent(AbstractUaaEvent event) {
+        if (event instanceof EntityDeletedEvent && event.getSource() instanceof IdentityZone deletedZone) {
+            evictLdapAuthenticationManager(deletedZone.getId());
+        } else if ((event instanceof EntityDeletedEvent || event instanceof IdentityProviderModifiedEvent)
+                && event.getSource() instanceof IdentityProvider<?> changedProvider
+                && OriginKeys.LDAP.equals(changedProvider.getOriginKey())) {
+            evictLdapAuthenticationManager(changedProvider.getIdentityZoneId());
+        }
+    }
+
+    public void setLdapConnectionPoolMaxSize(int maxSize) {
+        ldapConnectionPoolProperties.put(PooledLdapContextSource.MAX_SIZE, maxSize);
+    }
+
+    public void setLdapConnectionPoolMaxIdleMillis(long maxIdleMillis) {
+        ldapConnectionPoolProperties.put(PooledLdapContextSource.MAX_IDLE_MILLIS, maxIdleMillis);
+    }
+
+    public void setLdapConnectionPoolValidationIntervalMillis(long validationIntervalMillis) {
+        ldapConnectionPoolProperties.put(PooledLdapContextSource.VALIDATION_INTERVAL_MILLIS, validationIntervalMillis);
+    }
+
+    public void setLdapConnectionPoolMaxWaitMillis(long maxWaitMillis) {
+        ldapConnectionPoolProperties.put(PooledLdapContextSource.MAX_WAIT_MILLIS, maxWaitMillis);
+    }
+
+    @ManagedMetric(metricType = MetricType.GAUGE, displayName = "LDAP Connection Pool Count")
+    public int getLdapConnectionPoolCount() {
+        return ldapAuthManagers.size();
+    }
+
+    @ManagedMetric(metricType = MetricType.GAUGE, displayName = "Active LDAP Connections")
+    public int getActiveLdapConnections() {
+        return connectionPools().mapToInt(PooledLdapContextSource::getActiveCount).sum();
+    }
+
+    @ManagedMetric(metricType = MetricType.GAUGE, displayName = "Idle LDAP Connections")
+    public int getIdleLdapConnections() {
+        return connectionPools().mapToInt(PooledLdapContextSource::getIdleCount).sum();
+    }
+
+    @ManagedMetric(metricType = MetricType.COUNTER, displayName = "LDAP Bind Count")
+    public long getLdapBindCount() {
+        return connectionPools().mapToLong(PooledLdapContextSource::getBindCount).sum();
+    }
+
+    @ManagedMetric(category = "performance", displayName = "LDAP Connection Pool Statistics")
+    public Map<String, String> getLdapConnectionPoolStatistics() {
+        Map<String, String> data = new HashMap<>();
+        ldapAuthManagers.forEach((zoneId, manager) -> {
+            PooledLdapContextSource pool = manager.getConnectionPool();
+            if (pool != null) {
+                data.put(zoneId, JsonUtils.writeValueAsString(pool.getStatistics()));
+            }
+        });
+        return data;
+    }
+
+    private Stream<PooledLdapContextSource> connectionPools() {
+        return ldapAuthManagers.values().stream()
+                .map(DynamicLdapAuthenticationManager::getConnectionPool)
+                .filter(Objects::nonNull);
+    }
+
+    private void evictLdapAuthenticationManager(String zoneId) {
+        DynamicLdapAuthenticationManager existing = zoneId == null ? null : ldapAuthManagers.remove(zoneId);
+        if (existing != null) {
+            existing.destroy();
+        }
+    }
+
     @Override
     public void setApplicationEventPublisher(ApplicationEventPublisher applicationEventPublisher) {
         this.eventPublisher = applicationEventPublisher;
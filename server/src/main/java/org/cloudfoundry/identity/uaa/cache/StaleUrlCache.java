@@ -4,15 +4,30 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.PreDestroy;
 
 import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.MoreExecutors;
 import com.google.common.util.concurrent.UncheckedExecutionException;
 
+import org.cloudfoundry.identity.uaa.util.JsonUtils;
 import org.cloudfoundry.identity.uaa.util.TimeService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -21,32 +36,92 @@ import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.jmx.export.annotation.ManagedMetric;
+import org.springframework.jmx.export.annotation.ManagedResource;
 import org.springframework.stereotype.Component;
 import org.springframework.web.client.RestClientException;
 import org.springframework.web.client.RestTemplate;
 
+/**
+ * Caches URL content, such as OIDC discovery documents, JWKS and SAML metadata.
+ *
+ * Entries older than the expiration keep being served while they are re-fetched on a small bounded
+ * pool, so only the first request for a URL waits for the remote server. Concurrent misses for the
+ * same URL share one fetch. A URL that could not be fetched and has no content yet fails fast for
+ * an exponentially growing backoff, so a slow or failing upstream is not called on every request.
+ */
 @Component
+@ManagedResource(
+    objectName = "cloudfoundry.identity:name=UrlContentCache",
+    description = "UAA URL Content Cache Metrics"
+)
 public class StaleUrlCache implements UrlContentCache {
   private static final Logger logger = LoggerFactory.getLogger(StaleUrlCache.class);
   private static final int DEFAULT_MAX_ENTRIES = 10_000;
+  private static final int REFRESH_THREADS = 2;
+  private static final int REFRESH_QUEUE_SIZE = 100;
+  static final Duration MIN_FAILURE_BACKOFF = Duration.ofSeconds(1);
+  static final Duration MAX_FAILURE_BACKOFF = Duration.ofMinutes(1);
 
   private final Duration cacheExpiration;
+  private final Ticker ticker;
   private final LoadingCache<UriRequest, CacheEntry> cache;
+  private final Cache<String, Failure> failures;
+  private final Map<String, FetchStatistics> statistics = new ConcurrentHashMap<>();
+  private final int maxEntries;
+  private final Executor refreshExecutor;
 
   @Autowired
   public StaleUrlCache(final TimeService timeService) {
-    this(timeService, Ticker.systemTicker());
+    this(Duration.ofMinutes(10), timeService, DEFAULT_MAX_ENTRIES, Ticker.systemTicker(), newRefreshExecutor());
   }
 
   public StaleUrlCache(final TimeService timeService, final Ticker ticker) {
     this(Duration.ofMinutes(10), timeService, DEFAULT_MAX_ENTRIES, ticker);
   }
 
+  /**
+   * Refreshes expired entries on the calling thread.
+   */
   public StaleUrlCache(final Duration cacheExpiration, final TimeService timeService, final int maxEntries,
       final Ticker ticker) {
+    this(cacheExpiration, timeService, maxEntries, ticker, MoreExecutors.directExecutor());
+  }
+
+  public StaleUrlCache(final Duration cacheExpiration, final TimeService timeService, final int maxEntries,
+      final Ticker ticker, final Executor refreshExecutor) {
     this.cacheExpiration = cacheExpiration;
+    this.ticker = ticker;
+    this.maxEntries = maxEntries;
+    this.refreshExecutor = refreshExecutor;
     this.cache = CacheBuilder.newBuilder().refreshAfterWrite(this.cacheExpiration.toMillis(), TimeUnit.MILLISECONDS)
-        .maximumSize(maxEntries).ticker(ticker).build(new UrlCacheLoader(timeService));
+        .maximumSize(maxEntries).ticker(ticker)
+        .build(CacheLoader.asyncReloading(new UrlCacheLoader(timeService), refreshExecutor));
+    this.failures = CacheBuilder.newBuilder().expireAfterWrite(MAX_FAILURE_BACKOFF.toMillis(), TimeUnit.MILLISECONDS)
+        .maximumSize(maxEntries).ticker(ticker).build();
+  }
+
+  private static ExecutorService newRefreshExecutor() {
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(REFRESH_THREADS, REFRESH_THREADS, 60, TimeUnit.SECONDS,
+        new ArrayBlockingQueue<>(REFRESH_QUEUE_SIZE), runnable -> {
+          Thread thread = new Thread(runnable, "uaa-url-cache-refresh");
+          thread.setDaemon(true);
+          return thread;
+        }, (runnable, pool) -> {
+          // completes the pending reload, the entry keeps its content and is refreshed on a later request
+          if (runnable instanceof Future<?> future) {
+            future.cancel(false);
+          }
+        });
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
+  }
+
+  @PreDestroy
+  public void destroy() {
+    if (refreshExecutor instanceof ExecutorService executorService) {
+      executorService.shutdownNow();
+    }
   }
 
   @Override
@@ -57,8 +132,13 @@ public class StaleUrlCache implements UrlContentCache {
   @Override
   public byte[] getUrlContent(String uri, final RestTemplate template, final HttpMethod method,
       HttpEntity<?> requestEntity) {
+    UriRequest request = new UriRequest(uri, template, method, requestEntity);
+    Failure failure = uri == null ? null : failures.getIfPresent(uri);
+    if (failure != null && ticker.read() - failure.retryAt < 0 && cache.getIfPresent(request) == null) {
+      throw failure.exception;
+    }
     try {
-      return cache.get(new UriRequest(uri, template, method, requestEntity)).data;
+      return cache.get(request).data;
     } catch (UncheckedExecutionException e) {
       logger.warn("UncheckedException " + e.getMessage() + e);
       throw (RuntimeException) e.getCause();
@@ -68,6 +148,13 @@ public class StaleUrlCache implements UrlContentCache {
     }
   }
 
+  @Override
+  public void invalidate(String uri) {
+    if (uri != null) {
+      cache.invalidate(new UriRequest(uri, null, null, null));
+    }
+  }
+
   @Override
   public void clear() {
     cache.invalidateAll();
@@ -78,6 +165,35 @@ public class StaleUrlCache implements UrlContentCache {
     return cache.size();
   }
 
+  @ManagedMetric(category = "performance", displayName = "URL Fetch Statistics")
+  public Map<String, String> getFetchStatistics() {
+    Map<String, String> data = new HashMap<>();
+    statistics.forEach((uri, stats) -> data.put(uri, JsonUtils.writeValueAsString(stats.toMap())));
+    return data;
+  }
+
+  private void recordFetch(String uri, long elapsedNanos, RuntimeException error) {
+    if (uri == null) {
+      return;
+    }
+    FetchStatistics stats = statistics.get(uri);
+    if (stats == null) {
+      if (statistics.size() >= maxEntries) {
+        return;
+      }
+      stats = statistics.computeIfAbsent(uri, key -> new FetchStatistics());
+    }
+    stats.record(TimeUnit.NANOSECONDS.toMillis(elapsedNanos), error != null);
+    if (error == null) {
+      failures.invalidate(uri);
+    } else {
+      Failure previous = failures.getIfPresent(uri);
+      int count = previous == null ? 1 : previous.count + 1;
+      long backoff = Math.min(MIN_FAILURE_BACKOFF.toNanos() << Math.min(count - 1, 30), MAX_FAILURE_BACKOFF.toNanos());
+      failures.put(uri, new Failure(error, count, ticker.read() + backoff));
+    }
+  }
+
   static class UriRequest {
     final String uri;
     final RestTemplate template;
@@ -122,6 +238,46 @@ public class StaleUrlCache implements UrlContentCache {
     }
   }
 
+  static class Failure {
+    final RuntimeException exception;
+    final int count;
+    final long retryAt;
+
+    Failure(RuntimeException exception, int count, long retryAt) {
+      this.exception = exception;
+      this.count = count;
+      this.retryAt = retryAt;
+    }
+  }
+
+  static class FetchStatistics {
+    private final LongAdder fetches = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder totalTime = new LongAdder();
+    private final AtomicLong maxTime = new AtomicLong();
+    private volatile long lastTime;
+
+    void record(long millis, boolean error) {
+      fetches.increment();
+      if (error) {
+        errors.increment();
+      }
+      totalTime.add(millis);
+      maxTime.accumulateAndGet(millis, Math::max);
+      lastTime = millis;
+    }
+
+    Map<String, Long> toMap() {
+      Map<String, Long> map = new HashMap<>();
+      map.put("fetches", fetches.sum());
+      map.put("errors", errors.sum());
+      map.put("totalTime", totalTime.sum());
+      map.put("maxTime", maxTime.get());
+      map.put("lastTime", lastTime);
+      return map;
+    }
+  }
+
   static class CacheEntry {
     final Instant timeEntered;
     final byte[] data;
@@ -143,6 +299,18 @@ public class StaleUrlCache implements UrlContentCache {
 
     @Override
     public CacheEntry load(UriRequest request) throws RuntimeException {
+      long start = ticker.read();
+      try {
+        CacheEntry entry = fetch(request);
+        recordFetch(request.uri, ticker.read() - start, null);
+        return entry;
+      } catch (RestClientException | IllegalArgumentException e) {
+        recordFetch(request.uri, ticker.read() - start, e);
+        throw e;
+      }
+    }
+
+    private CacheEntry fetch(UriRequest request) {
       try {
         byte[] metadata;
         final URI netUri = new URI(request.uri);
@@ -42,6 +42,12 @@ public interface UrlContentCache {
      */
     byte[] getUrlContent(String uri, final RestTemplate template, final HttpMethod method, HttpEntity<?> requestEntity);
 
+    /**
+     * Removes the content cached for a given URI, so that the next retrieval fetches it again
+     * @param uri - the URI of the content
+     */
+    void invalidate(String uri);
+
     /**
      * Clears the cache unconditionally
      */
@@ -9,6 +9,7 @@ import static org.cloudfoundry.identity.uaa.oauth.token.TokenConstants.GRANT_TYP
 
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
@@ -23,6 +24,7 @@ import org.cloudfoundry.identity.uaa.oauth.client.ClientConstants;
 import org.cloudfoundry.identity.uaa.provider.ClientAlreadyExistsException;
 import org.cloudfoundry.identity.uaa.provider.NoSuchClientException;
 import org.cloudfoundry.identity.uaa.user.UaaAuthority;
+import org.cloudfoundry.identity.uaa.util.BootstrapExecutor;
 import org.cloudfoundry.identity.uaa.zone.IdentityZone;
 import org.cloudfoundry.identity.uaa.zone.IdentityZoneHolder;
 import org.cloudfoundry.identity.uaa.zone.MultitenantClientServices;
@@ -39,6 +41,7 @@ import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.cloudfoundry.identity.uaa.oauth.provider.ClientDetails;
+import org.springframework.util.StopWatch;
 import org.springframework.util.StringUtils;
 
 public class ClientAdminBootstrap implements
@@ -59,6 +62,7 @@ public class ClientAdminBootstrap implements
     private final Set<String> autoApproveClients;
     private final Set<String> allowPublicClients;
     private final boolean defaultOverride;
+    private int parallelism = BootstrapExecutor.DEFAULT_PARALLELISM;
 
     /**
      * @param defaultOverride    the default override flag to set. Flag to indicate
@@ -96,11 +100,27 @@ public class ClientAdminBootstrap implements
         this.allowPublicClients = new HashSet<>(ofNullable(allowPublicClients).orElse(Collections.emptySet()));
     }
 
+    /**
+     * Sets the number of clients that are added or updated at the same time, most of that time is
+     * spent hashing their secrets.
+     */
+    public void setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+    }
+
     @Override
     public void afterPropertiesSet() {
+        StopWatch stopWatch = new StopWatch("client bootstrap");
+        stopWatch.start("clients");
         addNewClients();
+        stopWatch.stop();
+        stopWatch.start("autoapprove");
         updateAutoApproveClients();
+        stopWatch.stop();
+        stopWatch.start("allowpublic");
         updateAllowedPublicClients();
+        stopWatch.stop();
+        logger.info("Bootstrapped {} clients: {}", clients.size(), BootstrapExecutor.timings(stopWatch));
     }
 
     /**
@@ -152,103 +172,103 @@ public class ClientAdminBootstrap implements
     private void addNewClients() {
         Set<Map.Entry<String, Map<String, Object>>> entries = clients.entrySet();
         entries.removeIf(entry -> clientsToDelete.contains(entry.getKey()));
-        for (Map.Entry<String, Map<String, Object>> entry : entries) {
-            String clientId = entry.getKey();
+        // clients are independent of each other, so they are stored in parallel
+        BootstrapExecutor.forEach(new ArrayList<>(entries), parallelism, entry -> addOrUpdateClient(entry.getKey(), entry.getValue()));
+    }
 
-            Map<String, Object> map = entry.getValue();
-            if (map.get("authorized-grant-types") == null) {
-                throw new InvalidClientDetailsException("Client must have at least one authorized-grant-type. client ID: " + clientId);
-            }
-            UaaClientDetails client = new UaaClientDetails(clientId, (String) map.get("resource-ids"),
-                    (String) map.get("scope"), (String) map.get("authorized-grant-types"),
-                    (String) map.get("authorities"), getRedirectUris(map));
+    private void addOrUpdateClient(String clientId, Map<String, Object> map) {
+        if (map.get("authorized-grant-types") == null) {
+            throw new InvalidClientDetailsException("Client must have at least one authorized-grant-type. client ID: " + clientId);
+        }
+        UaaClientDetails client = new UaaClientDetails(clientId, (String) map.get("resource-ids"),
+                (String) map.get("scope"), (String) map.get("authorized-grant-types"),
+                (String) map.get("authorities"), getRedirectUris(map));
 
-            // support second secret
-            String secondSecret = null;
-            if (map.get("secret") instanceof List) {
-                List<String> secrets = (List<String>) map.get("secret");
-                if (!secrets.isEmpty()) {
-                    client.setClientSecret(secrets.get(0) == null ? "" : secrets.get(0));
-                    if (secrets.size() > 1) {
-                        secondSecret = secrets.get(1) == null ? "" : secrets.get(1);
-                    }
+        // support second secret
+        String secondSecret = null;
+        if (map.get("secret") instanceof List) {
+            List<String> secrets = (List<String>) map.get("secret");
+            if (!secrets.isEmpty()) {
+                client.setClientSecret(secrets.get(0) == null ? "" : secrets.get(0));
+                if (secrets.size() > 1) {
+                    secondSecret = secrets.get(1) == null ? "" : secrets.get(1);
                 }
-            } else {
-                client.setClientSecret((String) map.get("secret"));
             }
+        } else {
+            client.setClientSecret((String) map.get("secret"));
+        }
 
-            Integer validity = (Integer) map.get("access-token-validity");
-            Boolean override = (Boolean) map.get("override");
-            if (override == null) {
-                override = defaultOverride;
-            }
-            Map<String, Object> info = new HashMap<>(map);
-            if (validity != null) {
-                client.setAccessTokenValiditySeconds(validity);
-            }
-            validity = (Integer) map.get("refresh-token-validity");
-            if (validity != null) {
-                client.setRefreshTokenValiditySeconds(validity);
-            }
-            // UAA does not use the resource ids in client registrations
-            client.setResourceIds(Collections.singleton("none"));
-            if (client.getScope().isEmpty()) {
-                client.setScope(Collections.singleton("uaa.none"));
-            }
-            if (client.getAuthorities().isEmpty()) {
-                client.setAuthorities(Collections.singleton(UaaAuthority.UAA_NONE));
-            }
-            if (client.getAuthorizedGrantTypes().contains(GRANT_TYPE_AUTHORIZATION_CODE)) {
-                client.getAuthorizedGrantTypes().add(GRANT_TYPE_REFRESH_TOKEN);
-            }
-            for (String key : Arrays.asList("resource-ids", "scope", "authorized-grant-types", "authorities",
-                    "redirect-uri", "secret", "id", "override", "access-token-validity",
-                    "refresh-token-validity", "show-on-homepage", "app-launch-url", "app-icon", JWKS, JWKS_URI)) {
-                info.remove(key);
-            }
+        Integer validity = (Integer) map.get("access-token-validity");
+        Boolean override = (Boolean) map.get("override");
+        if (override == null) {
+            override = defaultOverride;
+        }
+        Map<String, Object> info = new HashMap<>(map);
+        if (validity != null) {
+            client.setAccessTokenValiditySeconds(validity);
+        }
+        validity = (Integer) map.get("refresh-token-validity");
+        if (validity != null) {
+            client.setRefreshTokenValiditySeconds(validity);
+        }
+        // UAA does not use the resource ids in client registrations
+        client.setResourceIds(Collections.singleton("none"));
+        if (client.getScope().isEmpty()) {
+            client.setScope(Collections.singleton("uaa.none"));
+        }
+        if (client.getAuthorities().isEmpty()) {
+            client.setAuthorities(Collections.singleton(UaaAuthority.UAA_NONE));
+        }
+        if (client.getAuthorizedGrantTypes().contains(GRANT_TYPE_AUTHORIZATION_CODE)) {
+            client.getAuthorizedGrantTypes().add(GRANT_TYPE_REFRESH_TOKEN);
+        }
+        for (String key : Arrays.asList("resource-ids", "scope", "authorized-grant-types", "authorities",
+                "redirect-uri", "secret", "id", "override", "access-token-validity",
+                "refresh-token-validity", "show-on-homepage", "app-launch-url", "app-icon", JWKS, JWKS_URI)) {
+            info.remove(key);
+        }
 
-            client.setAdditionalInformation(info);
+        client.setAdditionalInformation(info);
 
-            if (map.get(JWKS_URI) instanceof String || map.get(JWKS) instanceof String) {
-                String jwksUri = (String) map.get(JWKS_URI);
-                String jwks = (String) map.get(JWKS);
-                ClientJwtConfiguration keyConfig = ClientJwtConfiguration.parse(jwksUri, jwks);
-                if (keyConfig != null && keyConfig.getCleanString() != null) {
-                    keyConfig.writeValue(client);
-                } else {
-                    throw new InvalidClientDetailsException("Client jwt configuration invalid syntax. ClientID: " + client.getClientId());
-                }
+        if (map.get(JWKS_URI) instanceof String || map.get(JWKS) instanceof String) {
+            String jwksUri = (String) map.get(JWKS_URI);
+            String jwks = (String) map.get(JWKS);
+            ClientJwtConfiguration keyConfig = ClientJwtConfiguration.parse(jwksUri, jwks);
+            if (keyConfig != null && keyConfig.getCleanString() != null) {
+                keyConfig.writeValue(client);
+            } else {
+                throw new InvalidClientDetailsException("Client jwt configuration invalid syntax. ClientID: " + client.getClientId());
             }
+        }
 
-            try {
-                clientRegistrationService.addClientDetails(client, IdentityZone.getUaaZoneId());
-                if (secondSecret != null) {
-                    clientRegistrationService.addClientSecret(clientId, secondSecret, IdentityZone.getUaaZoneId());
-                }
-            } catch (ClientAlreadyExistsException e) {
-                if (override) {
-                    logger.debug("Overriding client details for " + clientId);
-                    clientRegistrationService.updateClientDetails(client, IdentityZone.getUaaZoneId());
-                    updatePasswordsIfChanged(clientId, client.getClientSecret(), secondSecret);
-                } else {
-                    // ignore it
-                    logger.debug(e.getMessage());
-                }
+        try {
+            clientRegistrationService.addClientDetails(client, IdentityZone.getUaaZoneId());
+            if (secondSecret != null) {
+                clientRegistrationService.addClientSecret(clientId, secondSecret, IdentityZone.getUaaZoneId());
             }
-
-            if (map.containsKey("use-bcrypt-prefix") && "true".equals(map.get("use-bcrypt-prefix"))) {
-                jdbcTemplate.update("update oauth_client_details set client_secret=concat(?, client_secret) where client_id = ?", "{bcrypt}", clientId);
+        } catch (ClientAlreadyExistsException e) {
+            if (override) {
+                logger.debug("Overriding client details for " + clientId);
+                clientRegistrationService.updateClientDetails(client, IdentityZone.getUaaZoneId());
+                updatePasswordsIfChanged(clientId, client.getClientSecret(), secondSecret);
+            } else {
+                // ignore it
+                logger.debug(e.getMessage());
             }
+        }
 
-            for (String s : Arrays.asList(GRANT_TYPE_AUTHORIZATION_CODE, GRANT_TYPE_IMPLICIT)) {
-                if (client.getAuthorizedGrantTypes().contains(s) && isMissingRedirectUris(client)) {
-                    throw new InvalidClientDetailsException(s + " grant type requires at least one redirect URL. ClientID: " + client.getClientId());
-                }
-            }
+        if (map.containsKey("use-bcrypt-prefix") && "true".equals(map.get("use-bcrypt-prefix"))) {
+            jdbcTemplate.update("update oauth_client_details set client_secret=concat(?, client_secret) where client_id = ?", "{bcrypt}", clientId);
+        }
 
-            ClientMetadata clientMetadata = buildClientMetadata(map, clientId);
-            clientMetadataProvisioning.update(clientMetadata, IdentityZone.getUaaZoneId());
+        for (String s : Arrays.asList(GRANT_TYPE_AUTHORIZATION_CODE, GRANT_TYPE_IMPLICIT)) {
+            if (client.getAuthorizedGrantTypes().contains(s) && isMissingRedirectUris(client)) {
+                throw new InvalidClientDetailsException(s + " grant type requires at least one redirect URL. ClientID: " + client.getClientId());
+            }
         }
+
+        ClientMetadata clientMetadata = buildClientMetadata(map, clientId);
+        clientMetadataProvisioning.update(clientMetadata, IdentityZone.getUaaZoneId());
     }
 
     private boolean isMissingRedirectUris(UaaClientDetails client) {
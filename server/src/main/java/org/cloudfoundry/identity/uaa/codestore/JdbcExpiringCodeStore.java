@@ -12,6 +12,8 @@
  *******************************************************************************/
 package org.cloudfoundry.identity.uaa.codestore;
 
+import org.cloudfoundry.identity.uaa.db.purge.ExpiredDataSweeper;
+import org.cloudfoundry.identity.uaa.resources.jdbc.LimitSqlAdapter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.cloudfoundry.identity.uaa.util.TimeService;
@@ -28,7 +30,7 @@ import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.util.concurrent.atomic.AtomicLong;
 
-public class JdbcExpiringCodeStore implements ExpiringCodeStore {
+public class JdbcExpiringCodeStore implements ExpiringCodeStore, ExpiredDataSweeper {
 
     public static final String tableName = "expiring_code_store";
     public static final String fields = "code, expiresat, data, intent, identity_zone_id";
@@ -51,6 +53,8 @@ public class JdbcExpiringCodeStore implements ExpiringCodeStore {
     private TimeService timeService;
 
     private AtomicLong lastExpired = new AtomicLong();
+    private volatile boolean lazySweepEnabled = true;
+    private LimitSqlAdapter limitSqlAdapter;
     private long expirationInterval = 60 * 1_000L; // once a minute
 
     public long getExpirationInterval() {
@@ -165,6 +169,9 @@ public class JdbcExpiringCodeStore implements ExpiringCodeStore {
     }
 
     public int cleanExpiredEntries() {
+        if (!lazySweepEnabled) {
+            return 0;
+        }
         long now = timeService.getCurrentTimeMillis();
         long lastCheck = lastExpired.get();
 
@@ -177,6 +184,28 @@ public class JdbcExpiringCodeStore implements ExpiringCodeStore {
         return 0;
     }
 
+    @Override
+    public String getSweepName() {
+        return tableName;
+    }
+
+    @Override
+    public int deleteExpired(long now, int maxRows) {
+        if (limitSqlAdapter == null) {
+            return jdbcTemplate.update(deleteExpired, now);
+        }
+        return jdbcTemplate.update(limitSqlAdapter.getDeleteExpiredQuery(tableName, "code", "expiresat", maxRows), now);
+    }
+
+    @Override
+    public void setLazySweepEnabled(boolean lazySweepEnabled) {
+        this.lazySweepEnabled = lazySweepEnabled;
+    }
+
+    public void setLimitSqlAdapter(LimitSqlAdapter limitSqlAdapter) {
+        this.limitSqlAdapter = limitSqlAdapter;
+    }
+
     protected static class JdbcExpiringCodeMapper implements RowMapper<ExpiringCode> {
 
         @Override
@@ -0,0 +1,197 @@
+package org.cloudfoundry.identity.uaa.db.purge;
+
+import org.cloudfoundry.identity.uaa.util.JsonUtils;
+import org.cloudfoundry.identity.uaa.util.TimeService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jmx.export.annotation.ManagedMetric;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Removes expired rows of all registered {@link ExpiredDataSweeper}s on a background thread.
+ *
+ * Only the node holding the {@link JdbcLeaderLock} purges. Deletes run in batches; the batch
+ * size of each store is halved when a delete takes longer than {@code targetBatchMillis} and
+ * doubled when it takes less than half of that, within {@code [minBatchSize, maxBatchSize]}.
+ * A run ends once a store has no more expired rows or {@code maxRunMillis} have passed.
+ */
+@ManagedResource(
+        objectName = "cloudfoundry.identity:name=ExpiredDataPurger",
+        description = "UAA Expired Data Purge Metrics"
+)
+public class ExpiredDataPurger {
+
+    private static final Logger logger = LoggerFactory.getLogger(ExpiredDataPurger.class);
+
+    private final JdbcLeaderLock leaderLock;
+    private final TimeService timeService;
+    private final List<ExpiredDataSweeper> sweepers;
+    private final Map<String, SweepStatistics> statistics = new LinkedHashMap<>();
+    private long intervalMillis = 30_000L;
+    private long maxRunMillis = 2_500L;
+    private long targetBatchMillis = 250L;
+    private int minBatchSize = 50;
+    private int maxBatchSize = 5_000;
+    private final AtomicLong leaderRuns = new AtomicLong();
+    private boolean enabled = true;
+    private ScheduledExecutorService executor;
+
+    public ExpiredDataPurger(JdbcLeaderLock leaderLock, TimeService timeService, List<ExpiredDataSweeper> sweepers) {
+        this.leaderLock = leaderLock;
+        this.timeService = timeService;
+        this.sweepers = sweepers;
+        for (ExpiredDataSweeper sweeper : sweepers) {
+            statistics.put(sweeper.getSweepName(), new SweepStatistics(500));
+        }
+    }
+
+    /**
+     * Starts purging and turns off the lazy sweeps of the stores, unless disabled.
+     */
+    public synchronized void start() {
+        if (!enabled || executor != null) {
+            return;
+        }
+        sweepers.forEach(sweeper -> sweeper.setLazySweepEnabled(false));
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "uaa-expired-data-purger");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::purgeSafely, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stop() {
+        if (executor == null) {
+            return;
+        }
+        executor.shutdownNow();
+        executor = null;
+        try {
+            leaderLock.release();
+        } catch (RuntimeException e) {
+            logger.debug("Unable to release purge leader lock", e);
+        }
+    }
+
+    private void purgeSafely() {
+        try {
+            purge();
+        } catch (RuntimeException e) {
+            logger.warn("Expired data purge failed", e);
+        }
+    }
+
+    /**
+     * @return true if this node is the leader and purged
+     */
+    @ManagedOperation(description = "Purge expired data now, if this node holds the purge lock")
+    public synchronized boolean purge() {
+        if (!leaderLock.tryAcquire()) {
+            return false;
+        }
+        leaderRuns.incrementAndGet();
+        for (ExpiredDataSweeper sweeper : sweepers) {
+            sweep(sweeper, statistics.get(sweeper.getSweepName()));
+        }
+        return true;
+    }
+
+    private void sweep(ExpiredDataSweeper sweeper, SweepStatistics stats) {
+        long now = timeService.getCurrentTimeMillis();
+        int removed;
+        int batchSize;
+        do {
+            batchSize = stats.batchSize;
+            long start = System.nanoTime();
+            removed = sweeper.deleteExpired(now, batchSize);
+            long latency = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            stats.record(removed, latency);
+            if (latency > targetBatchMillis) {
+                stats.batchSize = Math.max(minBatchSize, batchSize / 2);
+            } else if (latency < targetBatchMillis / 2 && removed >= batchSize) {
+                stats.batchSize = Math.min(maxBatchSize, batchSize * 2);
+            }
+            logger.debug("Removed {} expired rows from {} in {}ms", removed, sweeper.getSweepName(), latency);
+        } while (removed >= batchSize && timeService.getCurrentTimeMillis() - now < maxRunMillis);
+    }
+
+    @ManagedMetric(category = "performance", displayName = "Purge runs as leader")
+    public long getLeaderRuns() {
+        return leaderRuns.get();
+    }
+
+    @ManagedMetric(category = "performance", displayName = "Expired data purged per table")
+    public Map<String, String> getSummary() {
+        Map<String, String> summary = new LinkedHashMap<>();
+        statistics.forEach((name, stats) -> summary.put(name, JsonUtils.writeValueAsString(stats.toMap())));
+        return summary;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public void setIntervalMillis(long intervalMillis) {
+        this.intervalMillis = intervalMillis;
+    }
+
+    public void setMaxRunMillis(long maxRunMillis) {
+        this.maxRunMillis = maxRunMillis;
+    }
+
+    public void setTargetBatchMillis(long targetBatchMillis) {
+        this.targetBatchMillis = targetBatchMillis;
+    }
+
+    public void setMinBatchSize(int minBatchSize) {
+        this.minBatchSize = minBatchSize;
+    }
+
+    public void setMaxBatchSize(int maxBatchSize) {
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    int getBatchSize(String sweepName) {
+        return statistics.get(sweepName).batchSize;
+    }
+
+    private static final class SweepStatistics {
+        private volatile int batchSize;
+        private volatile long purged;
+        private volatile long batches;
+        private volatile long lastLatency;
+        private volatile long maxLatency;
+
+        private SweepStatistics(int batchSize) {
+            this.batchSize = batchSize;
+        }
+
+        // only called while holding the purger's lock
+        private void record(int removed, long latency) {
+            purged += removed;
+            batches++;
+            lastLatency = latency;
+            maxLatency = Math.max(maxLatency, latency);
+        }
+
+        private Map<String, Object> toMap() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("purged", purged);
+            map.put("batches", batches);
+            map.put("batchSize", batchSize);
+            map.put("lastBatchTime", lastLatency);
+            map.put("maxBatchTime", maxLatency);
+            return map;
+        }
+    }
+}
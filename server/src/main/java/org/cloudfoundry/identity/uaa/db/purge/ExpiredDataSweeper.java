@@ -0,0 +1,24 @@
+package org.cloudfoundry.identity.uaa.db.purge;
+
+/**
+ * A store whose expired rows are removed by the {@link ExpiredDataPurger}.
+ */
+public interface ExpiredDataSweeper {
+
+    /**
+     * @return name used in purge metrics, usually the table name
+     */
+    String getSweepName();
+
+    /**
+     * Deletes at most {@code maxRows} rows that expired before {@code now}.
+     *
+     * @return the number of deleted rows
+     */
+    int deleteExpired(long now, int maxRows);
+
+    /**
+     * Stores sweep lazily from request threads until a purger takes over.
+     */
+    void setLazySweepEnabled(boolean lazySweepEnabled);
+}
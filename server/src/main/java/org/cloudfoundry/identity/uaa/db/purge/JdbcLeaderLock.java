@@ -0,0 +1,67 @@
+package org.cloudfoundry.identity.uaa.db.purge;
+
+import org.cloudfoundry.identity.uaa.util.TimeService;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.UUID;
+
+/**
+ * Lease based lock on a row of the leader_lock table. The holder renews the lease on every
+ * {@link #tryAcquire()}; other nodes take over only after the lease expired, so a node that
+ * died stops blocking the cluster after at most one lease period.
+ */
+public class JdbcLeaderLock {
+
+    private static final String ACQUIRE_QUERY = "update leader_lock set lock_owner=?, expires_at=? where lock_name=? and (lock_owner=? or expires_at<?)";
+    private static final String INSERT_QUERY = "insert into leader_lock (lock_name, lock_owner, expires_at) values (?,?,?)";
+    private static final String RELEASE_QUERY = "update leader_lock set expires_at=0 where lock_name=? and lock_owner=?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TimeService timeService;
+    private final String lockName;
+    private final String owner;
+    private final long leaseMillis;
+
+    public JdbcLeaderLock(JdbcTemplate jdbcTemplate,
+                          TimeService timeService,
+                          String lockName,
+                          long leaseMillis) {
+        this(jdbcTemplate, timeService, lockName, UUID.randomUUID().toString(), leaseMillis);
+    }
+
+    public JdbcLeaderLock(JdbcTemplate jdbcTemplate,
+                          TimeService timeService,
+                          String lockName,
+                          String owner,
+                          long leaseMillis) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.timeService = timeService;
+        this.lockName = lockName;
+        this.owner = owner;
+        this.leaseMillis = leaseMillis;
+    }
+
+    /**
+     * @return true if this node holds the lock for the next lease period
+     */
+    public boolean tryAcquire() {
+        long now = timeService.getCurrentTimeMillis();
+        if (jdbcTemplate.update(ACQUIRE_QUERY, owner, now + leaseMillis, lockName, owner, now) == 1) {
+            return true;
+        }
+        try {
+            return jdbcTemplate.update(INSERT_QUERY, lockName, owner, now + leaseMillis) == 1;
+        } catch (DuplicateKeyException e) {
+            return false;
+        }
+    }
+
+    public void release() {
+        jdbcTemplate.update(RELEASE_QUERY, lockName, owner);
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+}
@@ -1,10 +1,13 @@
 package org.cloudfoundry.identity.uaa.impl.config;
 
 import org.cloudfoundry.identity.uaa.provider.ldap.ExtendedLdapUserMapper;
+import org.cloudfoundry.identity.uaa.provider.ldap.PooledLdapContextSource;
 import org.cloudfoundry.identity.uaa.provider.ldap.ProcessLdapProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
 import org.springframework.core.env.Environment;
+import org.springframework.security.ldap.DefaultSpringSecurityContextSource;
 
 import java.time.Duration;
 import java.util.HashMap;
@@ -37,6 +40,17 @@ public class LdapIntegrationConfig {
     return ldapPropertyProcessor(environment).process(initialLdapProperties);
   }
 
+  @Bean
+  @Primary
+  public PooledLdapContextSource pooledLdapContextSource(DefaultSpringSecurityContextSource defaultSpringSecurityContextSource, Environment environment) {
+    PooledLdapContextSource contextSource = new PooledLdapContextSource(defaultSpringSecurityContextSource,
+            environment.getProperty(PooledLdapContextSource.MAX_SIZE, Integer.class, PooledLdapContextSource.DEFAULT_MAX_SIZE));
+    contextSource.setMaxIdleMillis(environment.getProperty(PooledLdapContextSource.MAX_IDLE_MILLIS, Long.class, PooledLdapContextSource.DEFAULT_MAX_IDLE_MILLIS));
+    contextSource.setValidationIntervalMillis(environment.getProperty(PooledLdapContextSource.VALIDATION_INTERVAL_MILLIS, Long.class, PooledLdapContextSource.DEFAULT_VALIDATION_INTERVAL_MILLIS));
+    contextSource.setMaxWaitMillis(environment.getProperty(PooledLdapContextSource.MAX_WAIT_MILLIS, Long.class, PooledLdapContextSource.DEFAULT_MAX_WAIT_MILLIS));
+    return contextSource;
+  }
+
   @Bean
   public ExtendedLdapUserMapper extendedLdapUserDetailsMapper(Environment environment) {
     String mailAttributeName = ofNullable(environment.getProperty("ldap.base.mailAttributeName")).orElse("mail");
@@ -21,23 +21,96 @@ import org.cloudfoundry.identity.uaa.util.TimeService;
 import org.cloudfoundry.identity.uaa.util.TimeServiceImpl;
 
 import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
 
+/**
+ * Reports the queries of a request to its {@link RequestMetric} and, if {@code statistics} is
+ * enabled, every statement to the shared {@link QueryStatistics}.
+ *
+ * In the default {@code full} mode a {@link QueryMetric} is kept for every query of a request. In
+ * {@code sampled} mode tolerable queries are only counted, and kept for a {@code sampleRate}
+ * fraction of them. Tomcat's own per statement statistics are then disabled as well, as
+ * {@link QueryStatistics} replaces them.
+ */
 public class QueryFilter extends SlowQueryReport {
 
+    public static final String FULL = "full";
+    public static final String SAMPLED = "sampled";
+
+    private static final QueryStatistics STATISTICS = new QueryStatistics();
+
     private TimeService timeService = new TimeServiceImpl();
+    private QueryStatistics statistics = STATISTICS;
+    private boolean sampled = false;
+    private double sampleRate = 0.01;
+    private boolean statisticsEnabled = false;
+
+    public static QueryStatistics getStatistics() {
+        return STATISTICS;
+    }
 
     protected void report(String query, long start, long delta) {
+        boolean intolerable = delta > getThreshold();
+        if (statisticsEnabled) {
+            statistics.record(query, delta, intolerable);
+        }
         RequestMetric metric = MetricsAccessor.getCurrent();
         if (metric!=null) {
-            metric.addQuery(new QueryMetric(query, start, delta, delta>getThreshold()));
+            if (!sampled || intolerable || isSampled()) {
+                metric.addQuery(new QueryMetric(query, start, delta, intolerable));
+            } else {
+                metric.recordQuery(delta, false);
+            }
         }
     }
 
+    private boolean isSampled() {
+        return sampleRate > 0 && ThreadLocalRandom.current().nextDouble() < sampleRate;
+    }
+
     @Override
     public void setProperties(Map<String, PoolProperties.InterceptorProperty> properties) {
         super.setProperties(properties);
         this.setLogFailed(false);
         this.setLogSlow(false);
+        PoolProperties.InterceptorProperty mode = properties.get("mode");
+        if (mode != null) {
+            setMode(mode.getValue());
+        }
+        PoolProperties.InterceptorProperty sampleRate = properties.get("sampleRate");
+        if (sampleRate != null) {
+            setSampleRate(Double.parseDouble(sampleRate.getValue()));
+        }
+        PoolProperties.InterceptorProperty statisticsEnabled = properties.get("statistics");
+        if (statisticsEnabled != null) {
+            setStatisticsEnabled(statisticsEnabled.getValueAsBoolean(false));
+        }
+        PoolProperties.InterceptorProperty maxStatements = properties.get("maxStatements");
+        if (maxStatements != null) {
+            statistics.setMaxStatements(maxStatements.getValueAsInt(QueryStatistics.DEFAULT_MAX_STATEMENTS));
+        }
+    }
+
+    public void setMode(String mode) {
+        switch (mode) {
+            case FULL:
+                sampled = false;
+                break;
+            case SAMPLED:
+                sampled = true;
+                setMaxQueries(0);
+                break;
+            default:
+                throw new IllegalArgumentException(mode + " is not a valid query metrics mode. Please choose " + FULL + " or " + SAMPLED + ".");
+        }
+    }
+
+    public void setSampleRate(double sampleRate) {
+        this.sampleRate = sampleRate;
+    }
+
+    public void setStatisticsEnabled(boolean statisticsEnabled) {
+        this.statisticsEnabled = statisticsEnabled;
     }
 
     @Override
@@ -66,4 +139,8 @@ public class QueryFilter extends SlowQueryReport {
     public void setTimeService(TimeService timeService) {
         this.timeService = timeService;
     }
+
+    void setStatistics(QueryStatistics statistics) {
+        this.statistics = statistics;
+    }
 }
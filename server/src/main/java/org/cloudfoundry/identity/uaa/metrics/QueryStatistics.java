@@ -0,0 +1,151 @@
+package org.cloudfoundry.identity.uaa.metrics;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * Timings of the SQL statements reported by {@link QueryFilter}, aggregated per statement
+ * fingerprint: the statement with its literals replaced by {@code ?}, lists of bind parameters
+ * collapsed to a single one and whitespace normalized.
+ *
+ * At most {@code maxStatements} fingerprints are tracked, further statements are counted under
+ * {@link #OTHER}. The fingerprints of the {@code maxStatements} most recently reported statements
+ * are cached, so the regular expressions only run for statements that are new or rarely seen.
+ */
+public class QueryStatistics {
+
+    public static final int DEFAULT_MAX_STATEMENTS = 500;
+    public static final String OTHER = "other";
+
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+    private static final Pattern NUMBER_LITERAL = Pattern.compile("\\b\\d+(?:\\.\\d+)?\\b");
+    private static final Pattern PARAMETER_LIST = Pattern.compile("\\(\\s*\\?(?:\\s*,\\s*\\?)+\\s*\\)");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    // statements as reported, mostly the same prepared statements, so they are only fingerprinted once
+    private volatile Cache<String, Statement> bySql = newSqlCache(DEFAULT_MAX_STATEMENTS);
+    private final Map<String, Statement> byFingerprint = new ConcurrentHashMap<>();
+    private volatile int maxStatements = DEFAULT_MAX_STATEMENTS;
+
+    public void record(String sql, long elapsed, boolean intolerable) {
+        if (sql == null) {
+            return;
+        }
+        Cache<String, Statement> cache = bySql;
+        Statement statement = cache.getIfPresent(sql);
+        if (statement == null) {
+            statement = getStatement(fingerprint(sql));
+            cache.put(sql, statement);
+        }
+        statement.record(elapsed, intolerable);
+    }
+
+    /**
+     * @return up to {@code limit} statements, those with the highest total time first
+     */
+    public List<Statement> getSlowest(int limit) {
+        List<Statement> statements = new ArrayList<>(byFingerprint.values());
+        statements.sort(Comparator.comparingLong(Statement::getTotalTime).reversed());
+        return statements.subList(0, Math.min(limit, statements.size()));
+    }
+
+    /**
+     * Called by every {@link QueryFilter} the pool creates, so the cache is only replaced when the size changes.
+     */
+    public synchronized void setMaxStatements(int maxStatements) {
+        if (maxStatements == this.maxStatements) {
+            return;
+        }
+        this.maxStatements = maxStatements;
+        this.bySql = newSqlCache(maxStatements);
+    }
+
+    public void clear() {
+        bySql.invalidateAll();
+        byFingerprint.clear();
+    }
+
+    long getCachedStatementCount() {
+        return bySql.size();
+    }
+
+    private static Cache<String, Statement> newSqlCache(int maxStatements) {
+        return CacheBuilder.newBuilder()
+                .maximumSize(maxStatements)
+                .build();
+    }
+
+    static String fingerprint(String sql) {
+        String fingerprint = STRING_LITERAL.matcher(sql).replaceAll("?");
+        fingerprint = NUMBER_LITERAL.matcher(fingerprint).replaceAll("?");
+        fingerprint = PARAMETER_LIST.matcher(fingerprint).replaceAll("(?)");
+        return WHITESPACE.matcher(fingerprint).replaceAll(" ").trim();
+    }
+
+    private Statement getStatement(String fingerprint) {
+        Statement statement = byFingerprint.get(fingerprint);
+        if (statement != null) {
+            return statement;
+        }
+        String key = byFingerprint.size() < maxStatements ? fingerprint : OTHER;
+        return byFingerprint.computeIfAbsent(key, Statement::new);
+    }
+
+    public static class Statement {
+        private final String statement;
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalTime = new LongAdder();
+        private final LongAdder intolerableCount = new LongAdder();
+        private final LatencyHistogram histogram = new LatencyHistogram();
+
+        Statement(String statement) {
+            this.statement = statement;
+        }
+
+        void record(long elapsed, boolean intolerable) {
+            count.increment();
+            totalTime.add(elapsed);
+            if (intolerable) {
+                intolerableCount.increment();
+            }
+            histogram.record(elapsed);
+        }
+
+        public String getStatement() {
+            return statement;
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        public long getTotalTime() {
+            return totalTime.sum();
+        }
+
+        public double getAverageTime() {
+            long count = getCount();
+            return count == 0 ? 0 : (double) getTotalTime() / count;
+        }
+
+        public long getIntolerableCount() {
+            return intolerableCount.sum();
+        }
+
+        public long getP95Time() {
+            return histogram.getValueAtPercentile(95);
+        }
+
+        public long getMaxTime() {
+            return histogram.getMax();
+        }
+    }
+}
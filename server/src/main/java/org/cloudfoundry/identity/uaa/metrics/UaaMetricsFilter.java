@@ -12,7 +12,6 @@ import org.springframework.jmx.export.annotation.ManagedResource;
 import org.springframework.jmx.export.notification.NotificationPublisher;
 import org.springframework.jmx.export.notification.NotificationPublisherAware;
 import org.springframework.lang.NonNull;
-import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
 import org.springframework.web.filter.OncePerRequestFilter;
 import org.yaml.snakeyaml.Yaml;
 
@@ -23,9 +22,8 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
@@ -35,8 +33,10 @@ import java.util.stream.Collectors;
         objectName = "cloudfoundry.identity:name=ServerRequests",
         description = "UAA Performance Metrics"
 )
-public class UaaMetricsFilter extends OncePerRequestFilter implements UaaMetrics, NotificationPublisherAware {
+public class UaaMetricsFilter extends OncePerRequestFilter implements UaaMetrics, UaaRequestMetrics, NotificationPublisherAware {
     private static final int MAX_TIME = 3000;
+    private static final int MAX_CACHED_PATHS = 1000;
+    private static final int MAX_SLOW_QUERIES = 10;
     static final UrlGroup FALLBACK = new UrlGroup()
             .setCategory("Unknown")
             .setGroup("/unknown")
@@ -48,7 +48,7 @@ public class UaaMetricsFilter extends OncePerRequestFilter implements UaaMetrics
     private final TimeService timeService;
     private final IdleTimer inflight;
     private final Map<String, MetricsQueue> perUriMetrics;
-    private final LinkedHashMap<AntPathRequestMatcher, UrlGroup> urlGroups;
+    private final UrlGroupMatcher urlGroups;
     private boolean enabled = true;
     private boolean perRequestMetrics = false;
 
@@ -64,11 +64,7 @@ public class UaaMetricsFilter extends OncePerRequestFilter implements UaaMetrics
         this.timeService = timeService;
         this.perUriMetrics = new ConcurrentHashMap<>();
         this.perUriMetrics.put(MetricsUtil.GLOBAL_GROUP, new MetricsQueue());
-        this.urlGroups = new LinkedHashMap<>();
-        List<UrlGroup> groups = getUrlGroups();
-        groups.forEach(
-                group -> urlGroups.put(new AntPathRequestMatcher(group.getPattern()), group)
-        );
+        this.urlGroups = new UrlGroupMatcher(getUrlGroups(), FALLBACK, MAX_CACHED_PATHS);
         this.inflight = new IdleTimer();
     }
 
@@ -91,10 +87,8 @@ public class UaaMetricsFilter extends OncePerRequestFilter implements UaaMetrics
                 if (perRequestMetrics) {
                     sendRequestTime(uriGroup.getGroup(), metric.getRequestCompleteTime() - metric.getRequestStartTime());
                 }
-                for (String group : Arrays.asList(uriGroup.getGroup(), MetricsUtil.GLOBAL_GROUP)) {
-                    MetricsQueue queue = getMetricsQueue(group);
-                    queue.offer(metric);
-                }
+                getMetricsQueue(uriGroup.getGroup()).offer(metric);
+                getMetricsQueue(MetricsUtil.GLOBAL_GROUP).offer(metric);
             }
         } else {
             filterChain.doFilter(request, response);
@@ -110,10 +104,7 @@ public class UaaMetricsFilter extends OncePerRequestFilter implements UaaMetrics
     }
 
     protected MetricsQueue getMetricsQueue(String uri) {
-        if (!perUriMetrics.containsKey(uri)) {
-            perUriMetrics.putIfAbsent(uri, new MetricsQueue());
-        }
-        return perUriMetrics.get(uri);
+        return perUriMetrics.computeIfAbsent(uri, key -> new MetricsQueue());
     }
 
     /**
@@ -121,22 +112,28 @@ public class UaaMetricsFilter extends OncePerRequestFilter implements UaaMetrics
      */
     protected UrlGroup getUriGroup(final HttpServletRequest request) {
         if (urlGroups != null) {
-            String uri = request.getRequestURI();
-            for (Map.Entry<AntPathRequestMatcher, UrlGroup> entry : urlGroups.entrySet()) {
-                if (entry.getKey().matches(request)) {
-                    UrlGroup group = entry.getValue();
-                    if (logger.isDebugEnabled()) {
-                        logger.debug(String.format("Successfully matched URI: %s to a group: %s", uri, group.getGroup()));
-                    }
-                    return group;
-                }
+            UrlGroup group = urlGroups.match(getRequestPath(request));
+            if (logger.isDebugEnabled()) {
+                logger.debug(String.format("Successfully matched URI: %s to a group: %s", request.getRequestURI(), group.getGroup()));
             }
-            return FALLBACK;
+            return group;
         } else {
             return FALLBACK;
         }
     }
 
+    /**
+     * The path within the application, as matched by {@code AntPathRequestMatcher}.
+     */
+    private static String getRequestPath(final HttpServletRequest request) {
+        String servletPath = request.getServletPath();
+        String pathInfo = request.getPathInfo();
+        if (pathInfo == null) {
+            return servletPath == null ? "" : servletPath;
+        }
+        return servletPath == null || servletPath.isEmpty() ? pathInfo : servletPath + pathInfo;
+    }
+
     @Override
     @ManagedMetric(category = "performance", displayName = "Inflight Requests")
     public long getInflightCount() {
@@ -169,6 +166,17 @@ public class UaaMetricsFilter extends OncePerRequestFilter implements UaaMetrics
         return JsonUtils.writeValueAsString(perUriMetrics.get(MetricsUtil.GLOBAL_GROUP));
     }
 
+    @Override
+    public Map<String, MetricsQueue> getMetricsQueues() {
+        return Collections.unmodifiableMap(perUriMetrics);
+    }
+
+    @Override
+    @ManagedMetric(category = "performance", displayName = "SQL statements with the highest total time")
+    public String getSlowQueries() {
+        return JsonUtils.writeValueAsString(QueryFilter.getStatistics().getSlowest(MAX_SLOW_QUERIES));
+    }
+
     public List<UrlGroup> getUrlGroups() throws IOException {
         ClassPathResource resource = new ClassPathResource("performance-url-groups.yml");
         Yaml yaml = UaaYamlUtils.createYaml();
@@ -0,0 +1,185 @@
+package org.cloudfoundry.identity.uaa.metrics;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.springframework.util.AntPathMatcher;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Finds the first {@link UrlGroup} whose Ant pattern matches a request path, with the same
+ * result as evaluating an {@code AntPathRequestMatcher} per group in order.
+ *
+ * The patterns are compiled into a trie of literal path segments. Literal patterns and
+ * {@code /prefix/**} patterns are resolved while walking the path; other wildcard patterns are
+ * attached to the node of their literal prefix and only evaluated when a path reaches that node.
+ * A walk is bounded by the number of path segments and allocates nothing. The results of the
+ * {@code maxCachedPaths} most recently matched paths are cached.
+ */
+public class UrlGroupMatcher {
+
+    private static final int NONE = Integer.MAX_VALUE;
+    private static final Candidate[] NO_CANDIDATES = new Candidate[0];
+
+    private final UrlGroup[] groups;
+    private final UrlGroup fallback;
+    private final Node root = new Node();
+    private final AntPathMatcher antPathMatcher = new AntPathMatcher();
+    private final Cache<String, UrlGroup> cache;
+
+    public UrlGroupMatcher(List<UrlGroup> groups, UrlGroup fallback, int maxCachedPaths) {
+        this.groups = groups.toArray(new UrlGroup[0]);
+        this.fallback = fallback;
+        this.cache = CacheBuilder.newBuilder()
+                .maximumSize(maxCachedPaths)
+                .build();
+        antPathMatcher.setTrimTokens(false);
+        for (int order = 0; order < this.groups.length; order++) {
+            add(this.groups[order].getPattern(), order);
+        }
+        root.freeze();
+    }
+
+    public UrlGroup match(String path) {
+        UrlGroup group = cache.getIfPresent(path);
+        if (group == null) {
+            group = find(path);
+            cache.put(path, group);
+        }
+        return group;
+    }
+
+    long getCachedPathCount() {
+        return cache.size();
+    }
+
+    UrlGroup find(String path) {
+        int best = root.match(path, NONE, false, antPathMatcher);
+        if (path.startsWith("/")) {
+            Node node = root;
+            int start = 1;
+            while (true) {
+                int end = path.indexOf('/', start);
+                boolean last = end < 0;
+                if (last) {
+                    end = path.length();
+                }
+                node = node.child(path, start, end);
+                if (node == null) {
+                    break;
+                }
+                best = node.match(path, best, last, antPathMatcher);
+                if (last) {
+                    break;
+                }
+                start = end + 1;
+            }
+        }
+        return best == NONE ? fallback : groups[best];
+    }
+
+    private void add(String pattern, int order) {
+        if ("/**".equals(pattern)) {
+            root.subtree = Math.min(root.subtree, order);
+            return;
+        }
+        String[] segments = pattern.startsWith("/") ? pattern.substring(1).split("/", -1) : null;
+        if (segments == null) {
+            root.candidates.add(new Candidate(pattern, order));
+            return;
+        }
+        boolean subtree = segments.length > 1 && "**".equals(segments[segments.length - 1]);
+        int literals = subtree ? segments.length - 1 : segments.length;
+        Node node = root;
+        for (int i = 0; i < literals; i++) {
+            if (isWildcard(segments[i])) {
+                node.candidates.add(new Candidate(pattern, order));
+                return;
+            }
+            node = node.children.computeIfAbsent(segments[i], key -> new Node());
+        }
+        if (subtree) {
+            node.subtree = Math.min(node.subtree, order);
+        } else {
+            node.exact = Math.min(node.exact, order);
+        }
+    }
+
+    private static boolean isWildcard(String segment) {
+        return segment.indexOf('*') >= 0 || segment.indexOf('?') >= 0 || segment.indexOf('{') >= 0;
+    }
+
+    private static final class Candidate {
+        private final String pattern;
+        private final int order;
+
+        private Candidate(String pattern, int order) {
+            this.pattern = pattern;
+            this.order = order;
+        }
+    }
+
+    private static final class Node {
+        // only used while compiling, replaced by the open addressing table in freeze()
+        private Map<String, Node> children = new HashMap<>();
+        private List<Candidate> candidates = new ArrayList<>();
+        private String[] keys;
+        private Node[] nodes;
+        private Candidate[] wildcards = NO_CANDIDATES;
+        private int exact = NONE;
+        private int subtree = NONE;
+
+        private void freeze() {
+            int capacity = Integer.highestOneBit(Math.max(1, children.size()) * 2 - 1) << 1;
+            keys = new String[capacity];
+            nodes = new Node[capacity];
+            children.forEach((key, node) -> {
+                int slot = spread(key.hashCode()) & (capacity - 1);
+                while (keys[slot] != null) {
+                    slot = (slot + 1) & (capacity - 1);
+                }
+                keys[slot] = key;
+                nodes[slot] = node;
+                node.freeze();
+            });
+            wildcards = candidates.toArray(NO_CANDIDATES);
+            children = null;
+            candidates = null;
+        }
+
+        private Node child(String path, int start, int end) {
+            int hash = 0;
+            for (int i = start; i < end; i++) {
+                hash = 31 * hash + path.charAt(i);
+            }
+            int mask = keys.length - 1;
+            for (int slot = spread(hash) & mask; keys[slot] != null; slot = (slot + 1) & mask) {
+                String key = keys[slot];
+                if (key.length() == end - start && path.regionMatches(start, key, 0, key.length())) {
+                    return nodes[slot];
+                }
+            }
+            return null;
+        }
+
+        private int match(String path, int best, boolean last, AntPathMatcher antPathMatcher) {
+            int result = Math.min(best, subtree);
+            if (last) {
+                result = Math.min(result, exact);
+            }
+            for (Candidate candidate : wildcards) {
+                if (candidate.order < result && antPathMatcher.match(candidate.pattern, path)) {
+                    result = candidate.order;
+                }
+            }
+            return result;
+        }
+
+        private static int spread(int hash) {
+            return hash ^ (hash >>> 16);
+        }
+    }
+}
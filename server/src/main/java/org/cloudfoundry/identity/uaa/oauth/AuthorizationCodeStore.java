@@ -0,0 +1,84 @@
+package org.cloudfoundry.identity.uaa.oauth;
+
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.time.Instant;
+
+/**
+ * Storage tier of the {@link UaaTokenStore}. Codes are only ever inserted and atomically removed,
+ * so a store that is local to one node can be used when every authorization code is redeemed on
+ * the node that issued it.
+ */
+public interface AuthorizationCodeStore {
+
+    /**
+     * @throws DataIntegrityViolationException if the code already exists
+     */
+    void insert(StoredCode code);
+
+    /**
+     * Removes the code, so that only one caller can redeem it.
+     *
+     * @return the removed code, or null if it doesn't exist or was removed concurrently
+     */
+    StoredCode remove(String code);
+
+    /**
+     * Deletes codes that expired before {@code now}, and legacy codes without an expiry that were
+     * created before {@code legacyCreatedBefore}.
+     *
+     * @return the number of deleted codes
+     */
+    int deleteExpired(Instant now, Instant legacyCreatedBefore);
+
+    final class StoredCode {
+        private final String code;
+        private final String userId;
+        private final String clientId;
+        private final long expiresAt;
+        private final Instant created;
+        private final String identityZoneId;
+        private final byte[] authentication;
+
+        /**
+         * @param expiresAt epoch millis, or 0 for legacy codes that expire relative to {@code created}
+         */
+        public StoredCode(String code, String userId, String clientId, long expiresAt, Instant created, String identityZoneId, byte[] authentication) {
+            this.code = code;
+            this.userId = userId;
+            this.clientId = clientId;
+            this.expiresAt = expiresAt;
+            this.created = created;
+            this.identityZoneId = identityZoneId;
+            this.authentication = authentication;
+        }
+
+        public String getCode() {
+            return code;
+        }
+
+        public String getUserId() {
+            return userId;
+        }
+
+        public String getClientId() {
+            return clientId;
+        }
+
+        public long getExpiresAt() {
+            return expiresAt;
+        }
+
+        public Instant getCreated() {
+            return created;
+        }
+
+        public String getIdentityZoneId() {
+            return identityZoneId;
+        }
+
+        public byte[] getAuthentication() {
+            return authentication;
+        }
+    }
+}
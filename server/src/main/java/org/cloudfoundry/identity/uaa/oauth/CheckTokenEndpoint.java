@@ -100,6 +100,7 @@ public class CheckTokenEndpoint implements InitializingBean {
             throw new HttpRequestMethodNotSupportedException("POST");
         }
 
+        ValidatedTokenCache.useForCurrentRequest();
         OAuth2AccessToken token = resourceServerTokenServices.readAccessToken(value);
         if (token == null) {
             throw new InvalidTokenException("Token was not recognised");
@@ -0,0 +1,67 @@
+package org.cloudfoundry.identity.uaa.oauth;
+
+import org.cloudfoundry.identity.uaa.util.TimeService;
+import org.springframework.dao.DuplicateKeyException;
+
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Keeps authorization codes in the memory of this node. Only suitable when the load balancer
+ * routes the token request of a client to the node that issued its code, e.g. with a single node
+ * or sticky sessions; codes are lost when the node restarts. At most {@code maxEntries} codes are
+ * held; issuing a code fails once that many unexpired codes exist.
+ */
+public class InMemoryAuthorizationCodeStore implements AuthorizationCodeStore {
+
+    public static final int DEFAULT_MAX_ENTRIES = 100_000;
+
+    private final ConcurrentMap<String, StoredCode> codes = new ConcurrentHashMap<>();
+    private final TimeService timeService;
+    private final int maxEntries;
+
+    public InMemoryAuthorizationCodeStore(TimeService timeService) {
+        this(timeService, DEFAULT_MAX_ENTRIES);
+    }
+
+    public InMemoryAuthorizationCodeStore(TimeService timeService, int maxEntries) {
+        this.timeService = timeService;
+        this.maxEntries = maxEntries;
+    }
+
+    @Override
+    public void insert(StoredCode code) {
+        Instant now = timeService.getCurrentInstant();
+        if (codes.size() >= maxEntries && deleteExpired(now, Instant.EPOCH) == 0) {
+            throw new IllegalStateException("[oauth_code] More than " + maxEntries + " unredeemed codes");
+        }
+        StoredCode created = new StoredCode(code.getCode(), code.getUserId(), code.getClientId(), code.getExpiresAt(), now, code.getIdentityZoneId(), code.getAuthentication());
+        if (codes.putIfAbsent(code.getCode(), created) != null) {
+            throw new DuplicateKeyException("[oauth_code] Code already exists");
+        }
+    }
+
+    @Override
+    public StoredCode remove(String code) {
+        return code == null ? null : codes.remove(code);
+    }
+
+    @Override
+    public int deleteExpired(Instant now, Instant legacyCreatedBefore) {
+        long nowMillis = now.toEpochMilli();
+        int removed = 0;
+        for (Iterator<StoredCode> iterator = codes.values().iterator(); iterator.hasNext(); ) {
+            if (iterator.next().getExpiresAt() < nowMillis) {
+                iterator.remove();
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    public int getSize() {
+        return codes.size();
+    }
+}
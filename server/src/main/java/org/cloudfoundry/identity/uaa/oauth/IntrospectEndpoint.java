@@ -34,6 +34,7 @@ public class IntrospectEndpoint {
     public IntrospectionClaims introspect(@RequestParam("token") String token) {
         IntrospectionClaims introspectionClaims = new IntrospectionClaims();
 
+        ValidatedTokenCache.useForCurrentRequest();
         try {
             OAuth2AccessToken oAuth2AccessToken = resourceServerTokenServices.readAccessToken(token);
             if (oAuth2AccessToken.isExpired()) {
@@ -0,0 +1,82 @@
+package org.cloudfoundry.identity.uaa.oauth;
+
+import org.cloudfoundry.identity.uaa.resources.jdbc.LimitSqlAdapter;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.support.SqlLobValue;
+
+import javax.sql.DataSource;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Stores authorization codes in the {@code oauth_code} table.
+ *
+ * A code is removed with a single {@code DELETE ... RETURNING} statement where the database
+ * supports it. Elsewhere it is selected and then deleted, and only the caller whose delete
+ * removed the row gets the code.
+ */
+public class JdbcAuthorizationCodeStore implements AuthorizationCodeStore {
+
+    private static final String FIELDS = "code, user_id, client_id, expiresat, created, authentication";
+    private static final String SQL_SELECT_STATEMENT = "select " + FIELDS + " from oauth_code where code = ?";
+    private static final String SQL_INSERT_STATEMENT = "insert into oauth_code (code, user_id, client_id, expiresat, authentication, identity_zone_id) values (?, ?, ?, ?, ?, ?)";
+    private static final String SQL_DELETE_STATEMENT = "delete from oauth_code where code = ?";
+    private static final String SQL_EXPIRE_STATEMENT = "delete from oauth_code where expiresat > 0 AND expiresat < ?";
+    private static final String SQL_CLEAN_STATEMENT = "delete from oauth_code where created < ? and expiresat = 0";
+
+    private static final RowMapper<StoredCode> ROW_MAPPER = (rs, rowNum) -> new StoredCode(
+            rs.getString(1),
+            rs.getString(2),
+            rs.getString(3),
+            rs.getLong(4),
+            rs.getTimestamp(5).toInstant(),
+            null,
+            rs.getBytes(6));
+
+    private final JdbcTemplate template;
+    private final String deleteReturningStatement;
+
+    public JdbcAuthorizationCodeStore(DataSource dataSource) {
+        this(dataSource, null);
+    }
+
+    public JdbcAuthorizationCodeStore(DataSource dataSource, LimitSqlAdapter limitSqlAdapter) {
+        this.template = new JdbcTemplate(dataSource);
+        this.deleteReturningStatement = limitSqlAdapter == null ? null : limitSqlAdapter.getDeleteReturningQuery(SQL_DELETE_STATEMENT, FIELDS);
+    }
+
+    @Override
+    public void insert(StoredCode code) {
+        int updated = template.update(
+                SQL_INSERT_STATEMENT,
+                new Object[] {code.getCode(), code.getUserId(), code.getClientId(), code.getExpiresAt(), new SqlLobValue(code.getAuthentication()), code.getIdentityZoneId()},
+                new int[] {Types.VARCHAR, Types.VARCHAR, Types.VARCHAR, Types.NUMERIC, Types.BLOB, Types.VARCHAR}
+        );
+        if (updated == 0) {
+            throw new DataIntegrityViolationException("[oauth_code] Failed to insert code. Result was 0");
+        }
+    }
+
+    @Override
+    public StoredCode remove(String code) {
+        if (deleteReturningStatement != null) {
+            List<StoredCode> removed = template.query(deleteReturningStatement, ROW_MAPPER, code);
+            return removed.isEmpty() ? null : removed.get(0);
+        }
+        List<StoredCode> found = template.query(SQL_SELECT_STATEMENT, ROW_MAPPER, code);
+        if (found.isEmpty() || template.update(SQL_DELETE_STATEMENT, code) == 0) {
+            return null;
+        }
+        return found.get(0);
+    }
+
+    @Override
+    public int deleteExpired(Instant now, Instant legacyCreatedBefore) {
+        return template.update(SQL_EXPIRE_STATEMENT, now.toEpochMilli())
+                + template.update(SQL_CLEAN_STATEMENT, Timestamp.from(legacyCreatedBefore));
+    }
+}
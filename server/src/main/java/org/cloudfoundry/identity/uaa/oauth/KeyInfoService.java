@@ -14,24 +14,59 @@
  */
 package org.cloudfoundry.identity.uaa.oauth;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import org.cloudfoundry.identity.uaa.impl.config.LegacyTokenKey;
 import org.cloudfoundry.identity.uaa.util.UaaTokenUtils;
+import org.cloudfoundry.identity.uaa.zone.IdentityZone;
 import org.cloudfoundry.identity.uaa.zone.IdentityZoneConfiguration;
 import org.cloudfoundry.identity.uaa.zone.IdentityZoneHolder;
 import org.cloudfoundry.identity.uaa.zone.TokenPolicy;
+import org.cloudfoundry.identity.uaa.zone.event.IdentityZoneModifiedEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.jmx.export.annotation.ManagedMetric;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.jmx.support.MetricType;
 import org.springframework.util.StringUtils;
 
 import java.net.URISyntaxException;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 
 import static org.cloudfoundry.identity.uaa.util.UaaUrlUtils.addSubdomainToUrl;
 
-public class KeyInfoService {
+/**
+ * Resolves the signing and verification keys of the current zone.
+ *
+ * Built {@link KeyInfo} instances (parsed PEM, JWK, signers and verifiers) are cached per zone.
+ * The cache key contains the full key material of the zone's token policy, so a changed policy
+ * never resolves to stale keys; entries of a zone are additionally evicted when the zone is updated.
+ */
+@ManagedResource(
+        objectName = "cloudfoundry.identity:name=KeyInfoCache",
+        description = "UAA Signing Key Cache Metrics"
+)
+public class KeyInfoService implements ApplicationListener<IdentityZoneModifiedEvent> {
+    public static final int DEFAULT_MAX_CACHED_KEY_SETS = 1_000;
+
     private String uaaBaseURL;
+    private final Cache<KeyMaterial, Map<String, KeyInfo>> keyCache;
 
     public KeyInfoService(String uaaBaseURL) {
+        this(uaaBaseURL, DEFAULT_MAX_CACHED_KEY_SETS);
+    }
+
+    public KeyInfoService(String uaaBaseURL, int maxCachedKeySets) {
         this.uaaBaseURL = uaaBaseURL;
+        this.keyCache = CacheBuilder.newBuilder()
+                .maximumSize(maxCachedKeySets)
+                .recordStats()
+                .build();
     }
 
     public KeyInfo getKey(String keyId, String sigAlg) {
@@ -47,17 +82,25 @@ public class KeyInfoService {
     }
 
     public Map<String, KeyInfo> getKeys(String sigAlg) {
-        IdentityZoneConfiguration config = IdentityZoneHolder.get().getConfig();
-        if (config == null || config.getTokenPolicy().getKeys() == null || config.getTokenPolicy().getKeys().isEmpty()) {
-            config = IdentityZoneHolder.getUaaZone().getConfig();
+        IdentityZone zone = IdentityZoneHolder.get();
+        String policyZoneId = zone.getId();
+        IdentityZoneConfiguration config = zone.getConfig();
+        Map<String, TokenPolicy.KeyInformation> policyKeys = config == null ? null : config.getTokenPolicy().getKeys();
+        if (policyKeys == null || policyKeys.isEmpty()) {
+            IdentityZone uaaZone = IdentityZoneHolder.getUaaZone();
+            policyZoneId = uaaZone.getId();
+            policyKeys = uaaZone.getConfig().getTokenPolicy().getKeys();
         }
 
         Map<String, KeyInfo> keys = new HashMap<>();
-        for (Map.Entry<String, TokenPolicy.KeyInformation> entry : config.getTokenPolicy().getKeys().entrySet()) {
-            KeyInfo keyInfo = KeyInfoBuilder.build(entry.getKey(), entry.getValue().getSigningKey(), addSubdomainToUrl(uaaBaseURL, IdentityZoneHolder.get().getSubdomain()),
-                sigAlg != null ? sigAlg : entry.getValue().getSigningAlg(),
-                entry.getValue().getSigningCert());
-            keys.put(entry.getKey(), keyInfo);
+        if (!policyKeys.isEmpty()) {
+            KeyMaterial material = new KeyMaterial(zone.getId(), policyZoneId, zone.getSubdomain(), sigAlg, policyKeys);
+            Map<String, KeyInfo> cached = keyCache.getIfPresent(material);
+            if (cached == null) {
+                cached = buildKeys(policyKeys, addSubdomainToUrl(uaaBaseURL, zone.getSubdomain()), sigAlg);
+                keyCache.put(material, cached);
+            }
+            keys.putAll(cached);
         }
 
         if (keys.isEmpty()) {
@@ -67,6 +110,49 @@ public class KeyInfoService {
         return keys;
     }
 
+    private static Map<String, KeyInfo> buildKeys(Map<String, TokenPolicy.KeyInformation> policyKeys, String keyUrl, String sigAlg) {
+        Map<String, KeyInfo> keys = new HashMap<>();
+        for (Map.Entry<String, TokenPolicy.KeyInformation> entry : policyKeys.entrySet()) {
+            KeyInfo keyInfo = KeyInfoBuilder.build(entry.getKey(), entry.getValue().getSigningKey(), keyUrl,
+                sigAlg != null ? sigAlg : entry.getValue().getSigningAlg(),
+                entry.getValue().getSigningCert());
+            keys.put(entry.getKey(), keyInfo);
+        }
+        return Collections.unmodifiableMap(keys);
+    }
+
+    @Override
+    public void onApplicationEvent(IdentityZoneModifiedEvent event) {
+        IdentityZone zone = (IdentityZone) event.getSource();
+        if (zone != null) {
+            evictZone(zone.getId());
+        }
+    }
+
+    public void evictZone(String zoneId) {
+        keyCache.asMap().keySet().removeIf(material -> material.belongsTo(zoneId));
+    }
+
+    @ManagedOperation(description = "Evict all cached signing keys")
+    public void clearCache() {
+        keyCache.invalidateAll();
+    }
+
+    @ManagedMetric(metricType = MetricType.COUNTER, displayName = "Signing Key Cache Hit Count")
+    public long getCacheHitCount() {
+        return keyCache.stats().hitCount();
+    }
+
+    @ManagedMetric(metricType = MetricType.COUNTER, displayName = "Signing Key Cache Miss Count")
+    public long getCacheMissCount() {
+        return keyCache.stats().missCount();
+    }
+
+    @ManagedMetric(metricType = MetricType.GAUGE, displayName = "Signing Key Cache Size")
+    public long getCacheSize() {
+        return keyCache.size();
+    }
+
     public KeyInfo getActiveKey() {
         return getKeys().get(getActiveKeyId());
     }
@@ -95,4 +181,49 @@ public class KeyInfoService {
     public String getTokenEndpointUrl() throws URISyntaxException {
         return UaaTokenUtils.constructTokenEndpointUrl(uaaBaseURL, IdentityZoneHolder.get());
     }
+
+    /**
+     * Cache key: the requesting zone plus the complete key material of the token policy in effect.
+     */
+    static final class KeyMaterial {
+        private final String zoneId;
+        private final String policyZoneId;
+        private final String subdomain;
+        private final String sigAlg;
+        private final Map<String, List<String>> keys;
+
+        KeyMaterial(String zoneId, String policyZoneId, String subdomain, String sigAlg, Map<String, TokenPolicy.KeyInformation> policyKeys) {
+            this.zoneId = zoneId;
+            this.policyZoneId = policyZoneId;
+            this.subdomain = subdomain;
+            this.sigAlg = sigAlg;
+            this.keys = new HashMap<>();
+            policyKeys.forEach((keyId, info) -> keys.put(keyId, Arrays.asList(info.getSigningKey(), info.getSigningCert(), info.getSigningAlg())));
+        }
+
+        boolean belongsTo(String zoneId) {
+            return Objects.equals(this.zoneId, zoneId) || Objects.equals(this.policyZoneId, zoneId);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            KeyMaterial that = (KeyMaterial) o;
+            return Objects.equals(zoneId, that.zoneId) &&
+                    Objects.equals(policyZoneId, that.policyZoneId) &&
+                    Objects.equals(subdomain, that.subdomain) &&
+                    Objects.equals(sigAlg, that.sigAlg) &&
+                    Objects.equals(keys, that.keys);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(zoneId, policyZoneId, subdomain, sigAlg, keys);
+        }
+    }
 }
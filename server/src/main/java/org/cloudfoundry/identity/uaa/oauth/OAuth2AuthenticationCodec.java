@@ -0,0 +1,279 @@
+package org.cloudfoundry.identity.uaa.oauth;
+
+import org.cloudfoundry.identity.uaa.authentication.UaaAuthentication;
+import org.cloudfoundry.identity.uaa.authentication.UaaAuthenticationDetails;
+import org.cloudfoundry.identity.uaa.authentication.UaaLoginHint;
+import org.cloudfoundry.identity.uaa.authentication.UaaPrincipal;
+import org.cloudfoundry.identity.uaa.oauth.provider.OAuth2Authentication;
+import org.cloudfoundry.identity.uaa.oauth.provider.OAuth2Request;
+import org.cloudfoundry.identity.uaa.util.UaaStringUtils;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Binary encoding of the {@link OAuth2Authentication} stored with an authorization code. It holds
+ * the same fields as the JSON map of {@link UaaTokenStore#serializeOauth2Authentication}, written
+ * as length prefixed values without field names or nested JSON documents.
+ *
+ * Encoded values start with {@link #FORMAT}, which the JSON map (always starting with a brace)
+ * never does, so both encodings can be read from the same table.
+ */
+public final class OAuth2AuthenticationCodec {
+
+    static final byte FORMAT = 1;
+
+    private static final byte NO_USER = 0;
+    private static final byte UAA_AUTHENTICATION = 1;
+    private static final byte UAA_PRINCIPAL = 2;
+
+    // written in place of a missing last login time, a user's first login has none
+    private static final long NO_LAST_LOGIN = -1;
+
+    private OAuth2AuthenticationCodec() {
+    }
+
+    /**
+     * @return false if the user authentication has a principal the encoding can't hold
+     */
+    public static boolean canEncode(OAuth2Authentication authentication) {
+        Authentication userAuthentication = authentication.getUserAuthentication();
+        return userAuthentication == null || userAuthentication.getPrincipal() instanceof UaaPrincipal;
+    }
+
+    public static boolean isEncoded(byte[] data) {
+        return data != null && data.length > 0 && data[0] == FORMAT;
+    }
+
+    public static byte[] encode(OAuth2Authentication authentication) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(512);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(FORMAT);
+            Authentication userAuthentication = authentication.getUserAuthentication();
+            if (userAuthentication == null) {
+                out.writeByte(NO_USER);
+            } else if (userAuthentication instanceof UaaAuthentication) {
+                out.writeByte(UAA_AUTHENTICATION);
+                writeUaaAuthentication(out, (UaaAuthentication) userAuthentication);
+            } else {
+                out.writeByte(UAA_PRINCIPAL);
+                writePrincipal(out, (UaaPrincipal) userAuthentication.getPrincipal());
+                writeStrings(out, UaaStringUtils.getStringsFromAuthorities(userAuthentication.getAuthorities()));
+            }
+            OAuth2Request request = authentication.getOAuth2Request();
+            writeStringMap(out, request.getRequestParameters());
+            writeString(out, request.getClientId());
+            writeStrings(out, UaaStringUtils.getStringsFromAuthorities(request.getAuthorities()));
+            out.writeBoolean(request.isApproved());
+            writeStrings(out, request.getScope());
+            writeStrings(out, request.getResourceIds());
+            writeString(out, request.getRedirectUri());
+            writeStrings(out, request.getResponseTypes());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    public static OAuth2Authentication decode(byte[] data) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data))) {
+            if (in.readByte() != FORMAT) {
+                throw new IllegalArgumentException("Unknown authorization code encoding");
+            }
+            Authentication userAuthentication;
+            byte userType = in.readByte();
+            if (userType == UAA_AUTHENTICATION) {
+                userAuthentication = readUaaAuthentication(in);
+            } else if (userType == UAA_PRINCIPAL) {
+                UaaPrincipal principal = readPrincipal(in);
+                List<? extends GrantedAuthority> authorities = UaaStringUtils.getAuthoritiesFromStrings(readStrings(in));
+                userAuthentication = new UaaAuthentication(principal, authorities, UaaAuthenticationDetails.UNKNOWN);
+            } else {
+                userAuthentication = null;
+            }
+            Map<String, String> requestParameters = readStringMap(in);
+            String clientId = readString(in);
+            Collection<? extends GrantedAuthority> authorities = UaaStringUtils.getAuthoritiesFromStrings(readStrings(in));
+            boolean approved = in.readBoolean();
+            Set<String> scope = toSet(readStrings(in));
+            Set<String> resourceIds = toSet(readStrings(in));
+            String redirectUri = readString(in);
+            Set<String> responseTypes = toSet(readStrings(in));
+            OAuth2Request request = new OAuth2Request(
+                    requestParameters,
+                    clientId,
+                    authorities,
+                    approved,
+                    scope,
+                    resourceIds,
+                    redirectUri,
+                    responseTypes,
+                    new HashMap<String, Serializable>()
+            );
+            return new OAuth2Authentication(request, userAuthentication);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void writeUaaAuthentication(DataOutputStream out, UaaAuthentication authentication) throws IOException {
+        writePrincipal(out, authentication.getPrincipal());
+        writeStrings(out, UaaStringUtils.getStringsFromAuthorities(authentication.getAuthorities()));
+        writeStrings(out, authentication.getExternalGroups());
+        out.writeLong(authentication.getExpiresAt());
+        out.writeLong(authentication.getAuthenticatedTime());
+        out.writeBoolean(authentication.isAuthenticated());
+        Long lastLoginSuccessTime = authentication.getLastLoginSuccessTime();
+        out.writeLong(lastLoginSuccessTime == null ? NO_LAST_LOGIN : lastLoginSuccessTime);
+        Map<String, List<String>> userAttributes = authentication.getUserAttributesAsMap();
+        out.writeInt(userAttributes.size());
+        for (Map.Entry<String, List<String>> attribute : userAttributes.entrySet()) {
+            writeString(out, attribute.getKey());
+            writeStrings(out, attribute.getValue());
+        }
+        writeStrings(out, authentication.getAuthenticationMethods());
+        writeStrings(out, authentication.getAuthContextClassRef());
+        if (authentication.getDetails() instanceof UaaAuthenticationDetails details) {
+            out.writeBoolean(true);
+            out.writeBoolean(details.isAddNew());
+            writeString(out, details.getClientId());
+            writeString(out, details.getOrigin());
+            writeString(out, details.getSessionId());
+            writeString(out, details.getLoginHint() == null ? null : details.getLoginHint().getOrigin());
+        } else {
+            out.writeBoolean(false);
+        }
+    }
+
+    private static UaaAuthentication readUaaAuthentication(DataInputStream in) throws IOException {
+        UaaPrincipal principal = readPrincipal(in);
+        List<? extends GrantedAuthority> authorities = UaaStringUtils.getAuthoritiesFromStrings(readStrings(in));
+        Set<String> externalGroups = toSet(readStrings(in));
+        long expiresAt = in.readLong();
+        long authenticatedTime = in.readLong();
+        boolean authenticated = in.readBoolean();
+        long lastLoginSuccessTime = in.readLong();
+        int attributeCount = in.readInt();
+        Map<String, List<String>> userAttributes = new LinkedHashMap<>();
+        for (int i = 0; i < attributeCount; i++) {
+            userAttributes.put(readString(in), readStrings(in));
+        }
+        Set<String> authenticationMethods = toSet(readStrings(in));
+        List<String> authContextClassRef = readStrings(in);
+        UaaAuthenticationDetails details = null;
+        if (in.readBoolean()) {
+            boolean addNew = in.readBoolean();
+            details = new UaaAuthenticationDetails(addNew, readString(in), readString(in), readString(in));
+            String loginHint = readString(in);
+            if (loginHint != null) {
+                details.setLoginHint(new UaaLoginHint(loginHint));
+            }
+        }
+        UaaAuthentication authentication = new UaaAuthentication(principal,
+                null,
+                authorities,
+                externalGroups,
+                userAttributes,
+                details,
+                authenticated,
+                authenticatedTime,
+                expiresAt);
+        authentication.setAuthenticationMethods(authenticationMethods);
+        authentication.setAuthContextClassRef(authContextClassRef == null ? null : new HashSet<>(authContextClassRef));
+        authentication.setLastLoginSuccessTime(lastLoginSuccessTime == NO_LAST_LOGIN ? null : lastLoginSuccessTime);
+        return authentication;
+    }
+
+    private static void writePrincipal(DataOutputStream out, UaaPrincipal principal) throws IOException {
+        writeString(out, principal.getId());
+        writeString(out, principal.getName());
+        writeString(out, principal.getEmail());
+        writeString(out, principal.getOrigin());
+        writeString(out, principal.getExternalId());
+        writeString(out, principal.getZoneId());
+    }
+
+    private static UaaPrincipal readPrincipal(DataInputStream in) throws IOException {
+        return new UaaPrincipal(readString(in), readString(in), readString(in), readString(in), readString(in), readString(in));
+    }
+
+    private static void writeStringMap(DataOutputStream out, Map<String, String> map) throws IOException {
+        out.writeInt(map == null ? -1 : map.size());
+        if (map != null) {
+            for (Map.Entry<String, String> entry : map.entrySet()) {
+                writeString(out, entry.getKey());
+                writeString(out, entry.getValue());
+            }
+        }
+    }
+
+    private static Map<String, String> readStringMap(DataInputStream in) throws IOException {
+        int size = in.readInt();
+        Map<String, String> map = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            map.put(readString(in), readString(in));
+        }
+        return map;
+    }
+
+    private static void writeStrings(DataOutputStream out, Collection<String> values) throws IOException {
+        out.writeInt(values == null ? -1 : values.size());
+        if (values != null) {
+            for (String value : values) {
+                writeString(out, value);
+            }
+        }
+    }
+
+    private static List<String> readStrings(DataInputStream in) throws IOException {
+        int size = in.readInt();
+        if (size < 0) {
+            return null;
+        }
+        List<String> values = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            values.add(readString(in));
+        }
+        return values;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static Set<String> toSet(List<String> values) {
+        return values == null ? new HashSet<>() : new HashSet<>(values);
+    }
+}
@@ -24,6 +24,7 @@ public class TokenValidationService {
     private UaaUserDatabase userDatabase;
     private MultitenantClientServices multitenantClientServices;
     private KeyInfoService keyInfoService;
+    private ValidatedTokenCache validatedTokenCache;
 
     public TokenValidationService(RevocableTokenProvisioning revocableTokenProvisioning,
                                   TokenEndpointBuilder tokenEndpointBuilder,
@@ -37,7 +38,34 @@ public class TokenValidationService {
         this.keyInfoService = keyInfoService;
     }
 
+    public void setValidatedTokenCache(ValidatedTokenCache validatedTokenCache) {
+        this.validatedTokenCache = validatedTokenCache;
+    }
+
+    /**
+     * Validates the token. Access tokens are looked up in the {@link ValidatedTokenCache} only if the
+     * current request was marked with {@link ValidatedTokenCache#useForCurrentRequest()}.
+     */
     public JwtTokenSignedByThisUAA validateToken(String token, boolean isAccessToken) {
+        return validateToken(token, isAccessToken, ValidatedTokenCache.isUsedByCurrentRequest());
+    }
+
+    public JwtTokenSignedByThisUAA validateToken(String token, boolean isAccessToken, boolean useCache) {
+        if (!isAccessToken || !useCache || validatedTokenCache == null || !validatedTokenCache.isEnabled()) {
+            return validate(token, isAccessToken);
+        }
+        String zoneId = IdentityZoneHolder.get().getId();
+        JwtTokenSignedByThisUAA cached = validatedTokenCache.get(zoneId, token);
+        if (cached != null) {
+            return cached;
+        }
+        long generation = validatedTokenCache.getGeneration();
+        JwtTokenSignedByThisUAA validated = validate(token, true);
+        validatedTokenCache.put(zoneId, token, validated, generation);
+        return validated;
+    }
+
+    private JwtTokenSignedByThisUAA validate(String token, boolean isAccessToken) {
         if (!UaaTokenUtils.isJwtToken(token)) {
             RevocableToken revocableToken;
             try {
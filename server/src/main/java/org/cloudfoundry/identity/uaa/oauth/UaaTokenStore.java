@@ -30,10 +30,6 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.dao.DeadlockLoserDataAccessException;
-import org.springframework.dao.EmptyResultDataAccessException;
-import org.springframework.jdbc.core.JdbcTemplate;
-import org.springframework.jdbc.core.RowMapper;
-import org.springframework.jdbc.core.support.SqlLobValue;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.GrantedAuthority;
 import org.cloudfoundry.identity.uaa.oauth.common.exceptions.InvalidGrantException;
@@ -43,10 +39,6 @@ import org.springframework.stereotype.Component;
 
 import javax.sql.DataSource;
 import java.io.Serializable;
-import java.sql.ResultSet;
-import java.sql.SQLException;
-import java.sql.Timestamp;
-import java.sql.Types;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.Collection;
@@ -75,17 +67,11 @@ public class UaaTokenStore implements AuthorizationCodeServices {
 
     protected static Logger logger = LoggerFactory.getLogger(UaaTokenStore.class);
 
-    private static final String SQL_SELECT_STATEMENT = "select code, user_id, client_id, expiresat, created, authentication from oauth_code where code = ?";
-    private static final String SQL_INSERT_STATEMENT = "insert into oauth_code (code, user_id, client_id, expiresat, authentication, identity_zone_id) values (?, ?, ?, ?, ?, ?)";
-    private static final String SQL_DELETE_STATEMENT = "delete from oauth_code where code = ?";
-    private static final String SQL_EXPIRE_STATEMENT = "delete from oauth_code where expiresat > 0 AND expiresat < ?";
-    private static final String SQL_CLEAN_STATEMENT = "delete from oauth_code where created < ? and expiresat = 0";
-
-    private final DataSource dataSource;
+    private final AuthorizationCodeStore codeStore;
     private final TimeService timeService;
     private final Duration expirationTime;
     private final RandomValueStringGenerator generator = new RandomValueStringGenerator(32);
-    private final RowMapper rowMapper = new TokenCodeRowMapper();
+    private boolean compactEncoding;
 
     private Instant lastClean = Instant.EPOCH;
     private Semaphore cleanMutex = new Semaphore(1);
@@ -96,33 +82,44 @@ public class UaaTokenStore implements AuthorizationCodeServices {
     }
 
     public UaaTokenStore(DataSource dataSource, TimeService timeService, Duration expirationTime) {
-        this.dataSource = dataSource;
+        this(new JdbcAuthorizationCodeStore(dataSource), timeService, expirationTime);
+    }
+
+    public UaaTokenStore(AuthorizationCodeStore codeStore, TimeService timeService) {
+        this(codeStore, timeService, DEFAULT_EXPIRATION_TIME);
+    }
+
+    public UaaTokenStore(AuthorizationCodeStore codeStore, TimeService timeService, Duration expirationTime) {
+        this.codeStore = codeStore;
         this.timeService = timeService;
         this.expirationTime = expirationTime;
     }
 
+    /**
+     * Stores new codes with {@link OAuth2AuthenticationCodec} instead of as a JSON map. Codes in
+     * either format are always read, but nodes running a release without the codec can't redeem
+     * codes in the compact format.
+     */
+    public void setCompactEncoding(boolean compactEncoding) {
+        this.compactEncoding = compactEncoding;
+    }
+
     @Override
     public String createAuthorizationCode(OAuth2Authentication authentication) {
         final int maxAttempts = 3;
         performExpirationCleanIfEnoughTimeHasElapsed();
-        JdbcTemplate template = new JdbcTemplate(dataSource);
+        String userId = authentication.getUserAuthentication()==null ? null : ((UaaPrincipal)authentication.getUserAuthentication().getPrincipal()).getId();
+        String clientId = authentication.getOAuth2Request().getClientId();
+        byte[] data = compactEncoding && OAuth2AuthenticationCodec.canEncode(authentication) ?
+            OAuth2AuthenticationCodec.encode(authentication) :
+            serializeOauth2Authentication(authentication);
         int attempt = 0;
         while (true) {
             attempt++;
             try {
                 String code = generator.generate();
                 Instant expiresAt = timeService.getCurrentInstant().plus(getExpirationTime());
-                String userId = authentication.getUserAuthentication()==null ? null : ((UaaPrincipal)authentication.getUserAuthentication().getPrincipal()).getId();
-                String clientId = authentication.getOAuth2Request().getClientId();
-                SqlLobValue data = new SqlLobValue(serializeOauth2Authentication(authentication));
-                int updated = template.update(
-                    SQL_INSERT_STATEMENT,
-                    new Object[] {code, userId, clientId, expiresAt.toEpochMilli(), data, IdentityZoneHolder.get().getId()},
-                    new int[] {Types.VARCHAR,Types.VARCHAR, Types.VARCHAR, Types.NUMERIC, Types.BLOB, Types.VARCHAR}
-                );
-                if (updated==0) {
-                    throw new DataIntegrityViolationException("[oauth_code] Failed to insert code. Result was 0");
-                }
+                codeStore.insert(new AuthorizationCodeStore.StoredCode(code, userId, clientId, expiresAt.toEpochMilli(), null, IdentityZoneHolder.get().getId(), data));
                 return code;
             } catch (DataIntegrityViolationException exists) {
                 if (attempt>=maxAttempts) throw exists;
@@ -133,22 +130,16 @@ public class UaaTokenStore implements AuthorizationCodeServices {
     @Override
     public OAuth2Authentication consumeAuthorizationCode(String code) throws InvalidGrantException {
         performExpirationCleanIfEnoughTimeHasElapsed();
-        JdbcTemplate template = new JdbcTemplate(dataSource);
-        try {
-            TokenCode tokenCode = (TokenCode) template.queryForObject(SQL_SELECT_STATEMENT, rowMapper, code);
-            if (tokenCode != null) {
-                try {
-                    if (tokenCode.isExpired()) {
-                        logger.debug("[oauth_code] Found code, but it expired:"+tokenCode);
-                        throw new InvalidGrantException("Authorization code expired: " + code);
-                    } else {
-                        return tokenCode.deserialize();
-                    }
-                } finally {
-                    template.update(SQL_DELETE_STATEMENT, code);
-                }
+        AuthorizationCodeStore.StoredCode stored = codeStore.remove(code);
+        if (stored != null) {
+            TokenCode tokenCode = stored.getExpiresAt() == 0 ?
+                new LegacyTokenCode(stored.getCode(), stored.getUserId(), stored.getCreated(), stored.getClientId(), stored.getAuthentication()) :
+                new NewTokenCode(stored.getCode(), stored.getUserId(), Instant.ofEpochMilli(stored.getExpiresAt()), stored.getClientId(), stored.getAuthentication());
+            if (tokenCode.isExpired()) {
+                logger.debug("[oauth_code] Found code, but it expired:"+tokenCode);
+                throw new InvalidGrantException("Authorization code expired: " + code);
             }
-        }catch (EmptyResultDataAccessException ignored) {
+            return tokenCode.deserialize();
         }
         throw new InvalidGrantException("Invalid authorization code: " + code);
     }
@@ -182,6 +173,9 @@ public class UaaTokenStore implements AuthorizationCodeServices {
     }
 
     protected OAuth2Authentication deserializeOauth2Authentication(byte[] data) {
+        if (OAuth2AuthenticationCodec.isEncoded(data)) {
+            return OAuth2AuthenticationCodec.decode(data);
+        }
         Map<String,Object> map = JsonUtils.readValue(data, new TypeReference<Map<String,Object>>() {});
         Authentication userAuthentication = null;
         if (map.get(USER_AUTHENTICATION_UAA_AUTHENTICATION) != null) {
@@ -235,11 +229,8 @@ public class UaaTokenStore implements AuthorizationCodeServices {
 
     private void actuallyPerformExpirationClean(Instant now) {
         try {
-            JdbcTemplate template = new JdbcTemplate(dataSource);
-            int expired = template.update(SQL_EXPIRE_STATEMENT, now.toEpochMilli());
+            int expired = codeStore.deleteExpired(now, now.minus(LEGACY_CODE_EXPIRATION_TIME));
             logger.debug("[oauth_code] Removed "+expired+" expired entries.");
-            expired = template.update(SQL_CLEAN_STATEMENT, Timestamp.from(now.minus(LEGACY_CODE_EXPIRATION_TIME)));
-            logger.debug("[oauth_code] Removed "+expired+" old entries.");
         } catch (DeadlockLoserDataAccessException e) {
             logger.debug("[oauth code] Deadlock trying to expire entries, ignored.");
         }
@@ -253,26 +244,6 @@ public class UaaTokenStore implements AuthorizationCodeServices {
         return expirationTime;
     }
 
-    protected class TokenCodeRowMapper implements RowMapper<TokenCode> {
-
-        @Override
-        public TokenCode mapRow(ResultSet rs, int rowNum) throws SQLException {
-            int pos = 1;
-            String code = rs.getString(pos++);
-            String userid = rs.getString(pos++);
-            String client_id = rs.getString(pos++);
-            long expiresat = rs.getLong(pos++);
-            Instant created = rs.getTimestamp(pos++).toInstant();
-            byte[] authentication = rs.getBytes(pos++);
-
-            if (expiresat == 0) {
-                return new LegacyTokenCode(code, userid, created, client_id, authentication);
-            } else {
-                return new NewTokenCode(code, userid, Instant.ofEpochMilli(expiresat), client_id, authentication);
-            }
-        }
-    }
-
     public TokenCode createTokenCodeForTesting(String code, String userId, String clientId, Optional<Instant> expiresAt, Instant created, byte[] authentication) {
         if (expiresAt.isPresent()) {
             return new NewTokenCode(code, userId, expiresAt.get(), clientId, authentication);
@@ -0,0 +1,239 @@
+package org.cloudfoundry.identity.uaa.oauth;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.cloudfoundry.identity.uaa.account.event.AbstractPasswordChangeEvent;
+import org.cloudfoundry.identity.uaa.audit.event.AbstractUaaEvent;
+import org.cloudfoundry.identity.uaa.audit.event.EntityDeletedEvent;
+import org.cloudfoundry.identity.uaa.client.event.AbstractClientAdminEvent;
+import org.cloudfoundry.identity.uaa.oauth.event.TokenRevocationEvent;
+import org.cloudfoundry.identity.uaa.scim.event.GroupModifiedEvent;
+import org.cloudfoundry.identity.uaa.scim.event.UserModifiedEvent;
+import org.cloudfoundry.identity.uaa.util.JwtTokenSignedByThisUAA;
+import org.cloudfoundry.identity.uaa.util.TimeService;
+import org.cloudfoundry.identity.uaa.zone.IdentityZone;
+import org.cloudfoundry.identity.uaa.zone.event.IdentityZoneModifiedEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.jmx.export.annotation.ManagedMetric;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.jmx.support.MetricType;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+import static org.cloudfoundry.identity.uaa.oauth.token.ClaimConstants.CID;
+import static org.cloudfoundry.identity.uaa.oauth.token.ClaimConstants.EXPIRY_IN_SECONDS;
+import static org.cloudfoundry.identity.uaa.oauth.token.ClaimConstants.USER_ID;
+
+/**
+ * Bounded cache of successfully validated access tokens, keyed by zone and a SHA-256 hash of the
+ * token value, so that repeated {@code /check_token} and {@code /introspect} calls for the same
+ * token skip signature verification and the client, user and revocation lookups.
+ *
+ * An entry is never served after the token's {@code exp}, nor for longer than {@code maxTtlMillis}
+ * after it was validated. Token revocations, user, password, group and client changes and zone
+ * updates (key rotation) made on this node evict the affected entries immediately; changes made on
+ * other nodes become visible within {@code maxTtlMillis}. Disabled unless {@code enabled} is set.
+ *
+ * The cache is only consulted for requests marked with {@link #useForCurrentRequest()}, which only
+ * the token checking endpoints do. Bearer tokens presented to UAA's own APIs are always validated in full.
+ */
+@ManagedResource(
+        objectName = "cloudfoundry.identity:name=ValidatedTokenCache",
+        description = "UAA Validated Token Cache Metrics"
+)
+public class ValidatedTokenCache implements ApplicationListener<AbstractUaaEvent> {
+
+    public static final long DEFAULT_MAX_TTL_MILLIS = 30_000L;
+    public static final int DEFAULT_MAX_ENTRIES = 10_000;
+
+    private static final String REQUEST_ATTRIBUTE = ValidatedTokenCache.class.getName() + ".USE";
+
+    private final TimeService timeService;
+    private final Cache<String, CachedToken> cache;
+    private final AtomicLong generation = new AtomicLong();
+    private boolean enabled;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public ValidatedTokenCache(TimeService timeService) {
+        this(timeService, DEFAULT_MAX_TTL_MILLIS, DEFAULT_MAX_ENTRIES);
+    }
+
+    public ValidatedTokenCache(TimeService timeService, long maxTtlMillis, int maxEntries) {
+        this.timeService = timeService;
+        this.cache = CacheBuilder.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfterWrite(maxTtlMillis, TimeUnit.MILLISECONDS)
+                .build();
+    }
+
+    /**
+     * Lets the token validations of the current request use the cache.
+     */
+    public static void useForCurrentRequest() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes != null) {
+            attributes.setAttribute(REQUEST_ATTRIBUTE, Boolean.TRUE, RequestAttributes.SCOPE_REQUEST);
+        }
+    }
+
+    static boolean isUsedByCurrentRequest() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        return attributes != null
+                && Boolean.TRUE.equals(attributes.getAttribute(REQUEST_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST));
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * @return the validated token, or null if it is not cached or has expired
+     */
+    public JwtTokenSignedByThisUAA get(String zoneId, String token) {
+        String key = key(zoneId, token);
+        CachedToken cached = cache.getIfPresent(key);
+        if (cached != null && timeService.getCurrentTimeMillis() < cached.expiresAt) {
+            hits.increment();
+            return cached.token;
+        }
+        if (cached != null) {
+            cache.invalidate(key);
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * Snapshot to pass to {@link #put} after validating a token, so that a token validated
+     * concurrently with an eviction is not cached.
+     */
+    public long getGeneration() {
+        return generation.get();
+    }
+
+    public void put(String zoneId, String token, JwtTokenSignedByThisUAA validated, long generation) {
+        Map<String, Object> claims = validated.getClaims();
+        if (!(claims.get(EXPIRY_IN_SECONDS) instanceof Number expiry)) {
+            return;
+        }
+        String key = key(zoneId, token);
+        cache.put(key, new CachedToken(validated,
+                zoneId,
+                (String) claims.get(USER_ID),
+                (String) claims.get(CID),
+                expiry.longValue() * 1000L));
+        if (this.generation.get() != generation) {
+            cache.invalidate(key);
+        }
+    }
+
+    @ManagedOperation(description = "Evict all cached token validation results")
+    public void clear() {
+        generation.incrementAndGet();
+        cache.invalidateAll();
+    }
+
+    public void evictZone(String zoneId) {
+        evict(cached -> cached.zoneId.equals(zoneId));
+    }
+
+    public void evictUser(String zoneId, String userId) {
+        evict(cached -> cached.zoneId.equals(zoneId) && Objects.equals(cached.userId, userId));
+    }
+
+    public void evictClient(String zoneId, String clientId) {
+        evict(cached -> cached.zoneId.equals(zoneId) && Objects.equals(cached.clientId, clientId));
+    }
+
+    @Override
+    public void onApplicationEvent(AbstractUaaEvent event) {
+        String zoneId = event.getIdentityZoneId();
+        if (event instanceof TokenRevocationEvent revocation) {
+            evict(cached -> cached.zoneId.equals(revocation.getZoneId())
+                    && (revocation.getUserId() == null || revocation.getUserId().equals(cached.userId))
+                    && (revocation.getClientId() == null || revocation.getClientId().equals(cached.clientId)));
+        } else if (event instanceof UserModifiedEvent userModified) {
+            evictUser(zoneId, userModified.getUserId());
+        } else if (event instanceof AbstractPasswordChangeEvent passwordChange && passwordChange.getUser() != null) {
+            evictUser(zoneId, passwordChange.getUser().getId());
+        } else if (event instanceof AbstractClientAdminEvent clientAdmin && clientAdmin.getClient() != null) {
+            evictClient(zoneId, clientAdmin.getClient().getClientId());
+        } else if (event instanceof IdentityZoneModifiedEvent) {
+            evictZone(((IdentityZone) event.getSource()).getId());
+        } else if (event instanceof GroupModifiedEvent || event instanceof EntityDeletedEvent) {
+            // membership and deletions can affect any token of the zone
+            evictZone(zoneId);
+        }
+    }
+
+    @ManagedMetric(metricType = MetricType.COUNTER, displayName = "Validated Token Cache Hit Count")
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    @ManagedMetric(metricType = MetricType.COUNTER, displayName = "Validated Token Cache Miss Count")
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    @ManagedMetric(metricType = MetricType.COUNTER, displayName = "Validated Token Cache Eviction Count")
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    @ManagedMetric(metricType = MetricType.GAUGE, displayName = "Validated Token Cache Size")
+    public long getSize() {
+        return cache.size();
+    }
+
+    private void evict(Predicate<CachedToken> predicate) {
+        generation.incrementAndGet();
+        if (cache.asMap().values().removeIf(predicate)) {
+            evictions.increment();
+        }
+    }
+
+    private static String key(String zoneId, String token) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return zoneId + ":" + Base64.getEncoder().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static final class CachedToken {
+        private final JwtTokenSignedByThisUAA token;
+        private final String zoneId;
+        private final String userId;
+        private final String clientId;
+        private final long expiresAt;
+
+        private CachedToken(JwtTokenSignedByThisUAA token, String zoneId, String userId, String clientId, long expiresAt) {
+            this.token = token;
+            this.zoneId = zoneId;
+            this.userId = userId;
+            this.clientId = clientId;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -81,11 +81,18 @@ public class SignatureVerifier implements Verifier {
         return algorithm;
     }
 
+    public String keyId() {
+        return delegate.getKid();
+    }
+
     public JWKSet getJwkSet() {
         return this.jwk;
     }
 
     public JWKSet getJwkSet(String keyId) {
+        if (jwk != null && keyId != null && keyId.equals(delegate.getKid())) {
+            return jwk;
+        }
         try {
             Map<String, Object> keyMap = new HashMap<>(delegate.getKeyProperties());
             keyMap.put(HeaderParameterNames.KEY_ID, keyId);
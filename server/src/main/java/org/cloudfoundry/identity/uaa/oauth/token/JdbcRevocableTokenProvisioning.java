@@ -3,6 +3,7 @@ package org.cloudfoundry.identity.uaa.oauth.token;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.cloudfoundry.identity.uaa.audit.event.SystemDeletable;
+import org.cloudfoundry.identity.uaa.db.purge.ExpiredDataSweeper;
 import org.cloudfoundry.identity.uaa.resources.jdbc.LimitSqlAdapter;
 import org.cloudfoundry.identity.uaa.util.TimeService;
 import org.springframework.dao.EmptyResultDataAccessException;
@@ -20,7 +21,7 @@ import java.util.stream.Collectors;
 import static org.cloudfoundry.identity.uaa.oauth.token.RevocableToken.TokenType.REFRESH_TOKEN;
 import static org.springframework.util.StringUtils.isEmpty;
 
-public class JdbcRevocableTokenProvisioning implements RevocableTokenProvisioning, SystemDeletable {
+public class JdbcRevocableTokenProvisioning implements RevocableTokenProvisioning, SystemDeletable, ExpiredDataSweeper {
 
     private final static String REFRESH_TOKEN_RESPONSE_TYPE = REFRESH_TOKEN.toString();
     private final static String FIELDS = "token_id,client_id,user_id,format,response_type,issued_at,expires_at,scope,data,identity_zone_id";
@@ -49,6 +50,7 @@ public class JdbcRevocableTokenProvisioning implements RevocableTokenProvisionin
     private AtomicLong lastExpiredCheck = new AtomicLong(0);
     private Duration maxExpirationRuntime = Duration.ofMillis(2500L);
     private final static Duration EXPIRATION_CHECK_INTERVAL = Duration.ofSeconds(30);
+    private volatile boolean lazySweepEnabled = true;
 
     public JdbcRevocableTokenProvisioning(JdbcTemplate jdbcTemplate,
                                           LimitSqlAdapter limitSqlAdapter,
@@ -218,6 +220,9 @@ public class JdbcRevocableTokenProvisioning implements RevocableTokenProvisionin
     }
 
     private void checkExpired() {
+        if (!lazySweepEnabled) {
+            return;
+        }
         long now = timeService.getCurrentTimeMillis();
         long lastCheck = lastExpiredCheck.get();
         if ((now - lastCheck) > EXPIRATION_CHECK_INTERVAL.toMillis() && lastExpiredCheck.compareAndSet(lastCheck, now)) {
@@ -237,17 +242,32 @@ public class JdbcRevocableTokenProvisioning implements RevocableTokenProvisionin
      */
     private boolean runDeleteExpired(long now) {
         final int maxRows = 500;
-        String sql = limitSqlAdapter.getDeleteExpiredQuery(
-                TABLE, "token_id", "expires_at", maxRows
-        );
         int removed;
         do {
-            removed = template.update(sql, now);
+            removed = deleteExpired(now, maxRows);
             logger.info("Removed " + removed + " expired revocable tokens.");
         } while (removed > 0 && (timeService.getCurrentTimeMillis() - now) < maxExpirationRuntime.toMillis());
         return removed >= maxRows;
     }
 
+    @Override
+    public String getSweepName() {
+        return TABLE;
+    }
+
+    @Override
+    public int deleteExpired(long now, int maxRows) {
+        String sql = limitSqlAdapter.getDeleteExpiredQuery(
+                TABLE, "token_id", "expires_at", maxRows
+        );
+        return template.update(sql, now);
+    }
+
+    @Override
+    public void setLazySweepEnabled(boolean lazySweepEnabled) {
+        this.lazySweepEnabled = lazySweepEnabled;
+    }
+
     public void setMaxExpirationRuntime(long maxExpirationRuntime) {
         this.maxExpirationRuntime = Duration.ofMillis(maxExpirationRuntime);
     }
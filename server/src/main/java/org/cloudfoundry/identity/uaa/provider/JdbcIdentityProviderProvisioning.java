@@ -3,26 +3,38 @@ package org.cloudfoundry.identity.uaa.provider;
 import static java.sql.Types.VARCHAR;
 import static org.cloudfoundry.identity.uaa.util.UaaStringUtils.isNotEmpty;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.cloudfoundry.identity.uaa.audit.event.AbstractUaaEvent;
 import org.cloudfoundry.identity.uaa.audit.event.SystemDeletable;
 import org.cloudfoundry.identity.uaa.constants.OriginKeys;
 import org.cloudfoundry.identity.uaa.util.JsonUtils;
 import org.cloudfoundry.identity.uaa.util.ObjectUtils;
+import org.cloudfoundry.identity.uaa.zone.event.IdentityProviderModifiedEvent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Component;
 import org.springframework.util.StringUtils;
 
+import javax.annotation.PostConstruct;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Component("identityProviderProvisioning")
 public class JdbcIdentityProviderProvisioning implements IdentityProviderProvisioning, SystemDeletable {
@@ -55,14 +67,44 @@ public class JdbcIdentityProviderProvisioning implements IdentityProviderProvisi
 
     public static final String IDENTITY_PROVIDER_BY_EXTERNAL_QUERY = IDENTITY_PROVIDERS_QUERY + " and type=? and external_key=?";
 
+    public static final String IDENTITY_PROVIDERS_STAMP_QUERY = "select count(*), sum(version), max(lastmodified) from identity_provider where identity_zone_id=?";
+
     protected final JdbcTemplate jdbcTemplate;
 
     private final RowMapper<IdentityProvider> mapper = new IdentityProviderRowMapper();
 
+    @Value("${identityProviders.cache.maxStalenessMillis:0}")
+    private long cacheMaxStalenessMillis;
+    private volatile Cache<String, ZoneSnapshot> snapshots;
+    private final AtomicLong snapshotGeneration = new AtomicLong();
+
     public JdbcIdentityProviderProvisioning(JdbcTemplate jdbcTemplate) {
         this.jdbcTemplate = jdbcTemplate;
     }
 
+    @PostConstruct
+    public void init() {
+        setCacheMaxStalenessMillis(cacheMaxStalenessMillis);
+    }
+
+    public long getCacheMaxStalenessMillis() {
+        return cacheMaxStalenessMillis;
+    }
+
+    /**
+     * The providers of a zone are read once into a snapshot that answers the active, all, origin and
+     * external key lookups for the given time. After that, the number of providers, the sum of their
+     * versions and their latest modification time are compared before the snapshot is used again.
+     * A value of zero or less disables the cache. Changes made through this service discard the
+     * snapshot right away.
+     */
+    public void setCacheMaxStalenessMillis(long cacheMaxStalenessMillis) {
+        this.cacheMaxStalenessMillis = cacheMaxStalenessMillis;
+        this.snapshots = cacheMaxStalenessMillis > 0 ?
+                CacheBuilder.newBuilder().maximumSize(10_000).build() :
+                null;
+    }
+
     @Override
     public boolean idpWithAliasExistsInZone(final String zoneId) {
         final List<Integer> result = jdbcTemplate.queryForList(
@@ -82,6 +124,10 @@ public class JdbcIdentityProviderProvisioning implements IdentityProviderProvisi
 
     @Override
     public List<IdentityProvider> retrieveActive(String zoneId) {
+        ZoneSnapshot snapshot = snapshot(zoneId);
+        if (snapshot != null) {
+            return snapshot.active();
+        }
         return jdbcTemplate.query(IDENTITY_ACTIVE_PROVIDERS_QUERY, mapper, zoneId, true);
     }
 
@@ -89,23 +135,50 @@ public class JdbcIdentityProviderProvisioning implements IdentityProviderProvisi
     public List<IdentityProvider> retrieveAll(boolean activeOnly, String zoneId) {
         if (activeOnly) {
             return retrieveActive(zoneId);
-        } else {
-            return jdbcTemplate.query(IDENTITY_PROVIDERS_QUERY, mapper, zoneId);
         }
+        ZoneSnapshot snapshot = snapshot(zoneId);
+        if (snapshot != null) {
+            return snapshot.all();
+        }
+        return jdbcTemplate.query(IDENTITY_PROVIDERS_QUERY, mapper, zoneId);
     }
 
     @Override
     public IdentityProvider retrieveByOrigin(String origin, String zoneId) {
+        ZoneSnapshot snapshot = snapshot(zoneId);
+        if (snapshot != null) {
+            StoredIdentityProvider stored = snapshot.byOrigin.get(origin);
+            if (stored != null) {
+                if (!stored.provider.isActive()) {
+                    throw new EmptyResultDataAccessException(1);
+                }
+                return stored.toIdentityProvider();
+            }
+        }
         return jdbcTemplate.queryForObject(IDENTITY_PROVIDER_BY_ORIGIN_QUERY_ACTIVE, mapper, origin, zoneId, true);
     }
 
     @Override
     public IdentityProvider retrieveByOriginIgnoreActiveFlag(String origin, String zoneId) {
+        ZoneSnapshot snapshot = snapshot(zoneId);
+        if (snapshot != null) {
+            StoredIdentityProvider stored = snapshot.byOrigin.get(origin);
+            if (stored != null) {
+                return stored.toIdentityProvider();
+            }
+        }
         return jdbcTemplate.queryForObject(IDENTITY_PROVIDER_BY_ORIGIN_QUERY, mapper, origin, zoneId);
     }
 
     @Override
     public IdentityProvider retrieveByExternId(String externId, String type, String zoneId) {
+        ZoneSnapshot snapshot = snapshot(zoneId);
+        if (snapshot != null) {
+            StoredIdentityProvider stored = snapshot.byExternalKey.get(type + "|" + externId);
+            if (stored != null) {
+                return stored.toIdentityProvider();
+            }
+        }
         return jdbcTemplate.queryForObject(IDENTITY_PROVIDER_BY_EXTERNAL_QUERY, mapper, zoneId, type, externId);
     }
 
@@ -133,6 +206,7 @@ public class JdbcIdentityProviderProvisioning implements IdentityProviderProvisi
         } catch (DuplicateKeyException e) {
             throw new IdpAlreadyExistsException(e.getMostSpecificCause().getMessage());
         }
+        evictZone(zoneId);
         return retrieve(id, zoneId);
     }
 
@@ -157,6 +231,7 @@ public class JdbcIdentityProviderProvisioning implements IdentityProviderProvisi
             ps.setString(pos++, identityProvider.getId().trim());
             ps.setString(pos, zoneId);
         });
+        evictZone(zoneId);
         return retrieve(identityProvider.getId(), zoneId);
     }
 
@@ -183,12 +258,59 @@ public class JdbcIdentityProviderProvisioning implements IdentityProviderProvisi
 
     @Override
     public int deleteByIdentityZone(String zoneId) {
-        return jdbcTemplate.update(DELETE_IDENTITY_PROVIDER_BY_ZONE_SQL, zoneId);
+        int count = jdbcTemplate.update(DELETE_IDENTITY_PROVIDER_BY_ZONE_SQL, zoneId);
+        evictZone(zoneId);
+        return count;
     }
 
     @Override
     public int deleteByOrigin(String origin, String zoneId) {
-        return jdbcTemplate.update(DELETE_IDENTITY_PROVIDER_BY_ORIGIN_SQL, zoneId, origin);
+        int count = jdbcTemplate.update(DELETE_IDENTITY_PROVIDER_BY_ORIGIN_SQL, zoneId, origin);
+        evictZone(zoneId);
+        return count;
+    }
+
+    @Override
+    public void onApplicationEvent(AbstractUaaEvent event) {
+        SystemDeletable.super.onApplicationEvent(event);
+        if (event instanceof IdentityProviderModifiedEvent && event.getIdentityZoneId() != null) {
+            evictZone(event.getIdentityZoneId());
+        }
+    }
+
+    void evictZone(String zoneId) {
+        snapshotGeneration.incrementAndGet();
+        Cache<String, ZoneSnapshot> cache = snapshots;
+        if (cache != null && zoneId != null) {
+            cache.invalidate(zoneId);
+        }
+    }
+
+    private ZoneSnapshot snapshot(String zoneId) {
+        Cache<String, ZoneSnapshot> cache = snapshots;
+        if (cache == null || zoneId == null) {
+            return null;
+        }
+        ZoneSnapshot snapshot = cache.getIfPresent(zoneId);
+        long now = System.currentTimeMillis();
+        if (snapshot != null && now - snapshot.validatedAt <= cacheMaxStalenessMillis) {
+            return snapshot;
+        }
+        String stamp = jdbcTemplate.queryForObject(IDENTITY_PROVIDERS_STAMP_QUERY,
+                (rs, rowNum) -> rs.getLong(1) + "|" + rs.getLong(2) + "|" + rs.getTimestamp(3), zoneId);
+        if (snapshot != null && snapshot.stamp.equals(stamp)) {
+            snapshot.validatedAt = now;
+            return snapshot;
+        }
+        long generation = snapshotGeneration.get();
+        List<StoredIdentityProvider> providers = jdbcTemplate.query(IDENTITY_PROVIDERS_QUERY, (rs, rowNum) -> StoredIdentityProvider.read(rs), zoneId);
+        snapshot = new ZoneSnapshot(providers, stamp, now);
+        cache.put(zoneId, snapshot);
+        if (snapshotGeneration.get() != generation) {
+            // changed while loading, keep it for this caller only
+            cache.invalidate(zoneId);
+        }
+        return snapshot;
     }
 
     @Override
@@ -196,63 +318,142 @@ public class JdbcIdentityProviderProvisioning implements IdentityProviderProvisi
         return logger;
     }
 
-    private static final class IdentityProviderRowMapper implements RowMapper<IdentityProvider> {
-        @Override
-        public IdentityProvider mapRow(ResultSet rs, int rowNum) throws SQLException {
-            IdentityProvider identityProvider = new IdentityProvider();
+    /**
+     * Immutable snapshot of the providers of a zone. Callers modify the providers they retrieve
+     * (for example to redact secrets), so every lookup returns copies of the parsed providers.
+     */
+    private static final class ZoneSnapshot {
+        private final List<StoredIdentityProvider> providers;
+        private final Map<String, StoredIdentityProvider> byOrigin = new HashMap<>();
+        private final Map<String, StoredIdentityProvider> byExternalKey = new HashMap<>();
+        private final String stamp;
+        private volatile long validatedAt;
+
+        private ZoneSnapshot(List<StoredIdentityProvider> providers, String stamp, long validatedAt) {
+            this.providers = Collections.unmodifiableList(providers);
+            this.stamp = stamp;
+            this.validatedAt = validatedAt;
+            for (StoredIdentityProvider provider : providers) {
+                byOrigin.put(provider.provider.getOriginKey(), provider);
+                if (provider.externalKey != null) {
+                    byExternalKey.put(provider.provider.getType() + "|" + provider.externalKey, provider);
+                }
+            }
+        }
+
+        private List<IdentityProvider> active() {
+            List<IdentityProvider> result = new ArrayList<>();
+            for (StoredIdentityProvider provider : providers) {
+                if (provider.provider.isActive()) {
+                    result.add(provider.toIdentityProvider());
+                }
+            }
+            return result;
+        }
+
+        private List<IdentityProvider> all() {
+            List<IdentityProvider> result = new ArrayList<>(providers.size());
+            for (StoredIdentityProvider provider : providers) {
+                result.add(provider.toIdentityProvider());
+            }
+            return result;
+        }
+    }
+
+    private static final class StoredIdentityProvider {
+        // parsed once and never handed out, lookups return copies
+        private final IdentityProvider provider;
+        private final String externalKey;
+
+        private StoredIdentityProvider(ResultSet rs) throws SQLException {
             int pos = 1;
-            identityProvider.setId(rs.getString(pos++).trim());
-            identityProvider.setVersion(rs.getInt(pos++));
-            identityProvider.setCreated(rs.getTimestamp(pos++));
-            identityProvider.setLastModified(rs.getTimestamp(pos++));
-            identityProvider.setName(rs.getString(pos++));
-            identityProvider.setOriginKey(rs.getString(pos++));
-            identityProvider.setType(rs.getString(pos++));
+            provider = new IdentityProvider();
+            provider.setId(rs.getString(pos++).trim());
+            provider.setVersion(rs.getInt(pos++));
+            provider.setCreated(rs.getTimestamp(pos++));
+            provider.setLastModified(rs.getTimestamp(pos++));
+            provider.setName(rs.getString(pos++));
+            provider.setOriginKey(rs.getString(pos++));
+            provider.setType(rs.getString(pos++));
             String config = rs.getString(pos++);
-            identityProvider.setIdentityZoneId(rs.getString(pos++));
-            identityProvider.setActive(rs.getBoolean(pos++));
-            identityProvider.setAliasId(rs.getString(pos++));
-            identityProvider.setAliasZid(rs.getString(pos++));
-            String externalKey = rs.getString(pos);
+            provider.setIdentityZoneId(rs.getString(pos++));
+            provider.setActive(rs.getBoolean(pos++));
+            provider.setAliasId(rs.getString(pos++));
+            provider.setAliasZid(rs.getString(pos++));
+            externalKey = rs.getString(pos);
             if (StringUtils.hasText(config)) {
-                AbstractIdentityProviderDefinition definition;
-                switch (identityProvider.getType()) {
-                    case OriginKeys.SAML:
-                        definition = JsonUtils.readValue(config, SamlIdentityProviderDefinition.class);
-                        if (isNotEmpty(externalKey)) {
-                            Optional.ofNullable(definition).map(SamlIdentityProviderDefinition.class::cast).ifPresent(e -> e.setIdpEntityId(externalKey));
-                        }
-                        break;
-                    case OriginKeys.OAUTH20:
-                        definition = JsonUtils.readValue(config, RawExternalOAuthIdentityProviderDefinition.class);
-                        if (isNotEmpty(externalKey)) {
-                            Optional.ofNullable(definition).map(RawExternalOAuthIdentityProviderDefinition.class::cast).ifPresent(e -> e.setIssuer(externalKey));
-                        }
-                        break;
-                    case OriginKeys.OIDC10:
-                        definition = JsonUtils.readValue(config, OIDCIdentityProviderDefinition.class);
-                        if (isNotEmpty(externalKey)) {
-                            Optional.ofNullable(definition).map(OIDCIdentityProviderDefinition.class::cast).ifPresent(e -> e.setIssuer(externalKey));
-                        }
-                        break;
-                    case OriginKeys.UAA:
-                        definition = JsonUtils.readValue(config, UaaIdentityProviderDefinition.class);
-                        break;
-                    case OriginKeys.LDAP:
-                        definition = JsonUtils.readValue(config, LdapIdentityProviderDefinition.class);
-                        break;
-                    case OriginKeys.KEYSTONE:
-                        definition = JsonUtils.readValue(config, KeystoneIdentityProviderDefinition.class);
-                        break;
-                    default:
-                        definition = JsonUtils.readValue(config, AbstractIdentityProviderDefinition.class);
-                        break;
-                }
+                AbstractIdentityProviderDefinition definition = parseDefinition(provider.getType(), config, externalKey);
                 if (definition != null) {
-                    identityProvider.setConfig(definition);
+                    provider.setConfig(definition);
                 }
             }
+        }
+
+        private static StoredIdentityProvider read(ResultSet rs) throws SQLException {
+            return new StoredIdentityProvider(rs);
+        }
+
+        private static AbstractIdentityProviderDefinition parseDefinition(String type, String config, String externalKey) {
+            AbstractIdentityProviderDefinition definition;
+            switch (type) {
+                case OriginKeys.SAML:
+                    definition = JsonUtils.readValue(config, SamlIdentityProviderDefinition.class);
+                    if (isNotEmpty(externalKey)) {
+                        Optional.ofNullable(definition).map(SamlIdentityProviderDefinition.class::cast).ifPresent(e -> e.setIdpEntityId(externalKey));
+                    }
+                    break;
+                case OriginKeys.OAUTH20:
+                    definition = JsonUtils.readValue(config, RawExternalOAuthIdentityProviderDefinition.class);
+                    if (isNotEmpty(externalKey)) {
+                        Optional.ofNullable(definition).map(RawExternalOAuthIdentityProviderDefinition.class::cast).ifPresent(e -> e.setIssuer(externalKey));
+                    }
+                    break;
+                case OriginKeys.OIDC10:
+                    definition = JsonUtils.readValue(config, OIDCIdentityProviderDefinition.class);
+                    if (isNotEmpty(externalKey)) {
+                        Optional.ofNullable(definition).map(OIDCIdentityProviderDefinition.class::cast).ifPresent(e -> e.setIssuer(externalKey));
+                    }
+                    break;
+                case OriginKeys.UAA:
+                    definition = JsonUtils.readValue(config, UaaIdentityProviderDefinition.class);
+                    break;
+                case OriginKeys.LDAP:
+                    definition = JsonUtils.readValue(config, LdapIdentityProviderDefinition.class);
+                    break;
+                case OriginKeys.KEYSTONE:
+                    definition = JsonUtils.readValue(config, KeystoneIdentityProviderDefinition.class);
+                    break;
+                default:
+                    definition = JsonUtils.readValue(config, AbstractIdentityProviderDefinition.class);
+                    break;
+            }
+            return definition;
+        }
+
+        private IdentityProvider toIdentityProvider() {
+            IdentityProvider identityProvider = new IdentityProvider();
+            identityProvider.setId(provider.getId());
+            identityProvider.setVersion(provider.getVersion());
+            identityProvider.setCreated(provider.getCreated() == null ? null : new Timestamp(provider.getCreated().getTime()));
+            identityProvider.setLastModified(provider.getLastModified() == null ? null : new Timestamp(provider.getLastModified().getTime()));
+            identityProvider.setName(provider.getName());
+            identityProvider.setOriginKey(provider.getOriginKey());
+            identityProvider.setType(provider.getType());
+            identityProvider.setIdentityZoneId(provider.getIdentityZoneId());
+            identityProvider.setActive(provider.isActive());
+            identityProvider.setAliasId(provider.getAliasId());
+            identityProvider.setAliasZid(provider.getAliasZid());
+            if (provider.getConfig() != null) {
+                identityProvider.setConfig(provider.getConfig().copy());
+            }
             return identityProvider;
         }
     }
+
+    private static final class IdentityProviderRowMapper implements RowMapper<IdentityProvider> {
+        @Override
+        public IdentityProvider mapRow(ResultSet rs, int rowNum) throws SQLException {
+            return StoredIdentityProvider.read(rs).provider;
+        }
+    }
 }
@@ -0,0 +1,313 @@
+package org.cloudfoundry.identity.uaa.provider.ldap;
+
+import org.cloudfoundry.identity.uaa.util.TimeService;
+import org.cloudfoundry.identity.uaa.util.TimeServiceImpl;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.ldap.UncategorizedLdapException;
+import org.springframework.ldap.core.support.BaseLdapPathContextSource;
+import org.springframework.ldap.core.support.DelegatingBaseLdapPathContextSourceProxy;
+
+import javax.naming.CommunicationException;
+import javax.naming.NamingException;
+import javax.naming.ServiceUnavailableException;
+import javax.naming.directory.DirContext;
+import javax.naming.ldap.LdapContext;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Pools the read-only contexts of an LDAP provider, which are bound with the configured manager
+ * credentials and used to search for users and groups, so that a login doesn't open and bind a new
+ * connection for every search. Contexts bound with user credentials are never pooled, but the
+ * latency of those binds is recorded.
+ *
+ * At most {@code maxSize} pooled contexts are open at a time; a caller waits up to
+ * {@code maxWaitMillis} for one to be returned. Idle contexts are closed once they have been idle
+ * for {@code maxIdleMillis}, and are validated with a base object read before reuse once they have
+ * been idle for {@code validationIntervalMillis}. Contexts that fail with a communication error or
+ * whose environment was changed are closed instead of being returned to the pool.
+ * A {@code maxSize} of 0 disables pooling.
+ */
+public class PooledLdapContextSource extends DelegatingBaseLdapPathContextSourceProxy implements DisposableBean {
+
+    public static final String MAX_SIZE = "ldap.pool.maxSize";
+    public static final String MAX_IDLE_MILLIS = "ldap.pool.maxIdleMillis";
+    public static final String VALIDATION_INTERVAL_MILLIS = "ldap.pool.validationIntervalMillis";
+    public static final String MAX_WAIT_MILLIS = "ldap.pool.maxWaitMillis";
+
+    public static final int DEFAULT_MAX_SIZE = 8;
+    public static final long DEFAULT_MAX_IDLE_MILLIS = 300_000L;
+    public static final long DEFAULT_VALIDATION_INTERVAL_MILLIS = 0L;
+    public static final long DEFAULT_MAX_WAIT_MILLIS = 5_000L;
+
+    private static final Logger logger = LoggerFactory.getLogger(PooledLdapContextSource.class);
+    private static final Set<String> ENVIRONMENT_CHANGES = Set.of("addToEnvironment", "removeFromEnvironment", "setRequestControls", "reconnect");
+    private static final String[] NO_ATTRIBUTES = {"1.1"};
+
+    private final int maxSize;
+    private final Semaphore permits;
+    private final Deque<PooledContext> idle = new ConcurrentLinkedDeque<>();
+    private long maxIdleMillis = DEFAULT_MAX_IDLE_MILLIS;
+    private long validationIntervalMillis = DEFAULT_VALIDATION_INTERVAL_MILLIS;
+    private long maxWaitMillis = DEFAULT_MAX_WAIT_MILLIS;
+    private TimeService timeService = new TimeServiceImpl();
+    private volatile boolean closed;
+
+    private final LongAdder created = new LongAdder();
+    private final LongAdder destroyed = new LongAdder();
+    private final LongAdder validationFailures = new LongAdder();
+    private final LongAdder exhausted = new LongAdder();
+    private final LongAdder binds = new LongAdder();
+    private final LongAdder bindFailures = new LongAdder();
+    private final LongAdder bindNanos = new LongAdder();
+    private final AtomicLong maxBindNanos = new AtomicLong();
+
+    public PooledLdapContextSource(BaseLdapPathContextSource delegate, int maxSize) {
+        super(delegate);
+        this.maxSize = maxSize;
+        this.permits = new Semaphore(Math.max(maxSize, 0), true);
+    }
+
+    public void setMaxIdleMillis(long maxIdleMillis) {
+        this.maxIdleMillis = maxIdleMillis;
+    }
+
+    public void setValidationIntervalMillis(long validationIntervalMillis) {
+        this.validationIntervalMillis = validationIntervalMillis;
+    }
+
+    public void setMaxWaitMillis(long maxWaitMillis) {
+        this.maxWaitMillis = maxWaitMillis;
+    }
+
+    public void setTimeService(TimeService timeService) {
+        this.timeService = timeService;
+    }
+
+    @Override
+    public DirContext getReadOnlyContext() {
+        if (maxSize <= 0 || closed) {
+            return super.getReadOnlyContext();
+        }
+        acquire();
+        try {
+            PooledContext pooled = pollIdle();
+            if (pooled == null) {
+                pooled = new PooledContext(super.getReadOnlyContext());
+                created.increment();
+            }
+            return pooled.lease();
+        } catch (RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    @Override
+    public DirContext getContext(String principal, String credentials) {
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            DirContext context = super.getContext(principal, credentials);
+            failed = false;
+            return context;
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            binds.increment();
+            bindNanos.add(elapsed);
+            maxBindNanos.accumulateAndGet(elapsed, Math::max);
+            if (failed) {
+                bindFailures.increment();
+            }
+        }
+    }
+
+    @Override
+    public void destroy() {
+        closed = true;
+        PooledContext pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            close(pooled);
+        }
+    }
+
+    public int getIdleCount() {
+        return idle.size();
+    }
+
+    public int getActiveCount() {
+        return maxSize <= 0 ? 0 : maxSize - permits.availablePermits();
+    }
+
+    public long getBindCount() {
+        return binds.sum();
+    }
+
+    public double getAverageBindMillis() {
+        long count = binds.sum();
+        return count == 0 ? 0 : (double) TimeUnit.NANOSECONDS.toMicros(bindNanos.sum()) / count / 1000;
+    }
+
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> statistics = new LinkedHashMap<>();
+        statistics.put("maxSize", maxSize);
+        statistics.put("active", getActiveCount());
+        statistics.put("idle", getIdleCount());
+        statistics.put("created", created.sum());
+        statistics.put("destroyed", destroyed.sum());
+        statistics.put("validationFailures", validationFailures.sum());
+        statistics.put("exhausted", exhausted.sum());
+        statistics.put("binds", binds.sum());
+        statistics.put("bindFailures", bindFailures.sum());
+        statistics.put("averageBindMillis", getAverageBindMillis());
+        statistics.put("maxBindMillis", TimeUnit.NANOSECONDS.toMillis(maxBindNanos.get()));
+        return statistics;
+    }
+
+    private void acquire() {
+        try {
+            if (!permits.tryAcquire(maxWaitMillis, TimeUnit.MILLISECONDS)) {
+                exhausted.increment();
+                throw new UncategorizedLdapException("No pooled LDAP connection available within " + maxWaitMillis + "ms");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new UncategorizedLdapException("Interrupted while waiting for a pooled LDAP connection", e);
+        }
+    }
+
+    private PooledContext pollIdle() {
+        long now = timeService.getCurrentTimeMillis();
+        PooledContext pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            long idleMillis = now - pooled.lastUsed;
+            if (idleMillis >= maxIdleMillis) {
+                close(pooled);
+            } else if (idleMillis >= validationIntervalMillis && !pooled.isValid()) {
+                validationFailures.increment();
+                close(pooled);
+            } else {
+                return pooled;
+            }
+        }
+        return null;
+    }
+
+    private void release(PooledContext pooled, boolean broken) {
+        try {
+            if (broken || closed) {
+                close(pooled);
+                return;
+            }
+            long now = timeService.getCurrentTimeMillis();
+            pooled.lastUsed = now;
+            idle.offerFirst(pooled);
+            // the least recently used contexts are at the tail
+            PooledContext oldest;
+            while ((oldest = idle.peekLast()) != null && now - oldest.lastUsed >= maxIdleMillis && idle.removeLastOccurrence(oldest)) {
+                close(oldest);
+            }
+            if (closed && idle.remove(pooled)) {
+                close(pooled);
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    private void close(PooledContext pooled) {
+        destroyed.increment();
+        try {
+            pooled.target.close();
+        } catch (NamingException | RuntimeException e) {
+            logger.debug("Unable to close pooled LDAP context", e);
+        }
+    }
+
+    private final class PooledContext {
+        private final DirContext target;
+        private final Class<?>[] interfaces;
+        private volatile long lastUsed;
+
+        private PooledContext(DirContext target) {
+            this.target = target;
+            this.interfaces = new Class<?>[] {target instanceof LdapContext ? LdapContext.class : DirContext.class};
+            this.lastUsed = timeService.getCurrentTimeMillis();
+        }
+
+        private boolean isValid() {
+            try {
+                target.getAttributes("", NO_ATTRIBUTES);
+                return true;
+            } catch (NamingException | RuntimeException e) {
+                logger.debug("Pooled LDAP context failed validation", e);
+                return false;
+            }
+        }
+
+        private DirContext lease() {
+            return (DirContext) Proxy.newProxyInstance(PooledLdapContextSource.class.getClassLoader(), interfaces, new Lease(this));
+        }
+    }
+
+    /**
+     * The context handed out for one borrow; closing it returns the underlying context to the pool.
+     */
+    private final class Lease implements InvocationHandler {
+        private final PooledContext pooled;
+        private boolean released;
+        private boolean broken;
+
+        private Lease(PooledContext pooled) {
+            this.pooled = pooled;
+        }
+
+        @Override
+        public synchronized Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!released) {
+                        released = true;
+                        release(pooled, broken);
+                    }
+                    return null;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Pooled " + pooled.target;
+                default:
+                    break;
+            }
+            if (released) {
+                throw new IllegalStateException("LDAP context has already been returned to the pool");
+            }
+            if (ENVIRONMENT_CHANGES.contains(method.getName())) {
+                broken = true;
+            }
+            try {
+                return method.invoke(pooled.target, args);
+            } catch (InvocationTargetException e) {
+                Throwable cause = e.getTargetException();
+                if (cause instanceof CommunicationException || cause instanceof ServiceUnavailableException || !(cause instanceof NamingException)) {
+                    broken = true;
+                }
+                throw cause;
+            }
+        }
+    }
+}
@@ -27,9 +27,6 @@ import org.cloudfoundry.identity.uaa.constants.ClientAuthentication;
 import org.cloudfoundry.identity.uaa.oauth.KeyInfo;
 import org.cloudfoundry.identity.uaa.oauth.KeyInfoService;
 import org.cloudfoundry.identity.uaa.oauth.TokenEndpointBuilder;
-import org.cloudfoundry.identity.uaa.oauth.jwk.JsonWebKey;
-import org.cloudfoundry.identity.uaa.oauth.jwk.JsonWebKeyHelper;
-import org.cloudfoundry.identity.uaa.oauth.jwk.JsonWebKeySet;
 import org.cloudfoundry.identity.uaa.oauth.jwt.ChainedSignatureVerifier;
 import org.cloudfoundry.identity.uaa.oauth.jwt.SignatureVerifier;
 import org.cloudfoundry.identity.uaa.oauth.jwt.Jwt;
@@ -652,8 +649,7 @@ public class ExternalOAuthAuthenticationManager extends ExternalLoginAuthenticat
             List<SignatureVerifier> signatureVerifiers = getTokenKeyForUaaOrigin();
             jwtToken = buildIdTokenValidator(idToken, new ChainedSignatureVerifier(signatureVerifiers), keyInfoService);
         } else {
-            JsonWebKeySet<JsonWebKey> tokenKeyFromOAuth = getTokenKeyFromOAuth(config);
-            jwtToken = buildIdTokenValidator(idToken, new ChainedSignatureVerifier(tokenKeyFromOAuth), keyInfoService)
+            jwtToken = buildExternalIdTokenValidator(idToken, config)
                 .checkIssuer((isEmpty(config.getIssuer()) ? config.getTokenUrl().toString() : config.getIssuer()))
                 .checkAudience(config.getRelyingPartyId());
         }
@@ -668,19 +664,49 @@ public class ExternalOAuthAuthenticationManager extends ExternalLoginAuthenticat
 
     }
 
-    private JsonWebKeySet<JsonWebKey> getTokenKeyFromOAuth(AbstractExternalOAuthIdentityProviderDefinition config) {
-
-        String tokenKey = config.getTokenKey();
-        if (StringUtils.hasText(tokenKey)) {
-            return JsonWebKeyHelper.parseConfiguration(tokenKey);
+    private JwtTokenSignedByThisUAA buildExternalIdTokenValidator(String idToken, AbstractExternalOAuthIdentityProviderDefinition config) {
+        ChainedSignatureVerifier verifier = getTokenKeyFromOAuth(config);
+        try {
+            return buildIdTokenValidator(idToken, verifier, keyInfoService);
+        } catch (InvalidTokenException e) {
+            ChainedSignatureVerifier refreshed = refreshTokenKeyFromOAuth(idToken, verifier, config);
+            if (refreshed == null) {
+                throw e;
+            }
+            return buildIdTokenValidator(idToken, refreshed, keyInfoService);
         }
+    }
+
+    private ChainedSignatureVerifier getTokenKeyFromOAuth(AbstractExternalOAuthIdentityProviderDefinition config) {
         try {
-            return oidcMetadataFetcher.fetchWebKeySet(config);
+            return oidcMetadataFetcher.fetchWebKeySetVerifier(getOrigin(), config);
         } catch (OidcMetadataFetchingException e) {
             throw new InvalidTokenException(e.getMessage(), e);
         }
     }
 
+    /**
+     * The provider may have rotated its keys since they were cached, so if the token is signed
+     * with a key id we don't know, fetch the keys again (rate limited by the fetcher).
+     */
+    private ChainedSignatureVerifier refreshTokenKeyFromOAuth(String idToken, ChainedSignatureVerifier verifier, AbstractExternalOAuthIdentityProviderDefinition config) {
+        String kid;
+        try {
+            kid = JwtHelper.decode(idToken).getHeader().getKid();
+        } catch (RuntimeException e) {
+            return null;
+        }
+        if (kid == null || verifier.getDelegates().stream().anyMatch(delegate -> kid.equals(delegate.keyId()))) {
+            return null;
+        }
+        try {
+            return oidcMetadataFetcher.refreshWebKeySetVerifier(getOrigin(), config);
+        } catch (OidcMetadataFetchingException | RuntimeException e) {
+            logger.debug("Unable to refresh token keys for unknown key id {}", kid, e);
+            return null;
+        }
+    }
+
     private String getTokenFromCode(ExternalOAuthCodeToken codeToken, AbstractExternalOAuthIdentityProviderDefinition config) {
         if (StringUtils.hasText(codeToken.getIdToken()) && "id_token".equals(getResponseType(config))) {
             logger.debug("ExternalOAuthCodeToken contains id_token, not exchanging code.");
@@ -1,16 +1,22 @@
 package org.cloudfoundry.identity.uaa.provider.oauth;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import org.apache.commons.codec.binary.Base64;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.cloudfoundry.identity.uaa.cache.UrlContentCache;
 import org.cloudfoundry.identity.uaa.client.ClientJwtConfiguration;
 import org.cloudfoundry.identity.uaa.oauth.jwk.JsonWebKey;
 import org.cloudfoundry.identity.uaa.oauth.jwk.JsonWebKeyHelper;
 import org.cloudfoundry.identity.uaa.oauth.jwk.JsonWebKeySet;
+import org.cloudfoundry.identity.uaa.oauth.jwt.ChainedSignatureVerifier;
 import org.cloudfoundry.identity.uaa.provider.AbstractExternalOAuthIdentityProviderDefinition;
 import org.cloudfoundry.identity.uaa.provider.OIDCIdentityProviderDefinition;
 import org.cloudfoundry.identity.uaa.util.JsonUtils;
+import org.cloudfoundry.identity.uaa.util.TimeService;
+import org.cloudfoundry.identity.uaa.util.TimeServiceImpl;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
@@ -23,14 +29,28 @@ import java.io.IOException;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 import static java.util.Optional.ofNullable;
 
 public class OidcMetadataFetcher {
+    public static final long DEFAULT_KEY_REFRESH_INTERVAL_MILLIS = 30_000L;
+
     private final UrlContentCache contentCache;
     private final RestTemplate trustingRestTemplate;
     private final RestTemplate nonTrustingRestTemplate;
 
+    // verifiers keyed by origin and hash of the key set, so they are only built when the keys change
+    private final Cache<String, ChainedSignatureVerifier> verifiers = CacheBuilder.newBuilder()
+            .maximumSize(1000)
+            .expireAfterAccess(1, TimeUnit.HOURS)
+            .build();
+    private final Map<String, Long> keyRefreshes = new ConcurrentHashMap<>();
+    private long keyRefreshIntervalMillis = DEFAULT_KEY_REFRESH_INTERVAL_MILLIS;
+    private TimeService timeService = new TimeServiceImpl();
+
     public OidcMetadataFetcher(UrlContentCache contentCache,
                                RestTemplate trustingRestTemplate,
                                RestTemplate nonTrustingRestTemplate
@@ -51,14 +71,96 @@ public class OidcMetadataFetcher {
 
     public JsonWebKeySet<JsonWebKey> fetchWebKeySet(AbstractExternalOAuthIdentityProviderDefinition<?> config)
         throws OidcMetadataFetchingException {
-        URL tokenKeyUrl = config.getTokenKeyUrl();
-        if (tokenKeyUrl == null || !org.springframework.util.StringUtils.hasText(tokenKeyUrl.toString())) {
+        if (!hasTokenKeyUrl(config)) {
             return new JsonWebKeySet<>(Collections.emptyList());
         }
-        byte[] rawContents = getJsonBody(tokenKeyUrl.toString(), config.isSkipSslValidation(), config.isCacheJwks(), getClientAuthHeader(config));
+        return deserializeWebKeySet(fetchWebKeySetContent(config));
+    }
+
+    /**
+     * Returns a verifier for the configured token key of the provider, or for the key set served by its
+     * token key URL. Verifiers are reused for as long as the key set content stays the same.
+     */
+    public ChainedSignatureVerifier fetchWebKeySetVerifier(String origin, AbstractExternalOAuthIdentityProviderDefinition<?> config)
+        throws OidcMetadataFetchingException {
+        String tokenKey = config.getTokenKey();
+        if (org.springframework.util.StringUtils.hasText(tokenKey)) {
+            String key = verifierKey(origin, tokenKey.getBytes(StandardCharsets.UTF_8));
+            ChainedSignatureVerifier verifier = verifiers.getIfPresent(key);
+            if (verifier == null) {
+                verifier = new ChainedSignatureVerifier(JsonWebKeyHelper.parseConfiguration(tokenKey));
+                verifiers.put(key, verifier);
+            }
+            return verifier;
+        }
+        if (!hasTokenKeyUrl(config)) {
+            return new ChainedSignatureVerifier(new JsonWebKeySet<>(Collections.emptyList()));
+        }
+        return getWebKeySetVerifier(origin, fetchWebKeySetContent(config));
+    }
+
+    /**
+     * Fetches the key set of the provider again, bypassing the URL content cache, e.g. because a token
+     * names a key id the cached key set does not contain. This is done at most once per
+     * {@code keyRefreshIntervalMillis} for each token key URL.
+     * @return the verifier for the fetched key set, or null if the keys are not fetched from a cached
+     * token key URL or were refreshed recently
+     */
+    public ChainedSignatureVerifier refreshWebKeySetVerifier(String origin, AbstractExternalOAuthIdentityProviderDefinition<?> config)
+        throws OidcMetadataFetchingException {
+        if (org.springframework.util.StringUtils.hasText(config.getTokenKey()) || !hasTokenKeyUrl(config) || !config.isCacheJwks()) {
+            return null;
+        }
+        String tokenKeyUrl = config.getTokenKeyUrl().toString();
+        long now = timeService.getCurrentTimeMillis();
+        Long previous = keyRefreshes.get(tokenKeyUrl);
+        if (previous != null && now - previous < keyRefreshIntervalMillis) {
+            return null;
+        }
+        boolean claimed = previous == null ? keyRefreshes.putIfAbsent(tokenKeyUrl, now) == null : keyRefreshes.replace(tokenKeyUrl, previous, now);
+        if (!claimed) {
+            return null;
+        }
+        contentCache.invalidate(tokenKeyUrl);
+        return getWebKeySetVerifier(origin, fetchWebKeySetContent(config));
+    }
+
+    public void setKeyRefreshIntervalMillis(long keyRefreshIntervalMillis) {
+        this.keyRefreshIntervalMillis = keyRefreshIntervalMillis;
+    }
+
+    public void setTimeService(TimeService timeService) {
+        this.timeService = timeService;
+    }
+
+    private ChainedSignatureVerifier getWebKeySetVerifier(String origin, byte[] rawContents) throws OidcMetadataFetchingException {
+        String key = verifierKey(origin, rawContents);
+        ChainedSignatureVerifier verifier = verifiers.getIfPresent(key);
+        if (verifier == null) {
+            verifier = new ChainedSignatureVerifier(deserializeWebKeySet(rawContents));
+            verifiers.put(key, verifier);
+        }
+        return verifier;
+    }
+
+    private static String verifierKey(String origin, byte[] content) {
+        return origin + ":" + DigestUtils.sha256Hex(content);
+    }
+
+    private static boolean hasTokenKeyUrl(AbstractExternalOAuthIdentityProviderDefinition<?> config) {
+        URL tokenKeyUrl = config.getTokenKeyUrl();
+        return tokenKeyUrl != null && org.springframework.util.StringUtils.hasText(tokenKeyUrl.toString());
+    }
+
+    private byte[] fetchWebKeySetContent(AbstractExternalOAuthIdentityProviderDefinition<?> config) throws OidcMetadataFetchingException {
+        byte[] rawContents = getJsonBody(config.getTokenKeyUrl().toString(), config.isSkipSslValidation(), config.isCacheJwks(), getClientAuthHeader(config));
         if (rawContents == null || rawContents.length == 0) {
             throw new OidcMetadataFetchingException("Unable to fetch verification keys");
         }
+        return rawContents;
+    }
+
+    private static JsonWebKeySet<JsonWebKey> deserializeWebKeySet(byte[] rawContents) throws OidcMetadataFetchingException {
         try {
             return JsonWebKeyHelper.deserialize(new String(rawContents, StandardCharsets.UTF_8));
         } catch (JsonUtils.JsonUtilException e) {
@@ -15,9 +15,17 @@
 
 package org.cloudfoundry.identity.uaa.provider.saml;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.cloudfoundry.identity.uaa.audit.event.AbstractUaaEvent;
+import org.cloudfoundry.identity.uaa.audit.event.EntityDeletedEvent;
+import org.cloudfoundry.identity.uaa.provider.IdentityProvider;
 import org.cloudfoundry.identity.uaa.provider.SamlIdentityProviderDefinition;
+import org.cloudfoundry.identity.uaa.util.TimeService;
+import org.cloudfoundry.identity.uaa.util.TimeServiceImpl;
 import org.cloudfoundry.identity.uaa.zone.IdentityZone;
 import org.cloudfoundry.identity.uaa.zone.IdentityZoneHolder;
+import org.cloudfoundry.identity.uaa.zone.event.IdentityZoneModifiedEvent;
 import org.joda.time.DateTime;
 import org.opensaml.common.xml.SAMLConstants;
 import org.opensaml.saml2.common.Extensions;
@@ -55,6 +63,11 @@ import org.springframework.beans.BeansException;
 import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationListener;
+import org.springframework.jmx.export.annotation.ManagedMetric;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.jmx.support.MetricType;
 import org.springframework.security.saml.key.KeyManager;
 import org.springframework.security.saml.metadata.ExtendedMetadata;
 import org.springframework.security.saml.metadata.ExtendedMetadataDelegate;
@@ -72,14 +85,25 @@ import javax.xml.namespace.QName;
 import java.security.cert.X509Certificate;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Date;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 
-public class NonSnarlMetadataManager extends MetadataManager implements ExtendedMetadataProvider, InitializingBean, DisposableBean {
+@ManagedResource(
+        objectName = "cloudfoundry.identity:name=SamlMetadataCache",
+        description = "UAA SAML Metadata Cache Metrics"
+)
+public class NonSnarlMetadataManager extends MetadataManager implements ExtendedMetadataProvider, InitializingBean, DisposableBean, ApplicationListener<AbstractUaaEvent> {
 
     // Class logger
     protected final Logger log = LoggerFactory.getLogger(NonSnarlMetadataManager.class);
@@ -92,6 +116,20 @@ public class NonSnarlMetadataManager extends MetadataManager implements Extended
     private final SamlIdentityProviderConfigurator configurator;
     private ZoneAwareMetadataGenerator generator;
 
+    public static final int DEFAULT_DELEGATE_CACHE_MAX_ENTRIES = 1_000;
+    public static final long DEFAULT_DELEGATE_REFRESH_INTERVAL_MILLIS = 600_000L;
+
+    // initialized identity provider metadata by zone id and alias
+    private Cache<String, CachedDelegate> delegateCache = CacheBuilder.newBuilder().maximumSize(DEFAULT_DELEGATE_CACHE_MAX_ENTRIES).build();
+    private long delegateRefreshIntervalMillis = DEFAULT_DELEGATE_REFRESH_INTERVAL_MILLIS;
+    private final AtomicLong generation = new AtomicLong();
+    private TimeService timeService = new TimeServiceImpl();
+    private Executor refreshExecutor;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder refreshes = new LongAdder();
+
     public NonSnarlMetadataManager(SamlIdentityProviderConfigurator configurator) throws MetadataProviderException {
         super(Collections.EMPTY_LIST);
         this.configurator = configurator;
@@ -100,8 +138,11 @@ public class NonSnarlMetadataManager extends MetadataManager implements Extended
     }
 
     @Override
-    public void destroy() {
-
+    public synchronized void destroy() {
+        if (refreshExecutor instanceof ExecutorService executorService) {
+            executorService.shutdownNow();
+            refreshExecutor = null;
+        }
     }
 
     @Override
@@ -143,14 +184,10 @@ public class NonSnarlMetadataManager extends MetadataManager implements Extended
         } catch (MetadataProviderException e) {
             throw new IllegalStateException(e);
         }
-        for (SamlIdentityProviderDefinition definition : configurator.getIdentityProviderDefinitions()) {
-            log.info("Adding SAML IDP zone[" + zone.getId() + "] alias[" + definition.getIdpEntityAlias() + "]");
+        for (IdentityProvider<SamlIdentityProviderDefinition> provider : configurator.getIdentityProvidersForZone(zone)) {
+            SamlIdentityProviderDefinition definition = provider.getConfig();
             try {
-                ExtendedMetadataDelegate delegate = configurator.getExtendedMetadataDelegate(definition);
-                initializeProvider(delegate);
-                initializeProviderData(delegate);
-                initializeProviderFilters(delegate);
-                result.add(delegate);
+                result.add(getIdentityProviderDelegate(zone, provider));
             } catch (RestClientException | MetadataProviderException e) {
                 log.error("Invalid SAML IDP zone[" + zone.getId() + "] alias[" + definition.getIdpEntityAlias() + "]", e);
             }
@@ -158,6 +195,156 @@ public class NonSnarlMetadataManager extends MetadataManager implements Extended
         return result;
     }
 
+    /**
+     * Returns the initialized metadata of an identity provider, built once per provider version.
+     * Entries older than the refresh interval keep being served while they are rebuilt in the
+     * background, which picks up changes of URL based metadata and of the zone's keys.
+     */
+    protected ExtendedMetadataDelegate getIdentityProviderDelegate(IdentityZone zone, IdentityProvider<SamlIdentityProviderDefinition> provider) throws MetadataProviderException {
+        SamlIdentityProviderDefinition definition = provider.getConfig();
+        if (delegateCache == null) {
+            return buildDelegate(zone, definition);
+        }
+        String key = zone.getId() + ":" + definition.getIdpEntityAlias();
+        String version = versionOf(provider);
+        CachedDelegate cached = delegateCache.getIfPresent(key);
+        if (cached != null && cached.version.equals(version)) {
+            hits.increment();
+            if (timeService.getCurrentTimeMillis() - cached.loadedAt >= delegateRefreshIntervalMillis
+                    && cached.refreshing.compareAndSet(false, true)) {
+                refreshExecutor().execute(() -> refresh(key, cached, zone, definition));
+            }
+            return cached.delegate;
+        }
+        misses.increment();
+        long generation = this.generation.get();
+        ExtendedMetadataDelegate delegate = buildDelegate(zone, definition);
+        delegateCache.put(key, new CachedDelegate(delegate, version, timeService.getCurrentTimeMillis()));
+        if (this.generation.get() != generation) {
+            delegateCache.invalidate(key);
+        }
+        return delegate;
+    }
+
+    private ExtendedMetadataDelegate buildDelegate(IdentityZone zone, SamlIdentityProviderDefinition definition) throws MetadataProviderException {
+        log.info("Adding SAML IDP zone[" + zone.getId() + "] alias[" + definition.getIdpEntityAlias() + "]");
+        ExtendedMetadataDelegate delegate = configurator.getExtendedMetadataDelegate(definition);
+        initializeProvider(delegate);
+        initializeProviderData(delegate);
+        initializeProviderFilters(delegate);
+        return delegate;
+    }
+
+    private void refresh(String key, CachedDelegate cached, IdentityZone zone, SamlIdentityProviderDefinition definition) {
+        ExtendedMetadataDelegate delegate = cached.delegate;
+        IdentityZoneHolder.set(zone);
+        try {
+            delegate = buildDelegate(zone, definition);
+            refreshes.increment();
+        } catch (RestClientException | MetadataProviderException e) {
+            // keep serving the previous metadata and retry after the next interval
+            log.warn("Unable to refresh SAML IDP zone[" + zone.getId() + "] alias[" + definition.getIdpEntityAlias() + "]", e);
+        } finally {
+            IdentityZoneHolder.clear();
+        }
+        delegateCache.asMap().replace(key, cached, new CachedDelegate(delegate, cached.version, timeService.getCurrentTimeMillis()));
+    }
+
+    private synchronized Executor refreshExecutor() {
+        if (refreshExecutor == null) {
+            refreshExecutor = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "uaa-saml-metadata-refresh");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return refreshExecutor;
+    }
+
+    private static String versionOf(IdentityProvider<?> provider) {
+        Date lastModified = provider.getLastModified();
+        return provider.getId() + ":" + provider.getVersion() + ":" + (lastModified == null ? 0 : lastModified.getTime());
+    }
+
+    @Override
+    public void onApplicationEvent(AbstractUaaEvent event) {
+        if (delegateCache == null) {
+            return;
+        }
+        if (event instanceof IdentityZoneModifiedEvent) {
+            evictZone(((IdentityZone) event.getSource()).getId());
+        } else if (event instanceof EntityDeletedEvent<?> deleted) {
+            if (deleted.getDeleted() instanceof IdentityZone zone) {
+                evictZone(zone.getId());
+            } else if (deleted.getDeleted() instanceof IdentityProvider<?> provider) {
+                generation.incrementAndGet();
+                delegateCache.invalidate(provider.getIdentityZoneId() + ":" + provider.getOriginKey());
+            }
+        }
+    }
+
+    @ManagedOperation(description = "Evict all cached SAML identity provider metadata")
+    public void clearCache() {
+        if (delegateCache != null) {
+            generation.incrementAndGet();
+            delegateCache.invalidateAll();
+        }
+    }
+
+    private void evictZone(String zoneId) {
+        generation.incrementAndGet();
+        delegateCache.asMap().keySet().removeIf(key -> key.startsWith(zoneId + ":"));
+    }
+
+    public void setDelegateCacheMaxEntries(int maxEntries) {
+        this.delegateCache = maxEntries > 0 ? CacheBuilder.newBuilder().maximumSize(maxEntries).build() : null;
+    }
+
+    public void setDelegateRefreshIntervalMillis(long delegateRefreshIntervalMillis) {
+        this.delegateRefreshIntervalMillis = delegateRefreshIntervalMillis;
+    }
+
+    public synchronized void setRefreshExecutor(Executor refreshExecutor) {
+        this.refreshExecutor = refreshExecutor;
+    }
+
+    public void setTimeService(TimeService timeService) {
+        this.timeService = timeService;
+    }
+
+    @ManagedMetric(metricType = MetricType.COUNTER, displayName = "SAML Metadata Cache Hit Count")
+    public long getCacheHitCount() {
+        return hits.sum();
+    }
+
+    @ManagedMetric(metricType = MetricType.COUNTER, displayName = "SAML Metadata Cache Miss Count")
+    public long getCacheMissCount() {
+        return misses.sum();
+    }
+
+    @ManagedMetric(metricType = MetricType.COUNTER, displayName = "SAML Metadata Refresh Count")
+    public long getCacheRefreshCount() {
+        return refreshes.sum();
+    }
+
+    @ManagedMetric(metricType = MetricType.GAUGE, displayName = "SAML Metadata Cache Size")
+    public long getCacheSize() {
+        return delegateCache == null ? 0 : delegateCache.size();
+    }
+
+    private static final class CachedDelegate {
+        private final ExtendedMetadataDelegate delegate;
+        private final String version;
+        private final long loadedAt;
+        private final AtomicBoolean refreshing = new AtomicBoolean();
+
+        private CachedDelegate(ExtendedMetadataDelegate delegate, String version, long loadedAt) {
+            this.delegate = delegate;
+            this.version = version;
+            this.loadedAt = loadedAt;
+        }
+    }
+
     @Override
     protected void initializeProvider(ExtendedMetadataDelegate provider) throws MetadataProviderException {
         // Initialize provider and perform signature verification
@@ -45,9 +45,22 @@ public class SamlIdentityProviderConfigurator {
 
     public List<SamlIdentityProviderDefinition> getIdentityProviderDefinitionsForZone(IdentityZone zone) {
         List<SamlIdentityProviderDefinition> result = new LinkedList<>();
+        for (IdentityProvider<SamlIdentityProviderDefinition> provider : getIdentityProvidersForZone(zone)) {
+            result.add(provider.getConfig());
+        }
+        return result;
+    }
+
+    /**
+     * @return the active SAML identity providers of the zone, whose version can be used to tell
+     * whether metadata built from an earlier copy of the definition is still current
+     */
+    @SuppressWarnings("unchecked")
+    public List<IdentityProvider<SamlIdentityProviderDefinition>> getIdentityProvidersForZone(IdentityZone zone) {
+        List<IdentityProvider<SamlIdentityProviderDefinition>> result = new LinkedList<>();
         for (IdentityProvider provider : providerProvisioning.retrieveActive(zone.getId())) {
             if (OriginKeys.SAML.equals(provider.getType())) {
-                result.add((SamlIdentityProviderDefinition) provider.getConfig());
+                result.add((IdentityProvider<SamlIdentityProviderDefinition>) provider);
             }
         }
         return result;
@@ -0,0 +1,43 @@
+package org.cloudfoundry.identity.uaa.resources;
+
+import java.util.List;
+
+/**
+ * One page of a keyset (seek) paginated query.
+ */
+public class KeysetPage<T> {
+
+    public static final int UNKNOWN_TOTAL = -1;
+
+    private final List<T> resources;
+    private final String nextCursor;
+    private final int totalResults;
+
+    public KeysetPage(List<T> resources, String nextCursor, int totalResults) {
+        this.resources = resources;
+        this.nextCursor = nextCursor;
+        this.totalResults = totalResults;
+    }
+
+    public List<T> getResources() {
+        return resources;
+    }
+
+    /**
+     * @return the opaque cursor to fetch the next page with, or null if this is the last page
+     */
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    /**
+     * @return the number of resources matching the filter, or {@link #UNKNOWN_TOTAL} if it was not counted
+     */
+    public int getTotalResults() {
+        return totalResults;
+    }
+
+    public boolean hasTotalResults() {
+        return totalResults != UNKNOWN_TOTAL;
+    }
+}
@@ -20,4 +20,17 @@ public interface Queryable<T> {
 
     List<T> query(String filter, String sortBy, boolean ascending, String zoneId);
 
+    /**
+     * Keyset (seek) pagination: returns at most {@code count} resources positioned after {@code cursor}.
+     * Unlike {@link #query(String, String, boolean, String)} the cost of a page does not depend on its depth.
+     *
+     * @param cursor the cursor returned with the previous page, or null for the first page
+     * @param countTotal whether the total number of matching resources should be counted
+     * @throws IllegalArgumentException if the filter, sort field or cursor is invalid
+     * @throws UnsupportedOperationException if the implementation does not support cursor pagination
+     */
+    default KeysetPage<T> queryPage(String filter, String sortBy, boolean ascending, String cursor, int count, boolean countTotal, String zoneId) {
+        throw new UnsupportedOperationException("Cursor pagination is not supported");
+    }
+
 }
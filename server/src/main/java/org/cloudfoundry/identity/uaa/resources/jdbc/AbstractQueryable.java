@@ -1,5 +1,6 @@
 package org.cloudfoundry.identity.uaa.resources.jdbc;
 
+import org.cloudfoundry.identity.uaa.resources.KeysetPage;
 import org.cloudfoundry.identity.uaa.resources.Queryable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -8,7 +9,10 @@ import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.util.StringUtils;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -85,6 +89,82 @@ public abstract class AbstractQueryable<T> implements Queryable<T> {
         }
     }
 
+    @Override
+    public KeysetPage<T> queryPage(String filter, String sortBy, boolean ascending, String cursor, int count, boolean countTotal, String zoneId) {
+        String column = StringUtils.hasText(sortBy) ? queryConverter.map(sortBy).trim().toLowerCase() : "id";
+        if (!StringUtils.commaDelimitedListToSet(getKeysetColumns()).contains(column)) {
+            throw new IllegalArgumentException("Cursor pagination is not supported for sort field: " + sortBy);
+        }
+        if (count < 1) {
+            throw new IllegalArgumentException("Invalid count: " + count);
+        }
+        KeysetCursor after = StringUtils.hasText(cursor) ? KeysetCursor.decode(cursor) : null;
+        if (after != null && (!column.equals(after.getColumn()) || ascending != after.isAscending())) {
+            throw new IllegalArgumentException("Cursor does not match sort order");
+        }
+
+        SearchQueryConverter.ProcessedFilter where = queryConverter.convert(filter, null, ascending, zoneId);
+        Map<String, Object> params = new HashMap<>(where.getParams());
+        String valueParam = where.getParamPrefix() + "cursor_value";
+        String idParam = where.getParamPrefix() + "cursor_id";
+        String comparison = ascending ? " > " : " < ";
+        String direction = ascending ? " ASC" : " DESC";
+
+        StringBuilder sql = new StringBuilder(getQuerySQL(where));
+        if (after != null) {
+            params.put(idParam, after.getId());
+            if ("id".equals(column)) {
+                sql.append(" and id").append(comparison).append(':').append(idParam);
+            } else {
+                params.put(valueParam, after.getValue());
+                sql.append(" and (").append(column).append(comparison).append(':').append(valueParam)
+                        .append(" or (").append(column).append(" = :").append(valueParam)
+                        .append(" and id").append(comparison).append(':').append(idParam).append("))");
+            }
+        }
+        sql.append(ORDER_BY).append(column).append(direction);
+        if (!"id".equals(column)) {
+            sql.append(", id").append(direction);
+        }
+
+        try {
+            String completeSql = pagingListFactory.getLimitSql(sql.toString(), 0, count + 1);
+            logger.debug("keyset sql: " + completeSql + ", params: " + params);
+            List<KeysetCursor> positions = new ArrayList<>();
+            List<T> rows = namedParameterJdbcTemplate.query(completeSql, params, (rs, rowNum) -> {
+                String id = rs.getString("id");
+                positions.add(new KeysetCursor(column, ascending, "id".equals(column) ? id : rs.getObject(column), id));
+                return rowMapper.mapRow(rs, rowNum);
+            });
+
+            String nextCursor = null;
+            if (rows.size() > count) {
+                rows = rows.subList(0, count);
+                nextCursor = positions.get(count - 1).encode();
+            }
+            int total = countTotal ? countResults(where) : KeysetPage.UNKNOWN_TOTAL;
+            return new KeysetPage<>(rows, nextCursor, total);
+        } catch (DataAccessException e) {
+            logger.debug("Filter '" + filter + "' generated invalid SQL", e);
+            throw new IllegalArgumentException("Invalid filter: " + filter);
+        }
+    }
+
+    private int countResults(SearchQueryConverter.ProcessedFilter where) {
+        String baseSql = getBaseSqlQuery();
+        String countSql = "select count(*)" + baseSql.substring(baseSql.toLowerCase().indexOf(" from ")) + " where (" + where.getSql() + ")";
+        Integer total = namedParameterJdbcTemplate.queryForObject(countSql, where.getParams(), Integer.class);
+        return total == null ? 0 : total;
+    }
+
+    /**
+     * Comma separated list of the lower case columns that support keyset pagination.
+     * Each of them must be non-null; the id column is used to break ties.
+     */
+    protected String getKeysetColumns() {
+        return "";
+    }
+
     private String getQuerySQL(SearchQueryConverter.ProcessedFilter where) {
         if (where.hasOrderBy()) {
             return getBaseSqlQuery() + " where (" + where.getSql().replace(ORDER_BY, ")" + ORDER_BY);
@@ -37,4 +37,8 @@ public class JdbcPagingListFactory {
     public <T> List<T> createJdbcPagingList(String sql, Map<String, ?> args, RowMapper<T> mapper, int pageSize) {
         return new JdbcPagingList<T>(jdbcTemplate, limitSqlAdapter, sql, args, mapper, pageSize);
     }
+
+    public String getLimitSql(String sql, int index, int size) {
+        return limitSqlAdapter.getLimitSql(sql, index, size);
+    }
 }
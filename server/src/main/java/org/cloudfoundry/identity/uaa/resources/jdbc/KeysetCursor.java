@@ -0,0 +1,82 @@
+package org.cloudfoundry.identity.uaa.resources.jdbc;
+
+import org.cloudfoundry.identity.uaa.util.JsonUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Position of the last row returned by a keyset (seek) query: the value of the sort column
+ * and the id of that row. Clients only ever see the opaque, URL safe {@link #encode() encoded} form.
+ */
+public class KeysetCursor {
+
+    private static final String TIMESTAMP = "t";
+    private static final String STRING = "s";
+
+    private final String column;
+    private final boolean ascending;
+    private final Object value;
+    private final String id;
+
+    public KeysetCursor(String column, boolean ascending, Object value, String id) {
+        this.column = column;
+        this.ascending = ascending;
+        this.value = value instanceof LocalDateTime localDateTime ? Timestamp.valueOf(localDateTime) : value;
+        this.id = id;
+        if (this.value != null && !(this.value instanceof Timestamp) && !(this.value instanceof String)) {
+            throw new IllegalArgumentException("Unsupported cursor value type: " + this.value.getClass().getName());
+        }
+    }
+
+    public String getColumn() {
+        return column;
+    }
+
+    public boolean isAscending() {
+        return ascending;
+    }
+
+    public Object getValue() {
+        return value;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String encode() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("c", column);
+        map.put("a", ascending);
+        map.put("i", id);
+        if (value instanceof Timestamp timestamp) {
+            map.put("t", TIMESTAMP);
+            map.put("v", timestamp.getTime());
+            map.put("n", timestamp.getNanos());
+        } else if (value != null) {
+            map.put("t", STRING);
+            map.put("v", value);
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(JsonUtils.writeValueAsBytes(map));
+    }
+
+    public static KeysetCursor decode(String cursor) {
+        try {
+            Map<String, Object> map = JsonUtils.readValueAsMap(new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8));
+            Object value = map.get("v");
+            if (TIMESTAMP.equals(map.get("t"))) {
+                Timestamp timestamp = new Timestamp(((Number) value).longValue());
+                timestamp.setNanos(((Number) map.get("n")).intValue());
+                value = timestamp;
+            }
+            return new KeysetCursor((String) map.get("c"), (Boolean) map.get("a"), value, (String) map.get("i"));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
+        }
+    }
+}
@@ -19,4 +19,12 @@ public interface LimitSqlAdapter {
     }
 
     String getDeleteExpiredQuery(String tablename, String primaryKeyColumn, String expiresColumn, int maxRows);
+
+    /**
+     * @return {@code deleteSql} returning the given columns of the deleted rows, or null if the
+     * database can't return deleted rows
+     */
+    default String getDeleteReturningQuery(String deleteSql, String columns) {
+        return null;
+    }
 }
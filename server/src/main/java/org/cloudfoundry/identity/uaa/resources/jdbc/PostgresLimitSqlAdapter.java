@@ -33,4 +33,9 @@ public class PostgresLimitSqlAdapter implements LimitSqlAdapter {
             expiresColumn +
             " LIMIT "+maxRows+" FOR UPDATE SKIP LOCKED))";
     }
+
+    @Override
+    public String getDeleteReturningQuery(String deleteSql, String columns) {
+        return deleteSql + " RETURNING " + columns;
+    }
 }
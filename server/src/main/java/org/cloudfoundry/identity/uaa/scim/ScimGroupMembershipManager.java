@@ -4,6 +4,7 @@ import org.cloudfoundry.identity.uaa.scim.exception.MemberAlreadyExistsException
 import org.cloudfoundry.identity.uaa.scim.exception.MemberNotFoundException;
 import org.cloudfoundry.identity.uaa.scim.exception.ScimResourceNotFoundException;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Set;
 
@@ -22,6 +23,26 @@ public interface ScimGroupMembershipManager {
             final String zoneId)
             throws ScimResourceNotFoundException, MemberAlreadyExistsException;
 
+    /**
+     * Add a member to each of the given groups, skipping the groups it already
+     * belongs to and default groups
+     *
+     * @param groupIds ids of valid groups that already exist.
+     */
+    default void addMemberToGroups(
+            final Collection<String> groupIds,
+            final ScimGroupMember member,
+            final String zoneId)
+            throws ScimResourceNotFoundException {
+        for (String groupId : groupIds) {
+            try {
+                addMember(groupId, member, zoneId);
+            } catch (MemberAlreadyExistsException ignore) {
+                // already a member
+            }
+        }
+    }
+
     /**
      * Retrieve all members of a group
      */
@@ -66,6 +87,23 @@ public interface ScimGroupMembershipManager {
             final String memberId,
             final String zoneId) throws ScimResourceNotFoundException, MemberNotFoundException;
 
+    /**
+     * Revoke membership of a member in each of the given groups, skipping the
+     * groups it doesn't belong to
+     */
+    default void removeMemberFromGroups(
+            final Collection<String> groupIds,
+            final String memberId,
+            final String zoneId) throws ScimResourceNotFoundException {
+        for (String groupId : groupIds) {
+            try {
+                removeMemberById(groupId, memberId, zoneId);
+            } catch (MemberNotFoundException ignore) {
+                // not a member
+            }
+        }
+    }
+
     /**
      * Empty the group, i.e revoke the membership of ALL members of a given
      * group
@@ -14,9 +14,29 @@ package org.cloudfoundry.identity.uaa.scim;
 
 import org.cloudfoundry.identity.uaa.resources.Queryable;
 import org.cloudfoundry.identity.uaa.resources.ResourceManager;
+import org.springframework.dao.IncorrectResultSizeDataAccessException;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 
 public interface ScimGroupProvisioning extends ResourceManager<ScimGroup>, Queryable<ScimGroup> {
     ScimGroup createOrGet(ScimGroup group, String zoneId);
 
     ScimGroup getByName(String displayName, String zoneId);
+
+    /**
+     * Retrieve the groups with the given display names, names without a group are left out
+     */
+    default List<ScimGroup> getByNames(Collection<String> displayNames, String zoneId) {
+        List<ScimGroup> groups = new ArrayList<>();
+        for (String displayName : displayNames) {
+            try {
+                groups.add(getByName(displayName, zoneId));
+            } catch (IncorrectResultSizeDataAccessException ignore) {
+                // no such group
+            }
+        }
+        return groups;
+    }
 }
@@ -21,8 +21,8 @@ import org.cloudfoundry.identity.uaa.scim.ScimGroupMembershipManager;
 import org.cloudfoundry.identity.uaa.scim.ScimGroupProvisioning;
 import org.cloudfoundry.identity.uaa.scim.ScimUser;
 import org.cloudfoundry.identity.uaa.scim.ScimUserProvisioning;
-import org.cloudfoundry.identity.uaa.scim.exception.MemberAlreadyExistsException;
 import org.cloudfoundry.identity.uaa.scim.exception.ScimResourceNotFoundException;
+import org.cloudfoundry.identity.uaa.util.BootstrapExecutor;
 import org.cloudfoundry.identity.uaa.util.MapCollector;
 import org.cloudfoundry.identity.uaa.zone.IdentityZone;
 import org.cloudfoundry.identity.uaa.zone.IdentityZoneHolder;
@@ -30,17 +30,23 @@ import org.springframework.beans.factory.InitializingBean;
 import org.springframework.core.env.PropertySource;
 import org.springframework.core.io.support.ResourcePropertySource;
 import org.springframework.dao.IncorrectResultSizeDataAccessException;
+import org.springframework.util.StopWatch;
 import org.springframework.util.StringUtils;
 
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
 
+import static java.util.Optional.ofNullable;
+
 public class ScimGroupBootstrap implements InitializingBean {
 
     private Map<String, String> groups;
@@ -181,11 +187,13 @@ public class ScimGroupBootstrap implements InitializingBean {
 
     @Override
     public void afterPropertiesSet() {
-        List<ScimGroup> groupInfos = groups.keySet().stream().filter(n -> StringUtils.hasText(n)).map(n -> getOrCreateGroup(n)).collect(Collectors.toList());
+        StopWatch stopWatch = new StopWatch("group bootstrap");
+        stopWatch.start("groups");
+        List<ScimGroup> groupInfos = getOrCreateGroups(groups.keySet().stream().filter(n -> StringUtils.hasText(n)).collect(Collectors.toList()));
         for (int i = 0; i < groupInfos.size(); i++) {
             ScimGroup g = groupInfos.get(i);
             String description = groups.get(g.getDisplayName());
-            if (StringUtils.hasText(description)) {
+            if (StringUtils.hasText(description) && !description.equals(g.getDescription())) {
                 g.setDescription(description);
                 try{
                     groupInfos.set(i, scimGroupProvisioning.update(g.getId(), g, IdentityZoneHolder.get().getId()));
@@ -199,42 +207,54 @@ public class ScimGroupBootstrap implements InitializingBean {
                 }
             }
         }
+        stopWatch.stop();
 
-        for (ScimGroup g : groupInfos) {
-            addMembers(g);
-        }
+        stopWatch.start("members");
+        addMembers(groupInfos);
+        stopWatch.stop();
+        logger.info("Bootstrapped {} groups: {}", groupInfos.size(), BootstrapExecutor.timings(stopWatch));
     }
 
-    private void addMembers(ScimGroup group) {
-        String name = group.getDisplayName();
-        List<ScimGroupMember> members = getMembers(groupMembers.get(name));
-        members.addAll(getMembers(groupAdmins.get(name)));
-        logger.debug("adding members: " + members + " into group: " + name);
-
-        for (ScimGroupMember member : members) {
-            try {
-                membershipManager.addMember(group.getId(), member, IdentityZoneHolder.get().getId());
-            } catch (MemberAlreadyExistsException ex) {
-                logger.debug(member.getMemberId() + " already is member of group " + name);
+    /**
+     * Adds the configured members to their groups with one batch per member.
+     */
+    private void addMembers(List<ScimGroup> groups) {
+        Map<String, ScimGroupMember> members = new LinkedHashMap<>();
+        Map<String, List<String>> groupIdsByMember = new LinkedHashMap<>();
+        Map<String, ScimGroupMember> resolved = new HashMap<>();
+        for (ScimGroup group : groups) {
+            String name = group.getDisplayName();
+            Set<String> memberNames = new LinkedHashSet<>();
+            ofNullable(groupMembers.get(name)).ifPresent(memberNames::addAll);
+            ofNullable(groupAdmins.get(name)).ifPresent(memberNames::addAll);
+            logger.debug("adding members: " + memberNames + " into group: " + name);
+            for (ScimGroupMember member : getMembers(memberNames, resolved)) {
+                members.putIfAbsent(member.getMemberId(), member);
+                groupIdsByMember.computeIfAbsent(member.getMemberId(), id -> new ArrayList<>()).add(group.getId());
             }
         }
+        for (Map.Entry<String, List<String>> entry : groupIdsByMember.entrySet()) {
+            membershipManager.addMemberToGroups(entry.getValue(), members.get(entry.getKey()), IdentityZoneHolder.get().getId());
+        }
     }
 
-    private List<ScimGroupMember> getMembers(Set<String> names) {
+    private List<ScimGroupMember> getMembers(Set<String> names, Map<String, ScimGroupMember> resolved) {
         if (names == null || names.isEmpty()) {
             return Collections.<ScimGroupMember> emptyList();
         }
 
         List<ScimGroupMember> members = new ArrayList<>();
         for (String name : names) {
-            ScimCore member = getScimResourceId(name);
-            if (member != null) {
-                members.add(
-                    new ScimGroupMember(
-                        member.getId(),
-                        (member instanceof ScimGroup) ? ScimGroupMember.Type.GROUP : ScimGroupMember.Type.USER
-                    )
+            // members of several groups are only looked up once
+            ScimGroupMember member = resolved.computeIfAbsent(name, n -> {
+                ScimCore resource = getScimResourceId(n);
+                return resource == null ? null : new ScimGroupMember(
+                    resource.getId(),
+                    (resource instanceof ScimGroup) ? ScimGroupMember.Type.GROUP : ScimGroupMember.Type.USER
                 );
+            });
+            if (member != null) {
+                members.add(member);
             }
         }
         return members;
@@ -270,9 +290,21 @@ public class ScimGroupBootstrap implements InitializingBean {
         }
     }
 
-    private ScimGroup getOrCreateGroup(String name) {
-        logger.debug("adding group: " + name);
+    private List<ScimGroup> getOrCreateGroups(List<String> names) {
         String uaaZoneId = IdentityZone.getUaaZoneId();
-        return scimGroupProvisioning.createOrGet(new ScimGroup(null, name, uaaZoneId), uaaZoneId);
+        Map<String, ScimGroup> existing = new HashMap<>();
+        for (ScimGroup group : scimGroupProvisioning.getByNames(names, uaaZoneId)) {
+            existing.putIfAbsent(group.getDisplayName().toLowerCase(Locale.ROOT), group);
+        }
+        List<ScimGroup> result = new ArrayList<>(names.size());
+        for (String name : names) {
+            ScimGroup group = existing.get(name.toLowerCase(Locale.ROOT));
+            if (group == null) {
+                logger.debug("adding group: " + name);
+                group = scimGroupProvisioning.createOrGet(new ScimGroup(null, name, uaaZoneId), uaaZoneId);
+            }
+            result.add(group);
+        }
+        return result;
     }
 }
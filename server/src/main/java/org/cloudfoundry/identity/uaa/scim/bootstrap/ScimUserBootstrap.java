@@ -1,5 +1,9 @@
 package org.cloudfoundry.identity.uaa.scim.bootstrap;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
 import org.cloudfoundry.identity.uaa.audit.event.EntityDeletedEvent;
 import org.cloudfoundry.identity.uaa.authentication.SystemAuthentication;
 import org.cloudfoundry.identity.uaa.authentication.manager.AuthEvent;
@@ -9,11 +13,10 @@ import org.cloudfoundry.identity.uaa.authentication.manager.NewUserAuthenticated
 import org.cloudfoundry.identity.uaa.constants.OriginKeys;
 import org.cloudfoundry.identity.uaa.scim.*;
 import org.cloudfoundry.identity.uaa.scim.exception.InvalidPasswordException;
-import org.cloudfoundry.identity.uaa.scim.exception.MemberAlreadyExistsException;
-import org.cloudfoundry.identity.uaa.scim.exception.MemberNotFoundException;
 import org.cloudfoundry.identity.uaa.scim.exception.ScimResourceNotFoundException;
 import org.cloudfoundry.identity.uaa.scim.services.ScimUserService;
 import org.cloudfoundry.identity.uaa.user.UaaUser;
+import org.cloudfoundry.identity.uaa.util.BootstrapExecutor;
 import org.cloudfoundry.identity.uaa.zone.IdentityZoneHolder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -26,10 +29,13 @@ import org.springframework.context.ApplicationEventPublisherAware;
 import org.springframework.context.ApplicationListener;
 import org.springframework.context.event.ContextRefreshedEvent;
 import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.util.StopWatch;
 import org.springframework.util.StringUtils;
 
 import javax.validation.constraints.NotNull;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
@@ -50,6 +56,9 @@ public class ScimUserBootstrap implements
 
     private static final Logger logger = LoggerFactory.getLogger(ScimUserBootstrap.class);
 
+    private static final int MAX_SYNCED_USERS = 100_000;
+    private static final int USERS_PER_QUERY = 100;
+
     private final ScimUserProvisioning scimUserProvisioning;
     private final ScimUserService scimUserService;
     private final ScimGroupProvisioning scimGroupProvisioning;
@@ -59,6 +68,9 @@ public class ScimUserBootstrap implements
     private final List<String> usersToDelete;
     private final boolean aliasEntitiesEnabled;
     private ApplicationEventPublisher publisher;
+    private volatile Cache<String, String> syncedGroups;
+    private PasswordEncoder passwordEncoder;
+    private int parallelism = BootstrapExecutor.DEFAULT_PARALLELISM;
 
     /**
      *
@@ -85,15 +97,131 @@ public class ScimUserBootstrap implements
         this.aliasEntitiesEnabled = aliasEntitiesEnabled;
     }
 
+    /**
+     * Sets the encoder for the passwords of new users, which are then hashed on up to
+     * {@code parallelism} threads instead of one at a time by the user provisioning.
+     */
+    public void setPasswordEncoder(PasswordEncoder passwordEncoder) {
+        this.passwordEncoder = passwordEncoder;
+    }
+
+    public void setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Compares the configured users with the existing ones, looked up with a query per chunk of
+     * usernames. New users are created after all their passwords have been hashed in parallel, the
+     * password changes of existing users are also applied in parallel.
+     */
     @Override
     public void afterPropertiesSet() {
         List<UaaUser> users = new LinkedList<>(ofNullable(this.users).orElse(emptyList()));
         List<String> deleteMe = ofNullable(usersToDelete).orElse(emptyList());
         users.removeIf(u -> deleteMe.contains(u.getUsername()));
+        String zoneId = IdentityZoneHolder.get().getId();
+        StopWatch stopWatch = new StopWatch("user bootstrap");
+
+        stopWatch.start("lookup");
+        // a user configured twice ends up with its last entry when overriding and with its first one otherwise
+        Map<String, UaaUser> configuredUsers = new LinkedHashMap<>();
         for (UaaUser u : users) {
             u.setVerified(true);
-            addUser(u);
+            if (override) {
+                configuredUsers.put(userKey(u.getUsername(), u.getOrigin()), u);
+            } else {
+                configuredUsers.putIfAbsent(userKey(u.getUsername(), u.getOrigin()), u);
+            }
+        }
+        Map<String, ScimUser> existingUsers = getScimUsers(configuredUsers.values(), zoneId);
+        stopWatch.stop();
+
+        stopWatch.start("update");
+        List<UaaUser> newUsers = new ArrayList<>();
+        List<Map.Entry<String, String>> passwordChanges = new ArrayList<>();
+        for (Map.Entry<String, UaaUser> entry : configuredUsers.entrySet()) {
+            UaaUser user = entry.getValue();
+            ScimUser scimUser = existingUsers.get(entry.getKey());
+            if (scimUser == null) {
+                if (isEmpty(user.getPassword()) && user.getOrigin().equals(OriginKeys.UAA)) {
+                    logger.debug("User's password cannot be empty");
+                    throw new InvalidPasswordException("Password cannot be empty", BAD_REQUEST);
+                }
+                newUsers.add(user);
+            } else if (override) {
+                updateUserDetails(scimUser, user, true);
+                if (isPasswordChange(user)) {
+                    passwordChanges.add(Map.entry(scimUser.getId(), user.getPassword()));
+                }
+            } else {
+                logger.debug("Override flag not set. Not registering existing user: " + user);
+            }
         }
+        stopWatch.stop();
+
+        stopWatch.start("encode");
+        List<String> encodedPasswords = passwordEncoder == null ? null :
+                BootstrapExecutor.map(newUsers, parallelism, user -> passwordEncoder.encode(user.getPassword()));
+        BootstrapExecutor.forEach(passwordChanges, parallelism,
+                change -> scimUserProvisioning.changePassword(change.getKey(), null, change.getValue(), zoneId));
+        stopWatch.stop();
+
+        stopWatch.start("create");
+        for (int i = 0; i < newUsers.size(); i++) {
+            createNewUser(newUsers.get(i), encodedPasswords == null ? null : encodedPasswords.get(i));
+        }
+        stopWatch.stop();
+        logger.info("Bootstrapped {} users, {} created: {}", configuredUsers.size(), newUsers.size(), BootstrapExecutor.timings(stopWatch));
+    }
+
+    private Map<String, ScimUser> getScimUsers(Collection<UaaUser> users, String zoneId) {
+        Map<String, ScimUser> result = new HashMap<>();
+        Map<String, List<String>> usernamesByOrigin = new LinkedHashMap<>();
+        for (UaaUser user : users) {
+            String origin = user.getOrigin() == null ? OriginKeys.UAA : user.getOrigin();
+            if (isFilterSafe(user.getUsername()) && isFilterSafe(origin)) {
+                usernamesByOrigin.computeIfAbsent(origin, o -> new ArrayList<>()).add(user.getUsername());
+            }
+        }
+        for (Map.Entry<String, List<String>> entry : usernamesByOrigin.entrySet()) {
+            List<String> usernames = entry.getValue();
+            for (int i = 0; i < usernames.size(); i += USERS_PER_QUERY) {
+                String filter = usernames.subList(i, Math.min(usernames.size(), i + USERS_PER_QUERY)).stream()
+                        .map(username -> "userName eq \"" + username + "\"")
+                        .collect(Collectors.joining(" or ", "origin eq \"" + entry.getKey() + "\" and (", ")"));
+                for (ScimUser scimUser : scimUserProvisioning.query(filter, zoneId)) {
+                    result.putIfAbsent(userKey(scimUser.getUserName(), scimUser.getOrigin()), scimUser);
+                }
+            }
+        }
+        // usernames that can't be part of a filter and users with an id are looked up one at a time
+        for (UaaUser user : users) {
+            String key = userKey(user.getUsername(), user.getOrigin());
+            if (!result.containsKey(key) && (!isFilterSafe(user.getUsername()) || !isFilterSafe(user.getOrigin()) || hasId(user))) {
+                ScimUser scimUser = getScimUser(user);
+                if (scimUser != null) {
+                    result.put(key, scimUser);
+                }
+            }
+        }
+        return result;
+    }
+
+    private static String userKey(String username, String origin) {
+        return (origin == null ? OriginKeys.UAA : origin).toLowerCase(Locale.ROOT) + "|" + String.valueOf(username).toLowerCase(Locale.ROOT);
+    }
+
+    private static boolean isFilterSafe(String value) {
+        return value == null || (value.indexOf('"') < 0 && value.indexOf('\\') < 0);
+    }
+
+    private static boolean hasId(UaaUser user) {
+        return StringUtils.hasText(user.getId()) && !"NaN".equals(user.getId());
+    }
+
+    private static boolean isPasswordChange(UaaUser updatedUser) {
+        //password is not relevant for non UAA users
+        return OriginKeys.UAA.equals(updatedUser.getOrigin()) && hasText(updatedUser.getPassword());
     }
 
     private void deleteUsers(@NotNull List<String> deleteList) {
@@ -157,15 +285,19 @@ public class ScimUserBootstrap implements
     }
 
     private void updateUser(ScimUser existingUser, UaaUser updatedUser, boolean updateGroups) {
+        updateUserDetails(existingUser, updatedUser, updateGroups);
+        if (isPasswordChange(updatedUser)) {
+            scimUserProvisioning.changePassword(existingUser.getId(), null, updatedUser.getPassword(), IdentityZoneHolder.get().getId());
+        }
+    }
+
+    private void updateUserDetails(ScimUser existingUser, UaaUser updatedUser, boolean updateGroups) {
         String id = existingUser.getId();
         logger.debug("Updating user account: " + updatedUser + " with SCIM Id: " + id);
         if (updateGroups) {
             logger.debug("Removing existing group memberships ...");
             Set<ScimGroup> existingGroups = membershipManager.getGroupsWithMember(id, true, IdentityZoneHolder.get().getId());
-
-            for (ScimGroup g : existingGroups) {
-                removeFromGroup(id, g.getDisplayName());
-            }
+            membershipManager.removeMemberFromGroups(existingGroups.stream().map(ScimGroup::getId).toList(), id, IdentityZoneHolder.get().getId());
         }
 
         final ScimUser newScimUser = convertToScimUser(updatedUser);
@@ -187,9 +319,6 @@ public class ScimUserBootstrap implements
             scimUserProvisioning.update(id, newScimUser, IdentityZoneHolder.get().getId());
         }
 
-        if (OriginKeys.UAA.equals(newScimUser.getOrigin()) && hasText(updatedUser.getPassword())) { //password is not relevant for non UAA users
-            scimUserProvisioning.changePassword(id, null, updatedUser.getPassword(), IdentityZoneHolder.get().getId());
-        }
         if (updateGroups) {
             Collection<String> newGroups = convertToGroups(updatedUser.getAuthorities());
             logger.debug("Adding new groups " + newGroups);
@@ -198,15 +327,32 @@ public class ScimUserBootstrap implements
     }
 
     private void createNewUser(UaaUser user) {
+        createNewUser(user, null);
+    }
+
+    private void createNewUser(UaaUser user, String encodedPassword) {
         logger.debug("Registering new user account: " + user);
-        ScimUser newScimUser = scimUserProvisioning.createUser(convertToScimUser(user), user.getPassword(), IdentityZoneHolder.get().getId());
+        String zoneId = IdentityZoneHolder.get().getId();
+        ScimUser scimUser = convertToScimUser(user);
+        ScimUser newScimUser;
+        if (encodedPassword == null) {
+            newScimUser = scimUserProvisioning.createUser(scimUser, user.getPassword(), zoneId);
+        } else {
+            scimUser.setPassword(encodedPassword);
+            newScimUser = scimUserProvisioning.create(scimUser, zoneId);
+        }
         addGroups(newScimUser.getId(), convertToGroups(user.getAuthorities()), newScimUser.getOrigin());
     }
 
     private void addGroups(String scimUserid, Collection<String> groups, String origin) {
-        for (String group : groups) {
-            addToGroup(scimUserid, group, origin, true);
+        List<String> groupNames = groups.stream().filter(StringUtils::hasText).distinct().toList();
+        if (groupNames.isEmpty()) {
+            return;
         }
+        String zoneId = IdentityZoneHolder.get().getId();
+        ScimGroupMember groupMember = new ScimGroupMember(scimUserid);
+        groupMember.setOrigin(ofNullable(origin).orElse(OriginKeys.UAA));
+        membershipManager.addMemberToGroups(getOrCreateGroupIds(groupNames, true, zoneId), groupMember, zoneId);
     }
 
     @Override
@@ -244,19 +390,7 @@ public class ScimUserBootstrap implements
             //delete previous membership relation ships
             String origin = exEvent.getUser().getOrigin();
             if (!OriginKeys.UAA.equals(origin)) {
-                Set<ScimGroup> groupsWithMember = membershipManager.getGroupsWithExternalMember(exEvent.getUser().getId(), origin, IdentityZoneHolder.get().getId());
-                Map<String, ScimGroup> groupsMap = groupsWithMember.stream().collect(Collectors.toMap(ScimGroup::getDisplayName, Function.identity()));
-                Collection<? extends GrantedAuthority> externalAuthorities = new LinkedHashSet<>(exEvent.getExternalAuthorities());
-                for (GrantedAuthority authority : externalAuthorities) {
-                    if (groupsMap.containsKey(authority.getAuthority())) {
-                        groupsMap.remove(authority.getAuthority());
-                    } else {
-                        addToGroup(exEvent.getUser().getId(), authority.getAuthority(), origin, exEvent.isAddGroups());
-                    }
-                }
-                for (ScimGroup group : groupsMap.values()) {
-                    membershipManager.removeMemberById(group.getId(), exEvent.getUser().getId(), group.getZoneId());
-                }
+                syncExternalGroups(exEvent, origin);
             }
             //update the user itself
             if (event.isUserModified()) {
@@ -274,48 +408,87 @@ public class ScimUserBootstrap implements
         }
     }
 
-    private void addToGroup(String scimUserId, String gName, String origin, boolean addGroup) {
-        if (!StringUtils.hasText(gName)) {
-            return;
+    /**
+     * Replaces the memberships of an external user with the groups asserted by its identity
+     * provider: the asserted names are resolved in bulk, missing groups created if allowed and the
+     * difference applied with batched statements. Nothing is done when the user asserted the same
+     * groups at its last login within {@code externalGroupSyncCacheSeconds}.
+     */
+    private void syncExternalGroups(ExternalGroupAuthorizationEvent exEvent, String origin) {
+        String zoneId = IdentityZoneHolder.get().getId();
+        String userId = exEvent.getUser().getId();
+        Set<String> assertedGroups = new LinkedHashSet<>();
+        for (GrantedAuthority authority : exEvent.getExternalAuthorities()) {
+            if (hasText(authority.getAuthority())) {
+                assertedGroups.add(authority.getAuthority());
+            }
         }
-        logger.debug("Adding to group: " + gName);
-        List<ScimGroup> g = scimGroupProvisioning.query(String.format("displayName eq \"%s\"", gName), IdentityZoneHolder.get().getId());
-        ScimGroup group;
-        if ((g == null || g.isEmpty()) && (!addGroup)) {
-            logger.debug("No group found with name:" + gName + ". Group membership will not be added.");
+        String syncKey = zoneId + ":" + origin + ":" + userId;
+        String fingerprint = fingerprint(assertedGroups, exEvent.isAddGroups());
+        Cache<String, String> syncedGroups = this.syncedGroups;
+        if (syncedGroups != null && fingerprint.equals(syncedGroups.getIfPresent(syncKey))) {
+            logger.debug("External groups of user {} unchanged since the last login", userId);
             return;
-        } else if (g == null || g.isEmpty()) {
-            group = new ScimGroup(null, gName, IdentityZoneHolder.get().getId());
-            group = scimGroupProvisioning.create(group, IdentityZoneHolder.get().getId());
-        } else {
-            group = g.get(0);
         }
-        try {
-            ScimGroupMember groupMember = new ScimGroupMember(scimUserId);
+
+        Set<ScimGroup> groupsWithMember = membershipManager.getGroupsWithExternalMember(userId, origin, zoneId);
+        Map<String, ScimGroup> groupsMap = groupsWithMember.stream().collect(Collectors.toMap(ScimGroup::getDisplayName, Function.identity()));
+        List<String> groupsToJoin = new ArrayList<>();
+        for (String groupName : assertedGroups) {
+            if (groupsMap.remove(groupName) == null) {
+                groupsToJoin.add(groupName);
+            }
+        }
+        if (!groupsToJoin.isEmpty()) {
+            List<String> groupIds = getOrCreateGroupIds(groupsToJoin, exEvent.isAddGroups(), zoneId);
+            ScimGroupMember groupMember = new ScimGroupMember(userId);
             groupMember.setOrigin(ofNullable(origin).orElse(OriginKeys.UAA));
-            membershipManager.addMember(group.getId(), groupMember, IdentityZoneHolder.get().getId());
-        } catch (MemberAlreadyExistsException ex) {
-            // do nothing
+            membershipManager.addMemberToGroups(groupIds, groupMember, zoneId);
+        }
+        if (!groupsMap.isEmpty()) {
+            membershipManager.removeMemberFromGroups(groupsMap.values().stream().map(ScimGroup::getId).toList(), userId, zoneId);
+        }
+        if (syncedGroups != null) {
+            syncedGroups.put(syncKey, fingerprint);
         }
     }
 
-    private void removeFromGroup(String scimUserId, String gName) {
-        if (!StringUtils.hasText(gName)) {
-            return;
-        }
-        logger.debug("Removing membership of group: " + gName);
-        List<ScimGroup> g = scimGroupProvisioning.query(String.format("displayName eq \"%s\"", gName), IdentityZoneHolder.get().getId());
-        ScimGroup group;
-        if (g == null || g.isEmpty()) {
-            return;
-        } else {
-            group = g.get(0);
+    private List<String> getOrCreateGroupIds(List<String> groupNames, boolean addGroups, String zoneId) {
+        Map<String, ScimGroup> groups = new HashMap<>();
+        for (ScimGroup group : scimGroupProvisioning.getByNames(groupNames, zoneId)) {
+            groups.putIfAbsent(group.getDisplayName().toLowerCase(Locale.ROOT), group);
         }
-        try {
-            membershipManager.removeMemberById(group.getId(), scimUserId, IdentityZoneHolder.get().getId());
-        } catch (MemberNotFoundException ex) {
-            // do nothing
+        List<String> groupIds = new ArrayList<>(groupNames.size());
+        for (String groupName : groupNames) {
+            ScimGroup group = groups.get(groupName.toLowerCase(Locale.ROOT));
+            if (group == null && !addGroups) {
+                logger.debug("No group found with name:" + groupName + ". Group membership will not be added.");
+                continue;
+            } else if (group == null) {
+                group = scimGroupProvisioning.createOrGet(new ScimGroup(null, groupName, zoneId), zoneId);
+                groups.put(groupName.toLowerCase(Locale.ROOT), group);
+            }
+            groupIds.add(group.getId());
         }
+        return groupIds;
+    }
+
+    private static String fingerprint(Set<String> groupNames, boolean addGroups) {
+        Hasher hasher = Hashing.sha256().newHasher().putBoolean(addGroups);
+        groupNames.stream().sorted().forEach(groupName -> hasher.putInt(groupName.length()).putUnencodedChars(groupName));
+        return hasher.hash().toString();
+    }
+
+    /**
+     * Sets how long the groups asserted at a federated login are remembered, a login asserting the
+     * same groups within that time skips the group synchronization. Memberships changed through
+     * the API in between are not corrected until it expires. 0 disables it.
+     */
+    public void setExternalGroupSyncCacheSeconds(long externalGroupSyncCacheSeconds) {
+        this.syncedGroups = externalGroupSyncCacheSeconds <= 0 ? null : CacheBuilder.newBuilder()
+                .maximumSize(MAX_SYNCED_USERS)
+                .expireAfterWrite(externalGroupSyncCacheSeconds, TimeUnit.SECONDS)
+                .build();
     }
 
     /**
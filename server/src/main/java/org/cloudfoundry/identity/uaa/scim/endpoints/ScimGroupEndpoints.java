@@ -2,6 +2,7 @@ package org.cloudfoundry.identity.uaa.scim.endpoints;
 
 import com.jayway.jsonpath.JsonPathException;
 import org.cloudfoundry.identity.uaa.resources.AttributeNameMapper;
+import org.cloudfoundry.identity.uaa.resources.KeysetPage;
 import org.cloudfoundry.identity.uaa.resources.SearchResults;
 import org.cloudfoundry.identity.uaa.resources.SearchResultsFactory;
 import org.cloudfoundry.identity.uaa.resources.SimpleAttributeNameMapper;
@@ -141,7 +142,49 @@ public class ScimGroupEndpoints {
             @RequestParam(required = false, defaultValue = "created") String sortBy,
             @RequestParam(required = false, defaultValue = "ascending") String sortOrder,
             @RequestParam(required = false, defaultValue = "1") int startIndex,
-            @RequestParam(required = false, defaultValue = "100") int count) {
+            @RequestParam(required = false, defaultValue = "100") int count,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false, defaultValue = "false") boolean countTotal) {
+
+        if (cursor == null) {
+            return listGroups(attributesCommaSeparated, filter, sortBy, sortOrder, startIndex, count);
+        }
+
+        if (count > groupMaxCount) {
+            count = groupMaxCount;
+        }
+
+        KeysetPage<ScimGroup> page;
+        try {
+            page = dao.queryPage(filter,
+                    sortBy,
+                    "ascending".equalsIgnoreCase(sortOrder),
+                    cursor,
+                    count,
+                    countTotal,
+                    identityZoneManager.getCurrentIdentityZoneId());
+        } catch (IllegalArgumentException e) {
+            throw new ScimException("Invalid filter expression: [" + HtmlUtils.htmlEscape(filter) + "]",
+                    HttpStatus.BAD_REQUEST);
+        } catch (UnsupportedOperationException e) {
+            throw new ScimException("Cursor pagination is not supported", HttpStatus.BAD_REQUEST);
+        }
+
+        List<ScimGroup> result = page.getResources();
+        // without a count the total is a lower bound: what was returned plus one if there is more
+        int total = page.hasTotalResults() ? page.getTotalResults() : result.size() + (page.getNextCursor() != null ? 1 : 0);
+        SearchResults<?> results = buildSearchResults(result, attributesCommaSeparated, 1, count, total);
+        results.setNextCursor(page.getNextCursor());
+        return results;
+    }
+
+    public SearchResults<?> listGroups(
+            String attributesCommaSeparated,
+            String filter,
+            String sortBy,
+            String sortOrder,
+            int startIndex,
+            int count) {
 
         if (count > groupMaxCount) {
             count = groupMaxCount;
@@ -158,11 +201,15 @@ public class ScimGroupEndpoints {
                     HttpStatus.BAD_REQUEST);
         }
 
+        return buildSearchResults(result, attributesCommaSeparated, startIndex, count, result.size());
+    }
+
+    private SearchResults<?> buildSearchResults(List<ScimGroup> result, String attributesCommaSeparated, int startIndex, int count, int total) {
         List<ScimGroup> input;
         if (!StringUtils.hasLength(attributesCommaSeparated)) {
             input = filterForCurrentUser(result, startIndex, count, true);
             return new SearchResults<>(Arrays.asList(ScimCore.SCHEMAS), input, startIndex, count,
-                    result.size());
+                    total);
         }
 
         AttributeNameMapper mapper = new SimpleAttributeNameMapper(Collections.emptyMap());
@@ -171,7 +218,7 @@ public class ScimGroupEndpoints {
         input = filterForCurrentUser(result, startIndex, count, Arrays.asList(attributes).contains("members"));
 
         try {
-            return SearchResultsFactory.buildSearchResultFrom(input, startIndex, count, result.size(), attributes,
+            return SearchResultsFactory.buildSearchResultFrom(input, startIndex, count, total, attributes,
                     mapper, Arrays.asList(ScimCore.SCHEMAS));
         } catch (JsonPathException e) {
             throw new ScimException("Invalid attributes: [" + attributesCommaSeparated + "]", HttpStatus.BAD_REQUEST);
@@ -17,6 +17,7 @@ import org.cloudfoundry.identity.uaa.oauth.provider.expression.OAuth2ExpressionU
 import org.cloudfoundry.identity.uaa.provider.IdentityProvider;
 import org.cloudfoundry.identity.uaa.provider.IdentityProviderProvisioning;
 import org.cloudfoundry.identity.uaa.resources.AttributeNameMapper;
+import org.cloudfoundry.identity.uaa.resources.KeysetPage;
 import org.cloudfoundry.identity.uaa.resources.ResourceMonitor;
 import org.cloudfoundry.identity.uaa.resources.SearchResults;
 import org.cloudfoundry.identity.uaa.resources.SearchResultsFactory;
@@ -497,7 +498,47 @@ public class ScimUserEndpoints implements InitializingBean, ApplicationEventPubl
             @RequestParam(required = false, defaultValue = "created") String sortBy,
             @RequestParam(required = false, defaultValue = "ascending") String sortOrder,
             @RequestParam(required = false, defaultValue = "1") int startIndex,
-            @RequestParam(required = false, defaultValue = "100") int count) {
+            @RequestParam(required = false, defaultValue = "100") int count,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false, defaultValue = "false") boolean countTotal) {
+
+        if (cursor == null) {
+            return findUsers(attributesCommaSeparated, filter, sortBy, sortOrder, startIndex, count);
+        }
+
+        if (count > userMaxCount) {
+            count = userMaxCount;
+        }
+
+        List<ScimUser> input = new ArrayList<>();
+        KeysetPage<ScimUser> page;
+        Set<String> attributes = StringUtils.commaDelimitedListToSet(attributesCommaSeparated);
+        try {
+            page = scimUserProvisioning.queryPage(filter, sortBy, sortOrder.equals("ascending"), cursor, count, countTotal, identityZoneManager.getCurrentIdentityZoneId());
+            for (ScimUser user : page.getResources()) {
+                syncUser(user, attributes);
+                input.add(user);
+            }
+        } catch (IllegalArgumentException e) {
+            throw invalidFilter(filter, sortBy);
+        } catch (UnsupportedOperationException e) {
+            throw new ScimException("Cursor pagination is not supported", HttpStatus.BAD_REQUEST);
+        }
+
+        // without a count the total is a lower bound: what was returned plus one if there is more
+        int total = page.hasTotalResults() ? page.getTotalResults() : input.size() + (page.getNextCursor() != null ? 1 : 0);
+        SearchResults<?> results = buildSearchResults(input, attributesCommaSeparated, attributes, 1, count, total);
+        results.setNextCursor(page.getNextCursor());
+        return results;
+    }
+
+    public SearchResults<?> findUsers(
+            String attributesCommaSeparated,
+            String filter,
+            String sortBy,
+            String sortOrder,
+            int startIndex,
+            int count) {
 
         if (startIndex < 1) {
             startIndex = 1;
@@ -513,25 +554,37 @@ public class ScimUserEndpoints implements InitializingBean, ApplicationEventPubl
         try {
             result = scimUserProvisioning.query(filter, sortBy, sortOrder.equals("ascending"), identityZoneManager.getCurrentIdentityZoneId());
             for (ScimUser user : UaaPagingUtils.subList(result, startIndex, count)) {
-                if (attributes.isEmpty() || attributes.stream().anyMatch("groups"::equalsIgnoreCase)) {
-                    syncGroups(user);
-                }
-                if (attributes.isEmpty() || attributes.stream().anyMatch("approvals"::equalsIgnoreCase)) {
-                    syncApprovals(user);
-                }
+                syncUser(user, attributes);
                 input.add(user);
             }
         } catch (IllegalArgumentException e) {
-            String msg = "Invalid filter expression: [" + filter + "]";
-            if (hasText(sortBy)) {
-                msg += " [" + sortBy + "]";
-            }
-            throw new ScimException(HtmlUtils.htmlEscape(msg), HttpStatus.BAD_REQUEST);
+            throw invalidFilter(filter, sortBy);
         }
 
+        return buildSearchResults(input, attributesCommaSeparated, attributes, startIndex, count, result.size());
+    }
+
+    private void syncUser(ScimUser user, Set<String> attributes) {
+        if (attributes.isEmpty() || attributes.stream().anyMatch("groups"::equalsIgnoreCase)) {
+            syncGroups(user);
+        }
+        if (attributes.isEmpty() || attributes.stream().anyMatch("approvals"::equalsIgnoreCase)) {
+            syncApprovals(user);
+        }
+    }
+
+    private static ScimException invalidFilter(String filter, String sortBy) {
+        String msg = "Invalid filter expression: [" + filter + "]";
+        if (hasText(sortBy)) {
+            msg += " [" + sortBy + "]";
+        }
+        return new ScimException(HtmlUtils.htmlEscape(msg), HttpStatus.BAD_REQUEST);
+    }
+
+    private SearchResults<?> buildSearchResults(List<ScimUser> input, String attributesCommaSeparated, Set<String> attributes, int startIndex, int count, int total) {
         if (!StringUtils.hasLength(attributesCommaSeparated)) {
             // Return all user data
-            return new SearchResults<>(Arrays.asList(ScimCore.SCHEMAS), input, startIndex, count, result.size());
+            return new SearchResults<>(Arrays.asList(ScimCore.SCHEMAS), input, startIndex, count, total);
         }
 
         Map<String, String> attributeMap = new HashMap<>();
@@ -544,7 +597,7 @@ public class ScimUserEndpoints implements InitializingBean, ApplicationEventPubl
             return SearchResultsFactory.buildSearchResultFrom(input,
                     startIndex,
                     count,
-                    result.size(),
+                    total,
                     attributes.toArray(new String[0]),
                     mapper,
                     Arrays.asList(ScimCore.SCHEMAS)
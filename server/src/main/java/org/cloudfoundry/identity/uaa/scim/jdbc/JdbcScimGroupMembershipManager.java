@@ -57,6 +57,19 @@ public class JdbcScimGroupMembershipManager implements ScimGroupMembershipManage
 
     private static final String DELETE_MEMBER_IN_GROUPS_SQL_GROUP = String.format("delete from %s where member_id=? and member_type='GROUP' and identity_zone_id=?", MEMBERSHIP_TABLE);
 
+    private static final String ADD_MEMBERS_SQL_BASE = String.format("insert into %s ( %s ) values ", MEMBERSHIP_TABLE, MEMBERSHIP_FIELDS + ",identity_zone_id");
+
+    private static final String DELETE_MEMBERS_SQL_BASE = String.format("delete from %s where group_id = ? and identity_zone_id = ? and member_id in (", MEMBERSHIP_TABLE);
+
+    private static final String GET_USER_IDS_SQL_BASE = "select id from users where identity_zone_id = ? and id in (";
+
+    private static final String GET_GROUP_IDS_WITH_MEMBER_SQL_BASE = String.format("select group_id from %s where member_id = ? and identity_zone_id = ? and group_id in (", MEMBERSHIP_TABLE);
+
+    private static final String DELETE_MEMBER_IN_GROUPS_SQL_BASE = String.format("delete from %s where member_id = ? and identity_zone_id = ? and group_id in (", MEMBERSHIP_TABLE);
+
+    // rows or ids per statement of the bulk membership changes, lowered further by database.maxParameters
+    private static final int MAX_ROWS_PER_STATEMENT = 1000;
+
     private static final String GROUP_TABLE = "groups";
 
     private static final String GET_GROUPS_BY_EXTERNAL_MEMBER_SQL = String.format("select g.id, g.displayName, g.description, g.created, g.lastModified, g.version, g.identity_zone_id" +
@@ -73,6 +86,7 @@ public class JdbcScimGroupMembershipManager implements ScimGroupMembershipManage
     private final TimeBasedExpiringValueMap<String, ScimGroup> defaultGroupCache;
     private final String dynamicGetGroupsByMemberSqlBase;
     private final String getGroupsByExternalMemberSql;
+    private final String getGroupIdsSqlBase;
 
     private ScimGroupProvisioning scimGroupProvisioning;
 
@@ -99,6 +113,7 @@ public class JdbcScimGroupMembershipManager implements ScimGroupMembershipManage
                         " from %s m, %s g where m.group_id = g.id and g.identity_zone_id = ? and m.member_id = ? and m.origin = ?",
                 MEMBERSHIP_TABLE,
                 quotedGroupsIdentifier);
+        getGroupIdsSqlBase = String.format("select id from %s where identity_zone_id = ? and id in (", quotedGroupsIdentifier);
     }
 
     public int getMaxSqlParameters() {
@@ -288,29 +303,227 @@ public class JdbcScimGroupMembershipManager implements ScimGroupMembershipManage
         return idResults != null && idResults == 1;
     }
 
+    /**
+     * Replaces the members of a group with set based diffing and bulk statements: the removed
+     * members are deleted and the new members inserted with one statement per chunk, after all new
+     * members have been validated with one query per chunk.
+     */
     @Override
     public List<ScimGroupMember> updateOrAddMembers(String groupId, List<ScimGroupMember> members, String zoneId)
             throws ScimResourceNotFoundException {
         List<ScimGroupMember> currentMembers = getMembers(groupId, false, zoneId);
-        logger.debug("current-members: {}, in request: {}",
-            UaaStringUtils.getCleanedUserControlString(currentMembers.toString()),
-            UaaStringUtils.getCleanedUserControlString(members.toString()));
+        if (logger.isDebugEnabled()) {
+            logger.debug("current-members: {}, in request: {}",
+                UaaStringUtils.getCleanedUserControlString(currentMembers.toString()),
+                UaaStringUtils.getCleanedUserControlString(members.toString()));
+        }
 
-        List<ScimGroupMember> currentMembersToRemove = new ArrayList<>(currentMembers);
-        currentMembersToRemove.removeAll(members);
-        logger.debug("removing members: " + currentMembersToRemove);
-        for (ScimGroupMember member : currentMembersToRemove) {
-            removeMemberById(groupId, member.getMemberId(), zoneId);
+        Set<List<Object>> requested = members.stream().map(JdbcScimGroupMembershipManager::membershipKey).collect(toSet());
+        Set<List<Object>> current = currentMembers.stream().map(JdbcScimGroupMembershipManager::membershipKey).collect(toSet());
+
+        List<ScimGroupMember> result = new ArrayList<>(members.size());
+        List<String> currentMembersToRemove = new ArrayList<>();
+        Set<String> memberIds = new HashSet<>();
+        for (ScimGroupMember member : currentMembers) {
+            if (requested.contains(membershipKey(member))) {
+                result.add(member);
+                memberIds.add(member.getMemberId());
+            } else {
+                currentMembersToRemove.add(member.getMemberId());
+            }
         }
+        List<ScimGroupMember> newMembersToAdd = members.stream()
+                .filter(member -> !current.contains(membershipKey(member)))
+                .collect(Collectors.toList());
+        if (!newMembersToAdd.isEmpty()) {
+            validateNewMembers(groupId, newMembersToAdd, memberIds, zoneId);
+        }
+
+        logger.debug("removing {} members, adding {} members", currentMembersToRemove.size(), newMembersToAdd.size());
+        removeMembers(groupId, new ArrayList<>(new LinkedHashSet<>(currentMembersToRemove)), zoneId);
+        addMembers(groupId, newMembersToAdd, zoneId);
 
-        List<ScimGroupMember> newMembersToAdd = new ArrayList<>(members);
-        newMembersToAdd.removeAll(currentMembers);
-        logger.debug("adding new members: " + newMembersToAdd);
         for (ScimGroupMember member : newMembersToAdd) {
-            addMember(groupId, member, zoneId);
+            result.add(getMemberById(groupId, member, memberType(member)));
+        }
+        return result;
+    }
+
+    // the identity used by ScimGroupMember.equals, whose hashCode also includes the origin
+    private static List<Object> membershipKey(ScimGroupMember member) {
+        return Arrays.asList(member.getMemberId(), member.getType());
+    }
+
+    private static ScimGroupMember.Type memberType(ScimGroupMember member) {
+        return member.getType() == null ? ScimGroupMember.Type.USER : member.getType();
+    }
+
+    private int rowsPerStatement(int parametersPerRow, int otherParameters) {
+        if (maxSqlParameters > 0) {
+            return Math.max(1, Math.min(MAX_ROWS_PER_STATEMENT, (maxSqlParameters - otherParameters) / parametersPerRow));
+        }
+        return MAX_ROWS_PER_STATEMENT;
+    }
+
+    private static <T> List<List<T>> chunks(List<T> values, int size) {
+        List<List<T>> chunks = new ArrayList<>();
+        for (int i = 0; i < values.size(); i += size) {
+            chunks.add(values.subList(i, Math.min(values.size(), i + size)));
+        }
+        return chunks;
+    }
+
+    private static String placeholders(int count, String placeholder) {
+        return String.join(",", Collections.nCopies(count, placeholder));
+    }
+
+    /**
+     * The checks of {@link #validateRequest} and {@link #addMember} for a batch of new members.
+     */
+    private void validateNewMembers(String groupId, List<ScimGroupMember> newMembers, Set<String> memberIds, String zoneId) {
+        if (isDefaultGroup(groupId, zoneId)) {
+            throw new MemberAlreadyExistsException("Trying to add member to default group");
+        }
+        List<String> userIds = new ArrayList<>();
+        List<String> groupIds = new ArrayList<>();
+        for (ScimGroupMember member : newMembers) {
+            if (!hasText(groupId) ||
+                    !hasText(member.getMemberId()) ||
+                    !hasText(member.getOrigin())) {
+                throw new InvalidScimResourceException("group-id, member-id, origin and member-type must be non-empty");
+            }
+            if (groupId.equals(member.getMemberId())) { // oops! cycle detected
+                throw new InvalidScimResourceException("trying to nest group within itself, aborting");
+            }
+            if (!memberIds.add(member.getMemberId())) {
+                throw new MemberAlreadyExistsException(member.getMemberId() + " is already part of the group: " + groupId);
+            }
+            (member.getType() == ScimGroupMember.Type.GROUP ? groupIds : userIds).add(member.getMemberId());
+        }
+
+        String currentZoneId = IdentityZoneHolder.get().getId();
+        scimGroupProvisioning.retrieve(groupId, currentZoneId); // this will throw a ScimException
+        if (!currentZoneId.equals(zoneId)) {
+            throw new ScimResourceConstraintFailedException("Unable to make membership changes in a different zone");
+        }
+        validateMembersExist(GET_USER_IDS_SQL_BASE, "User", userIds, currentZoneId);
+        validateMembersExist(getGroupIdsSqlBase, "Group", groupIds, currentZoneId);
+    }
+
+    private void validateMembersExist(String sqlBase, String memberType, List<String> ids, String zoneId) {
+        for (List<String> chunk : chunks(ids, rowsPerStatement(1, 1))) {
+            String sql = sqlBase + placeholders(chunk.size(), "?") + ")";
+            Object[] parameters = ArrayUtils.addAll(new Object[] { zoneId }, chunk.toArray());
+            // ids are compared ignoring case, as the database may do
+            Set<String> existing = jdbcTemplate.queryForList(sql, String.class, parameters).stream()
+                    .map(id -> id.toLowerCase(Locale.ROOT))
+                    .collect(toSet());
+            for (String id : chunk) {
+                if (!existing.contains(id.toLowerCase(Locale.ROOT))) {
+                    throw new ScimResourceNotFoundException(memberType + " " + id + " does not exist");
+                }
+            }
+        }
+    }
+
+    private void removeMembers(String groupId, List<String> memberIds, String zoneId) {
+        for (List<String> chunk : chunks(memberIds, rowsPerStatement(1, 2))) {
+            String sql = DELETE_MEMBERS_SQL_BASE + placeholders(chunk.size(), "?") + ")";
+            Object[] parameters = ArrayUtils.addAll(new Object[] { groupId, zoneId }, chunk.toArray());
+            int deleted = jdbcTemplate.update(sql, parameters);
+            if (deleted != chunk.size()) {
+                throw new IncorrectResultSizeDataAccessException("unexpected number of members removed", chunk.size(), deleted);
+            }
         }
+    }
 
-        return getMembers(groupId, false, zoneId);
+    private void addMembers(String groupId, List<ScimGroupMember> members, String zoneId) {
+        insertMemberships(members.stream().map(member -> Map.entry(groupId, member)).toList(), zoneId);
+    }
+
+    private void insertMemberships(List<Map.Entry<String, ScimGroupMember>> memberships, String zoneId) {
+        Timestamp added = new Timestamp(new Date().getTime());
+        for (List<Map.Entry<String, ScimGroupMember>> chunk : chunks(memberships, rowsPerStatement(7, 0))) {
+            String sql = ADD_MEMBERS_SQL_BASE + placeholders(chunk.size(), "(?,?,?,?,?,?,?)");
+            jdbcTemplate.update(sql, ps -> {
+                int index = 1;
+                for (Map.Entry<String, ScimGroupMember> membership : chunk) {
+                    ScimGroupMember member = membership.getValue();
+                    ps.setString(index++, membership.getKey());
+                    ps.setString(index++, member.getMemberId());
+                    ps.setString(index++, memberType(member).toString());
+                    ps.setNull(index++, Types.VARCHAR);
+                    ps.setTimestamp(index++, added);
+                    ps.setString(index++, member.getOrigin());
+                    ps.setString(index++, zoneId);
+                }
+            });
+        }
+    }
+
+    /**
+     * Validates the member once, then inserts its missing memberships with one statement per chunk.
+     */
+    @Override
+    public void addMemberToGroups(Collection<String> groupIds, ScimGroupMember member, String zoneId)
+            throws ScimResourceNotFoundException {
+        Set<String> defaultGroupIds = getDefaultUserGroups(zoneId).stream().map(ScimGroup::getId).collect(toSet());
+        List<String> candidateGroupIds = groupIds.stream()
+                .filter(groupId -> !defaultGroupIds.contains(groupId))
+                .distinct()
+                .toList();
+        if (candidateGroupIds.isEmpty()) {
+            return;
+        }
+        validateMemberOfGroups(candidateGroupIds, member, zoneId);
+
+        Set<String> currentGroupIds = new HashSet<>();
+        for (List<String> chunk : chunks(candidateGroupIds, rowsPerStatement(1, 2))) {
+            String sql = GET_GROUP_IDS_WITH_MEMBER_SQL_BASE + placeholders(chunk.size(), "?") + ")";
+            Object[] parameters = ArrayUtils.addAll(new Object[] { member.getMemberId(), zoneId }, chunk.toArray());
+            currentGroupIds.addAll(jdbcTemplate.queryForList(sql, String.class, parameters));
+        }
+        List<Map.Entry<String, ScimGroupMember>> memberships = candidateGroupIds.stream()
+                .filter(groupId -> !currentGroupIds.contains(groupId))
+                .map(groupId -> Map.entry(groupId, member))
+                .toList();
+        logger.debug("adding member to {} groups", memberships.size());
+        insertMemberships(memberships, zoneId);
+    }
+
+    /**
+     * The checks of {@link #validateRequest} for one member and a batch of groups.
+     */
+    private void validateMemberOfGroups(List<String> groupIds, ScimGroupMember member, String zoneId) {
+        if (!hasText(member.getMemberId()) || !hasText(member.getOrigin())) {
+            throw new InvalidScimResourceException("group-id, member-id, origin and member-type must be non-empty");
+        }
+        if (groupIds.contains(member.getMemberId())) { // oops! cycle detected
+            throw new InvalidScimResourceException("trying to nest group within itself, aborting");
+        }
+        String currentZoneId = IdentityZoneHolder.get().getId();
+        String memberZoneId;
+        if (member.getType() == ScimGroupMember.Type.GROUP) {
+            memberZoneId = scimGroupProvisioning.retrieve(member.getMemberId(), currentZoneId).getZoneId();
+        } else {
+            memberZoneId = userProvisioning.retrieve(member.getMemberId(), currentZoneId).getZoneId();
+        }
+        if (!memberZoneId.equals(zoneId)) {
+            throw new ScimResourceConstraintFailedException("Unable to make membership changes in a different zone");
+        }
+        validateMembersExist(getGroupIdsSqlBase, "Group", groupIds, memberZoneId);
+    }
+
+    @Override
+    public void removeMemberFromGroups(Collection<String> groupIds, String memberId, String zoneId)
+            throws ScimResourceNotFoundException {
+        List<String> ids = groupIds.stream().distinct().toList();
+        for (List<String> chunk : chunks(ids, rowsPerStatement(1, 2))) {
+            String sql = DELETE_MEMBER_IN_GROUPS_SQL_BASE + placeholders(chunk.size(), "?") + ")";
+            Object[] parameters = ArrayUtils.addAll(new Object[] { memberId, zoneId }, chunk.toArray());
+            int deleted = jdbcTemplate.update(sql, parameters);
+            logger.debug("removed member from {} groups", deleted);
+        }
     }
 
     @Override
@@ -21,6 +21,7 @@ import org.cloudfoundry.identity.uaa.zone.ZoneDoesNotExistsException;
 import org.cloudfoundry.identity.uaa.zone.event.IdentityZoneModifiedEvent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.dao.DuplicateKeyException;
 import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.dao.IncorrectResultSizeDataAccessException;
@@ -30,8 +31,11 @@ import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
+import java.util.Locale;
 import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
@@ -55,10 +59,14 @@ public class JdbcScimGroupProvisioning extends AbstractQueryable<ScimGroup>
     private static final String GROUP_MEMBERSHIP_TABLE = "group_membership";
     private static final String EXTERNAL_GROUP_TABLE = "external_group_mapping";
 
+    // names per statement of getByNames, lowered further by database.maxParameters
+    private static final int MAX_NAMES_PER_STATEMENT = 1000;
+
     final String addGroupSql;
     private final String updateGroupSql;
     private final String getGroupSql;
     private final String getGroupByNameSql;
+    private final String getGroupsByNamesSqlBase;
     private final String queryForFilter;
     private final String deleteGroupSql;
     private final String deleteGroupSqlByIdZoneVersion;
@@ -73,6 +81,9 @@ public class JdbcScimGroupProvisioning extends AbstractQueryable<ScimGroup>
 
     private final JdbcTemplate jdbcTemplate;
 
+    @Value("${database.maxParameters:-1}")
+    private int maxSqlParameters;
+
     private JdbcScimGroupExternalMembershipManager jdbcScimGroupExternalMembershipManager;
     private JdbcScimGroupMembershipManager jdbcScimGroupMembershipManager;
     private JdbcIdentityZoneProvisioning jdbcIdentityZoneProvisioning;
@@ -100,6 +111,11 @@ public class JdbcScimGroupProvisioning extends AbstractQueryable<ScimGroup>
                 GROUP_FIELDS,
                 quotedGroupsTableName
         );
+        getGroupsByNamesSqlBase = String.format(
+                "select %s from %s where LOWER(identity_zone_id)=LOWER(?) and LOWER(displayName) in (",
+                GROUP_FIELDS,
+                quotedGroupsTableName
+        );
         queryForFilter = String.format(
                 "select %s from %s",
                 GROUP_FIELDS,
@@ -163,6 +179,10 @@ public class JdbcScimGroupProvisioning extends AbstractQueryable<ScimGroup>
         this.jdbcScimGroupMembershipManager = jdbcScimGroupMembershipManager;
     }
 
+    public void setMaxSqlParameters(int maxSqlParameters) {
+        this.maxSqlParameters = maxSqlParameters;
+    }
+
     public void setJdbcIdentityZoneProvisioning(JdbcIdentityZoneProvisioning jdbcIdentityZoneProvisioning) {
         this.jdbcIdentityZoneProvisioning = jdbcIdentityZoneProvisioning;
     }
@@ -198,6 +218,31 @@ public class JdbcScimGroupProvisioning extends AbstractQueryable<ScimGroup>
         }
     }
 
+    /**
+     * Looks the names up with one statement per chunk, ignoring case like {@link #getByName}.
+     */
+    @Override
+    public List<ScimGroup> getByNames(Collection<String> displayNames, String zoneId) {
+        List<String> names = displayNames.stream()
+                .filter(name -> hasText(name))
+                .map(name -> name.toLowerCase(Locale.ROOT))
+                .distinct()
+                .toList();
+        int namesPerStatement = maxSqlParameters > 0 ?
+                Math.max(1, Math.min(MAX_NAMES_PER_STATEMENT, maxSqlParameters - 1)) :
+                MAX_NAMES_PER_STATEMENT;
+        List<ScimGroup> groups = new ArrayList<>();
+        for (int i = 0; i < names.size(); i += namesPerStatement) {
+            List<String> chunk = names.subList(i, Math.min(names.size(), i + namesPerStatement));
+            String sql = getGroupsByNamesSqlBase + String.join(",", Collections.nCopies(chunk.size(), "?")) + ")";
+            List<Object> parameters = new ArrayList<>(chunk.size() + 1);
+            parameters.add(zoneId);
+            parameters.addAll(chunk);
+            groups.addAll(jdbcTemplate.query(sql, rowMapper, parameters.toArray()));
+        }
+        return groups;
+    }
+
     @Override
     public void onApplicationEvent(AbstractUaaEvent event) {
         if (event instanceof IdentityZoneModifiedEvent zevent && zevent.getEventType() == AuditEventType.IdentityZoneCreatedEvent) {
@@ -238,6 +283,11 @@ public class JdbcScimGroupProvisioning extends AbstractQueryable<ScimGroup>
         return GROUP_TABLE;
     }
 
+    @Override
+    protected String getKeysetColumns() {
+        return "created,lastmodified,displayname,id";
+    }
+
 
     @Override
     public List<ScimGroup> retrieveAll(final String zoneId) {
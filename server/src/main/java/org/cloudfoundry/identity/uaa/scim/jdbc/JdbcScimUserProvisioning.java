@@ -236,6 +236,11 @@ public class JdbcScimUserProvisioning extends AbstractQueryable<ScimUser>
         return "users";
     }
 
+    @Override
+    protected String getKeysetColumns() {
+        return "created,lastmodified,username,id";
+    }
+
     @Override
     public List<ScimUser> retrieveAll(String zoneId) {
         return query("id pr", "created", true, zoneId);
@@ -1,6 +1,10 @@
 package org.cloudfoundry.identity.uaa.user;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import org.apache.commons.lang3.ArrayUtils;
+import org.cloudfoundry.identity.uaa.authentication.manager.ExternalGroupAuthorizationEvent;
+import org.cloudfoundry.identity.uaa.scim.event.GroupModifiedEvent;
 import org.cloudfoundry.identity.uaa.util.beans.DbUtils;
 import org.cloudfoundry.identity.uaa.db.DatabaseUrlModifier;
 import org.cloudfoundry.identity.uaa.db.Vendor;
@@ -11,8 +15,11 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEvent;
+import org.springframework.context.ApplicationListener;
 import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.dao.IncorrectResultSizeDataAccessException;
+import org.springframework.jdbc.BadSqlGrammarException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.security.core.GrantedAuthority;
@@ -30,10 +37,11 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 import static org.springframework.util.StringUtils.hasText;
 
-public class JdbcUaaUserDatabase implements UaaUserDatabase {
+public class JdbcUaaUserDatabase implements UaaUserDatabase, ApplicationListener<ApplicationEvent> {
 
     private static Logger logger = LoggerFactory.getLogger(JdbcUaaUserDatabase.class);
 
@@ -52,6 +60,16 @@ public class JdbcUaaUserDatabase implements UaaUserDatabase {
 
     private static final String DEFAULT_USER_BY_ID_QUERY = "select " + USER_FIELDS + "from users where id = ? and active=? and identity_zone_id=?";
 
+    /**
+     * Transitive closure of the groups a member belongs to, resolved in a single statement.
+     * UNION (rather than UNION ALL) guarantees termination on cyclic group memberships.
+     */
+    private static final String PRE_AUTHORITIES_CLOSURE_QUERY = "with recursive closure(id, displayName) as (" +
+            "select g.id, g.displayName from %1$s g, group_membership m where g.id = m.group_id and g.identity_zone_id=? and m.member_id=?" +
+            " union " +
+            "select g.id, g.displayName from %1$s g, group_membership m, closure c where g.id = m.group_id and m.member_id = c.id and g.identity_zone_id=?" +
+            ") select displayName from closure";
+
     private final TimeService timeService;
     private final JdbcTemplate jdbcTemplate;
     private final boolean caseInsensitive;
@@ -65,7 +83,12 @@ public class JdbcUaaUserDatabase implements UaaUserDatabase {
     private final RowMapper<UaaUser> mapper = new UaaUserRowMapper();
     private final RowMapper<UaaUserPrototype> minimalMapper = new UaaUserPrototypeRowMapper();
     private final RowMapper<UserInfo> userInfoMapper = new UserInfoRowMapper();
+    @Value("${authorities.cache.expirationMillis:0}")
+    private long authoritiesCacheExpirationMillis;
     private String quotedGroupsIdentifier;
+    private String authoritiesClosureQuery;
+    private volatile boolean recursiveQuerySupported = true;
+    private Cache<String, Set<String>> authoritiesCache;
 
     RowMapper<UaaUser> getMapper() {
         return mapper;
@@ -84,11 +107,50 @@ public class JdbcUaaUserDatabase implements UaaUserDatabase {
         this.identityZoneManager = identityZoneManager;
         this.databaseUrlModifier = databaseUrlModifier;
         this.quotedGroupsIdentifier = dbUtils.getQuotedIdentifier("groups", jdbcTemplate);
+        this.authoritiesClosureQuery = String.format(PRE_AUTHORITIES_CLOSURE_QUERY, quotedGroupsIdentifier);
     }
 
     @PostConstruct
     public void init() {
         DEFAULT_UPDATE_USER_LAST_LOGON = this.useSkipLocked ? DEFAULT_UPDATE_USER_LAST_LOGON_SKIP_LOCKED : DEFAULT_UPDATE_USER_LAST_LOGON_PLAIN;
+        setAuthoritiesCacheExpirationMillis(authoritiesCacheExpirationMillis);
+    }
+
+    public long getAuthoritiesCacheExpirationMillis() {
+        return authoritiesCacheExpirationMillis;
+    }
+
+    /**
+     * Group memberships are cached per user for the given time, a value of zero or less disables the cache.
+     * Membership changes through the group endpoints invalidate the cache of the zone right away;
+     * changes made on other nodes, or through bootstrap and external group mapping, show up once entries expire.
+     */
+    public void setAuthoritiesCacheExpirationMillis(long authoritiesCacheExpirationMillis) {
+        this.authoritiesCacheExpirationMillis = authoritiesCacheExpirationMillis;
+        this.authoritiesCache = authoritiesCacheExpirationMillis > 0 ?
+                CacheBuilder.newBuilder()
+                        .expireAfterWrite(authoritiesCacheExpirationMillis, TimeUnit.MILLISECONDS)
+                        .maximumSize(10_000)
+                        .build() :
+                null;
+    }
+
+    /**
+     * Evicts cached authorities when groups change, and the user's entry when a federated login
+     * synchronizes its external groups, since the user is reloaded right after that.
+     */
+    @Override
+    public void onApplicationEvent(ApplicationEvent event) {
+        Cache<String, Set<String>> cache = authoritiesCache;
+        if (cache == null) {
+            return;
+        }
+        if (event instanceof GroupModifiedEvent groupModifiedEvent) {
+            String zonePrefix = groupModifiedEvent.getIdentityZoneId() + ":";
+            cache.asMap().keySet().removeIf(key -> key.startsWith(zonePrefix));
+        } else if (event instanceof ExternalGroupAuthorizationEvent externalGroupEvent) {
+            cache.invalidate(identityZoneManager.getCurrentIdentityZoneId() + ":" + externalGroupEvent.getUser().getId());
+        }
     }
 
     public int getMaxSqlParameters() {
@@ -262,8 +324,7 @@ public class JdbcUaaUserDatabase implements UaaUserDatabase {
         }
 
         private String getAuthorities(final String userId) throws SQLException {
-            Set<String> authorities = new HashSet<>();
-            getAuthorities(authorities, Collections.singletonList(userId));
+            Set<String> authorities = new HashSet<>(getGroupNames(userId));
             authorities.addAll(identityZoneManager.getCurrentIdentityZone().getConfig().getUserConfig().getDefaultGroups());
             Set<String> allowedGroups = identityZoneManager.getCurrentIdentityZone().getConfig().getUserConfig().resultingAllowedGroups();
             if (allowedGroups != null) {
@@ -273,6 +334,42 @@ public class JdbcUaaUserDatabase implements UaaUserDatabase {
         }
 
 
+        /**
+         * Names of all groups the user is a direct or nested member of.
+         */
+        private Set<String> getGroupNames(final String userId) throws SQLException {
+            String zoneId = identityZoneManager.getCurrentIdentityZoneId();
+            String key = zoneId + ":" + userId;
+            Cache<String, Set<String>> cache = authoritiesCache;
+            Set<String> groupNames = cache != null ? cache.getIfPresent(key) : null;
+            if (groupNames == null) {
+                groupNames = Collections.unmodifiableSet(resolveGroupNames(userId, zoneId));
+                if (cache != null) {
+                    cache.put(key, groupNames);
+                }
+            }
+            return groupNames;
+        }
+
+        private Set<String> resolveGroupNames(final String userId, final String zoneId) throws SQLException {
+            if (recursiveQuerySupported) {
+                try {
+                    return new HashSet<>(jdbcTemplate.queryForList(authoritiesClosureQuery, String.class, zoneId, userId, zoneId));
+                } catch (BadSqlGrammarException e) {
+                    // only a rejected statement means no support; timeouts, deadlocks and lost connections are rethrown
+                    if (Vendor.postgresql.equals(databaseUrlModifier.getDatabaseType()) || Vendor.hsqldb.equals(databaseUrlModifier.getDatabaseType())) {
+                        throw e;
+                    }
+                    // e.g. MySQL before 8.0 has no common table expressions
+                    logger.info("Recursive group query not supported by the database, resolving nested groups level by level", e);
+                    recursiveQuerySupported = false;
+                }
+            }
+            Set<String> authorities = new HashSet<>();
+            getAuthorities(authorities, Collections.singletonList(userId));
+            return authorities;
+        }
+
         protected void getAuthorities(Set<String> authorities, final List<String> memberIdList)
                 throws SQLException {
             List<Map<String, Object>> results;
@@ -2,6 +2,9 @@ package org.cloudfoundry.identity.uaa.util;
 
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
+import org.springframework.jmx.export.annotation.ManagedMetric;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.jmx.support.MetricType;
 import org.springframework.security.core.AuthenticationException;
 import org.springframework.security.crypto.codec.Hex;
 import org.springframework.security.crypto.codec.Utf8;
@@ -12,38 +15,48 @@ import org.cloudfoundry.identity.uaa.oauth.common.util.RandomValueStringGenerato
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.time.Duration;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.LinkedHashSet;
-import java.util.List;
 import java.util.Set;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArraySet;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
 import static org.springframework.security.crypto.util.EncodingUtils.concatenate;
 
 /**
  * Wrapper around a slow password encoder that does a fast translation in memory only
  * This uses a hash to as a key to store a list of
+ *
+ * The cache holds at most {@code maxKeys} passwords, the least recently used ones are evicted
+ * first. Each thread hashes with its own {@link MessageDigest}, so checks don't wait for each other.
  */
+@ManagedResource(
+        objectName = "cloudfoundry.identity:name=PasswordEncoderCache",
+        description = "UAA Password Verification Cache Metrics"
+)
 public class CachingPasswordEncoder implements PasswordEncoder {
 
-    private final MessageDigest messageDigest;
+    private static final String ALGORITHM = "SHA-256";
+
+    private final ThreadLocal<MessageDigest> messageDigest;
     private final byte[] secret;
     private final byte[] salt;
 
     private final int ITERATIONS = 25;
-    private final int MAX_KEYS = 1000;
     private final int MAX_ENCODED_PASSWORDS = 5;
-    private final Duration CACHE_TTL = Duration.ofMinutes(5L);
+    private int maxKeys = 1000;
+    private Duration cacheTtl = Duration.ofMinutes(5L);
 
     private volatile Cache<CharSequence, Set<String>> cache = null;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
 
     private final PasswordEncoder passwordEncoder;
 
     CachingPasswordEncoder(final PasswordEncoder passwordEncoder) throws NoSuchAlgorithmException {
         this.passwordEncoder = passwordEncoder;
-        this.messageDigest = MessageDigest.getInstance("SHA-256");
+        MessageDigest.getInstance(ALGORITHM);
+        this.messageDigest = ThreadLocal.withInitial(CachingPasswordEncoder::newMessageDigest);
         this.secret = Utf8.encode(new RandomValueStringGenerator().generate());
         this.salt = KeyGenerators.secureRandom().generateKey();
         buildCache();
@@ -64,38 +77,31 @@ public class CachingPasswordEncoder implements PasswordEncoder {
     // internal helpers
 
     Set<String> getOrCreateHashList(String cacheKey) {
-        Set<String> result = cache.getIfPresent(cacheKey);
-        if (result == null) {
-            if (cache.size() >= MAX_KEYS) {
-                cache.invalidateAll();
-            }
-            cache.put(cacheKey, Collections.synchronizedSet(new LinkedHashSet<>()));
-        }
-        return cache.getIfPresent(cacheKey);
+        return cache.asMap().computeIfAbsent(cacheKey, key -> new CopyOnWriteArraySet<>());
     }
 
     private boolean internalMatches(String cacheKey, CharSequence rawPassword, String encodedPassword) {
         Set<String> cacheValue = cache.getIfPresent(cacheKey);
-        boolean result = false;
-        List<String> searchList = (cacheValue != null ? new ArrayList<>(cacheValue) : Collections.emptyList());
-        for (String encoded : searchList) {
-            if (hashesEquals(encoded, encodedPassword)) {
-                return true;
+        if (cacheValue != null) {
+            for (String encoded : cacheValue) {
+                if (hashesEquals(encoded, encodedPassword)) {
+                    hits.increment();
+                    return true;
+                }
             }
         }
+        misses.increment();
         if (passwordEncoder.matches(rawPassword, encodedPassword)) {
-            result = true;
             cacheValue = getOrCreateHashList(cacheKey);
-            if (cacheValue != null) {
-                //this list should never grow very long.
-                //Only if you store multiple versions of the same password more than once
-                if (cacheValue.size() >= MAX_ENCODED_PASSWORDS) {
-                    cacheValue.clear();
-                }
-                cacheValue.add(encodedPassword);
+            //this list should never grow very long.
+            //Only if you store multiple versions of the same password more than once
+            if (cacheValue.size() >= MAX_ENCODED_PASSWORDS) {
+                cacheValue.clear();
             }
+            cacheValue.add(encodedPassword);
+            return true;
         }
-        return result;
+        return false;
     }
 
 
@@ -110,11 +116,18 @@ public class CachingPasswordEncoder implements PasswordEncoder {
     }
 
     private byte[] digest(byte[] value) {
-        synchronized (messageDigest) {
-            for (int i = 0; i < ITERATIONS; i++) {
-                value = messageDigest.digest(value);
-            }
-            return value;
+        MessageDigest digest = messageDigest.get();
+        for (int i = 0; i < ITERATIONS; i++) {
+            value = digest.digest(value);
+        }
+        return value;
+    }
+
+    private static MessageDigest newMessageDigest() {
+        try {
+            return MessageDigest.getInstance(ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
         }
     }
 
@@ -133,25 +146,66 @@ public class CachingPasswordEncoder implements PasswordEncoder {
         return ret == 0;
     }
 
-    int getMaxKeys() {
-        return MAX_KEYS;
+    /**
+     * Sets the number of passwords to cache and discards the cached ones.
+     */
+    public void setMaxKeys(int maxKeys) {
+        this.maxKeys = maxKeys;
+        buildCache();
     }
 
-    int getMaxEncodedPasswords() {
-        return MAX_ENCODED_PASSWORDS;
+    /**
+     * Sets how long a verified password stays cached and discards the cached ones.
+     */
+    public void setExpirationSeconds(long expirationSeconds) {
+        this.cacheTtl = Duration.ofSeconds(expirationSeconds);
+        buildCache();
     }
 
-    long getNumberOfKeys() {
+    @ManagedMetric(metricType = MetricType.COUNTER, displayName = "Passwords Verified From Cache")
+    public long getCacheHitCount() {
+        return hits.sum();
+    }
+
+    @ManagedMetric(metricType = MetricType.COUNTER, displayName = "Passwords Verified By Delegate Encoder")
+    public long getCacheMissCount() {
+        return misses.sum();
+    }
+
+    @ManagedMetric(metricType = MetricType.GAUGE, displayName = "Password Cache Hit Rate")
+    public double getCacheHitRate() {
+        long hitCount = getCacheHitCount();
+        long total = hitCount + getCacheMissCount();
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+
+    @ManagedMetric(metricType = MetricType.COUNTER, displayName = "Password Cache Eviction Count")
+    public long getCacheEvictionCount() {
+        return cache.stats().evictionCount();
+    }
+
+    @ManagedMetric(metricType = MetricType.GAUGE, displayName = "Password Cache Size")
+    public long getNumberOfKeys() {
         return cache.size();
     }
 
+    int getMaxKeys() {
+        return maxKeys;
+    }
+
+    int getMaxEncodedPasswords() {
+        return MAX_ENCODED_PASSWORDS;
+    }
+
     ConcurrentMap<CharSequence, Set<String>> asMap() {
         return cache.asMap();
     }
 
     void buildCache() {
         cache = CacheBuilder.newBuilder()
-                .expireAfterWrite(CACHE_TTL.getSeconds(), TimeUnit.SECONDS)
+                .maximumSize(maxKeys)
+                .expireAfterWrite(cacheTtl.getSeconds(), TimeUnit.SECONDS)
+                .recordStats()
                 .build();
     }
 }
@@ -0,0 +1,127 @@
+package org.cloudfoundry.identity.uaa.web.beans;
+
+import org.cloudfoundry.identity.uaa.authentication.UaaAuthentication;
+import org.cloudfoundry.identity.uaa.authentication.UaaAuthenticationDetails;
+import org.cloudfoundry.identity.uaa.util.JsonUtils;
+import org.springframework.core.serializer.support.SerializationFailedException;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextImpl;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Stores the login state of a session, a {@link UaaAuthentication} either on its own or in the
+ * security context, in the JSON form of {@code UaaAuthenticationSerializer} instead of Java
+ * serialization, which spells out the class descriptors of every object in the graph. All other
+ * attributes are delegated to the fallback codec. Encoded values of at least
+ * {@code compressionThreshold} bytes are gzipped; a threshold of 0 disables compression.
+ *
+ * Each value is prefixed with a type byte, whose high bit marks a compressed payload. Values that
+ * start with the Java serialization stream magic were written before this codec was enabled and
+ * are read with the fallback codec, so existing sessions survive the switch.
+ *
+ * Only authentications the JSON form can restore are written as JSON: those without credentials
+ * and with plain {@link UaaAuthenticationDetails}. The request path and parameters of the details
+ * are dropped, they only matter while the authenticating request is processed.
+ */
+public class CompactSessionAttributeCodec implements SessionAttributeCodec {
+
+    public static final int DEFAULT_COMPRESSION_THRESHOLD = 1024;
+
+    static final int FALLBACK = 1;
+    static final int AUTHENTICATION = 2;
+    static final int SECURITY_CONTEXT = 3;
+    static final int COMPRESSED = 0x80;
+
+    private static final byte[] EMPTY = new byte[0];
+
+    private final SessionAttributeCodec fallback;
+    private int compressionThreshold = DEFAULT_COMPRESSION_THRESHOLD;
+
+    public CompactSessionAttributeCodec(SessionAttributeCodec fallback) {
+        this.fallback = fallback;
+    }
+
+    public void setCompressionThreshold(int compressionThreshold) {
+        this.compressionThreshold = compressionThreshold;
+    }
+
+    @Override
+    public byte[] encode(Object value) {
+        int type;
+        byte[] payload;
+        if (isCompact(value)) {
+            type = AUTHENTICATION;
+            payload = JsonUtils.writeValueAsBytes(value);
+        } else if (isCompactSecurityContext(value)) {
+            Authentication authentication = ((SecurityContextImpl) value).getAuthentication();
+            type = SECURITY_CONTEXT;
+            payload = authentication == null ? EMPTY : JsonUtils.writeValueAsBytes(authentication);
+        } else {
+            type = FALLBACK;
+            payload = fallback.encode(value);
+        }
+        boolean compress = compressionThreshold > 0 && payload.length >= compressionThreshold;
+        ByteArrayOutputStream out = new ByteArrayOutputStream(compress ? payload.length / 2 : payload.length + 1);
+        out.write(compress ? type | COMPRESSED : type);
+        if (compress) {
+            try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+                gzip.write(payload);
+            } catch (IOException e) {
+                throw new SerializationFailedException("Unable to compress session attribute", e);
+            }
+        } else {
+            out.write(payload, 0, payload.length);
+        }
+        return out.toByteArray();
+    }
+
+    @Override
+    public Object decode(byte[] bytes) {
+        if (bytes.length >= 2 && bytes[0] == (byte) 0xAC && bytes[1] == (byte) 0xED) {
+            return fallback.decode(bytes);
+        }
+        int header = bytes[0] & 0xFF;
+        byte[] payload = (header & COMPRESSED) != 0 ? decompress(bytes) : Arrays.copyOfRange(bytes, 1, bytes.length);
+        switch (header & ~COMPRESSED) {
+            case FALLBACK:
+                return fallback.decode(payload);
+            case AUTHENTICATION:
+                return JsonUtils.readValue(payload, UaaAuthentication.class);
+            case SECURITY_CONTEXT:
+                return payload.length == 0 ? new SecurityContextImpl() : new SecurityContextImpl(JsonUtils.readValue(payload, UaaAuthentication.class));
+            default:
+                throw new SerializationFailedException("Unknown session attribute encoding " + header);
+        }
+    }
+
+    private static boolean isCompact(Object value) {
+        if (value == null || value.getClass() != UaaAuthentication.class) {
+            return false;
+        }
+        UaaAuthentication authentication = (UaaAuthentication) value;
+        return authentication.getCredentials() == null
+                && (authentication.getDetails() == null || authentication.getDetails().getClass() == UaaAuthenticationDetails.class);
+    }
+
+    private static boolean isCompactSecurityContext(Object value) {
+        if (value == null || value.getClass() != SecurityContextImpl.class) {
+            return false;
+        }
+        Authentication authentication = ((SecurityContextImpl) value).getAuthentication();
+        return authentication == null || isCompact(authentication);
+    }
+
+    private static byte[] decompress(byte[] bytes) {
+        try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(bytes, 1, bytes.length - 1))) {
+            return gzip.readAllBytes();
+        } catch (IOException e) {
+            throw new SerializationFailedException("Unable to decompress session attribute", e);
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package org.cloudfoundry.identity.uaa.web.beans;
+
+import org.springframework.core.serializer.support.DeserializingConverter;
+import org.springframework.core.serializer.support.SerializingConverter;
+
+/**
+ * Java serialization, the format Spring Session uses by default.
+ */
+public class JavaSessionAttributeCodec implements SessionAttributeCodec {
+
+    private final SerializingConverter serializer = new SerializingConverter();
+    private final DeserializingConverter deserializer;
+
+    public JavaSessionAttributeCodec(ClassLoader classLoader) {
+        this.deserializer = new DeserializingConverter(classLoader);
+    }
+
+    @Override
+    public byte[] encode(Object value) {
+        return serializer.convert(value);
+    }
+
+    @Override
+    public Object decode(byte[] bytes) {
+        return deserializer.convert(bytes);
+    }
+}
@@ -0,0 +1,27 @@
+package org.cloudfoundry.identity.uaa.web.beans;
+
+/**
+ * Writes attributes with one codec and reads them with another that also understands the
+ * first format. Used for {@code codec: java}, so that sessions written with the compact codec
+ * survive switching back to Java serialization.
+ */
+public class ReadCompatibleSessionAttributeCodec implements SessionAttributeCodec {
+
+    private final SessionAttributeCodec writer;
+    private final SessionAttributeCodec reader;
+
+    public ReadCompatibleSessionAttributeCodec(SessionAttributeCodec writer, SessionAttributeCodec reader) {
+        this.writer = writer;
+        this.reader = reader;
+    }
+
+    @Override
+    public byte[] encode(Object value) {
+        return writer.encode(value);
+    }
+
+    @Override
+    public Object decode(byte[] bytes) {
+        return reader.decode(bytes);
+    }
+}
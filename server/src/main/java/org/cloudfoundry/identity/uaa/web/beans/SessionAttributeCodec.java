@@ -0,0 +1,12 @@
+package org.cloudfoundry.identity.uaa.web.beans;
+
+/**
+ * Converts HTTP session attribute values to and from the bytes that are stored in
+ * {@code SPRING_SESSION_ATTRIBUTES} when sessions are kept in the database.
+ */
+public interface SessionAttributeCodec {
+
+    byte[] encode(Object value);
+
+    Object decode(byte[] bytes);
+}
@@ -2,12 +2,16 @@ package org.cloudfoundry.identity.uaa.web.beans;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.BeanClassLoaderAware;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Condition;
 import org.springframework.context.annotation.ConditionContext;
 import org.springframework.context.annotation.Conditional;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.convert.ConversionService;
+import org.springframework.core.convert.support.GenericConversionService;
 import org.springframework.core.type.AnnotatedTypeMetadata;
 import org.springframework.lang.NonNull;
 import org.springframework.session.jdbc.config.annotation.web.http.EnableJdbcHttpSession;
@@ -16,9 +20,13 @@ import org.springframework.session.jdbc.config.annotation.web.http.JdbcHttpSessi
 @Configuration
 @Conditional(UaaJdbcSessionConfig.DatabaseConfigured.class)
 @EnableJdbcHttpSession
-public class UaaJdbcSessionConfig extends UaaSessionConfig {
+public class UaaJdbcSessionConfig extends UaaSessionConfig implements BeanClassLoaderAware {
 
     private final static Logger logger = LoggerFactory.getLogger(UaaJdbcSessionConfig.class);
+    static final String JAVA_SESSION_ATTRIBUTE_CODEC = "java";
+    static final String COMPACT_SESSION_ATTRIBUTE_CODEC = "compact";
+
+    private ClassLoader classLoader;
 
     public static class DatabaseConfigured implements Condition {
         @Override
@@ -36,6 +44,43 @@ public class UaaJdbcSessionConfig extends UaaSessionConfig {
         jdbcHttpSessionConfiguration.setMaxInactiveIntervalInSeconds(idleTimeout);
     }
 
+    @Override
+    public void setBeanClassLoader(@NonNull ClassLoader classLoader) {
+        this.classLoader = classLoader;
+    }
+
+    /**
+     * Picked up by name by {@link JdbcHttpSessionConfiguration} to convert session attributes.
+     */
+    @Bean
+    public ConversionService springSessionConversionService(
+            final @Value("${servlet.session-attributes.codec:java}") String codec,
+            final @Value("${servlet.session-attributes.compression-threshold:1024}") int compressionThreshold) {
+        SessionAttributeCodec sessionAttributeCodec = sessionAttributeCodec(codec, classLoader, compressionThreshold);
+        GenericConversionService conversionService = new GenericConversionService();
+        conversionService.addConverter(Object.class, byte[].class, sessionAttributeCodec::encode);
+        conversionService.addConverter(byte[].class, Object.class, sessionAttributeCodec::decode);
+        return conversionService;
+    }
+
+    static SessionAttributeCodec sessionAttributeCodec(String codec, ClassLoader classLoader, int compressionThreshold) {
+        SessionAttributeCodec javaCodec = new JavaSessionAttributeCodec(classLoader);
+        CompactSessionAttributeCodec compactCodec = new CompactSessionAttributeCodec(javaCodec);
+        compactCodec.setCompressionThreshold(compressionThreshold);
+        if (JAVA_SESSION_ATTRIBUTE_CODEC.equals(codec)) {
+            // the compact codec reads Java serialization as well as its own format
+            return new ReadCompatibleSessionAttributeCodec(javaCodec, compactCodec);
+        }
+        if (COMPACT_SESSION_ATTRIBUTE_CODEC.equals(codec)) {
+            return compactCodec;
+        }
+        throw new IllegalArgumentException(String.format(
+                "%s is not a valid argument for servlet.session-attributes.codec. Please choose %s or %s.",
+                codec,
+                JAVA_SESSION_ATTRIBUTE_CODEC,
+                COMPACT_SESSION_ATTRIBUTE_CODEC));
+    }
+
     @Autowired
     void log() {
         logger.info("Using JDBC session configuration");
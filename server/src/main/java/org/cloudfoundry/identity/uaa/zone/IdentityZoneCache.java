@@ -0,0 +1,174 @@
+package org.cloudfoundry.identity.uaa.zone;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.cloudfoundry.identity.uaa.audit.event.AbstractUaaEvent;
+import org.cloudfoundry.identity.uaa.audit.event.EntityDeletedEvent;
+import org.cloudfoundry.identity.uaa.util.TimeService;
+import org.cloudfoundry.identity.uaa.zone.event.IdentityZoneModifiedEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationListener;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.jmx.export.annotation.ManagedMetric;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.jmx.support.MetricType;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded cache of parsed, active identity zones, indexed by subdomain and by id.
+ *
+ * Entries are served without database access for up to {@code maxStalenessMillis}. After that
+ * the zone version and last modified time are compared against the database, which is a primary key
+ * lookup that does not read or parse the zone configuration; only a changed zone is reloaded. Changes made on
+ * this node evict the zone immediately through {@link IdentityZoneModifiedEvent} and
+ * {@link EntityDeletedEvent}, changes on other nodes become visible within the staleness bound.
+ *
+ * Cached zones are shared between requests and must be treated as read-only.
+ */
+@ManagedResource(
+        objectName = "cloudfoundry.identity:name=IdentityZoneCache",
+        description = "UAA Identity Zone Cache Metrics"
+)
+public class IdentityZoneCache implements ApplicationListener<AbstractUaaEvent> {
+
+    private static final Logger logger = LoggerFactory.getLogger(IdentityZoneCache.class);
+
+    public static final long DEFAULT_MAX_STALENESS_MILLIS = 5_000L;
+    public static final int DEFAULT_MAX_ENTRIES = 10_000;
+
+    private final JdbcIdentityZoneProvisioning provisioning;
+    private final TimeService timeService;
+    private final long maxStalenessMillis;
+    private final Cache<String, CachedZone> bySubdomain;
+    private final Cache<String, CachedZone> byId;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder revalidations = new LongAdder();
+
+    public IdentityZoneCache(JdbcIdentityZoneProvisioning provisioning, TimeService timeService) {
+        this(provisioning, timeService, DEFAULT_MAX_STALENESS_MILLIS, DEFAULT_MAX_ENTRIES);
+    }
+
+    public IdentityZoneCache(JdbcIdentityZoneProvisioning provisioning,
+                             TimeService timeService,
+                             long maxStalenessMillis,
+                             int maxEntries) {
+        this.provisioning = provisioning;
+        this.timeService = timeService;
+        this.maxStalenessMillis = maxStalenessMillis;
+        this.bySubdomain = CacheBuilder.newBuilder().maximumSize(maxEntries).build();
+        this.byId = CacheBuilder.newBuilder().maximumSize(maxEntries).build();
+    }
+
+    public IdentityZone retrieveBySubdomain(String subdomain) {
+        if (subdomain == null) {
+            throw new EmptyResultDataAccessException("Subdomain cannot be null", 1);
+        }
+        String key = subdomain.toLowerCase();
+        CachedZone cached = bySubdomain.getIfPresent(key);
+        if (cached != null && isCurrent(cached)) {
+            hits.increment();
+            return cached.zone;
+        }
+        misses.increment();
+        return store(provisioning.retrieveBySubdomain(key));
+    }
+
+    public IdentityZone retrieve(String id) {
+        if (id == null) {
+            throw new ZoneDoesNotExistsException("Zone id cannot be null");
+        }
+        CachedZone cached = byId.getIfPresent(id);
+        if (cached != null && isCurrent(cached)) {
+            hits.increment();
+            return cached.zone;
+        }
+        misses.increment();
+        return store(provisioning.retrieve(id));
+    }
+
+    public void evict(String zoneId) {
+        if (zoneId == null) {
+            return;
+        }
+        byId.invalidate(zoneId);
+        bySubdomain.asMap().values().removeIf(cached -> zoneId.equals(cached.zone.getId()));
+    }
+
+    @ManagedOperation(description = "Evict all cached identity zones")
+    public void clear() {
+        byId.invalidateAll();
+        bySubdomain.invalidateAll();
+    }
+
+    @Override
+    public void onApplicationEvent(AbstractUaaEvent event) {
+        if (event instanceof IdentityZoneModifiedEvent) {
+            evict(((IdentityZone) event.getSource()).getId());
+        } else if (event instanceof EntityDeletedEvent<?> deletedEvent && deletedEvent.getDeleted() instanceof IdentityZone zone) {
+            evict(zone.getId());
+        }
+    }
+
+    @ManagedMetric(metricType = MetricType.COUNTER, displayName = "Identity Zone Cache Hit Count")
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    @ManagedMetric(metricType = MetricType.COUNTER, displayName = "Identity Zone Cache Miss Count")
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    @ManagedMetric(metricType = MetricType.COUNTER, displayName = "Identity Zone Cache Version Check Count")
+    public long getRevalidationCount() {
+        return revalidations.sum();
+    }
+
+    @ManagedMetric(metricType = MetricType.GAUGE, displayName = "Identity Zone Cache Size")
+    public long getSize() {
+        return byId.size();
+    }
+
+    private IdentityZone store(IdentityZone zone) {
+        if (zone != null) {
+            CachedZone cached = new CachedZone(zone, timeService.getCurrentTimeMillis());
+            evict(zone.getId());
+            byId.put(zone.getId(), cached);
+            bySubdomain.put(zone.getSubdomain().toLowerCase(), cached);
+        }
+        return zone;
+    }
+
+    private boolean isCurrent(CachedZone cached) {
+        long now = timeService.getCurrentTimeMillis();
+        if (now - cached.validatedAt <= maxStalenessMillis) {
+            return true;
+        }
+        revalidations.increment();
+        try {
+            if (provisioning.isUnmodified(cached.zone)) {
+                cached.validatedAt = now;
+                return true;
+            }
+        } catch (ZoneDoesNotExistsException x) {
+            logger.debug("Cached identity zone no longer exists or is inactive, id:" + cached.zone.getId());
+        }
+        evict(cached.zone.getId());
+        return false;
+    }
+
+    private static final class CachedZone {
+        private final IdentityZone zone;
+        private volatile long validatedAt;
+
+        private CachedZone(IdentityZone zone, long validatedAt) {
+            this.zone = zone;
+            this.validatedAt = validatedAt;
+        }
+    }
+}
@@ -37,6 +37,7 @@ import java.util.Set;
 public class IdentityZoneResolvingFilter extends OncePerRequestFilter implements InitializingBean {
 
     private final IdentityZoneProvisioning dao;
+    private IdentityZoneCache identityZoneCache;
     private final Set<String> staticResources = Set.of("/resources/", "/vendor/font-awesome/");
     private Set<String> defaultZoneHostnames = new HashSet<>();
     private Logger logger = LoggerFactory.getLogger(getClass());
@@ -53,7 +54,7 @@ public class IdentityZoneResolvingFilter extends OncePerRequestFilter implements
         String subdomain = getSubdomain(hostname);
         if (subdomain != null) {
             try {
-                identityZone = dao.retrieveBySubdomain(subdomain);
+                identityZone = identityZoneCache != null ? identityZoneCache.retrieveBySubdomain(subdomain) : dao.retrieveBySubdomain(subdomain);
             } catch (EmptyResultDataAccessException ex) {
                 logger.debug("Cannot find identity zone for subdomain " + subdomain);
             } catch (Exception ex) {
@@ -130,6 +131,10 @@ public class IdentityZoneResolvingFilter extends OncePerRequestFilter implements
         }
     }
 
+    public void setIdentityZoneCache(IdentityZoneCache identityZoneCache) {
+        this.identityZoneCache = identityZoneCache;
+    }
+
     public Set<String> getDefaultZoneHostnames() {
         return new HashSet<>(defaultZoneHostnames);
     }
@@ -38,6 +38,8 @@ public class JdbcIdentityZoneProvisioning implements IdentityZoneProvisioning, S
 
     public static final String IDENTITY_ZONE_BY_SUBDOMAIN_QUERY = "select " + ID_ZONE_FIELDS + " from identity_zone " + "where subdomain=? and active = ?";
 
+    public static final String IDENTITY_ZONE_VERSION_QUERY = "select version,lastmodified from identity_zone where id=? and active = ?";
+
     public static final Logger logger = LoggerFactory.getLogger(JdbcIdentityZoneProvisioning.class);
 
     protected final JdbcTemplate jdbcTemplate;
@@ -85,6 +87,28 @@ public class JdbcIdentityZoneProvisioning implements IdentityZoneProvisioning, S
         return jdbcTemplate.queryForObject(IDENTITY_ZONE_BY_SUBDOMAIN_QUERY, mapper, subdomain.toLowerCase(), true);
     }
 
+    /**
+     * Compares the version and last modified time of the active zone without loading its configuration.
+     * The version alone is not enough, since updates store the version of the submitted zone plus one.
+     *
+     * @return true if the stored zone has not been updated since {@code zone} was read
+     */
+    public boolean isUnmodified(IdentityZone zone) {
+        if (zone == null || zone.getId() == null) {
+            throw new ZoneDoesNotExistsException("Zone id cannot be null");
+        }
+        try {
+            return jdbcTemplate.queryForObject(IDENTITY_ZONE_VERSION_QUERY, (rs, rowNum) -> {
+                Timestamp lastModified = rs.getTimestamp(2);
+                return rs.getInt(1) == zone.getVersion() &&
+                        lastModified != null && zone.getLastModified() != null &&
+                        lastModified.getTime() == zone.getLastModified().getTime();
+            }, zone.getId(), true);
+        } catch (EmptyResultDataAccessException x) {
+            throw new ZoneDoesNotExistsException("Zone[" + zone.getId() + "] not found.", x);
+        }
+    }
+
     @Override
     public IdentityZone create(final IdentityZone identityZone) {
 
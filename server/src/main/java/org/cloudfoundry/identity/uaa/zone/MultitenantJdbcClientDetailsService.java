@@ -1,10 +1,14 @@
 package org.cloudfoundry.identity.uaa.zone;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.cloudfoundry.identity.uaa.audit.event.AbstractUaaEvent;
 import org.cloudfoundry.identity.uaa.audit.event.SystemDeletable;
 import org.cloudfoundry.identity.uaa.authentication.UaaPrincipal;
 import org.cloudfoundry.identity.uaa.client.InvalidClientDetailsException;
 import org.cloudfoundry.identity.uaa.client.UaaClientDetails;
 import org.cloudfoundry.identity.uaa.client.ClientJwtConfiguration;
+import org.cloudfoundry.identity.uaa.client.event.AbstractClientAdminEvent;
 import org.cloudfoundry.identity.uaa.oauth.client.ClientConstants;
 import org.cloudfoundry.identity.uaa.oauth.common.util.DefaultJdbcListFactory;
 import org.cloudfoundry.identity.uaa.oauth.common.util.JdbcListFactory;
@@ -18,6 +22,7 @@ import org.cloudfoundry.identity.uaa.zone.beans.IdentityZoneManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.dao.InvalidDataAccessResourceUsageException;
@@ -32,7 +37,10 @@ import org.cloudfoundry.identity.uaa.oauth.provider.ClientDetails;
 import org.springframework.stereotype.Component;
 import org.springframework.util.Assert;
 import org.springframework.util.StringUtils;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
 
+import javax.annotation.PostConstruct;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Timestamp;
@@ -43,6 +51,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static java.util.Collections.emptySet;
 import static org.cloudfoundry.identity.uaa.oauth.client.ClientConstants.REQUIRED_USER_GROUPS;
@@ -78,6 +87,9 @@ public class MultitenantJdbcClientDetailsService extends MultitenantClientServic
     private static final String DEFAULT_SELECT_STATEMENT =
             BASE_FIND_STATEMENT + " where client_id = ? and identity_zone_id = ?";
 
+    private static final String STAMP_SELECT_STATEMENT =
+            "select lastmodified, client_secret, client_jwt_config from oauth_client_details where client_id = ? and identity_zone_id = ?";
+
     private static final String SINGLE_SELECT_STATEMENT =
             "select client_id from oauth_client_details where client_id = ? and identity_zone_id = ?";
 
@@ -105,6 +117,8 @@ public class MultitenantJdbcClientDetailsService extends MultitenantClientServic
             "delete from oauth_client_details where identity_zone_id = ?";
     private static final String NO_CLIENT_FOUND_WITH_ID = "No client found with id = ";
 
+    static final String CLIENT_MEMO_ATTRIBUTE = MultitenantJdbcClientDetailsService.class.getName() + ".client.";
+
     private RowMapper<ClientDetails> rowMapper = new ClientDetailsRowMapper();
 
     private String selectClientDetailsSql = DEFAULT_SELECT_STATEMENT;
@@ -115,6 +129,11 @@ public class MultitenantJdbcClientDetailsService extends MultitenantClientServic
 
     private JdbcListFactory listFactory;
 
+    @Value("${clients.cache.maxStalenessMillis:0}")
+    private long clientCacheMaxStalenessMillis;
+    private volatile Cache<String, CachedClient> clientCache;
+    private final AtomicLong clientCacheGeneration = new AtomicLong();
+
     public MultitenantJdbcClientDetailsService(
             final NamedParameterJdbcTemplate jdbcTemplate,
             final IdentityZoneManager identityZoneManager,
@@ -126,8 +145,62 @@ public class MultitenantJdbcClientDetailsService extends MultitenantClientServic
         this.passwordEncoder = passwordEncoder;
     }
 
+    @PostConstruct
+    public void init() {
+        setClientCacheMaxStalenessMillis(clientCacheMaxStalenessMillis);
+    }
+
+    public long getClientCacheMaxStalenessMillis() {
+        return clientCacheMaxStalenessMillis;
+    }
+
+    /**
+     * Loaded clients are served from memory for the given time, after which the stored last modified
+     * time, secret and JWT configuration of the client are compared before the entry is used again.
+     * A value of zero or less disables the cache. Changes made through this service evict the client right away.
+     */
+    public void setClientCacheMaxStalenessMillis(long clientCacheMaxStalenessMillis) {
+        this.clientCacheMaxStalenessMillis = clientCacheMaxStalenessMillis;
+        this.clientCache = clientCacheMaxStalenessMillis > 0 ?
+                CacheBuilder.newBuilder().maximumSize(10_000).build() :
+                null;
+    }
+
     @Override
     public ClientDetails loadClientByClientId(String clientId, String zoneId) throws InvalidClientException {
+        Cache<String, CachedClient> cache = clientCache;
+        if (cache == null) {
+            return queryClientDetails(clientId, zoneId);
+        }
+
+        String key = zoneId + ":" + clientId;
+        RequestAttributes requestAttributes = RequestContextHolder.getRequestAttributes();
+        if (requestAttributes != null) {
+            Object memo = requestAttributes.getAttribute(CLIENT_MEMO_ATTRIBUTE + key, RequestAttributes.SCOPE_REQUEST);
+            if (memo != null) {
+                return copyOf((UaaClientDetails) memo);
+            }
+        }
+
+        CachedClient cached = cache.getIfPresent(key);
+        if (cached == null || !isCurrent(cached, clientId, zoneId)) {
+            long generation = clientCacheGeneration.get();
+            UaaClientDetails details = (UaaClientDetails) queryClientDetails(clientId, zoneId);
+            cached = new CachedClient(details, stampOf(details), System.currentTimeMillis());
+            cache.put(key, cached);
+            if (clientCacheGeneration.get() != generation) {
+                // changed while loading, keep it for this caller only
+                cache.invalidate(key);
+            }
+        }
+
+        if (requestAttributes != null) {
+            requestAttributes.setAttribute(CLIENT_MEMO_ATTRIBUTE + key, cached.details, RequestAttributes.SCOPE_REQUEST);
+        }
+        return copyOf(cached.details);
+    }
+
+    private ClientDetails queryClientDetails(String clientId, String zoneId) throws InvalidClientException {
         ClientDetails details;
         try {
             details = jdbcTemplate.queryForObject(selectClientDetailsSql, new ClientDetailsRowMapper(), clientId, zoneId);
@@ -154,6 +227,7 @@ public class MultitenantJdbcClientDetailsService extends MultitenantClientServic
     @Override
     public void updateClientDetails(ClientDetails clientDetails, String zoneId) throws NoSuchClientException {
         int count = jdbcTemplate.update(DEFAULT_UPDATE_STATEMENT, getFieldsForUpdate(clientDetails, zoneId));
+        evictClient(clientDetails.getClientId(), zoneId);
         if (count != 1) {
             throw new NoSuchClientException(NO_CLIENT_FOUND_WITH_ID + clientDetails.getClientId() + " in identity zone id=" + zoneId);
         }
@@ -162,6 +236,7 @@ public class MultitenantJdbcClientDetailsService extends MultitenantClientServic
     @Override
     public void updateClientSecret(String clientId, String secret, String zoneId) throws NoSuchClientException {
         int count = jdbcTemplate.update(DEFAULT_UPDATE_SECRET_STATEMENT, secret != null ? passwordEncoder.encode(secret) : null, clientId, zoneId);
+        evictClient(clientId, zoneId);
         if (count != 1) {
             throw new NoSuchClientException(NO_CLIENT_FOUND_WITH_ID + clientId);
         }
@@ -170,6 +245,7 @@ public class MultitenantJdbcClientDetailsService extends MultitenantClientServic
     @Override
     public void updateClientJwtConfig(String clientId, String keyConfig, String zoneId) throws NoSuchClientException {
         int count = jdbcTemplate.update(DEFAULT_UPDATE_CLIENT_JWT_CONFIG_STATEMENT, keyConfig, clientId, zoneId);
+        evictClient(clientId, zoneId);
         if (count != 1) {
             throw new NoSuchClientException(NO_CLIENT_FOUND_WITH_ID + clientId);
         }
@@ -251,18 +327,102 @@ public class MultitenantJdbcClientDetailsService extends MultitenantClientServic
 
     @Override
     public int deleteByIdentityZone(String zoneId) {
-        return jdbcTemplate.update(DELETE_CLIENTS_BY_ZONE, zoneId);
+        int count = jdbcTemplate.update(DELETE_CLIENTS_BY_ZONE, zoneId);
+        evictZone(zoneId);
+        return count;
     }
 
     @Override
     public int deleteByClient(String clientId, String zoneId) {
         int count = jdbcTemplate.update(DEFAULT_DELETE_STATEMENT, clientId, zoneId);
+        evictClient(clientId, zoneId);
         if (count == 0) {
             throw new NoSuchClientException(NO_CLIENT_FOUND_WITH_ID + clientId);
         }
         return count;
     }
 
+    @Override
+    public void onApplicationEvent(AbstractUaaEvent event) {
+        SystemDeletable.super.onApplicationEvent(event);
+        if (event instanceof AbstractClientAdminEvent clientAdminEvent && clientAdminEvent.getClient() != null) {
+            evictClient(clientAdminEvent.getClient().getClientId(), event.getIdentityZoneId());
+        }
+    }
+
+    void evictClient(String clientId, String zoneId) {
+        clientCacheGeneration.incrementAndGet();
+        String key = zoneId + ":" + clientId;
+        Cache<String, CachedClient> cache = clientCache;
+        if (cache != null) {
+            cache.invalidate(key);
+        }
+        RequestAttributes requestAttributes = RequestContextHolder.getRequestAttributes();
+        if (requestAttributes != null) {
+            requestAttributes.removeAttribute(CLIENT_MEMO_ATTRIBUTE + key, RequestAttributes.SCOPE_REQUEST);
+        }
+    }
+
+    private void evictZone(String zoneId) {
+        clientCacheGeneration.incrementAndGet();
+        String zonePrefix = zoneId + ":";
+        Cache<String, CachedClient> cache = clientCache;
+        if (cache != null) {
+            cache.asMap().keySet().removeIf(key -> key.startsWith(zonePrefix));
+        }
+        RequestAttributes requestAttributes = RequestContextHolder.getRequestAttributes();
+        if (requestAttributes != null) {
+            for (String name : requestAttributes.getAttributeNames(RequestAttributes.SCOPE_REQUEST)) {
+                if (name.startsWith(CLIENT_MEMO_ATTRIBUTE + zonePrefix)) {
+                    requestAttributes.removeAttribute(name, RequestAttributes.SCOPE_REQUEST);
+                }
+            }
+        }
+    }
+
+    private boolean isCurrent(CachedClient cached, String clientId, String zoneId) {
+        long now = System.currentTimeMillis();
+        if (now - cached.validatedAt <= clientCacheMaxStalenessMillis) {
+            return true;
+        }
+        List<String> stamps = jdbcTemplate.query(STAMP_SELECT_STATEMENT,
+                (rs, rowNum) -> stamp(rs.getTimestamp(1), rs.getString(2), rs.getString(3)), clientId, zoneId);
+        if (stamps.size() == 1 && stamps.get(0).equals(cached.stamp)) {
+            cached.validatedAt = now;
+            return true;
+        }
+        return false;
+    }
+
+    private static String stampOf(UaaClientDetails details) {
+        return stamp(details.getAdditionalInformation().get("lastModified"), details.getClientSecret(), details.getClientJwtConfig());
+    }
+
+    private static String stamp(Object lastModified, String clientSecret, String clientJwtConfig) {
+        return lastModified + "|" + clientSecret + "|" + clientJwtConfig;
+    }
+
+    private static UaaClientDetails copyOf(UaaClientDetails details) {
+        UaaClientDetails copy = new UaaClientDetails(details);
+        if (details.getAutoApproveScopes() != null) {
+            copy.setAutoApproveScopes(details.getAutoApproveScopes());
+        }
+        copy.setClientJwtConfig(details.getClientJwtConfig());
+        return copy;
+    }
+
+    private static final class CachedClient {
+        private final UaaClientDetails details;
+        private final String stamp;
+        private volatile long validatedAt;
+
+        private CachedClient(UaaClientDetails details, String stamp, long validatedAt) {
+            this.details = details;
+            this.stamp = stamp;
+            this.validatedAt = validatedAt;
+        }
+    }
+
     @Override
     public Logger getLogger() {
         return logger;
@@ -276,6 +436,7 @@ public class MultitenantJdbcClientDetailsService extends MultitenantClientServic
                 .append(clientDetails.getClientSecret() == null ? "" : clientDetails.getClientSecret() + " ")
                 .append(encodedNewSecret);
         int count = jdbcTemplate.update(DEFAULT_UPDATE_SECRET_STATEMENT, newSecretBuilder.toString(), clientId, zoneId);
+        evictClient(clientId, zoneId);
         if (count != 1) {
             throw new NoSuchClientException(NO_CLIENT_FOUND_WITH_ID + clientId);
         }
@@ -286,6 +447,7 @@ public class MultitenantJdbcClientDetailsService extends MultitenantClientServic
         ClientDetails clientDetails = loadClientByClientId(clientId, zoneId);
         String clientSecret = clientDetails.getClientSecret().split(" ")[1];
         int count = jdbcTemplate.update(DEFAULT_UPDATE_SECRET_STATEMENT, clientSecret, clientId, zoneId);
+        evictClient(clientId, zoneId);
         if (count != 1) {
             throw new NoSuchClientException("Unable to update client with " + clientId);
         }
@@ -0,0 +1,6 @@
+-- lease based lock rows, used to elect a single node for cluster wide background work
+CREATE TABLE leader_lock (
+  lock_name VARCHAR(64) NOT NULL PRIMARY KEY,
+  lock_owner VARCHAR(255) NOT NULL,
+  expires_at BIGINT NOT NULL
+);
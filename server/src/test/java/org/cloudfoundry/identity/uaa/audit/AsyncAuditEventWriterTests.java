@@ -0,0 +1,197 @@
+package org.cloudfoundry.identity.uaa.audit;
+
+import org.cloudfoundry.identity.uaa.annotations.WithDatabaseContext;
+import org.cloudfoundry.identity.uaa.util.JsonUtils;
+import org.cloudfoundry.identity.uaa.util.TimeServiceImpl;
+import org.cloudfoundry.identity.uaa.zone.IdentityZone;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.cloudfoundry.identity.uaa.audit.AuditEventType.UserAuthenticationFailure;
+import static org.cloudfoundry.identity.uaa.audit.AuditEventType.UserAuthenticationSuccess;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@WithDatabaseContext
+class AsyncAuditEventWriterTests {
+
+    private static final String COUNT_SQL = "select count(*) from sec_audit where principal_id=?";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private AsyncAuditEventWriter writer;
+
+    @BeforeEach
+    void cleanUp() {
+        jdbcTemplate.execute("DELETE FROM sec_audit WHERE principal_id in ('async-1', 'async-2')");
+    }
+
+    @AfterEach
+    void stopWriter() {
+        if (writer != null) {
+            writer.stop();
+        }
+    }
+
+    @Test
+    void eventsAreWrittenInBatches() {
+        writer = new AsyncAuditEventWriter(jdbcTemplate, 100, 10, 50, AsyncAuditEventWriter.OverflowPolicy.BLOCK, null);
+        writer.start();
+        for (int i = 0; i < 25; i++) {
+            writer.insert(event("async-1"), IdentityZone.getUaaZoneId());
+        }
+        writer.stop();
+
+        assertEquals(25, count("async-1"));
+        assertEquals(25, writer.getWrittenCount());
+        assertTrue(writer.getBatchCount() >= 3);
+        assertEquals(0, writer.getQueueDepth());
+    }
+
+    @Test
+    void deletesDoNotOvertakeEarlierInserts() {
+        JdbcUnsuccessfulLoginCountingAuditService auditService = new JdbcUnsuccessfulLoginCountingAuditService(jdbcTemplate, new TimeServiceImpl());
+        writer = new AsyncAuditEventWriter(jdbcTemplate, 100, 10, 1000, AsyncAuditEventWriter.OverflowPolicy.BLOCK, null);
+        auditService.setAsyncWriter(writer);
+        writer.start();
+
+        auditService.log(event("async-1"), IdentityZone.getUaaZoneId());
+        auditService.log(event("async-1"), IdentityZone.getUaaZoneId());
+        auditService.log(new AuditEvent(UserAuthenticationSuccess, "async-1", "1.1.1.1", "joe", System.currentTimeMillis(), IdentityZone.getUaaZoneId(), null, null), IdentityZone.getUaaZoneId());
+        auditService.log(event("async-1"), IdentityZone.getUaaZoneId());
+        writer.stop();
+
+        assertEquals(1, count("async-1"));
+    }
+
+    @Test
+    void spilledEventsAreReplayed(@TempDir Path tempDir) {
+        File spillFile = tempDir.resolve("audit-spill.jsonl").toFile();
+        writer = new AsyncAuditEventWriter(jdbcTemplate, 1, 10, 50, AsyncAuditEventWriter.OverflowPolicy.SPILL, spillFile);
+        writer.start();
+        for (int i = 0; i < 50; i++) {
+            writer.insert(event("async-2"), IdentityZone.getUaaZoneId());
+        }
+        writer.stop();
+
+        assertEquals(50, count("async-2"));
+        assertFalse(spillFile.exists());
+    }
+
+    @Test
+    void spilledFailuresAreNotWrittenAfterALaterReset(@TempDir Path tempDir) throws Exception {
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        JdbcTemplate blockingTemplate = new JdbcTemplate(jdbcTemplate.getDataSource()) {
+            @Override
+            public int[] batchUpdate(String sql, List<Object[]> batchArgs) {
+                writing.countDown();
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.batchUpdate(sql, batchArgs);
+            }
+        };
+        File spillFile = tempDir.resolve("audit-spill.jsonl").toFile();
+        JdbcUnsuccessfulLoginCountingAuditService auditService = new JdbcUnsuccessfulLoginCountingAuditService(jdbcTemplate, new TimeServiceImpl());
+        auditService.setLazySweepEnabled(false);
+        writer = new AsyncAuditEventWriter(blockingTemplate, 1, 1, 10, AsyncAuditEventWriter.OverflowPolicy.SPILL, spillFile);
+        auditService.setAsyncWriter(writer);
+        writer.start();
+
+        auditService.log(event("async-1"), IdentityZone.getUaaZoneId());
+        assertTrue(writing.await(10, TimeUnit.SECONDS));
+        auditService.log(event("async-1"), IdentityZone.getUaaZoneId());
+        auditService.log(event("async-1"), IdentityZone.getUaaZoneId());
+        auditService.log(new AuditEvent(UserAuthenticationSuccess, "async-1", "1.1.1.1", "joe", System.currentTimeMillis(), IdentityZone.getUaaZoneId(), null, null), IdentityZone.getUaaZoneId());
+        assertEquals(2, writer.getSpilledCount());
+        release.countDown();
+        writer.stop();
+
+        assertEquals(0, count("async-1"));
+        assertFalse(spillFile.exists());
+    }
+
+    @Test
+    void spillFileOfAnEarlierRunIsReplayedBeforeNewWork(@TempDir Path tempDir) throws Exception {
+        File spillFile = tempDir.resolve("audit-spill.jsonl").toFile();
+        Files.writeString(spillFile.toPath(), JsonUtils.writeValueAsString(Map.of(
+                "op", "INSERT_EVENT",
+                "principalId", "async-1",
+                "eventType", UserAuthenticationFailure.getCode(),
+                "origin", "joe",
+                "data", "1.1.1.1",
+                "zoneId", IdentityZone.getUaaZoneId(),
+                "created", System.currentTimeMillis())));
+
+        JdbcUnsuccessfulLoginCountingAuditService auditService = new JdbcUnsuccessfulLoginCountingAuditService(jdbcTemplate, new TimeServiceImpl());
+        writer = new AsyncAuditEventWriter(jdbcTemplate, 100, 10, 10, AsyncAuditEventWriter.OverflowPolicy.SPILL, spillFile);
+        writer.start();
+        auditService.setAsyncWriter(writer);
+        auditService.log(new AuditEvent(UserAuthenticationSuccess, "async-1", "1.1.1.1", "joe", System.currentTimeMillis(), IdentityZone.getUaaZoneId(), null, null), IdentityZone.getUaaZoneId());
+        writer.stop();
+
+        assertEquals(0, count("async-1"));
+        assertFalse(spillFile.exists());
+    }
+
+    @Test
+    void spillRecordsWithSqlAreRefused(@TempDir Path tempDir) throws Exception {
+        jdbcTemplate.update(AsyncAuditEventWriter.INSERT_SQL, "async-2", UserAuthenticationFailure.getCode(), "joe", "1.1.1.1",
+                IdentityZone.getUaaZoneId(), new Timestamp(System.currentTimeMillis()));
+        File spillFile = tempDir.resolve("audit-spill.jsonl").toFile();
+        Files.write(spillFile.toPath(), List.of(
+                JsonUtils.writeValueAsString(Map.of(
+                        "sql", "delete from sec_audit where principal_id=?",
+                        "args", List.of("async-2"),
+                        "timestamps", List.of())),
+                JsonUtils.writeValueAsString(Map.of(
+                        "op", "DROP_TABLE",
+                        "sql", "delete from sec_audit where principal_id=?",
+                        "principalId", "async-2")),
+                JsonUtils.writeValueAsString(Map.of(
+                        "op", "RESET_FAILURES",
+                        "principalId", "async-1",
+                        "zoneId", IdentityZone.getUaaZoneId()))));
+
+        writer = new AsyncAuditEventWriter(jdbcTemplate, 100, 10, 10, AsyncAuditEventWriter.OverflowPolicy.SPILL, spillFile);
+        writer.start();
+        writer.stop();
+
+        assertEquals(1, count("async-2"));
+        assertEquals(2, writer.getFailedCount());
+        assertFalse(spillFile.exists());
+    }
+
+    @Test
+    void writesSynchronouslyWhenNotStarted() {
+        writer = new AsyncAuditEventWriter(jdbcTemplate, 10, 10, 50, AsyncAuditEventWriter.OverflowPolicy.DROP, null);
+        writer.insert(event("async-1"), IdentityZone.getUaaZoneId());
+        assertEquals(1, count("async-1"));
+    }
+
+    private int count(String principalId) {
+        return jdbcTemplate.queryForObject(COUNT_SQL, Integer.class, principalId);
+    }
+
+    private static AuditEvent event(String principalId) {
+        return new AuditEvent(UserAuthenticationFailure, principalId, "1.1.1.1", "joe", System.currentTimeMillis(), IdentityZone.getUaaZoneId(), null, null);
+    }
+}
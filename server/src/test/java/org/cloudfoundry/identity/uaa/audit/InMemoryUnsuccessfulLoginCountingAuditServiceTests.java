@@ -0,0 +1,130 @@
+package org.cloudfoundry.identity.uaa.audit;
+
+import org.cloudfoundry.identity.uaa.util.TimeService;
+import org.cloudfoundry.identity.uaa.zone.IdentityZone;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.cloudfoundry.identity.uaa.audit.AuditEventType.ClientAuthenticationFailure;
+import static org.cloudfoundry.identity.uaa.audit.AuditEventType.PasswordChangeSuccess;
+import static org.cloudfoundry.identity.uaa.audit.AuditEventType.UserAuthenticationFailure;
+import static org.cloudfoundry.identity.uaa.audit.AuditEventType.UserAuthenticationSuccess;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class InMemoryUnsuccessfulLoginCountingAuditServiceTests {
+
+    private TimeService mockTimeService;
+    private JdbcUnsuccessfulLoginCountingAuditService mockJdbcAuditService;
+    private InMemoryUnsuccessfulLoginCountingAuditService auditService;
+    private long now;
+
+    @BeforeEach
+    void createService() {
+        now = System.currentTimeMillis();
+        mockTimeService = mock(TimeService.class);
+        when(mockTimeService.getCurrentTimeMillis()).thenReturn(now);
+        mockJdbcAuditService = mock(JdbcUnsuccessfulLoginCountingAuditService.class);
+        when(mockJdbcAuditService.find(anyString(), anyLong(), anyString())).thenReturn(new ArrayList<>());
+        auditService = new InMemoryUnsuccessfulLoginCountingAuditService(mockTimeService, mockJdbcAuditService, 100, 3, 100);
+    }
+
+    @AfterEach
+    void shutdown() {
+        auditService.destroy();
+    }
+
+    @Test
+    void failuresAreCountedMostRecentFirst() {
+        log(UserAuthenticationFailure, "1", "first");
+        when(mockTimeService.getCurrentTimeMillis()).thenReturn(now + 1000);
+        log(UserAuthenticationFailure, "1", "second");
+
+        List<AuditEvent> events = auditService.find("1", 0, IdentityZone.getUaaZoneId());
+        assertEquals(2, events.size());
+        assertEquals("second", events.get(0).getData());
+        assertEquals(now + 1000, events.get(0).getTime());
+        assertEquals(1, auditService.find("1", now, IdentityZone.getUaaZoneId()).size());
+        assertTrue(auditService.find("1", 0, "other-zone").isEmpty());
+    }
+
+    @Test
+    void successResetsFailures() {
+        log(UserAuthenticationFailure, "1", "joe");
+        log(UserAuthenticationFailure, "1", "joe");
+        log(UserAuthenticationSuccess, "1", "joe");
+        assertTrue(auditService.find("1", 0, IdentityZone.getUaaZoneId()).isEmpty());
+
+        log(UserAuthenticationFailure, "1", "joe");
+        log(PasswordChangeSuccess, "1", "joe");
+        assertTrue(auditService.find("1", 0, IdentityZone.getUaaZoneId()).isEmpty());
+    }
+
+    @Test
+    void onlyMostRecentFailuresAreRetained() {
+        for (int i = 0; i < 5; i++) {
+            when(mockTimeService.getCurrentTimeMillis()).thenReturn(now + i);
+            log(UserAuthenticationFailure, "1", "failure" + i);
+        }
+        List<AuditEvent> events = auditService.find("1", 0, IdentityZone.getUaaZoneId());
+        assertEquals(3, events.size());
+        assertEquals("failure4", events.get(0).getData());
+        assertEquals("failure2", events.get(2).getData());
+    }
+
+    @Test
+    void otherEventsAreIgnored() {
+        log(ClientAuthenticationFailure, "client", "client");
+        assertTrue(auditService.find("client", 0, IdentityZone.getUaaZoneId()).isEmpty());
+        verify(mockJdbcAuditService, never()).log(any(), anyString());
+    }
+
+    @Test
+    void eventsAreWrittenThroughAsynchronously() {
+        AuditEvent failure = log(UserAuthenticationFailure, "1", "joe");
+        AuditEvent success = log(UserAuthenticationSuccess, "1", "joe");
+        verify(mockJdbcAuditService, timeout(1000)).log(failure, IdentityZone.getUaaZoneId());
+        verify(mockJdbcAuditService, timeout(1000)).log(success, IdentityZone.getUaaZoneId());
+    }
+
+    @Test
+    void storedFailuresAreLoadedOnce() {
+        AuditEvent stored = new AuditEvent(UserAuthenticationFailure, "1", "1.1.1.1", "stored", now - 1000, IdentityZone.getUaaZoneId(), null, null);
+        when(mockJdbcAuditService.find(eq("1"), anyLong(), eq(IdentityZone.getUaaZoneId()))).thenReturn(List.of(stored));
+
+        log(UserAuthenticationFailure, "1", "joe");
+        List<AuditEvent> events = auditService.find("1", 0, IdentityZone.getUaaZoneId());
+
+        assertEquals(2, events.size());
+        assertEquals("stored", events.get(1).getData());
+        verify(mockJdbcAuditService, times(1)).find(eq("1"), anyLong(), eq(IdentityZone.getUaaZoneId()));
+    }
+
+    @Test
+    void withoutWriteThroughNothingIsPersisted() {
+        auditService = new InMemoryUnsuccessfulLoginCountingAuditService(mockTimeService, null);
+        log(UserAuthenticationFailure, "1", "joe");
+        assertEquals(1, auditService.find("1", 0, IdentityZone.getUaaZoneId()).size());
+        assertEquals(0, auditService.getPendingWrites());
+    }
+
+    private AuditEvent log(AuditEventType type, String principal, String data) {
+        AuditEvent event = new AuditEvent(type, principal, "1.1.1.1", data, now, IdentityZone.getUaaZoneId(), null, null);
+        auditService.log(event, IdentityZone.getUaaZoneId());
+        return event;
+    }
+}
@@ -17,12 +17,16 @@ import static org.mockito.Mockito.when;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
 
 import com.google.common.testing.FakeTicker;
 
 import org.cloudfoundry.identity.uaa.impl.config.RestTemplateConfig;
 import org.cloudfoundry.identity.uaa.provider.SlowHttpServer;
+import org.cloudfoundry.identity.uaa.util.JsonUtils;
 import org.cloudfoundry.identity.uaa.util.TimeService;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
@@ -140,6 +144,52 @@ class StaleUrlCacheTests {
     assertSame(c1, c2);
   }
 
+  @Test
+  void stale_entry_returned_while_refreshing_in_background() throws Exception {
+    List<Runnable> refreshes = new ArrayList<>();
+    cache = new StaleUrlCache(CACHE_EXPIRATION, mockTimeService, 2, ticker, refreshes::add);
+    byte[] c1 = cache.getUrlContent(uri, mockRestTemplate);
+    ticker.advance(Duration.ofMillis(CACHE_EXPIRATION.toMillis() + 1));
+
+    assertSame(c1, cache.getUrlContent(uri, mockRestTemplate));
+    verify(mockRestTemplate, times(1)).getForObject(eq(new URI(uri)), same(byte[].class));
+    assertEquals(1, refreshes.size());
+
+    refreshes.get(0).run();
+    byte[] c2 = cache.getUrlContent(uri, mockRestTemplate);
+    verify(mockRestTemplate, times(2)).getForObject(eq(new URI(uri)), same(byte[].class));
+    assertNotSame(c1, c2);
+  }
+
+  @Test
+  void failing_uri_is_not_fetched_again_during_backoff() throws Exception {
+    when(mockRestTemplate.getForObject(any(URI.class), any())).thenThrow(new RestClientException("mock"));
+    assertThrows(RestClientException.class, () -> cache.getUrlContent(uri, mockRestTemplate));
+    assertThrows(RestClientException.class, () -> cache.getUrlContent(uri, mockRestTemplate));
+    verify(mockRestTemplate, times(1)).getForObject(eq(new URI(uri)), same(byte[].class));
+
+    ticker.advance(StaleUrlCache.MIN_FAILURE_BACKOFF);
+    assertThrows(RestClientException.class, () -> cache.getUrlContent(uri, mockRestTemplate));
+    verify(mockRestTemplate, times(2)).getForObject(eq(new URI(uri)), same(byte[].class));
+
+    // the second failure doubles the backoff
+    ticker.advance(StaleUrlCache.MIN_FAILURE_BACKOFF);
+    assertThrows(RestClientException.class, () -> cache.getUrlContent(uri, mockRestTemplate));
+    verify(mockRestTemplate, times(2)).getForObject(eq(new URI(uri)), same(byte[].class));
+  }
+
+  @Test
+  void fetches_are_recorded_per_uri() {
+    cache.getUrlContent(uri, mockRestTemplate);
+    when(mockRestTemplate.getForObject(any(URI.class), any())).thenThrow(new RestClientException("mock"));
+    assertThrows(RestClientException.class, () -> cache.getUrlContent("http://test1.com", mockRestTemplate));
+
+    Map<String, String> statistics = cache.getFetchStatistics();
+    assertEquals(2, statistics.size());
+    assertEquals(1, ((Number) JsonUtils.readValue(statistics.get(uri), Map.class).get("fetches")).intValue());
+    assertEquals(1, ((Number) JsonUtils.readValue(statistics.get("http://test1.com"), Map.class).get("errors")).intValue());
+  }
+
   @Test
   public void extended_method_invoked_on_rest_template() throws URISyntaxException {
     HttpEntity httpEntity = mock(HttpEntity.class);
@@ -631,6 +631,30 @@ class ClientAdminBootstrapTests {
         );
     }
 
+    @Test
+    void parallelBootstrapWritesTheOtherClientsBeforeFailing() {
+        clientAdminBootstrap.setParallelism(4);
+        for (int i = 0; i < 6; i++) {
+            Map<String, Object> map = createClientMap("parallel-" + i);
+            clients.put((String) map.get("id"), map);
+        }
+        Map<String, Object> invalid = createClientMap("parallel-invalid");
+        invalid.remove("authorized-grant-types");
+        clients.put((String) invalid.get("id"), invalid);
+
+        assertThrowsWithMessageThat(InvalidClientDetailsException.class,
+                () -> clientAdminBootstrap.afterPropertiesSet(),
+                containsString("parallel-invalid")
+        );
+
+        for (int i = 0; i < 6; i++) {
+            ClientDetails created = multitenantJdbcClientDetailsService.loadClientByClientId("parallel-" + i);
+            assertTrue(passwordEncoder.matches("bar", created.getClientSecret()));
+        }
+        assertThrows(NoSuchClientException.class,
+                () -> multitenantJdbcClientDetailsService.loadClientByClientId("parallel-invalid"));
+    }
+
     static ClientDetails doSimpleTest(
             final Map<String, Object> map,
             final ClientAdminBootstrap clientAdminBootstrap,
@@ -0,0 +1,155 @@
+package org.cloudfoundry.identity.uaa.db.purge;
+
+import org.cloudfoundry.identity.uaa.annotations.WithDatabaseContext;
+import org.cloudfoundry.identity.uaa.codestore.JdbcExpiringCodeStore;
+import org.cloudfoundry.identity.uaa.resources.jdbc.LimitSqlAdapter;
+import org.cloudfoundry.identity.uaa.util.TimeService;
+import org.cloudfoundry.identity.uaa.util.TimeServiceImpl;
+import org.cloudfoundry.identity.uaa.zone.IdentityZone;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@WithDatabaseContext
+class ExpiredDataPurgerTests {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private LimitSqlAdapter limitSqlAdapter;
+
+    private TimeService timeService;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("delete from leader_lock");
+        jdbcTemplate.update("delete from " + JdbcExpiringCodeStore.tableName);
+        timeService = mock(TimeService.class);
+        when(timeService.getCurrentTimeMillis()).thenReturn(1_000_000L);
+    }
+
+    @Test
+    void onlyOneNodeHoldsTheLock() {
+        JdbcLeaderLock first = new JdbcLeaderLock(jdbcTemplate, timeService, "test", "first", 1000);
+        JdbcLeaderLock second = new JdbcLeaderLock(jdbcTemplate, timeService, "test", "second", 1000);
+
+        assertTrue(first.tryAcquire());
+        assertFalse(second.tryAcquire());
+        assertTrue(first.tryAcquire());
+
+        when(timeService.getCurrentTimeMillis()).thenReturn(1_000_000L + 1001);
+        assertTrue(second.tryAcquire());
+        assertFalse(first.tryAcquire());
+
+        second.release();
+        assertTrue(first.tryAcquire());
+    }
+
+    @Test
+    void purgesExpiredCodesOnlyAsLeader() {
+        JdbcExpiringCodeStore codeStore = new JdbcExpiringCodeStore(dataSource, new TimeServiceImpl());
+        codeStore.setLimitSqlAdapter(limitSqlAdapter);
+        for (int i = 0; i < 120; i++) {
+            jdbcTemplate.update("insert into " + JdbcExpiringCodeStore.tableName + " (code, expiresat, data, intent, identity_zone_id) values (?,?,?,?,?)",
+                    "expired-" + i, System.currentTimeMillis() - 1000, "{}", null, IdentityZone.getUaaZoneId());
+        }
+        jdbcTemplate.update("insert into " + JdbcExpiringCodeStore.tableName + " (code, expiresat, data, intent, identity_zone_id) values (?,?,?,?,?)",
+                "valid", System.currentTimeMillis() + 100_000, "{}", null, IdentityZone.getUaaZoneId());
+
+        new JdbcLeaderLock(jdbcTemplate, new TimeServiceImpl(), "expired-data-purger", "other-node", 60_000).tryAcquire();
+        ExpiredDataPurger purger = purger(new JdbcLeaderLock(jdbcTemplate, new TimeServiceImpl(), "expired-data-purger", "this-node", 60_000), codeStore);
+        assertFalse(purger.purge());
+        assertEquals(121, countCodes());
+
+        jdbcTemplate.update("delete from leader_lock");
+        assertTrue(purger.purge());
+        assertEquals(1, countCodes());
+        assertTrue(purger.getSummary().get(JdbcExpiringCodeStore.tableName).contains("\"purged\":120"));
+    }
+
+    @Test
+    void startDisablesLazySweeps() {
+        JdbcExpiringCodeStore codeStore = new JdbcExpiringCodeStore(dataSource, new TimeServiceImpl());
+        codeStore.setExpirationInterval(0);
+        jdbcTemplate.update("insert into " + JdbcExpiringCodeStore.tableName + " (code, expiresat, data, intent, identity_zone_id) values (?,?,?,?,?)",
+                "expired", System.currentTimeMillis() - 1000, "{}", null, IdentityZone.getUaaZoneId());
+
+        ExpiredDataPurger purger = purger(new JdbcLeaderLock(jdbcTemplate, timeService, "test", 1000), codeStore);
+        purger.setIntervalMillis(60_000);
+        purger.start();
+        try {
+            assertEquals(0, codeStore.cleanExpiredEntries());
+            assertEquals(1, countCodes());
+        } finally {
+            purger.stop();
+        }
+    }
+
+    @Test
+    void batchSizeAdaptsToDeleteLatency() {
+        SlowSweeper sweeper = new SlowSweeper();
+        ExpiredDataPurger purger = new ExpiredDataPurger(new JdbcLeaderLock(jdbcTemplate, timeService, "test", 1000), timeService, List.of(sweeper));
+        purger.setTargetBatchMillis(20);
+        purger.setMaxRunMillis(60_000);
+
+        sweeper.latency = 0;
+        sweeper.remaining = 1500;
+        purger.purge();
+        assertEquals(0, sweeper.remaining);
+        assertTrue(purger.getBatchSize("slow") > 500);
+
+        int grown = purger.getBatchSize("slow");
+        sweeper.latency = 50;
+        sweeper.remaining = 100;
+        purger.purge();
+        assertEquals(grown / 2, purger.getBatchSize("slow"));
+    }
+
+    private ExpiredDataPurger purger(JdbcLeaderLock lock, ExpiredDataSweeper... sweepers) {
+        return new ExpiredDataPurger(lock, new TimeServiceImpl(), List.of(sweepers));
+    }
+
+    private int countCodes() {
+        return jdbcTemplate.queryForObject("select count(*) from " + JdbcExpiringCodeStore.tableName, Integer.class);
+    }
+
+    private static class SlowSweeper implements ExpiredDataSweeper {
+        private long latency;
+        private int remaining;
+
+        @Override
+        public String getSweepName() {
+            return "slow";
+        }
+
+        @Override
+        public int deleteExpired(long now, int maxRows) {
+            try {
+                Thread.sleep(latency);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            int removed = Math.min(remaining, maxRows);
+            remaining -= removed;
+            return removed;
+        }
+
+        @Override
+        public void setLazySweepEnabled(boolean lazySweepEnabled) {
+        }
+    }
+}
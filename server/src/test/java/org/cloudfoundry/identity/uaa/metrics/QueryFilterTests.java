@@ -19,6 +19,8 @@ import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.List;
+
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
@@ -28,12 +30,15 @@ public class QueryFilterTests {
 
     private RequestMetric metric;
     private QueryFilter filter;
+    private QueryStatistics statistics;
 
     @Before
     public void setup() {
         metric = new RequestMetric();
         MetricsAccessor.setCurrent(metric);
         filter = new QueryFilter();
+        statistics = new QueryStatistics();
+        filter.setStatistics(statistics);
     }
 
     @After
@@ -76,4 +81,47 @@ public class QueryFilterTests {
         assertTrue(metric.getQueries().get(0).isIntolerable());
     }
 
-}
\ No newline at end of file
+    @Test
+    public void sampledModeOnlyKeepsIntolerableQueries() {
+        filter.setMode(QueryFilter.SAMPLED);
+        filter.setSampleRate(0);
+        filter.reportQuery("select 1", null, "name", 0, 1);
+        filter.reportQuery("select 2", null, "name", 0, 2);
+        filter.reportSlowQuery("select 3", null, "name", 0, filter.getThreshold() + 10);
+
+        assertEquals(3, metric.getNrOfDatabaseQueries());
+        assertEquals(filter.getThreshold() + 13, metric.getDatabaseQueryTime());
+        assertEquals(1, metric.getQueries().size());
+        assertEquals("select 3", metric.getQueries().get(0).getQuery());
+
+        filter.setSampleRate(1);
+        filter.reportQuery("select 4", null, "name", 0, 1);
+        assertEquals(2, metric.getQueries().size());
+    }
+
+    @Test
+    public void statementsAreNotAggregatedByDefault() {
+        filter.reportQuery("select 1", null, "name", 0, 1);
+        assertEquals(0, statistics.getSlowest(10).size());
+        assertEquals(1, metric.getQueries().size());
+    }
+
+    @Test
+    public void queriesAreAggregatedPerStatement() {
+        filter.setStatisticsEnabled(true);
+        filter.reportQuery("select * from users where id = 'a'", null, "name", 0, 1);
+        filter.reportQuery("select * from users where id = 'b'", null, "name", 0, 3);
+        filter.reportQuery("select 1", null, "name", 0, 1);
+
+        List<QueryStatistics.Statement> slowest = statistics.getSlowest(10);
+        assertEquals(2, slowest.size());
+        assertEquals("select * from users where id = ?", slowest.get(0).getStatement());
+        assertEquals(2, slowest.get(0).getCount());
+        assertEquals(4, slowest.get(0).getTotalTime());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownMode() {
+        filter.setMode("none");
+    }
+}
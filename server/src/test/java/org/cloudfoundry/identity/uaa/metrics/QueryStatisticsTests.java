@@ -0,0 +1,84 @@
+package org.cloudfoundry.identity.uaa.metrics;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class QueryStatisticsTests {
+
+    private QueryStatistics statistics;
+
+    @BeforeEach
+    void setup() {
+        statistics = new QueryStatistics();
+    }
+
+    @Test
+    void fingerprint() {
+        assertEquals("select * from users where id = ? and version = ?",
+                QueryStatistics.fingerprint("select *  from users\n where id = 'it''s' and version = 12"));
+        assertEquals("select id from group_membership where member_id in (?) and table2 = ?",
+                QueryStatistics.fingerprint("select id from group_membership where member_id in (?, ?,?) and table2 = 1.5"));
+    }
+
+    @Test
+    void slowestStatementsComeFirst() {
+        statistics.record("select 1", 1, false);
+        statistics.record("update users set active = ?", 4000, true);
+        statistics.record("select * from users where id = ?", 10, false);
+        statistics.record("select * from users where id = ?", 30, false);
+
+        List<QueryStatistics.Statement> slowest = statistics.getSlowest(2);
+
+        assertEquals(2, slowest.size());
+        QueryStatistics.Statement update = slowest.get(0);
+        assertEquals("update users set active = ?", update.getStatement());
+        assertEquals(1, update.getIntolerableCount());
+        assertEquals(4000, update.getMaxTime());
+        QueryStatistics.Statement select = slowest.get(1);
+        assertEquals(2, select.getCount());
+        assertEquals(40, select.getTotalTime());
+        assertEquals(20, select.getAverageTime(), 0.001);
+        assertEquals(30, select.getP95Time());
+    }
+
+    @Test
+    void numberOfStatementsIsLimited() {
+        statistics.setMaxStatements(2);
+        statistics.record("select 1 from users", 1, false);
+        statistics.record("select 1 from groups", 1, false);
+        statistics.record("select 1 from oauth_code", 1, false);
+        statistics.record("select 1 from identity_zone", 1, false);
+
+        List<QueryStatistics.Statement> slowest = statistics.getSlowest(10);
+
+        assertEquals(3, slowest.size());
+        assertEquals(2, slowest.stream().filter(s -> QueryStatistics.OTHER.equals(s.getStatement())).mapToLong(QueryStatistics.Statement::getCount).sum());
+    }
+
+    @Test
+    void cachedStatementsAreBounded() {
+        statistics.setMaxStatements(10);
+        for (int i = 0; i < 100; i++) {
+            statistics.record("select * from users where id = '" + i + "'", 1, false);
+        }
+
+        assertTrue(statistics.getCachedStatementCount() <= 10);
+        List<QueryStatistics.Statement> slowest = statistics.getSlowest(10);
+        assertEquals(1, slowest.size());
+        assertEquals(100, slowest.get(0).getCount());
+    }
+
+    @Test
+    void settingTheSameMaxStatementsKeepsTheCache() {
+        statistics.setMaxStatements(10);
+        statistics.record("select * from users", 1, false);
+        statistics.setMaxStatements(10);
+
+        assertEquals(1, statistics.getCachedStatementCount());
+    }
+}
@@ -1,5 +1,6 @@
 package org.cloudfoundry.identity.uaa.metrics;
 
+import com.fasterxml.jackson.core.type.TypeReference;
 import org.cloudfoundry.identity.uaa.util.JsonUtils;
 import org.cloudfoundry.identity.uaa.util.TimeService;
 import org.cloudfoundry.identity.uaa.util.TimeServiceImpl;
@@ -102,6 +103,15 @@ class UaaMetricsFilterTests {
         assertEquals(0, queue.getTotals().getCount());
     }
 
+    @Test
+    void slowQueries() {
+        QueryFilter.getStatistics().record("select * from slow_query_report_test", Integer.MAX_VALUE, true);
+        List<Map<String, Object>> slowQueries = readValue(filter.getSlowQueries(), new TypeReference<List<Map<String, Object>>>() {
+        });
+        assertNotNull(slowQueries);
+        assertTrue(slowQueries.stream().anyMatch(q -> "select * from slow_query_report_test".equals(q.get("statement"))));
+    }
+
     String performTwoSimpleRequests() throws ServletException, IOException {
         String path = "/authenticate/test";
         setRequestData(path);
@@ -204,6 +214,20 @@ class UaaMetricsFilterTests {
         assertEquals(2, metricSummary.getTotals().getCount());
     }
 
+    @Test
+    void metricsQueuesAreTheLiveQueues() throws Exception {
+        String path = "/some/path";
+        setRequestData(path);
+        filter.doFilterInternal(request, response, chain);
+
+        Map<String, MetricsQueue> queues = filter.getMetricsQueues();
+        assertEquals(filter.getSummary().keySet(), queues.keySet());
+        assertEquals(1, queues.get(MetricsUtil.GLOBAL_GROUP).getTotals().getCount());
+
+        filter.doFilterInternal(request, response, chain);
+        assertEquals(2, queues.get(filter.getUriGroup(request).getGroup()).getTotals().getCount());
+    }
+
     @Test
     void url_groups() {
         request.setServerName("localhost:8080");
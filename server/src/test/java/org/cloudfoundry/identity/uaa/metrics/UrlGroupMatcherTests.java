@@ -0,0 +1,69 @@
+package org.cloudfoundry.identity.uaa.metrics;
+
+import org.cloudfoundry.identity.uaa.util.TimeServiceImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.cloudfoundry.identity.uaa.metrics.UaaMetricsFilter.FALLBACK;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UrlGroupMatcherTests {
+
+    private List<UrlGroup> groups;
+    private UrlGroupMatcher matcher;
+
+    @BeforeEach
+    void setup() throws Exception {
+        groups = new UaaMetricsFilter(true, false, new TimeServiceImpl()).getUrlGroups();
+        matcher = new UrlGroupMatcher(groups, FALLBACK, 10);
+    }
+
+    @Test
+    void sameGroupsAsAntPathRequestMatchers() {
+        for (String path : Arrays.asList(
+                "", "/", "/Groups", "/Groups/", "/Groups/id/members", "/Groups/External/list",
+                "/oauth/clients/id/secret", "/oauth/clients/tx", "/oauth/clients/tx/secret/x", "/oauth/clients/id",
+                "/oauth/token", "/oauth/token/list/user", "/oauth/token/.well-known/openid-configuration",
+                "/error", "/error404", "/errors/x", "/login", "/login/callback/oidc", "/loginx", "/login.do",
+                "/Users/id", "/ids/Users", "/saml/idp/initiate", "/resources/oss/app.css", "/some/path", "//Users")) {
+            assertSame(antPathGroup(path), matcher.find(path), "Testing URL: " + path);
+        }
+    }
+
+    @Test
+    void fallbackWithoutCatchAll() {
+        matcher = new UrlGroupMatcher(groups.subList(0, 3), FALLBACK, 10);
+        assertSame(FALLBACK, matcher.match("/Users"));
+        assertEquals("/api", matcher.match("/Codes/abc").getGroup());
+    }
+
+    @Test
+    void cacheIsBounded() {
+        for (int i = 0; i < 20; i++) {
+            assertEquals("/users", matcher.match("/Users/" + i).getGroup());
+        }
+        assertTrue(matcher.getCachedPathCount() <= 10);
+        assertTrue(matcher.getCachedPathCount() > 0);
+        assertEquals("/users", matcher.match("/Users/19").getGroup());
+        assertEquals("/users", matcher.match("/Users/0").getGroup());
+        assertTrue(matcher.getCachedPathCount() <= 10);
+    }
+
+    private UrlGroup antPathGroup(String path) {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setServletPath(path);
+        for (UrlGroup group : groups) {
+            if (new AntPathRequestMatcher(group.getPattern()).matches(request)) {
+                return group;
+            }
+        }
+        return FALLBACK;
+    }
+}
@@ -64,6 +64,8 @@ import org.cloudfoundry.identity.uaa.oauth.common.exceptions.InvalidScopeExcepti
 import org.cloudfoundry.identity.uaa.oauth.common.exceptions.InvalidTokenException;
 import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.web.HttpRequestMethodNotSupportedException;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
 
 import java.time.Instant;
 import java.util.ArrayList;
@@ -387,6 +389,52 @@ public class CheckTokenEndpointTests {
         }
     }
 
+    @Test
+    public void testValidationCacheIsNotUsedForOtherRequests() throws Exception {
+        TimeService cacheTime = mock(TimeService.class);
+        ValidatedTokenCache cache = new ValidatedTokenCache(cacheTime);
+        cache.setEnabled(true);
+        tokenValidationService.setValidatedTokenCache(cache);
+        OAuth2AccessToken accessToken = tokenServices.createAccessToken(authentication);
+        try {
+            RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+            endpoint.checkToken(accessToken.getValue(), Collections.emptyList(), request);
+
+            user = new UaaUser(
+                    userId,
+                    userName,
+                    "password",
+                    userEmail,
+                    userAuthorities,
+                    "GivenName",
+                    "FamilyName",
+                    new Date(nowMillis - 2000),
+                    new Date(nowMillis - 2000),
+                    OriginKeys.UAA,
+                    "externalId",
+                    false,
+                    IdentityZoneHolder.get().getId(),
+                    "changedsalt",
+                    new Date(nowMillis - 2000));
+            resetAndMockUserDatabase(userId, user);
+
+            // check_token is still answered from the cache
+            RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+            endpoint.checkToken(accessToken.getValue(), Collections.emptyList(), request);
+            long hits = cache.getHitCount();
+
+            RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+            try {
+                tokenServices.loadAuthentication(accessToken.getValue());
+                fail("A bearer token presented to an API must be validated in full");
+            } catch (TokenRevokedException ignored) {
+            }
+            assertEquals(hits, cache.getHitCount());
+        } finally {
+            RequestContextHolder.resetRequestAttributes();
+        }
+    }
+
     @Test(expected = TokenRevokedException.class)
     public void testRejectUserSaltChange() throws Exception {
         OAuth2AccessToken accessToken = tokenServices.createAccessToken(authentication);
@@ -8,6 +8,8 @@ import org.cloudfoundry.identity.uaa.oauth.token.RevocableTokenProvisioning;
 import org.cloudfoundry.identity.uaa.user.UaaAuthority;
 import org.cloudfoundry.identity.uaa.user.UaaUser;
 import org.cloudfoundry.identity.uaa.user.UaaUserDatabase;
+import org.cloudfoundry.identity.uaa.util.JwtTokenSignedByThisUAA;
+import org.cloudfoundry.identity.uaa.util.TimeServiceImpl;
 import org.cloudfoundry.identity.uaa.util.UaaTokenUtils;
 import org.cloudfoundry.identity.uaa.zone.MultitenantClientServices;
 import org.cloudfoundry.identity.uaa.zone.IdentityZoneHolder;
@@ -29,7 +31,10 @@ import static org.cloudfoundry.identity.uaa.oauth.token.ClaimConstants.*;
 import static org.cloudfoundry.identity.uaa.util.UaaMapUtils.entry;
 import static org.cloudfoundry.identity.uaa.util.UaaMapUtils.map;
 import static org.cloudfoundry.identity.uaa.util.UaaStringUtils.DEFAULT_UAA_URL;
+import static org.junit.Assert.assertSame;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class TokenValidationServiceTest {
@@ -127,6 +132,36 @@ public class TokenValidationServiceTest {
         tokenValidationService.validateToken(accessToken, true);
     }
 
+    @Test
+    public void validation_usesValidatedTokenCache() {
+        ValidatedTokenCache cache = new ValidatedTokenCache(new TimeServiceImpl());
+        cache.setEnabled(true);
+        tokenValidationService.setValidatedTokenCache(cache);
+        content.put(EXPIRY_IN_SECONDS, System.currentTimeMillis() / 1000 + 3600);
+        String accessToken = UaaTokenUtils.constructToken(header, content, signer);
+
+        JwtTokenSignedByThisUAA validated = tokenValidationService.validateToken(accessToken, true, true);
+        assertSame(validated, tokenValidationService.validateToken(accessToken, true, true));
+        verify(userDatabase, times(1)).retrieveUserById(userId);
+
+        cache.evictUser(IdentityZoneHolder.get().getId(), userId);
+        tokenValidationService.validateToken(accessToken, true, true);
+        verify(userDatabase, times(2)).retrieveUserById(userId);
+    }
+
+    @Test
+    public void validation_skipsValidatedTokenCache_unlessRequested() {
+        ValidatedTokenCache cache = new ValidatedTokenCache(new TimeServiceImpl());
+        cache.setEnabled(true);
+        tokenValidationService.setValidatedTokenCache(cache);
+        content.put(EXPIRY_IN_SECONDS, System.currentTimeMillis() / 1000 + 3600);
+        String accessToken = UaaTokenUtils.constructToken(header, content, signer);
+
+        tokenValidationService.validateToken(accessToken, true, true);
+        tokenValidationService.validateToken(accessToken, true);
+        verify(userDatabase, times(2)).retrieveUserById(userId);
+    }
+
     @Test
     public void refreshToken_validatesWithScopeClaim_forBackwardsCompatibilityReasons() {
         Map<String, Object> content = map(
@@ -51,9 +51,11 @@ import java.util.logging.Logger;
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.lessThan;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.atMost;
@@ -138,6 +140,64 @@ class UaaTokenStoreTests {
         assertThat(userAuthentication.getExternalGroups(), containsInAnyOrder("group1", "group2", "group3"));
     }
 
+    @Test
+    void compactEncodingOfUaaAuthentication() {
+        store.setCompactEncoding(true);
+        UaaAuthentication modifiedAuthentication = (UaaAuthentication) uaaAuthentication.getUserAuthentication();
+        MultiValueMap<String, String> userAttributes = new LinkedMultiValueMap<>();
+        userAttributes.put("atest", Arrays.asList("test1", "test2", "test3"));
+        modifiedAuthentication.setUserAttributes(userAttributes);
+        modifiedAuthentication.setExternalGroups(new HashSet<>(Arrays.asList("group1", "group2")));
+        modifiedAuthentication.setAuthenticationMethods(Collections.singleton("pwd"));
+
+        String code = store.createAuthorizationCode(uaaAuthentication);
+        byte[] data = jdbcTemplate.queryForObject("SELECT authentication FROM oauth_code WHERE code = ?", byte[].class, code);
+        assertTrue(OAuth2AuthenticationCodec.isEncoded(data));
+        assertThat(data.length, lessThan(store.serializeOauth2Authentication(uaaAuthentication).length));
+
+        OAuth2Authentication authentication = store.consumeAuthorizationCode(code);
+        assertEquals(uaaAuthentication.getOAuth2Request(), authentication.getOAuth2Request());
+        UaaAuthentication userAuthentication = (UaaAuthentication) authentication.getUserAuthentication();
+        assertEquals(principal, userAuthentication.getPrincipal());
+        assertEquals("username@test.org", userAuthentication.getPrincipal().getEmail());
+        assertThat(userAuthentication.getUserAttributes().get("atest"), containsInAnyOrder("test1", "test2", "test3"));
+        assertThat(userAuthentication.getExternalGroups(), containsInAnyOrder("group1", "group2"));
+        assertThat(userAuthentication.getAuthenticationMethods(), containsInAnyOrder("pwd"));
+        assertEquals("127.0.0.1", ((UaaAuthenticationDetails) userAuthentication.getDetails()).getOrigin());
+
+        store.setCompactEncoding(false);
+        code = store.createAuthorizationCode(usernamePasswordAuthentication);
+        assertEquals(principal, store.consumeAuthorizationCode(code).getUserAuthentication().getPrincipal());
+    }
+
+    @Test
+    void compactEncodingKeepsTheLastLoginSuccessTime() {
+        UaaAuthentication userAuthentication = (UaaAuthentication) uaaAuthentication.getUserAuthentication();
+        userAuthentication.setLastLoginSuccessTime(null);
+        UaaAuthentication decoded = (UaaAuthentication) OAuth2AuthenticationCodec.decode(
+                OAuth2AuthenticationCodec.encode(uaaAuthentication)).getUserAuthentication();
+        assertNull(decoded.getLastLoginSuccessTime());
+
+        userAuthentication.setLastLoginSuccessTime(1234L);
+        decoded = (UaaAuthentication) OAuth2AuthenticationCodec.decode(
+                OAuth2AuthenticationCodec.encode(uaaAuthentication)).getUserAuthentication();
+        assertEquals(Long.valueOf(1234L), decoded.getLastLoginSuccessTime());
+    }
+
+    @Test
+    void codesCanBeKeptInMemory() {
+        store = new UaaTokenStore(new InMemoryAuthorizationCodeStore(timeService), timeService);
+        String code = store.createAuthorizationCode(uaaAuthentication);
+        assertThat(jdbcTemplate.queryForObject("SELECT count(*) FROM oauth_code", Integer.class), is(0));
+
+        assertEquals(principal, store.consumeAuthorizationCode(code).getUserAuthentication().getPrincipal());
+        assertThrows(InvalidGrantException.class, () -> store.consumeAuthorizationCode(code));
+
+        String expired = store.createAuthorizationCode(clientAuthentication);
+        doReturn(Instant.now().plus(Duration.ofHours(1))).when(timeService).getCurrentInstant();
+        assertThrows(InvalidGrantException.class, () -> store.consumeAuthorizationCode(expired));
+    }
+
     @Test
     void consumeClientCredentialsFromOldStore() {
         String code = legacyCodeServices.createAuthorizationCode(clientAuthentication);
@@ -0,0 +1,120 @@
+package org.cloudfoundry.identity.uaa.oauth;
+
+import org.cloudfoundry.identity.uaa.client.UaaClientDetails;
+import org.cloudfoundry.identity.uaa.client.event.SecretChangeEvent;
+import org.cloudfoundry.identity.uaa.oauth.event.TokenRevocationEvent;
+import org.cloudfoundry.identity.uaa.util.JwtTokenSignedByThisUAA;
+import org.cloudfoundry.identity.uaa.util.TimeService;
+import org.cloudfoundry.identity.uaa.zone.IdentityZone;
+import org.cloudfoundry.identity.uaa.zone.event.IdentityZoneModifiedEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.Authentication;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.cloudfoundry.identity.uaa.oauth.token.ClaimConstants.CID;
+import static org.cloudfoundry.identity.uaa.oauth.token.ClaimConstants.EXPIRY_IN_SECONDS;
+import static org.cloudfoundry.identity.uaa.oauth.token.ClaimConstants.USER_ID;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ValidatedTokenCacheTests {
+
+    private static final String ZONE_ID = "zone";
+
+    private TimeService timeService;
+    private ValidatedTokenCache cache;
+
+    @BeforeEach
+    void setUp() {
+        timeService = mock(TimeService.class);
+        when(timeService.getCurrentTimeMillis()).thenReturn(0L);
+        cache = new ValidatedTokenCache(timeService, 60_000L, 100);
+        cache.setEnabled(true);
+    }
+
+    @Test
+    void servesValidatedTokenUntilExpiry() {
+        JwtTokenSignedByThisUAA token = validated("user", "client", 10);
+        cache.put(ZONE_ID, "token", token, cache.getGeneration());
+
+        assertSame(token, cache.get(ZONE_ID, "token"));
+        assertNull(cache.get("other-zone", "token"));
+        assertNull(cache.get(ZONE_ID, "other-token"));
+
+        when(timeService.getCurrentTimeMillis()).thenReturn(10_000L);
+        assertNull(cache.get(ZONE_ID, "token"));
+        assertEquals(1, cache.getHitCount());
+    }
+
+    @Test
+    void tokensWithoutExpiryAreNotCached() {
+        cache.put(ZONE_ID, "token", validated("user", "client", null), cache.getGeneration());
+        assertNull(cache.get(ZONE_ID, "token"));
+    }
+
+    @Test
+    void tokenValidatedDuringEvictionIsNotCached() {
+        long generation = cache.getGeneration();
+        cache.evictUser(ZONE_ID, "user");
+        cache.put(ZONE_ID, "token", validated("user", "client", 10), generation);
+        assertNull(cache.get(ZONE_ID, "token"));
+    }
+
+    @Test
+    void revocationEvictsMatchingTokens() {
+        cache.put(ZONE_ID, "user-client", validated("user", "client", 10), 0);
+        cache.put(ZONE_ID, "user-other", validated("user", "other", 10), 0);
+        cache.put(ZONE_ID, "other-client", validated("other", "client", 10), 0);
+        cache.put("other-zone", "user-client", validated("user", "client", 10), 0);
+
+        cache.onApplicationEvent(new TokenRevocationEvent("user", "client", ZONE_ID, mock(Authentication.class)));
+        assertNull(cache.get(ZONE_ID, "user-client"));
+        assertEquals(3, cache.getSize());
+
+        cache.onApplicationEvent(new TokenRevocationEvent("user", null, ZONE_ID, mock(Authentication.class)));
+        assertNull(cache.get(ZONE_ID, "user-other"));
+        assertEquals(2, cache.getSize());
+    }
+
+    @Test
+    void clientSecretChangeEvictsClientTokens() {
+        cache.put(ZONE_ID, "user-client", validated("user", "client", 10), 0);
+        cache.put(ZONE_ID, "user-other", validated("user", "other", 10), 0);
+
+        cache.onApplicationEvent(new SecretChangeEvent(new UaaClientDetails("client", null, null, null, null), mock(Authentication.class), ZONE_ID));
+
+        assertNull(cache.get(ZONE_ID, "user-client"));
+        assertEquals(1, cache.getSize());
+    }
+
+    @Test
+    void zoneUpdateEvictsZoneTokens() {
+        cache.put(ZONE_ID, "token", validated("user", "client", 10), 0);
+        cache.put("other-zone", "token", validated("user", "client", 10), 0);
+        IdentityZone zone = new IdentityZone();
+        zone.setId(ZONE_ID);
+
+        cache.onApplicationEvent(IdentityZoneModifiedEvent.identityZoneModified(zone));
+
+        assertNull(cache.get(ZONE_ID, "token"));
+        assertEquals(1, cache.getSize());
+    }
+
+    private static JwtTokenSignedByThisUAA validated(String userId, String clientId, Integer expiresInSeconds) {
+        Map<String, Object> claims = new HashMap<>();
+        claims.put(USER_ID, userId);
+        claims.put(CID, clientId);
+        if (expiresInSeconds != null) {
+            claims.put(EXPIRY_IN_SECONDS, expiresInSeconds);
+        }
+        JwtTokenSignedByThisUAA token = mock(JwtTokenSignedByThisUAA.class);
+        when(token.getClaims()).thenReturn(claims);
+        return token;
+    }
+}
@@ -9,6 +9,7 @@ import org.cloudfoundry.identity.uaa.zone.IdentityZoneConfiguration;
 import org.cloudfoundry.identity.uaa.zone.IdentityZoneHolder;
 import org.cloudfoundry.identity.uaa.zone.IdentityZoneProvisioning;
 import org.cloudfoundry.identity.uaa.zone.TokenPolicy;
+import org.cloudfoundry.identity.uaa.zone.event.IdentityZoneModifiedEvent;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -23,6 +24,8 @@ import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
@@ -127,6 +130,54 @@ class KeyInfoServiceTests {
         assertThat(key.keyURL(), is("https://subdomain.localhost/uaa/token_keys"));
     }
 
+    @Test
+    void testKeysAreCachedForUnchangedTokenPolicy() {
+        String keyId = generator.generate();
+        configureDefaultZoneKeys(Collections.singletonMap(keyId, SIGNING_KEY));
+
+        KeyInfo first = keyInfoService.getKey(keyId);
+        KeyInfo second = keyInfoService.getKey(keyId);
+
+        assertSame(first, second);
+        assertEquals(1, keyInfoService.getCacheMissCount());
+        assertEquals(1, keyInfoService.getCacheHitCount());
+    }
+
+    @Test
+    void testKeysAreRebuiltWhenKeyMaterialChanges() {
+        String keyId = generator.generate();
+        configureDefaultZoneKeys(Collections.singletonMap(keyId, "first-key"));
+        KeyInfo first = keyInfoService.getKey(keyId);
+
+        configureDefaultZoneKeys(Collections.singletonMap(keyId, "second-key"));
+        KeyInfo second = keyInfoService.getKey(keyId);
+
+        assertNotSame(first, second);
+        assertEquals("second-key", second.verifierKey());
+    }
+
+    @Test
+    void testKeysAreCachedPerSigningAlgorithm() {
+        String keyId = generator.generate();
+        configureDefaultZoneKeys(Collections.singletonMap(keyId, SIGNING_KEY));
+
+        assertEquals("RS256", keyInfoService.getKey(keyId).algorithm());
+        assertEquals("RS512", keyInfoService.getKey(keyId, "RS512").algorithm());
+        assertEquals(2, keyInfoService.getCacheSize());
+    }
+
+    @Test
+    void testZoneModificationEvictsCachedKeys() {
+        String keyId = generator.generate();
+        configureDefaultZoneKeys(Collections.singletonMap(keyId, SIGNING_KEY));
+        KeyInfo first = keyInfoService.getKey(keyId);
+
+        keyInfoService.onApplicationEvent(IdentityZoneModifiedEvent.identityZoneModified(IdentityZone.getUaa()));
+
+        assertEquals(0, keyInfoService.getCacheSize());
+        assertNotSame(first, keyInfoService.getKey(keyId));
+    }
+
     @Test
     void testActiveKeyFallsBackToLegacyKey() {
         configureDefaultZoneKeys(Collections.emptyMap());
@@ -420,4 +420,47 @@ class JdbcIdentityProviderProvisioningTests {
         jdbcIdentityProviderProvisioning.create(idp, otherZoneId2);
         assertFalse(jdbcIdentityProviderProvisioning.idpWithAliasExistsInZone(otherZoneId2));
     }
+
+    @Test
+    void cachedLookupsReturnCopiesAndSeeLocalChanges() {
+        jdbcIdentityProviderProvisioning.setCacheMaxStalenessMillis(60_000);
+        IdentityProvider<AbstractIdentityProviderDefinition> fixture = MultitenancyFixture.identityProvider(origin, otherZoneId1);
+        fixture.setConfig(new AbstractIdentityProviderDefinition().setEmailDomain(List.of("example.com")));
+        IdentityProvider idp = jdbcIdentityProviderProvisioning.create(fixture, otherZoneId1);
+
+        IdentityProvider retrieved = jdbcIdentityProviderProvisioning.retrieveByOrigin(origin, otherZoneId1);
+        retrieved.setName("modified by caller");
+        retrieved.getConfig().setEmailDomain(List.of("modified.example.com"));
+        retrieved.getConfig().setProviderDescription("modified by caller");
+        IdentityProvider cached = jdbcIdentityProviderProvisioning.retrieveActive(otherZoneId1).get(0);
+        assertEquals(idp.getName(), cached.getName());
+        assertEquals(List.of("example.com"), cached.getConfig().getEmailDomain());
+        assertNull(cached.getConfig().getProviderDescription());
+
+        retrieved.setActive(false);
+        jdbcIdentityProviderProvisioning.update(retrieved, otherZoneId1);
+        assertTrue(jdbcIdentityProviderProvisioning.retrieveActive(otherZoneId1).isEmpty());
+        assertEquals("modified by caller", jdbcIdentityProviderProvisioning.retrieveByOriginIgnoreActiveFlag(origin, otherZoneId1).getName());
+        assertThrows(EmptyResultDataAccessException.class, () -> jdbcIdentityProviderProvisioning.retrieveByOrigin(origin, otherZoneId1));
+
+        jdbcIdentityProviderProvisioning.deleteByOrigin(origin, otherZoneId1);
+        assertTrue(jdbcIdentityProviderProvisioning.retrieveAll(false, otherZoneId1).isEmpty());
+    }
+
+    @Test
+    void cachedSnapshotIsRevalidatedAgainstVersions() throws Exception {
+        jdbcIdentityProviderProvisioning.setCacheMaxStalenessMillis(60_000);
+        IdentityProvider idp = jdbcIdentityProviderProvisioning.create(MultitenancyFixture.identityProvider(origin, otherZoneId1), otherZoneId1);
+        jdbcIdentityProviderProvisioning.retrieveActive(otherZoneId1);
+
+        // as done by another instance
+        jdbcTemplate.update("update identity_provider set version=version+1, name=? where id=?", "changed elsewhere", idp.getId());
+        assertEquals(idp.getName(), jdbcIdentityProviderProvisioning.retrieveByOrigin(origin, otherZoneId1).getName());
+
+        jdbcIdentityProviderProvisioning.setCacheMaxStalenessMillis(1);
+        jdbcIdentityProviderProvisioning.retrieveActive(otherZoneId1);
+        jdbcTemplate.update("update identity_provider set version=version+1, name=? where id=?", "changed again", idp.getId());
+        Thread.sleep(5);
+        assertEquals("changed again", jdbcIdentityProviderProvisioning.retrieveByOrigin(origin, otherZoneId1).getName());
+    }
 }
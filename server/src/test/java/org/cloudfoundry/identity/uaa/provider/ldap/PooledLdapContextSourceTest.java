@@ -0,0 +1,116 @@
+package org.cloudfoundry.identity.uaa.provider.ldap;
+
+import org.cloudfoundry.identity.uaa.util.TimeService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ldap.UncategorizedLdapException;
+import org.springframework.ldap.core.support.BaseLdapPathContextSource;
+
+import javax.naming.CommunicationException;
+import javax.naming.NameNotFoundException;
+import javax.naming.directory.DirContext;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class PooledLdapContextSourceTest {
+
+    private BaseLdapPathContextSource delegate;
+    private TimeService timeService;
+    private DirContext first;
+    private DirContext second;
+    private PooledLdapContextSource pool;
+
+    @BeforeEach
+    void setUp() {
+        delegate = mock(BaseLdapPathContextSource.class);
+        first = mock(DirContext.class);
+        second = mock(DirContext.class);
+        when(delegate.getReadOnlyContext()).thenReturn(first, second);
+        timeService = mock(TimeService.class);
+        when(timeService.getCurrentTimeMillis()).thenReturn(0L);
+        pool = new PooledLdapContextSource(delegate, 1);
+        pool.setTimeService(timeService);
+        pool.setMaxIdleMillis(10_000L);
+        pool.setValidationIntervalMillis(1_000L);
+        pool.setMaxWaitMillis(0L);
+    }
+
+    @Test
+    void contextsAreReusedAfterClose() throws Exception {
+        DirContext context = pool.getReadOnlyContext();
+        context.getAttributes("cn=marissa");
+        assertEquals(1, pool.getActiveCount());
+        context.close();
+        assertThrows(IllegalStateException.class, () -> context.getAttributes("cn=marissa"));
+
+        pool.getReadOnlyContext().getAttributes("cn=joe");
+
+        verify(first).getAttributes("cn=marissa");
+        verify(first).getAttributes("cn=joe");
+        verify(first, never()).close();
+        verify(delegate, times(1)).getReadOnlyContext();
+    }
+
+    @Test
+    void poolIsBounded() throws Exception {
+        DirContext context = pool.getReadOnlyContext();
+        assertThrows(UncategorizedLdapException.class, () -> pool.getReadOnlyContext());
+        context.close();
+        pool.getReadOnlyContext();
+        assertEquals(1L, pool.getStatistics().get("exhausted"));
+    }
+
+    @Test
+    void brokenContextsAreClosed() throws Exception {
+        when(first.getAttributes("cn=missing")).thenThrow(new NameNotFoundException());
+        when(first.getAttributes("cn=marissa")).thenThrow(new CommunicationException());
+        DirContext context = pool.getReadOnlyContext();
+        assertThrows(NameNotFoundException.class, () -> context.getAttributes("cn=missing"));
+        assertThrows(CommunicationException.class, () -> context.getAttributes("cn=marissa"));
+        context.close();
+
+        verify(first).close();
+        assertEquals(0, pool.getIdleCount());
+        pool.getReadOnlyContext().getAttributes("cn=marissa");
+        verify(second).getAttributes("cn=marissa");
+    }
+
+    @Test
+    void idleContextsAreValidatedAndExpired() throws Exception {
+        pool.getReadOnlyContext().close();
+        when(timeService.getCurrentTimeMillis()).thenReturn(1_000L);
+        when(first.getAttributes(eq(""), any(String[].class))).thenThrow(new CommunicationException());
+
+        pool.getReadOnlyContext().close();
+        verify(first).close();
+        assertEquals(1L, pool.getStatistics().get("validationFailures"));
+
+        when(timeService.getCurrentTimeMillis()).thenReturn(11_000L);
+        DirContext third = mock(DirContext.class);
+        when(delegate.getReadOnlyContext()).thenReturn(third);
+        pool.getReadOnlyContext().close();
+        verify(second).close();
+        verify(second, never()).getAttributes(eq(""), any(String[].class));
+    }
+
+    @Test
+    void userBindsAreNotPooled() {
+        when(delegate.getContext(anyString(), anyString())).thenReturn(first).thenThrow(new UncategorizedLdapException("bad credentials"));
+
+        assertEquals(first, pool.getContext("cn=marissa", "koala"));
+        assertThrows(UncategorizedLdapException.class, () -> pool.getContext("cn=marissa", "wrong"));
+
+        assertEquals(2L, pool.getBindCount());
+        assertEquals(1L, pool.getStatistics().get("bindFailures"));
+        assertEquals(0, pool.getActiveCount());
+    }
+}
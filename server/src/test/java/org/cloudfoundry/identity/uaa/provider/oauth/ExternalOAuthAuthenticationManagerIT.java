@@ -768,6 +768,7 @@ class ExternalOAuthAuthenticationManagerIT {
         assertTrue(json.contains("\"invalidKey\""));
         assertTrue(json.contains("\"invalidKey2\""));
         configureTokenKeyResponse("http://localhost/token_key", json);
+        expectTokenKeyRefresh("http://localhost/token_key", json);
         addTheUserOnAuth();
         try {
             externalOAuthAuthenticationManager.authenticate(xCodeToken);
@@ -775,6 +776,7 @@ class ExternalOAuthAuthenticationManagerIT {
         } catch (Exception e) {
             assertTrue(e instanceof RuntimeException);
         }
+        mockUaaServer.verify();
     }
 
     @Test
@@ -853,8 +855,22 @@ class ExternalOAuthAuthenticationManagerIT {
     @Test
     void rejectTokenWithInvalidSignatureAccordingToTokenKeyEndpoint() throws Exception {
         configureTokenKeyResponse("http://localhost/token_key", invalidRsaSigningKey, "wrongKey");
+        expectTokenKeyRefresh("http://localhost/token_key", getKeyJson(invalidRsaSigningKey, "wrongKey", false));
 
         assertThrows(InvalidTokenException.class, () -> externalOAuthAuthenticationManager.authenticate(xCodeToken));
+        mockUaaServer.verify();
+    }
+
+    @Test
+    void refetchesTokenKeysWhenTokenIsSignedWithUnknownKeyId() throws Exception {
+        configureTokenKeyResponse("http://localhost/token_key", invalidRsaSigningKey, "oldKey");
+        expectTokenKeyRefresh("http://localhost/token_key", getKeyJson(PRIVATE_KEY, "testKey", false));
+        addTheUserOnAuth();
+
+        externalOAuthAuthenticationManager.authenticate(xCodeToken);
+
+        mockUaaServer.verify();
+        verify(urlContentCache).invalidate("http://localhost/token_key");
     }
 
     @Test
@@ -1306,6 +1322,11 @@ class ExternalOAuthAuthenticationManagerIT {
                 .andRespond(withStatus(OK).contentType(APPLICATION_JSON).body(response));
     }
 
+    private void expectTokenKeyRefresh(String keyUrl, String response) {
+        mockUaaServer.expect(requestTo(keyUrl))
+                .andRespond(withStatus(OK).contentType(APPLICATION_JSON).body(response));
+    }
+
     private void addTheUserOnAuth() {
         doAnswer(invocation -> {
             Object e = invocation.getArguments()[0];
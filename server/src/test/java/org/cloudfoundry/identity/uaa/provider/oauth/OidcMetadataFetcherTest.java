@@ -1,11 +1,15 @@
 package org.cloudfoundry.identity.uaa.provider.oauth;
 
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
 import org.cloudfoundry.identity.uaa.cache.UrlContentCache;
 import org.cloudfoundry.identity.uaa.client.ClientJwtConfiguration;
 import org.cloudfoundry.identity.uaa.oauth.jwk.JsonWebKey;
 import org.cloudfoundry.identity.uaa.oauth.jwk.JsonWebKeySet;
+import org.cloudfoundry.identity.uaa.oauth.jwt.ChainedSignatureVerifier;
 import org.cloudfoundry.identity.uaa.provider.OIDCIdentityProviderDefinition;
 import org.cloudfoundry.identity.uaa.util.JsonUtils;
+import org.cloudfoundry.identity.uaa.util.TimeService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
@@ -23,6 +27,9 @@ import java.net.URL;
 import static org.hamcrest.CoreMatchers.*;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
@@ -175,6 +182,65 @@ class OidcMetadataFetcherTest {
         }
     }
 
+    @Nested
+    class WithWebKeySetVerifier {
+        private TimeService timeService;
+        private byte[] keys;
+
+        @BeforeEach
+        void setup() throws MalformedURLException, JOSEException {
+            definition.setTokenKeyUrl(new URL("http://token_keys"));
+            timeService = mock(TimeService.class);
+            metadataDiscoverer.setTimeService(timeService);
+            keys = webKeySet("id");
+            when(urlContentCache.getUrlContent(anyString(), any(RestTemplate.class), any(HttpMethod.class), any(HttpEntity.class)))
+                .thenAnswer(invocation -> keys);
+        }
+
+        @Test
+        void verifierIsReusedUntilKeysChange() throws Exception {
+            ChainedSignatureVerifier verifier = metadataDiscoverer.fetchWebKeySetVerifier("origin", definition);
+            assertSame(verifier, metadataDiscoverer.fetchWebKeySetVerifier("origin", definition));
+            assertEquals("id", verifier.getDelegates().get(0).keyId());
+
+            keys = webKeySet("rotated");
+            ChainedSignatureVerifier rotated = metadataDiscoverer.fetchWebKeySetVerifier("origin", definition);
+            assertNotSame(verifier, rotated);
+            assertEquals("rotated", rotated.getDelegates().get(0).keyId());
+        }
+
+        @Test
+        void refreshIsRateLimitedPerTokenKeyUrl() throws Exception {
+            metadataDiscoverer.setKeyRefreshIntervalMillis(1000L);
+            when(timeService.getCurrentTimeMillis()).thenReturn(0L);
+            assertNotNull(metadataDiscoverer.refreshWebKeySetVerifier("origin", definition));
+            verify(urlContentCache).invalidate("http://token_keys");
+
+            when(timeService.getCurrentTimeMillis()).thenReturn(999L);
+            assertNull(metadataDiscoverer.refreshWebKeySetVerifier("origin", definition));
+
+            when(timeService.getCurrentTimeMillis()).thenReturn(1000L);
+            assertNotNull(metadataDiscoverer.refreshWebKeySetVerifier("origin", definition));
+            verify(urlContentCache, times(2)).invalidate("http://token_keys");
+        }
+
+        @Test
+        void noRefreshWithoutCachedTokenKeyUrl() throws Exception {
+            definition.setCacheJwks(false);
+            assertNull(metadataDiscoverer.refreshWebKeySetVerifier("origin", definition));
+
+            definition.setCacheJwks(true);
+            definition.setTokenKey(new String(keys));
+            assertNull(metadataDiscoverer.refreshWebKeySetVerifier("origin", definition));
+            verify(urlContentCache, never()).invalidate(anyString());
+        }
+
+        private byte[] webKeySet(String keyId) throws JOSEException {
+            String key = new RSAKeyGenerator(2048).keyID(keyId).generate().toPublicJWK().toJSONString();
+            return ("{\"keys\":[" + key + "]}").getBytes();
+        }
+    }
+
     @Nested
     class WithoutDiscoveryUrl {
         @BeforeEach
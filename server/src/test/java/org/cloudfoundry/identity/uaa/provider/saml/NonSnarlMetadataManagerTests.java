@@ -0,0 +1,139 @@
+package org.cloudfoundry.identity.uaa.provider.saml;
+
+import org.cloudfoundry.identity.uaa.audit.event.EntityDeletedEvent;
+import org.cloudfoundry.identity.uaa.provider.IdentityProvider;
+import org.cloudfoundry.identity.uaa.provider.IdentityProviderProvisioning;
+import org.cloudfoundry.identity.uaa.provider.SamlIdentityProviderDefinition;
+import org.cloudfoundry.identity.uaa.util.TimeService;
+import org.cloudfoundry.identity.uaa.zone.IdentityZone;
+import org.cloudfoundry.identity.uaa.zone.IdentityZoneHolder;
+import org.cloudfoundry.identity.uaa.zone.event.IdentityZoneModifiedEvent;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.opensaml.DefaultBootstrap;
+import org.opensaml.xml.parse.BasicParserPool;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.saml.metadata.ExtendedMetadataDelegate;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.cloudfoundry.identity.uaa.provider.saml.SamlIdentityProviderConfiguratorTests.xmlWithoutID;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class NonSnarlMetadataManagerTests {
+
+    private FixedHttpMetaDataProvider fixedHttpMetaDataProvider;
+    private TimeService timeService;
+    private NonSnarlMetadataManager manager;
+    private IdentityZone zone;
+
+    @BeforeAll
+    static void initializeOpenSAML() throws Exception {
+        if (!org.apache.xml.security.Init.isInitialized()) {
+            DefaultBootstrap.bootstrap();
+        }
+    }
+
+    @BeforeEach
+    void setUp() throws Exception {
+        fixedHttpMetaDataProvider = mock(FixedHttpMetaDataProvider.class);
+        SamlIdentityProviderConfigurator configurator = new SamlIdentityProviderConfigurator(
+                new BasicParserPool(), mock(IdentityProviderProvisioning.class), fixedHttpMetaDataProvider);
+        timeService = mock(TimeService.class);
+        when(timeService.getCurrentTimeMillis()).thenReturn(0L);
+        manager = new NonSnarlMetadataManager(configurator);
+        manager.setTimeService(timeService);
+        manager.setRefreshExecutor(Runnable::run);
+        manager.setDelegateRefreshIntervalMillis(1000L);
+        zone = IdentityZone.getUaa();
+    }
+
+    @AfterEach
+    void clearZone() {
+        IdentityZoneHolder.clear();
+    }
+
+    @Test
+    void delegateIsBuiltOncePerProviderVersion() throws Exception {
+        IdentityProvider<SamlIdentityProviderDefinition> provider = provider("okta", String.format(xmlWithoutID, "entity-1"));
+
+        ExtendedMetadataDelegate delegate = manager.getIdentityProviderDelegate(zone, provider);
+        assertSame(delegate, manager.getIdentityProviderDelegate(zone, provider));
+        assertEquals(1, manager.getCacheHitCount());
+
+        provider.setConfig(definition("okta", String.format(xmlWithoutID, "entity-2")));
+        provider.setVersion(1);
+        ExtendedMetadataDelegate updated = manager.getIdentityProviderDelegate(zone, provider);
+        assertNotSame(delegate, updated);
+        assertEquals("entity-2", ((ConfigMetadataProvider) updated.getDelegate()).getEntityID());
+        assertEquals(1, manager.getCacheSize());
+    }
+
+    @Test
+    void staleUrlMetadataIsRefreshedInBackground() throws Exception {
+        when(fixedHttpMetaDataProvider.fetchMetadata(anyString(), anyBoolean()))
+                .thenReturn(String.format(xmlWithoutID, "entity-1").getBytes(StandardCharsets.UTF_8))
+                .thenReturn(String.format(xmlWithoutID, "entity-2").getBytes(StandardCharsets.UTF_8));
+        IdentityProvider<SamlIdentityProviderDefinition> provider = provider("okta", "https://idp.example.com/metadata");
+
+        ExtendedMetadataDelegate delegate = manager.getIdentityProviderDelegate(zone, provider);
+        assertSame(delegate, manager.getIdentityProviderDelegate(zone, provider));
+
+        when(timeService.getCurrentTimeMillis()).thenReturn(1000L);
+        assertSame(delegate, manager.getIdentityProviderDelegate(zone, provider));
+        assertEquals(1, manager.getCacheRefreshCount());
+
+        ExtendedMetadataDelegate refreshed = manager.getIdentityProviderDelegate(zone, provider);
+        assertEquals("entity-2", ((ConfigMetadataProvider) refreshed.getDelegate()).getEntityID());
+        verify(fixedHttpMetaDataProvider, times(2)).fetchMetadata(anyString(), anyBoolean());
+    }
+
+    @Test
+    void zoneAndProviderChangesEvictEntries() throws Exception {
+        IdentityProvider<SamlIdentityProviderDefinition> provider = provider("okta", String.format(xmlWithoutID, "entity-1"));
+        manager.getIdentityProviderDelegate(zone, provider);
+        assertEquals(1, manager.getCacheSize());
+
+        manager.onApplicationEvent(IdentityZoneModifiedEvent.identityZoneModified(zone));
+        assertEquals(0, manager.getCacheSize());
+
+        manager.getIdentityProviderDelegate(zone, provider);
+        manager.onApplicationEvent(new EntityDeletedEvent<>(provider, mock(Authentication.class), zone.getId()));
+        assertEquals(0, manager.getCacheSize());
+    }
+
+    @Test
+    void cacheCanBeDisabled() throws Exception {
+        manager.setDelegateCacheMaxEntries(0);
+        IdentityProvider<SamlIdentityProviderDefinition> provider = provider("okta", String.format(xmlWithoutID, "entity-1"));
+
+        assertNotSame(manager.getIdentityProviderDelegate(zone, provider), manager.getIdentityProviderDelegate(zone, provider));
+    }
+
+    private IdentityProvider<SamlIdentityProviderDefinition> provider(String alias, String metadata) {
+        IdentityProvider<SamlIdentityProviderDefinition> provider = new IdentityProvider<>();
+        provider.setId(alias + "-id");
+        provider.setOriginKey(alias);
+        provider.setIdentityZoneId(zone.getId());
+        provider.setConfig(definition(alias, metadata));
+        return provider;
+    }
+
+    private SamlIdentityProviderDefinition definition(String alias, String metadata) {
+        return new SamlIdentityProviderDefinition()
+                .setMetaDataLocation(metadata)
+                .setIdpEntityAlias(alias)
+                .setZoneId(zone.getId())
+                .setMetadataTrustCheck(false);
+    }
+}
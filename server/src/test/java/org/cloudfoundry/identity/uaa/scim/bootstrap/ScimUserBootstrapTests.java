@@ -6,6 +6,8 @@ import org.cloudfoundry.identity.uaa.audit.event.EntityDeletedEvent;
 import org.cloudfoundry.identity.uaa.authentication.manager.ExternalGroupAuthorizationEvent;
 import org.cloudfoundry.identity.uaa.authentication.manager.InvitedUserAuthenticatedEvent;
 import org.cloudfoundry.identity.uaa.constants.OriginKeys;
+import org.cloudfoundry.identity.uaa.db.DatabaseUrlModifier;
+import org.cloudfoundry.identity.uaa.db.Vendor;
 import org.cloudfoundry.identity.uaa.provider.IdentityProviderProvisioning;
 import org.cloudfoundry.identity.uaa.provider.JdbcIdentityProviderProvisioning;
 import org.cloudfoundry.identity.uaa.resources.jdbc.JdbcPagingListFactory;
@@ -24,6 +26,7 @@ import org.cloudfoundry.identity.uaa.scim.jdbc.JdbcScimUserProvisioning;
 import org.cloudfoundry.identity.uaa.scim.services.ScimUserService;
 import org.cloudfoundry.identity.uaa.security.IsSelfCheck;
 import org.cloudfoundry.identity.uaa.test.TestUtils;
+import org.cloudfoundry.identity.uaa.user.JdbcUaaUserDatabase;
 import org.cloudfoundry.identity.uaa.user.UaaAuthority;
 import org.cloudfoundry.identity.uaa.user.UaaUser;
 import org.cloudfoundry.identity.uaa.user.UaaUserPrototype;
@@ -47,6 +50,7 @@ import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.event.ContextRefreshedEvent;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.mock.web.MockHttpServletRequest;
 import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.AuthorityUtils;
@@ -57,6 +61,8 @@ import org.springframework.transaction.TransactionStatus;
 import org.springframework.transaction.support.TransactionCallback;
 import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.util.StringUtils;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
 
 import java.sql.SQLException;
 import java.util.ArrayList;
@@ -751,11 +757,94 @@ class ScimUserBootstrapTests {
         List<GrantedAuthority> authorities = getAuthorities(externalAuthorities);
         authorities.addAll(getAuthorities(externalAuthorities));
         assertEquals(2*externalAuthorities.length, authorities.size());
-        verify(spy, times(externalAuthorities.length)).addMember(any(), any(), any());
+        ArgumentCaptor<Collection<String>> groupIds = ArgumentCaptor.forClass(Collection.class);
+        verify(spy).addMemberToGroups(groupIds.capture(), any(), any());
+        assertEquals(userAuthorities.length, groupIds.getValue().size());
 
         bootstrap.onApplicationEvent(new ExternalGroupAuthorizationEvent(user, true, authorities, true));
 
-        verify(spy, times(externalAuthorities.length*2)).addMember(any(), any(), any());
+        verify(spy, times(2)).addMemberToGroups(groupIds.capture(), any(), any());
+        assertEquals(externalAuthorities.length, groupIds.getValue().size());
+    }
+
+    @Test
+    void reloadedUserHasTheSynchronizedExternalGroups() throws SQLException {
+        String origin = "testOrigin";
+        addIdentityProvider(jdbcTemplate, origin);
+        String username = new RandomValueStringGenerator().generate();
+        UaaUser user = getUaaUser(new String[0], origin, "test@test.org", "FirstName", "LastName", "testPassword", null, new RandomValueStringGenerator().generate(), username);
+        ScimUserBootstrap bootstrap = new ScimUserBootstrap(jdbcScimUserProvisioning, scimUserService, jdbcScimGroupProvisioning, jdbcScimGroupMembershipManager, Collections.singletonList(user), false, Collections.emptyList(), false);
+        bootstrap.afterPropertiesSet();
+        JdbcUaaUserDatabase userDatabase = new JdbcUaaUserDatabase(jdbcTemplate, new TimeServiceImpl(), false, identityZoneManager, new DatabaseUrlModifier(Vendor.unknown, ""), new DbUtils());
+        userDatabase.setAuthoritiesCacheExpirationMillis(60_000);
+
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+        try {
+            UaaUser loaded = userDatabase.retrieveUserByName(username, origin);
+            assertFalse(loaded.getAuthorities().contains(new SimpleGrantedAuthority("extTest1")));
+
+            ExternalGroupAuthorizationEvent event = new ExternalGroupAuthorizationEvent(loaded, false, getAuthorities(new String[]{"extTest1", "extTest2"}), true);
+            bootstrap.onApplicationEvent(event);
+            userDatabase.onApplicationEvent(event);
+
+            UaaUser reloaded = userDatabase.retrieveUserById(loaded.getId());
+            assertTrue(reloaded.getAuthorities().contains(new SimpleGrantedAuthority("extTest1")));
+            assertTrue(reloaded.getAuthorities().contains(new SimpleGrantedAuthority("extTest2")));
+        } finally {
+            RequestContextHolder.resetRequestAttributes();
+        }
+    }
+
+    @Test
+    void bootstrapsUsersWithParallelPasswordEncoding() {
+        UaaUser existing = new UaaUser("existing", "password", "existing@test.org", "Existing", "User");
+        ScimUserBootstrap bootstrap = new ScimUserBootstrap(jdbcScimUserProvisioning, scimUserService, jdbcScimGroupProvisioning, jdbcScimGroupMembershipManager, Collections.singletonList(existing), false, Collections.emptyList(), false);
+        bootstrap.afterPropertiesSet();
+        reset(jdbcScimUserProvisioning);
+
+        List<UaaUser> users = new ArrayList<>();
+        users.add(new UaaUser("existing", "changed", "existing@test.org", "Existing", "User"));
+        for (int i = 0; i < 10; i++) {
+            users.add(new UaaUser("user" + i, "password" + i, "user" + i + "@test.org", "User", "" + i));
+        }
+        bootstrap = new ScimUserBootstrap(jdbcScimUserProvisioning, scimUserService, jdbcScimGroupProvisioning, jdbcScimGroupMembershipManager, users, true, Collections.emptyList(), false);
+        bootstrap.setPasswordEncoder(passwordEncoder);
+        bootstrap.setParallelism(4);
+        bootstrap.afterPropertiesSet();
+
+        verify(jdbcScimUserProvisioning, times(1)).query(any(String.class), eq(IdentityZone.getUaaZoneId()));
+        verify(jdbcScimUserProvisioning, never()).createUser(any(), any(), any());
+        for (UaaUser user : users) {
+            ScimUser scimUser = jdbcScimUserProvisioning.retrieveByUsernameAndOriginAndZone(user.getUsername(), OriginKeys.UAA, IdentityZone.getUaaZoneId()).get(0);
+            assertTrue(jdbcScimUserProvisioning.checkPasswordMatches(scimUser.getId(), user.getPassword(), IdentityZone.getUaaZoneId()));
+        }
+    }
+
+    @Test
+    void externalGroupSyncIsSkippedWhenGroupsAreUnchanged() {
+        String origin = "testOrigin";
+        addIdentityProvider(jdbcTemplate, origin);
+        String userId = new RandomValueStringGenerator().generate();
+        String username = new RandomValueStringGenerator().generate();
+        UaaUser user = getUaaUser(new String[0], origin, "test@test.org", "FirstName", "LastName", "testPassword", null, userId, username);
+        JdbcScimGroupMembershipManager spy = spy(jdbcScimGroupMembershipManager);
+        ScimUserBootstrap bootstrap = new ScimUserBootstrap(jdbcScimUserProvisioning, scimUserService, jdbcScimGroupProvisioning, spy, Collections.singletonList(user), false, Collections.emptyList(), false);
+        bootstrap.setExternalGroupSyncCacheSeconds(60);
+        bootstrap.afterPropertiesSet();
+        userId = jdbcScimUserProvisioning.query("userName eq \"" + username + "\" and origin eq \"" + origin + "\"", IdentityZone.getUaaZoneId()).get(0).getId();
+        user = getUaaUser(new String[0], origin, "test@test.org", "FirstName", "LastName", "testPassword", null, userId, username);
+
+        bootstrap.onApplicationEvent(new ExternalGroupAuthorizationEvent(user, false, getAuthorities(new String[]{"extTest1", "extTest2"}), true));
+        bootstrap.onApplicationEvent(new ExternalGroupAuthorizationEvent(user, false, getAuthorities(new String[]{"extTest2", "extTest1"}), true));
+
+        verify(spy, times(1)).getGroupsWithExternalMember(eq(userId), eq(origin), any());
+        assertThat(getGroupNames(spy.getGroupsWithExternalMember(userId, origin, IdentityZone.getUaaZoneId())),
+                IsArrayContainingInAnyOrder.arrayContainingInAnyOrder("extTest1", "extTest2"));
+
+        bootstrap.onApplicationEvent(new ExternalGroupAuthorizationEvent(user, false, getAuthorities(new String[]{"extTest1", "extTest3"}), true));
+
+        assertThat(getGroupNames(spy.getGroupsWithExternalMember(userId, origin, IdentityZone.getUaaZoneId())),
+                IsArrayContainingInAnyOrder.arrayContainingInAnyOrder("extTest1", "extTest3"));
     }
 
     @Test
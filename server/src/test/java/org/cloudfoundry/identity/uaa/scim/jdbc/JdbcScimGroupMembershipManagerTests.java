@@ -547,18 +547,14 @@ class JdbcScimGroupMembershipManagerTests {
         validateUserGroups("m1", jdbcScimGroupMembershipManager, uaaIdentityZone.getId(), "test1");
         validateUserGroups("m2", jdbcScimGroupMembershipManager, uaaIdentityZone.getId(), "test2", "test1.i");
 
-        JdbcScimGroupMembershipManager spy = spy(jdbcScimGroupMembershipManager);
-
         ScimGroupMember g2 = new ScimGroupMember("g2", ScimGroupMember.Type.GROUP); // update role member->admin
         ScimGroupMember m3 = new ScimGroupMember("m3", ScimGroupMember.Type.USER); // new member
         ScimGroupMember m4 = new ScimGroupMember("m4", ScimGroupMember.Type.USER); // does not change
 
-        List<ScimGroupMember> members = spy.updateOrAddMembers("g1", Arrays.asList(g2, m3, m4), uaaIdentityZone.getId());
+        List<ScimGroupMember> members = jdbcScimGroupMembershipManager.updateOrAddMembers("g1", Arrays.asList(g2, m3, m4), uaaIdentityZone.getId());
 
         validateCount(4, jdbcTemplate, uaaIdentityZone.getId());
-        verify(spy).addMember("g1", m3, uaaIdentityZone.getId());
-        verify(spy, times(0)).addMember("g1", m4, uaaIdentityZone.getId());
-        verify(spy).removeMemberById("g1", "m1", uaaIdentityZone.getId());
+        assertEquals(new HashSet<>(members), new HashSet<>(jdbcScimGroupMembershipManager.getMembers("g1", false, uaaIdentityZone.getId())));
         assertEquals(3, members.size());
         assertTrue(members.contains(new ScimGroupMember("g2", ScimGroupMember.Type.GROUP)));
         assertTrue(members.contains(new ScimGroupMember("m3", ScimGroupMember.Type.USER)));
@@ -568,6 +564,64 @@ class JdbcScimGroupMembershipManagerTests {
         validateUserGroups("m1", jdbcScimGroupMembershipManager, uaaIdentityZone.getId());
     }
 
+    @Test
+    void updateOrAddMembersInChunks() throws SQLException {
+        jdbcScimGroupMembershipManager.setMaxSqlParameters(8);
+        jdbcScimGroupMembershipManager.addMember("g1", new ScimGroupMember("m1", ScimGroupMember.Type.USER), uaaIdentityZone.getId());
+        jdbcScimGroupMembershipManager.addMember("g1", new ScimGroupMember("m2", ScimGroupMember.Type.USER), uaaIdentityZone.getId());
+        jdbcScimGroupMembershipManager.addMember("g1", new ScimGroupMember("m3", ScimGroupMember.Type.USER), uaaIdentityZone.getId());
+
+        List<ScimGroupMember> requested = Arrays.asList(
+                new ScimGroupMember("m4", ScimGroupMember.Type.USER),
+                new ScimGroupMember("m5", ScimGroupMember.Type.USER),
+                new ScimGroupMember("g2", ScimGroupMember.Type.GROUP),
+                new ScimGroupMember("g3", ScimGroupMember.Type.GROUP));
+        List<ScimGroupMember> members = jdbcScimGroupMembershipManager.updateOrAddMembers("g1", requested, uaaIdentityZone.getId());
+
+        assertEquals(new HashSet<>(requested), new HashSet<>(members));
+        assertEquals(new HashSet<>(requested), new HashSet<>(jdbcScimGroupMembershipManager.getMembers("g1", false, uaaIdentityZone.getId())));
+        validateCount(4, jdbcTemplate, uaaIdentityZone.getId());
+    }
+
+    @Test
+    void updateOrAddMembersValidatesAllMembersFirst() {
+        jdbcScimGroupMembershipManager.addMember("g1", new ScimGroupMember("m1", ScimGroupMember.Type.USER), uaaIdentityZone.getId());
+        List<ScimGroupMember> unknownMember = Arrays.asList(
+                new ScimGroupMember("m2", ScimGroupMember.Type.USER),
+                new ScimGroupMember("unknown", ScimGroupMember.Type.USER));
+        List<ScimGroupMember> duplicateMember = Arrays.asList(
+                new ScimGroupMember("m2", ScimGroupMember.Type.USER),
+                new ScimGroupMember("m2", ScimGroupMember.Type.USER));
+
+        assertThrows(ScimResourceNotFoundException.class,
+                () -> jdbcScimGroupMembershipManager.updateOrAddMembers("g1", unknownMember, uaaIdentityZone.getId()));
+        assertThrows(MemberAlreadyExistsException.class,
+                () -> jdbcScimGroupMembershipManager.updateOrAddMembers("g1", duplicateMember, uaaIdentityZone.getId()));
+
+        assertEquals(Collections.singletonList(new ScimGroupMember("m1", ScimGroupMember.Type.USER)),
+                jdbcScimGroupMembershipManager.getMembers("g1", false, uaaIdentityZone.getId()));
+    }
+
+    @Test
+    void addAndRemoveMemberInGroupsInChunks() throws SQLException {
+        jdbcScimGroupMembershipManager.setMaxSqlParameters(3);
+        String zoneId = uaaIdentityZone.getId();
+        ScimGroupMember member = new ScimGroupMember("m1", ScimGroupMember.Type.USER);
+        jdbcScimGroupMembershipManager.addMember("g1", member, zoneId);
+        String defaultGroupId = jdbcScimGroupProvisioning.getByName("uaa.user", zoneId).getId();
+
+        jdbcScimGroupMembershipManager.addMemberToGroups(Arrays.asList("g1", "g2", "g3", defaultGroupId), member, zoneId);
+
+        validateCount(3, jdbcTemplate, zoneId);
+        assertEquals(member, jdbcScimGroupMembershipManager.getMemberById("g3", "m1", zoneId));
+        assertThrows(ScimResourceNotFoundException.class,
+                () -> jdbcScimGroupMembershipManager.addMemberToGroups(Arrays.asList("g1", "unknown"), member, zoneId));
+
+        jdbcScimGroupMembershipManager.removeMemberFromGroups(Arrays.asList("g1", "g2", "g3"), "m1", zoneId);
+
+        validateCount(0, jdbcTemplate, zoneId);
+    }
+
     @Test
     void canRemoveMemberById() throws SQLException {
         addMember("g1", "m1", "USER", "READER", jdbcTemplate, uaaIdentityZone.getId());
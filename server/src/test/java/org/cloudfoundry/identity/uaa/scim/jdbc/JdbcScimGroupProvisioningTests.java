@@ -291,6 +291,17 @@ class JdbcScimGroupProvisioningTests {
         assertEquals(g.getId(), same.getId());
     }
 
+    @Test
+    void canGetByNamesInChunks() {
+        dao.setMaxSqlParameters(2);
+        List<ScimGroup> groups = dao.getByNames(
+                Arrays.asList(group1Description.toUpperCase(), group2Description, "unknown", group3Description, ""),
+                zoneId);
+        assertEquals(
+                Arrays.asList(g1Id, g2Id, g3Id),
+                groups.stream().map(ScimGroup::getId).sorted().collect(Collectors.toList()));
+    }
+
     @Test
     void canCreateAndGetGroupWithQuotes() {
         String nameWithQuotes = generator.generate() + "\"" + generator.generate() + "\"";
@@ -44,6 +44,7 @@ import org.cloudfoundry.identity.uaa.audit.event.EntityDeletedEvent;
 import org.cloudfoundry.identity.uaa.constants.OriginKeys;
 import org.cloudfoundry.identity.uaa.provider.IdentityProvider;
 import org.cloudfoundry.identity.uaa.resources.JoinAttributeNameMapper;
+import org.cloudfoundry.identity.uaa.resources.KeysetPage;
 import org.cloudfoundry.identity.uaa.resources.SimpleAttributeNameMapper;
 import org.cloudfoundry.identity.uaa.resources.jdbc.JdbcPagingListFactory;
 import org.cloudfoundry.identity.uaa.resources.jdbc.LimitSqlAdapter;
@@ -1233,6 +1234,46 @@ class JdbcScimUserProvisioningTests {
         assertTrue(2 <= jdbcScimUserProvisioning.query("username pr", currentIdentityZoneId).size());
     }
 
+    @Test
+    void canPageThroughUsersWithCursor() {
+        KeysetPage<ScimUser> first = jdbcScimUserProvisioning.queryPage("id pr", "userName", true, null, 1, true, currentIdentityZoneId);
+        assertEquals(1, first.getResources().size());
+        assertEquals(JOE_NAME, first.getResources().get(0).getUserName());
+        assertEquals(2, first.getTotalResults());
+        assertNotNull(first.getNextCursor());
+
+        KeysetPage<ScimUser> second = jdbcScimUserProvisioning.queryPage("id pr", "userName", true, first.getNextCursor(), 1, false, currentIdentityZoneId);
+        assertEquals(1, second.getResources().size());
+        assertEquals("mabel", second.getResources().get(0).getUserName());
+        assertFalse(second.hasTotalResults());
+        assertNull(second.getNextCursor());
+    }
+
+    @Test
+    void cursorPagingBreaksTiesOnCreatedById() {
+        List<String> ids = new ArrayList<>();
+        String cursor = null;
+        do {
+            KeysetPage<ScimUser> page = jdbcScimUserProvisioning.queryPage("id pr", "created", false, cursor, 1, false, currentIdentityZoneId);
+            page.getResources().forEach(user -> ids.add(user.getId()));
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+
+        assertEquals(2, ids.size());
+        assertNotEquals(ids.get(0), ids.get(1));
+    }
+
+    @Test
+    void cursorPagingRejectsUnsupportedSortFieldAndForeignCursor() {
+        assertThrows(IllegalArgumentException.class,
+                () -> jdbcScimUserProvisioning.queryPage("id pr", "phoneNumber", true, null, 1, false, currentIdentityZoneId));
+        String cursor = jdbcScimUserProvisioning.queryPage("id pr", "userName", true, null, 1, false, currentIdentityZoneId).getNextCursor();
+        assertThrows(IllegalArgumentException.class,
+                () -> jdbcScimUserProvisioning.queryPage("id pr", "created", true, cursor, 1, false, currentIdentityZoneId));
+        assertThrows(IllegalArgumentException.class,
+                () -> jdbcScimUserProvisioning.queryPage("id pr", "created", true, "not-a-cursor", 1, false, currentIdentityZoneId));
+    }
+
     @Test
     void canRetrieveUsersWithFilterEquals() {
         assertEquals(1, jdbcScimUserProvisioning.query("username eq \"joe\"", currentIdentityZoneId).size());
@@ -1,9 +1,11 @@
 package org.cloudfoundry.identity.uaa.user;
 
 import org.cloudfoundry.identity.uaa.annotations.WithDatabaseContext;
+import org.cloudfoundry.identity.uaa.authentication.manager.ExternalGroupAuthorizationEvent;
 import org.cloudfoundry.identity.uaa.constants.OriginKeys;
 import org.cloudfoundry.identity.uaa.db.DatabaseUrlModifier;
 import org.cloudfoundry.identity.uaa.db.Vendor;
+import org.cloudfoundry.identity.uaa.scim.event.GroupModifiedEvent;
 import org.cloudfoundry.identity.uaa.test.TestUtils;
 import org.cloudfoundry.identity.uaa.util.beans.DbUtils;
 import org.cloudfoundry.identity.uaa.util.TimeService;
@@ -15,16 +17,18 @@ import org.junit.Assert;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
-import org.mockito.ArgumentMatchers;
 import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.env.Environment;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockHttpServletRequest;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.cloudfoundry.identity.uaa.oauth.common.util.RandomValueStringGenerator;
 import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
 
 import java.sql.SQLException;
 import java.sql.Timestamp;
@@ -279,7 +283,7 @@ class JdbcUaaUserDatabaseTests {
         jdbcUaaUserDatabase = new JdbcUaaUserDatabase(spiedJdbcTemplate, timeService, false, mockIdentityZoneManager,
                 databaseUrlModifier, dbUtils);
         UaaUser joe = jdbcUaaUserDatabase.retrieveUserByName("joe", OriginKeys.UAA);
-        verify(spiedJdbcTemplate, times(2)).queryForList(anyString(), ArgumentMatchers.<String>any());
+        assertEquals(1, countAuthoritiesQueries(spiedJdbcTemplate));
         assertTrue(joe.getAuthorities().contains(new SimpleGrantedAuthority("uaa.user")),
                 "authorities does not contain uaa.user");
         assertTrue(joe.getAuthorities().contains(new SimpleGrantedAuthority("additional")),
@@ -311,6 +315,67 @@ class JdbcUaaUserDatabaseTests {
         evaluateNestedJoe(jdbcUaaUserDatabase, defaultAuthorities);
     }
 
+    @Test
+    void getUserWithDeeplyNestedAuthoritiesUsesSingleQuery() {
+        JdbcTemplate spiedJdbcTemplate = Mockito.spy(jdbcTemplate);
+        jdbcUaaUserDatabase = new JdbcUaaUserDatabase(spiedJdbcTemplate, timeService, false, mockIdentityZoneManager,
+                databaseUrlModifier, dbUtils);
+
+        String memberId = JOE_ID;
+        String memberType = "USER";
+        for (int level = 0; level < 5; level++) {
+            String groupId = new RandomValueStringGenerator().generate();
+            jdbcTemplate.update(addGroupSql, groupId, "level" + level, "zone-the-first");
+            jdbcTemplate.update(ADD_MEMBER_SQL, groupId, memberId, memberType, "MEMBER");
+            memberId = groupId;
+            memberType = "GROUP";
+        }
+
+        UaaUser joe = jdbcUaaUserDatabase.retrieveUserByName("joe", OriginKeys.UAA);
+
+        for (int level = 0; level < 5; level++) {
+            assertTrue(joe.getAuthorities().contains(new SimpleGrantedAuthority("level" + level)));
+        }
+        assertEquals(1, countAuthoritiesQueries(spiedJdbcTemplate));
+    }
+
+    @Test
+    void cachedAuthoritiesAreInvalidatedByGroupModification() {
+        jdbcUaaUserDatabase.setAuthoritiesCacheExpirationMillis(60_000);
+        addAuthority("first", jdbcTemplate, "zone-the-first", JOE_ID);
+        assertTrue(jdbcUaaUserDatabase.retrieveUserByName("joe", OriginKeys.UAA).getAuthorities().contains(new SimpleGrantedAuthority("first")));
+
+        addAuthority("second", jdbcTemplate, "zone-the-first", JOE_ID);
+        assertFalse(jdbcUaaUserDatabase.retrieveUserByName("joe", OriginKeys.UAA).getAuthorities().contains(new SimpleGrantedAuthority("second")));
+
+        jdbcUaaUserDatabase.onApplicationEvent(GroupModifiedEvent.groupModified("id", "second", new String[0], "zone-the-other"));
+        assertFalse(jdbcUaaUserDatabase.retrieveUserByName("joe", OriginKeys.UAA).getAuthorities().contains(new SimpleGrantedAuthority("second")));
+
+        jdbcUaaUserDatabase.onApplicationEvent(GroupModifiedEvent.groupModified("id", "second", new String[0], "zone-the-first"));
+        assertTrue(jdbcUaaUserDatabase.retrieveUserByName("joe", OriginKeys.UAA).getAuthorities().contains(new SimpleGrantedAuthority("second")));
+    }
+
+    @Test
+    void reloadInTheSameRequestSeesExternalGroupChanges() {
+        jdbcUaaUserDatabase.setAuthoritiesCacheExpirationMillis(60_000);
+        addAuthority("first", jdbcTemplate, "zone-the-first", JOE_ID);
+
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+        try {
+            UaaUser joe = jdbcUaaUserDatabase.retrieveUserByName("joe", OriginKeys.UAA);
+            assertFalse(joe.getAuthorities().contains(new SimpleGrantedAuthority("second")));
+
+            addAuthority("second", jdbcTemplate, "zone-the-first", JOE_ID);
+            jdbcUaaUserDatabase.onApplicationEvent(new ExternalGroupAuthorizationEvent(joe, false, Collections.emptyList(), true));
+
+            joe = jdbcUaaUserDatabase.retrieveUserById(JOE_ID);
+            assertTrue(joe.getAuthorities().contains(new SimpleGrantedAuthority("first")));
+            assertTrue(joe.getAuthorities().contains(new SimpleGrantedAuthority("second")));
+        } finally {
+            RequestContextHolder.resetRequestAttributes();
+        }
+    }
+
     @Test
     void updatePreviousAndLastLogonTime() {
         when(timeService.getCurrentTimeMillis()).thenReturn(1000L);
@@ -429,6 +494,13 @@ class JdbcUaaUserDatabaseTests {
                 assertThat(joe.getAuthorities().contains(authority), is(true)));
     }
 
+    private static long countAuthoritiesQueries(JdbcTemplate spiedJdbcTemplate) {
+        return Mockito.mockingDetails(spiedJdbcTemplate).getInvocations()
+                .stream()
+                .filter(invocation -> "queryForList".equals(invocation.getMethod().getName()))
+                .count();
+    }
+
     private static void addUser(
             final String id,
             final String name,
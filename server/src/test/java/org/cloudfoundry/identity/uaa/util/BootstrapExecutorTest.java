@@ -0,0 +1,89 @@
+package org.cloudfoundry.identity.uaa.util;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.util.StopWatch;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.matchesPattern;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BootstrapExecutorTest {
+
+    @Test
+    void mapKeepsTheOrderOfTheItems() {
+        List<Integer> items = IntStream.range(0, 100).boxed().collect(Collectors.toList());
+        Set<Long> threads = ConcurrentHashMap.newKeySet();
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+        // the first two items wait for each other, so at least two workers run at the same time
+        CountDownLatch overlap = new CountDownLatch(2);
+
+        List<String> results = BootstrapExecutor.map(items, 4, item -> {
+            threads.add(Thread.currentThread().getId());
+            peak.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+                overlap.countDown();
+                overlap.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                running.decrementAndGet();
+            }
+            return "item-" + item;
+        });
+
+        assertEquals(items.stream().map(item -> "item-" + item).collect(Collectors.toList()), results);
+        assertTrue(threads.size() > 1);
+        assertTrue(threads.size() <= 4);
+        assertTrue(peak.get() > 1);
+        assertTrue(peak.get() <= 4);
+    }
+
+    @Test
+    void forEachFinishesAllItemsBeforeRethrowingTheFailure() {
+        AtomicInteger finished = new AtomicInteger();
+
+        IllegalArgumentException failure = assertThrows(IllegalArgumentException.class,
+                () -> BootstrapExecutor.forEach(Arrays.asList(1, 2, 3, 4, 5), 3, item -> {
+                    if (item == 2) {
+                        throw new IllegalArgumentException("item " + item);
+                    }
+                    finished.incrementAndGet();
+                }));
+
+        assertEquals("item 2", failure.getMessage());
+        assertEquals(4, finished.get());
+    }
+
+    @Test
+    void runsInlineWithoutParallelism() {
+        Set<String> threads = ConcurrentHashMap.newKeySet();
+
+        BootstrapExecutor.forEach(Arrays.asList(1, 2, 3), 1, item -> threads.add(Thread.currentThread().getName()));
+
+        assertEquals(Set.of(Thread.currentThread().getName()), threads);
+    }
+
+    @Test
+    void timingsListThePhases() {
+        StopWatch stopWatch = new StopWatch();
+        stopWatch.start("lookup");
+        stopWatch.stop();
+        stopWatch.start("encode");
+        stopWatch.stop();
+
+        assertThat(BootstrapExecutor.timings(stopWatch), matchesPattern("lookup \\d+ ms, encode \\d+ ms"));
+    }
+}
@@ -5,13 +5,17 @@ import org.junit.jupiter.api.Test;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.cloudfoundry.identity.uaa.oauth.common.util.RandomValueStringGenerator;
-import org.springframework.test.util.ReflectionTestUtils;
 
 import java.security.NoSuchAlgorithmException;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.is;
@@ -60,8 +64,7 @@ class CachingPasswordEncoderTest {
     @Test
     void matchesButExpires() throws Exception {
         Duration shortTTL = Duration.ofSeconds(1);
-        ReflectionTestUtils.setField(cachingPasswordEncoder, "CACHE_TTL", shortTTL);
-        cachingPasswordEncoder.buildCache();
+        cachingPasswordEncoder.setExpirationSeconds(shortTTL.getSeconds());
         String encoded = cachingPasswordEncoder.encode(password);
         String cacheKey = cachingPasswordEncoder.cacheEncode(password);
 
@@ -122,8 +125,8 @@ class CachingPasswordEncoderTest {
     }
 
     @Test
-    // TODO: This test takes a long time to run :(
     void ensureNoMemoryLeak() {
+        cachingPasswordEncoder.setMaxKeys(10);
         assertEquals(0, cachingPasswordEncoder.getNumberOfKeys());
         for (int i = 0; i < cachingPasswordEncoder.getMaxKeys(); i++) {
             String password = new RandomValueStringGenerator().generate();
@@ -136,8 +139,9 @@ class CachingPasswordEncoderTest {
         String password = new RandomValueStringGenerator().generate();
         String encoded = cachingPasswordEncoder.encode(password);
         assertTrue(cachingPasswordEncoder.matches(password, encoded));
-        //overflow happened
-        assertEquals(1, cachingPasswordEncoder.getNumberOfKeys());
+        //overflow evicted the least recently used password only
+        assertEquals(cachingPasswordEncoder.getMaxKeys(), cachingPasswordEncoder.getNumberOfKeys());
+        assertEquals(1, cachingPasswordEncoder.getCacheEvictionCount());
 
 
         for (int j = 1; j < cachingPasswordEncoder.getMaxEncodedPasswords(); j++) {
@@ -153,4 +157,37 @@ class CachingPasswordEncoderTest {
         cachingPasswordEncoder.matches(password, cachingPasswordEncoder.encode(password));
         assertEquals(1, passwords.size());
     }
+
+    @Test
+    void countsCacheHits() {
+        String encoded = cachingPasswordEncoder.encode(password);
+        assertEquals(0, cachingPasswordEncoder.getCacheHitRate(), 0.001);
+
+        assertTrue(cachingPasswordEncoder.matches(password, encoded));
+        assertTrue(cachingPasswordEncoder.matches(password, encoded));
+        assertTrue(cachingPasswordEncoder.matches(password, encoded));
+        assertFalse(cachingPasswordEncoder.matches("wrong", encoded));
+
+        assertEquals(2, cachingPasswordEncoder.getCacheHitCount());
+        assertEquals(2, cachingPasswordEncoder.getCacheMissCount());
+        assertEquals(0.5, cachingPasswordEncoder.getCacheHitRate(), 0.001);
+    }
+
+    @Test
+    void matchesConcurrently() throws Exception {
+        String encoded = cachingPasswordEncoder.encode(password);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                results.add(executor.submit(() -> cachingPasswordEncoder.matches(password, encoded)));
+            }
+            for (Future<Boolean> result : results) {
+                assertTrue(result.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(1, cachingPasswordEncoder.getNumberOfKeys());
+    }
 }
@@ -0,0 +1,159 @@
+package org.cloudfoundry.identity.uaa.web.beans;
+
+import org.cloudfoundry.identity.uaa.authentication.UaaAuthentication;
+import org.cloudfoundry.identity.uaa.authentication.UaaAuthenticationDetails;
+import org.cloudfoundry.identity.uaa.authentication.UaaPrincipal;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.serializer.support.SerializationFailedException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextImpl;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.cloudfoundry.identity.uaa.util.AssertThrowsWithMessage.assertThrowsWithMessageThat;
+import static org.cloudfoundry.identity.uaa.web.beans.CompactSessionAttributeCodec.AUTHENTICATION;
+import static org.cloudfoundry.identity.uaa.web.beans.CompactSessionAttributeCodec.COMPRESSED;
+import static org.cloudfoundry.identity.uaa.web.beans.CompactSessionAttributeCodec.FALLBACK;
+import static org.cloudfoundry.identity.uaa.web.beans.CompactSessionAttributeCodec.SECURITY_CONTEXT;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CompactSessionAttributeCodecTest {
+
+    private JavaSessionAttributeCodec javaCodec;
+    private CompactSessionAttributeCodec codec;
+
+    @BeforeEach
+    void setUp() {
+        javaCodec = new JavaSessionAttributeCodec(getClass().getClassLoader());
+        codec = new CompactSessionAttributeCodec(javaCodec);
+        codec.setCompressionThreshold(0);
+    }
+
+    @Test
+    void securityContextIsWrittenAsJson() {
+        SecurityContextImpl context = new SecurityContextImpl(authentication());
+
+        byte[] encoded = codec.encode(context);
+
+        assertEquals(SECURITY_CONTEXT, encoded[0]);
+        assertThat(encoded.length, lessThan(javaCodec.encode(context).length));
+        SecurityContextImpl decoded = (SecurityContextImpl) codec.decode(encoded);
+        UaaAuthentication expected = (UaaAuthentication) context.getAuthentication();
+        UaaAuthentication actual = (UaaAuthentication) decoded.getAuthentication();
+        assertEquals(expected.getPrincipal(), actual.getPrincipal());
+        assertEquals(Set.copyOf(expected.getAuthorities()), Set.copyOf(actual.getAuthorities()));
+        assertEquals(expected.getAuthenticatedTime(), actual.getAuthenticatedTime());
+        assertEquals(expected.getExpiresAt(), actual.getExpiresAt());
+        assertEquals(expected.getAuthenticationMethods(), actual.getAuthenticationMethods());
+        assertEquals(expected.getUserAttributes(), actual.getUserAttributes());
+        assertEquals("clientId", ((UaaAuthenticationDetails) actual.getDetails()).getClientId());
+    }
+
+    @Test
+    void emptySecurityContextAndAuthenticationAreWrittenAsJson() {
+        byte[] encoded = codec.encode(new SecurityContextImpl());
+        assertEquals(SECURITY_CONTEXT, encoded[0]);
+        assertNull(((SecurityContextImpl) codec.decode(encoded)).getAuthentication());
+
+        encoded = codec.encode(authentication());
+        assertEquals(AUTHENTICATION, encoded[0]);
+        assertEquals(principal(), ((UaaAuthentication) codec.decode(encoded)).getPrincipal());
+    }
+
+    @Test
+    void otherAttributesAreDelegated() {
+        UsernamePasswordAuthenticationToken token = new UsernamePasswordAuthenticationToken("marissa", "koala");
+        SecurityContextImpl context = new SecurityContextImpl(token);
+        UaaAuthentication withCredentials = new UaaAuthentication(principal(), "koala", authorities(), null, true, 1L);
+
+        assertEquals(FALLBACK, codec.encode(context)[0]);
+        assertEquals(FALLBACK, codec.encode(withCredentials)[0]);
+        assertEquals(FALLBACK, codec.encode("state")[0]);
+        assertEquals(token, ((SecurityContextImpl) codec.decode(codec.encode(context))).getAuthentication());
+        assertEquals("koala", ((UaaAuthentication) codec.decode(codec.encode(withCredentials))).getCredentials());
+        assertEquals("state", codec.decode(codec.encode("state")));
+    }
+
+    @Test
+    void largeValuesAreCompressed() {
+        codec.setCompressionThreshold(64);
+        String large = String.join(",", Collections.nCopies(100, "attribute"));
+
+        byte[] encoded = codec.encode(large);
+
+        assertEquals(FALLBACK | COMPRESSED, encoded[0] & 0xFF);
+        assertThat(encoded.length, lessThan(javaCodec.encode(large).length));
+        assertEquals(large, codec.decode(encoded));
+        assertEquals(FALLBACK, codec.encode("small")[0]);
+    }
+
+    @Test
+    void attributesWrittenWithJavaSerializationCanBeRead() {
+        SecurityContextImpl context = new SecurityContextImpl(authentication());
+        assertEquals(context, codec.decode(javaCodec.encode(context)));
+        assertThrows(SerializationFailedException.class, () -> codec.decode(new byte[] {0x7F, 0}));
+    }
+
+    @Test
+    void javaCodecReadsAttributesWrittenByTheCompactCodec() {
+        SessionAttributeCodec java = UaaJdbcSessionConfig.sessionAttributeCodec("java", getClass().getClassLoader(), 64);
+        SecurityContextImpl context = new SecurityContextImpl(authentication());
+        String large = String.join(",", Collections.nCopies(100, "attribute"));
+        codec.setCompressionThreshold(64);
+
+        byte[] encoded = java.encode(context);
+        assertEquals((byte) 0xAC, encoded[0]);
+        assertEquals(context, java.decode(encoded));
+        UaaAuthentication decoded = (UaaAuthentication) ((SecurityContextImpl) java.decode(codec.encode(context))).getAuthentication();
+        assertEquals(principal(), decoded.getPrincipal());
+        assertEquals(principal(), ((UaaAuthentication) java.decode(codec.encode(authentication()))).getPrincipal());
+        assertEquals(large, java.decode(codec.encode(large)));
+        assertEquals("state", java.decode(codec.encode("state")));
+    }
+
+    @Test
+    void codecIsSelectedByName() {
+        ClassLoader classLoader = getClass().getClassLoader();
+
+        assertTrue(UaaJdbcSessionConfig.sessionAttributeCodec("java", classLoader, 1024) instanceof ReadCompatibleSessionAttributeCodec);
+        assertTrue(UaaJdbcSessionConfig.sessionAttributeCodec("compact", classLoader, 1024) instanceof CompactSessionAttributeCodec);
+        assertThrowsWithMessageThat(
+                IllegalArgumentException.class,
+                () -> UaaJdbcSessionConfig.sessionAttributeCodec("kryo", classLoader, 1024),
+                equalTo("kryo is not a valid argument for servlet.session-attributes.codec. Please choose java or compact."));
+    }
+
+    private static UaaAuthentication authentication() {
+        UaaAuthentication authentication = new UaaAuthentication(principal(),
+                null,
+                authorities(),
+                Set.of("external"),
+                Map.of("costCenter", List.of("Denver,CO")),
+                new UaaAuthenticationDetails(false, "clientId", "127.0.0.1", "sessionId"),
+                true,
+                1000L,
+                2000L);
+        authentication.setAuthenticationMethods(Set.of("pwd"));
+        return authentication;
+    }
+
+    private static UaaPrincipal principal() {
+        return new UaaPrincipal("user-id", "marissa", "marissa@test.org", "uaa", null, "uaa");
+    }
+
+    private static List<SimpleGrantedAuthority> authorities() {
+        return Arrays.asList(new SimpleGrantedAuthority("openid"), new SimpleGrantedAuthority("uaa.user"));
+    }
+}
@@ -0,0 +1,131 @@
+package org.cloudfoundry.identity.uaa.zone;
+
+import org.cloudfoundry.identity.uaa.annotations.WithDatabaseContext;
+import org.cloudfoundry.identity.uaa.audit.event.EntityDeletedEvent;
+import org.cloudfoundry.identity.uaa.oauth.common.util.RandomValueStringGenerator;
+import org.cloudfoundry.identity.uaa.util.TimeService;
+import org.cloudfoundry.identity.uaa.zone.event.IdentityZoneModifiedEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@WithDatabaseContext
+class IdentityZoneCacheTests {
+
+    private static final long MAX_STALENESS = 1_000L;
+
+    private JdbcIdentityZoneProvisioning provisioning;
+    private TimeService timeService;
+    private IdentityZoneCache cache;
+    private IdentityZone zone;
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp(@Autowired JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        jdbcTemplate.execute("delete from identity_zone where id != 'uaa'");
+        provisioning = new JdbcIdentityZoneProvisioning(jdbcTemplate);
+        timeService = mock(TimeService.class);
+        when(timeService.getCurrentTimeMillis()).thenReturn(0L);
+        cache = new IdentityZoneCache(provisioning, timeService, MAX_STALENESS, 100);
+
+        String id = new RandomValueStringGenerator(8).generate().toLowerCase();
+        zone = provisioning.create(MultitenancyFixture.identityZone(id, id));
+    }
+
+    @Test
+    void resolvesZoneFromCacheBySubdomainAndId() {
+        IdentityZone bySubdomain = cache.retrieveBySubdomain(zone.getSubdomain());
+
+        assertSame(bySubdomain, cache.retrieveBySubdomain(zone.getSubdomain().toUpperCase()));
+        assertSame(bySubdomain, cache.retrieve(zone.getId()));
+        assertEquals(1, cache.getMissCount());
+        assertEquals(2, cache.getHitCount());
+        assertEquals(0, cache.getRevalidationCount());
+    }
+
+    @Test
+    void staleEntryWithUnchangedVersionIsKept() {
+        IdentityZone cached = cache.retrieveBySubdomain(zone.getSubdomain());
+
+        when(timeService.getCurrentTimeMillis()).thenReturn(MAX_STALENESS + 1);
+
+        assertSame(cached, cache.retrieveBySubdomain(zone.getSubdomain()));
+        assertEquals(1, cache.getRevalidationCount());
+    }
+
+    @Test
+    void staleEntryWithChangedVersionIsReloaded() {
+        IdentityZone cached = cache.retrieveBySubdomain(zone.getSubdomain());
+        zone.setName("changed on another node");
+        provisioning.update(zone);
+
+        assertSame(cached, cache.retrieveBySubdomain(zone.getSubdomain()));
+
+        when(timeService.getCurrentTimeMillis()).thenReturn(MAX_STALENESS + 1);
+        IdentityZone reloaded = cache.retrieveBySubdomain(zone.getSubdomain());
+
+        assertNotSame(cached, reloaded);
+        assertEquals("changed on another node", reloaded.getName());
+    }
+
+    @Test
+    void staleEntryIsReloadedWhenAnUpdateKeptTheVersion() {
+        IdentityZone cached = cache.retrieveBySubdomain(zone.getSubdomain());
+        // an update that submitted an older version stores the same version number again
+        jdbcTemplate.update("update identity_zone set name=?, lastmodified=? where id=?",
+                "changed on another node", new Timestamp(cached.getLastModified().getTime() + 1000), zone.getId());
+
+        when(timeService.getCurrentTimeMillis()).thenReturn(MAX_STALENESS + 1);
+        IdentityZone reloaded = cache.retrieveBySubdomain(zone.getSubdomain());
+
+        assertNotSame(cached, reloaded);
+        assertEquals(cached.getVersion(), reloaded.getVersion());
+        assertEquals("changed on another node", reloaded.getName());
+    }
+
+    @Test
+    void modificationEventEvictsZone() {
+        IdentityZone cached = cache.retrieveBySubdomain(zone.getSubdomain());
+        zone.setName("changed on this node");
+        IdentityZone updated = provisioning.update(zone);
+
+        cache.onApplicationEvent(IdentityZoneModifiedEvent.identityZoneModified(updated));
+
+        assertEquals("changed on this node", cache.retrieveBySubdomain(zone.getSubdomain()).getName());
+        assertNotSame(cached, cache.retrieve(zone.getId()));
+    }
+
+    @Test
+    void deletionEventEvictsZone() {
+        cache.retrieveBySubdomain(zone.getSubdomain());
+        provisioning.onApplicationEvent(new EntityDeletedEvent<>(zone, null, IdentityZone.getUaaZoneId()));
+
+        cache.onApplicationEvent(new EntityDeletedEvent<>(zone, null, IdentityZone.getUaaZoneId()));
+
+        assertEquals(0, cache.getSize());
+        assertThrows(EmptyResultDataAccessException.class, () -> cache.retrieveBySubdomain(zone.getSubdomain()));
+    }
+
+    @Test
+    void deactivatedZoneIsNotServedAfterStalenessBound() {
+        cache.retrieveBySubdomain(zone.getSubdomain());
+        zone.setActive(false);
+        provisioning.update(zone);
+
+        when(timeService.getCurrentTimeMillis()).thenReturn(MAX_STALENESS + 1);
+
+        assertThrows(EmptyResultDataAccessException.class, () -> cache.retrieveBySubdomain(zone.getSubdomain()));
+    }
+}
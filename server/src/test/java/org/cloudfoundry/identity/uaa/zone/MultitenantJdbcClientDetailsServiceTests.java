@@ -20,6 +20,7 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.GrantedAuthority;
@@ -54,6 +55,7 @@ import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doReturn;
@@ -768,6 +770,42 @@ class MultitenantJdbcClientDetailsServiceTests {
         assertNull(service.getCreatedByForClientAndZone(client2, currentZoneId));
     }
 
+    @Test
+    void cachedClientIsServedUntilChangedThroughService() {
+        service.setClientCacheMaxStalenessMillis(60_000);
+        String clientId = addClientToDb(randomValueStringGenerator.generate(), service).getClientId();
+        jdbcTemplate.update("update oauth_client_details set scope = 'changed' where client_id = ?", clientId);
+
+        ClientDetails cached = service.loadClientByClientId(clientId, currentZoneId);
+        assertFalse(cached.getScope().contains("changed"));
+
+        UaaClientDetails modified = new UaaClientDetails(cached);
+        modified.setScope(Collections.singleton("modified"));
+        service.updateClientDetails(modified, currentZoneId);
+        assertEquals(Collections.singleton("modified"), service.loadClientByClientId(clientId, currentZoneId).getScope());
+    }
+
+    @Test
+    void cachedClientIsReloadedWhenSecretChangedOnAnotherNode() throws Exception {
+        service.setClientCacheMaxStalenessMillis(1);
+        String clientId = addClientToDb(randomValueStringGenerator.generate(), service).getClientId();
+        jdbcTemplate.update("update oauth_client_details set client_secret = 'other' where client_id = ?", clientId);
+        Thread.sleep(5);
+
+        assertEquals("other", service.loadClientByClientId(clientId, currentZoneId).getClientSecret());
+    }
+
+    @Test
+    void cachedClientsAreCopies() {
+        service.setClientCacheMaxStalenessMillis(60_000);
+        String clientId = addClientToDb(randomValueStringGenerator.generate(), service).getClientId();
+
+        ((UaaClientDetails) service.loadClientByClientId(clientId, currentZoneId)).addAdditionalInformation("name", "changed");
+
+        assertNull(service.loadClientByClientId(clientId, currentZoneId).getAdditionalInformation().get("name"));
+        verify(spyJdbcTemplate, times(1)).queryForObject(anyString(), any(RowMapper.class), eq(clientId), eq(currentZoneId));
+    }
+
     private static void validateRequiredGroups(String clientId, JdbcTemplate jdbcTemplate, String... expectedGroups) {
         String requiredUserGroups = jdbcTemplate.queryForObject("select required_user_groups from oauth_client_details where client_id = ?", String.class, clientId);
         assertNotNull(requiredUserGroups);
@@ -0,0 +1,67 @@
+package org.cloudfoundry.identity.statsd;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Serves {@link UaaMetricsExporter#scrape()} on {@code GET /metrics} from a port of its own, outside
+ * of the UAA filter chains. The metrics are not protected, so bind it to a loopback or private address.
+ */
+public class MetricsExpositionServer implements InitializingBean, DisposableBean {
+
+    static final String PATH = "/metrics";
+
+    private final UaaMetricsExporter exporter;
+    private final String host;
+    private final int port;
+    private HttpServer server;
+
+    public MetricsExpositionServer(UaaMetricsExporter exporter, String host, int port) {
+        this.exporter = exporter;
+        this.host = host;
+        this.port = port;
+    }
+
+    @Override
+    public void afterPropertiesSet() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(host, port), 0);
+        server.createContext(PATH, this::handle);
+        server.start();
+    }
+
+    @Override
+    public void destroy() {
+        if (server != null) {
+            server.stop(0);
+        }
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            byte[] body = exporter.scrape().getBytes(UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", MetricsTextWriter.CONTENT_TYPE);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package org.cloudfoundry.identity.statsd;
+
+/**
+ * Writes metrics in the Prometheus text exposition format, e.g. {@code uaa_server_inflight_count 3}.
+ */
+public class MetricsTextWriter implements MetricsWriter {
+
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private final String prefix;
+    private final StringBuilder text;
+
+    public MetricsTextWriter(String prefix, StringBuilder text) {
+        this.prefix = prefix;
+        this.text = text;
+    }
+
+    @Override
+    public void gauge(String name, long value) {
+        write(name, value, "gauge");
+    }
+
+    @Override
+    public void counter(String name, long total) {
+        write(name, total, "counter");
+    }
+
+    private void write(String name, long value, String type) {
+        String metric = toMetricName(name);
+        text.append("# TYPE ").append(metric).append(' ').append(type).append('\n');
+        text.append(metric).append(' ').append(value).append('\n');
+    }
+
+    private String toMetricName(String name) {
+        StringBuilder metric = new StringBuilder(prefix.length() + 1 + name.length());
+        if (!prefix.isEmpty()) {
+            metric.append(prefix).append('_');
+        }
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            boolean valid = (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
+            metric.append(valid ? c : '_');
+        }
+        return metric.toString();
+    }
+
+    @Override
+    public String toString() {
+        return text.toString();
+    }
+}
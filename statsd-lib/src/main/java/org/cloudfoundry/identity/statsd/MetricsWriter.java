@@ -0,0 +1,14 @@
+package org.cloudfoundry.identity.statsd;
+
+/**
+ * Receives the values of one export of {@link UaaMetricsExporter}.
+ */
+public interface MetricsWriter {
+
+    void gauge(String name, long value);
+
+    /**
+     * @param total the value since startup, writers that report increments keep track of the previous total
+     */
+    void counter(String name, long total);
+}
@@ -14,9 +14,15 @@
 package org.cloudfoundry.identity.statsd;
 
 import com.timgroup.statsd.NonBlockingStatsDClient;
+import java.io.IOException;
 import java.lang.management.ManagementFactory;
 import java.util.Calendar;
 import java.util.Date;
+import org.cloudfoundry.identity.uaa.metrics.AuditMetrics;
+import org.cloudfoundry.identity.uaa.metrics.UaaRequestMetrics;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.annotation.EnableScheduling;
@@ -27,11 +33,43 @@ import org.springframework.scheduling.annotation.SchedulingConfigurer;
 public class StatsdConfiguration {
 
   @Bean
-  public UaaMetricsEmitter statsDClientWrapper() {
-    return new UaaMetricsEmitter(
+  public UaaMetricsEmitter statsDClientWrapper(
+      UaaMetricsExporter uaaMetricsExporter,
+      @Value("${statsd.host:localhost}") String host,
+      @Value("${statsd.port:8125}") int port) {
+    UaaMetricsEmitter emitter = new UaaMetricsEmitter(
         new MetricsUtils(),
-        new NonBlockingStatsDClient("uaa", "localhost", 8125),
+        new NonBlockingStatsDClient("uaa", host, port),
         ManagementFactory.getPlatformMBeanServer());
+    emitter.setExporter(uaaMetricsExporter);
+    return emitter;
+  }
+
+  /**
+   * Reads the metrics directly when the UAA runs in this application context, the standalone
+   * statsd application keeps polling them over JMX through {@link UaaMetricsEmitter}.
+   */
+  @Bean
+  public UaaMetricsExporter uaaMetricsExporter(
+      ObjectProvider<UaaRequestMetrics> requestMetrics,
+      ObjectProvider<AuditMetrics> auditMetrics,
+      @Value("${statsd.host:localhost}") String host,
+      @Value("${statsd.port:8125}") int port,
+      @Value("${statsd.maxPacketSize:" + StatsdDatagramWriter.DEFAULT_MAX_PACKET_SIZE + "}") int maxPacketSize)
+      throws IOException {
+    return new UaaMetricsExporter(
+        requestMetrics::getIfUnique,
+        auditMetrics::getIfUnique,
+        new StatsdDatagramWriter("uaa", host, port, maxPacketSize));
+  }
+
+  @Bean
+  @ConditionalOnProperty("statsd.exposition.port")
+  public MetricsExpositionServer metricsExpositionServer(
+      UaaMetricsExporter uaaMetricsExporter,
+      @Value("${statsd.exposition.host:127.0.0.1}") String host,
+      @Value("${statsd.exposition.port}") int port) {
+    return new MetricsExpositionServer(uaaMetricsExporter, host, port);
   }
 
   @Bean
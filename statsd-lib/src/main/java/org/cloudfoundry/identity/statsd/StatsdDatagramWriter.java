@@ -0,0 +1,144 @@
+package org.cloudfoundry.identity.statsd;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.UnresolvedAddressException;
+import java.util.HashMap;
+import java.util.Map;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+
+/**
+ * Sends metrics to a StatsD server, packing as many newline separated lines into a datagram as
+ * fit in {@code maxPacketSize} bytes. Lines are encoded straight into a reused buffer.
+ *
+ * Not thread safe, a datagram is only sent when the buffer is full or on {@link #flush()}.
+ */
+public class StatsdDatagramWriter implements MetricsWriter, Closeable {
+
+    /**
+     * The largest payload that fits in one packet on an ethernet MTU with IPv6 and UDP headers.
+     */
+    public static final int DEFAULT_MAX_PACKET_SIZE = 1432;
+
+    private static final Logger logger = LoggerFactory.getLogger(StatsdDatagramWriter.class);
+
+    private static final byte[] GAUGE = "|g".getBytes(US_ASCII);
+    private static final byte[] COUNTER = "|c".getBytes(US_ASCII);
+
+    private final InetSocketAddress address;
+    private final DatagramChannel channel;
+    private final byte[] prefix;
+    private final ByteBuffer buffer;
+    private final byte[] digits = new byte[20];
+    private final Map<String, long[]> totals = new HashMap<>();
+    private long datagrams;
+
+    public StatsdDatagramWriter(String prefix, String host, int port, int maxPacketSize) throws IOException {
+        this.address = new InetSocketAddress(host, port);
+        this.channel = DatagramChannel.open();
+        this.prefix = prefix == null || prefix.isEmpty() ? new byte[0] : (prefix + ".").getBytes(US_ASCII);
+        this.buffer = ByteBuffer.allocate(maxPacketSize);
+    }
+
+    @Override
+    public void gauge(String name, long value) {
+        if (value < 0) {
+            // a signed gauge value is an increment, so reset it first
+            write(name, 0, GAUGE);
+        }
+        write(name, value, GAUGE);
+    }
+
+    @Override
+    public void counter(String name, long total) {
+        long[] previous = totals.computeIfAbsent(name, key -> new long[1]);
+        long delta = total - previous[0];
+        previous[0] = total;
+        write(name, delta, COUNTER);
+    }
+
+    public void flush() {
+        if (buffer.position() == 0) {
+            return;
+        }
+        buffer.flip();
+        try {
+            channel.send(buffer, address);
+            datagrams++;
+        } catch (IOException | UnresolvedAddressException e) {
+            logger.debug("Unable to send metrics to {}", address, e);
+        } finally {
+            buffer.clear();
+        }
+    }
+
+    public long getDatagramCount() {
+        return datagrams;
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+        channel.close();
+    }
+
+    private void write(String name, long value, byte[] type) {
+        if (!append(name, value, type)) {
+            flush();
+            if (!append(name, value, type)) {
+                logger.warn("Metric {} does not fit in a datagram of {} bytes", name, buffer.capacity());
+            }
+        }
+    }
+
+    private boolean append(String name, long value, byte[] type) {
+        int separator = buffer.position() > 0 ? 1 : 0;
+        int start = format(value);
+        int length = separator + prefix.length + name.length() + 1 + digits.length - start + type.length;
+        if (length > buffer.remaining()) {
+            return false;
+        }
+        if (separator > 0) {
+            buffer.put((byte) '\n');
+        }
+        buffer.put(prefix);
+        for (int i = 0; i < name.length(); i++) {
+            buffer.put(toAscii(name.charAt(i)));
+        }
+        buffer.put((byte) ':');
+        buffer.put(digits, start, digits.length - start);
+        buffer.put(type);
+        return true;
+    }
+
+    /**
+     * @return the offset of the decimal value in {@link #digits}
+     */
+    private int format(long value) {
+        int i = digits.length;
+        // negative, so that Long.MIN_VALUE does not overflow
+        long remainder = value < 0 ? value : -value;
+        do {
+            digits[--i] = (byte) ('0' - remainder % 10);
+            remainder /= 10;
+        } while (remainder != 0);
+        if (value < 0) {
+            digits[--i] = '-';
+        }
+        return i;
+    }
+
+    private static byte toAscii(char c) {
+        if (c <= ' ' || c >= 127 || c == ':' || c == '|' || c == '@') {
+            return '_';
+        }
+        return (byte) c;
+    }
+}
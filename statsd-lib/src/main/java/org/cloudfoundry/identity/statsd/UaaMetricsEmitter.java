@@ -20,9 +20,6 @@ import org.cloudfoundry.identity.uaa.metrics.UaaMetrics;
 import org.cloudfoundry.identity.uaa.util.JsonUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.context.expression.MapAccessor;
-import org.springframework.expression.spel.standard.SpelExpressionParser;
-import org.springframework.expression.spel.support.StandardEvaluationContext;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.util.ReflectionUtils;
 
@@ -53,6 +50,7 @@ public class UaaMetricsEmitter {
     private final MBeanServerConnection server;
     private final MetricsUtils metricsUtils;
     private boolean notificationsEnabled;
+    private UaaMetricsExporter exporter;
     private ConcurrentMap<String, Long> delta = new ConcurrentHashMap<>();
 
     public UaaMetricsEmitter(MetricsUtils metricsUtils, StatsDClient statsDClient, MBeanServerConnection server) {
@@ -64,11 +62,14 @@ public class UaaMetricsEmitter {
 
     @Scheduled(fixedRate = 5000, initialDelay = 0)
     public void emitMetrics() throws Exception {
+        if (isExportedInProcess()) {
+            return;
+        }
         Map<String, Object> result = new LinkedHashMap<>();
         Map<String, ?> spring = metricsUtils.pullUpMap("cloudfoundry.identity", "*", server);
 
         if (spring != null) {
-            result.put("audit_service", getValueFromMap(spring, "#this['UaaAudit']"));
+            result.put("audit_service", spring.get("UaaAudit"));
         }
         for (Map.Entry entry : result.entrySet()) {
             String prefix = entry.getKey() + ".";
@@ -84,6 +85,9 @@ public class UaaMetricsEmitter {
 
     @Scheduled(fixedRate = 5000, initialDelay = 1000)
     public void emitGlobalRequestMetrics() throws Exception {
+        if (isExportedInProcess()) {
+            return;
+        }
         try {
             UaaMetrics metrics = metricsUtils.getUaaMetrics(server);
             emitGlobalRequestMetrics(metrics);
@@ -96,6 +100,9 @@ public class UaaMetricsEmitter {
 
     @Scheduled(fixedRate = 5000, initialDelay = 1000)
     public void emitUrlGroupRequestMetrics() throws Exception {
+        if (isExportedInProcess()) {
+            return;
+        }
         try {
             UaaMetrics metrics = metricsUtils.getUaaMetrics(server);
             emitUrlGroupRequestMetrics(metrics);
@@ -113,6 +120,7 @@ public class UaaMetricsEmitter {
             RequestMetricSummary metricTotals = metric.getTotals();
             statsDClient.gauge(String.format(prefix + "completed.count", prefixName), metricTotals.getCount());
             statsDClient.gauge(String.format(prefix + "completed.time", prefixName), (long) metricTotals.getAverageTime());
+            emitLatencyPercentiles(String.format(prefix, prefixName), metricTotals);
         }
     }
 
@@ -133,6 +141,7 @@ public class UaaMetricsEmitter {
         statsDClient.count(prefix + "completed.count", getMetricDelta(prefix + "completed.count",totals.getCount()));
         statsDClient.count(prefix + "unhealthy.count",getMetricDelta(prefix + "unhealthy.count",totals.getIntolerableCount()));
         statsDClient.gauge(prefix + "unhealthy.time", (long) totals.getAverageIntolerableTime());
+        emitLatencyPercentiles(prefix, totals);
         //status codes
         for (StatusCodeGroup family : StatusCodeGroup.values()) {
             RequestMetricSummary summary = ofNullable(globals.getDetailed().get(family)).orElse(MISSING_METRICS);
@@ -147,8 +156,18 @@ public class UaaMetricsEmitter {
         statsDClient.gauge(prefix + "unhealthy.time", (long) totals.getAverageDatabaseIntolerableQueryTime());
     }
 
+    private void emitLatencyPercentiles(String prefix, RequestMetricSummary summary) {
+        statsDClient.gauge(prefix + "completed.time.p50", summary.getMedianTime());
+        statsDClient.gauge(prefix + "completed.time.p95", summary.getP95Time());
+        statsDClient.gauge(prefix + "completed.time.p99", summary.getP99Time());
+        statsDClient.gauge(prefix + "completed.time.max", summary.getMaxTime());
+    }
+
     @Scheduled(fixedRate = 5000, initialDelay = 2000)
     public void emitVmVitals() {
+        if (isExportedInProcess()) {
+            return;
+        }
         OperatingSystemMXBean mbean = (OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean();
         String prefix = "vitals.vm.";
         statsDClient.gauge(prefix + "cpu.count", mbean.getAvailableProcessors());
@@ -160,6 +179,9 @@ public class UaaMetricsEmitter {
 
     @Scheduled(fixedRate = 5000, initialDelay = 3000)
     public void emitJvmVitals() {
+        if (isExportedInProcess()) {
+            return;
+        }
         OperatingSystemMXBean osBean = (OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean();
         ThreadMXBean threadBean = (ThreadMXBean) ManagementFactory.getThreadMXBean();
         MemoryMXBean memoryBean = ManagementFactory.getMemoryMXBean();
@@ -207,11 +229,6 @@ public class UaaMetricsEmitter {
         return  null;
     }
 
-    public Object getValueFromMap(Map<String, ?> map, String path) throws Exception {
-        MapWrapper wrapper = new MapWrapper(map);
-        return wrapper.get(path);
-    }
-
     public void enableNotification() {
         try {
             logger.debug("Trying to enable notification");
@@ -246,33 +263,15 @@ public class UaaMetricsEmitter {
         return notificationsEnabled;
     }
 
-    class MapWrapper {
-
-        private final SpelExpressionParser parser;
-
-        private final StandardEvaluationContext context;
-
-        private final Map<String, ?> target;
-
-        public MapWrapper(Map<String, ?> target) {
-            this.target = target;
-            context = new StandardEvaluationContext();
-            context.addPropertyAccessor(new MapAccessor());
-            parser = new SpelExpressionParser();
-        }
-
-        public Object get(String expression) {
-            return get(expression, Object.class);
-        }
-
-        public <T> T get(String expression, Class<T> type) {
-            return parser.parseExpression(expression).getValue(context, target, type);
-        }
-
-        @Override
-        public String toString() {
-            return target.toString();
-        }
+    /**
+     * Leaves the gauges and counters to {@code exporter} while it can read the UAA metrics directly,
+     * only the per request notifications are still sent from here.
+     */
+    public void setExporter(UaaMetricsExporter exporter) {
+        this.exporter = exporter;
+    }
 
+    private boolean isExportedInProcess() {
+        return exporter != null && exporter.isInProcess();
     }
 }
@@ -0,0 +1,199 @@
+package org.cloudfoundry.identity.statsd;
+
+import com.sun.management.OperatingSystemMXBean;
+import org.cloudfoundry.identity.uaa.metrics.AuditMetrics;
+import org.cloudfoundry.identity.uaa.metrics.MetricsQueue;
+import org.cloudfoundry.identity.uaa.metrics.MetricsUtil;
+import org.cloudfoundry.identity.uaa.metrics.RequestMetricSummary;
+import org.cloudfoundry.identity.uaa.metrics.StatusCodeGroup;
+import org.cloudfoundry.identity.uaa.metrics.UaaRequestMetrics;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * Exports the UAA metrics by reading the metric objects of the UAA running in the same
+ * application context, instead of polling their JSON summaries over JMX like
+ * {@link UaaMetricsEmitter}. The metric names are the ones the emitter uses.
+ *
+ * {@link #push()} sends them to StatsD, {@link #scrape()} renders them for a pull based collector.
+ */
+public class UaaMetricsExporter implements Closeable {
+
+    private static final LatencyNames GLOBAL_REQUESTS = new LatencyNames("requests.global.");
+    private static final String[] STATUS_COUNTS = new String[StatusCodeGroup.values().length];
+
+    static {
+        for (StatusCodeGroup family : StatusCodeGroup.values()) {
+            STATUS_COUNTS[family.ordinal()] = "requests.global.status_" + family.getName() + ".count";
+        }
+    }
+
+    private final Supplier<UaaRequestMetrics> requestMetrics;
+    private final Supplier<AuditMetrics> auditMetrics;
+    private final StatsdDatagramWriter statsd;
+    private final ConcurrentMap<String, LatencyNames> urlGroups = new ConcurrentHashMap<>();
+
+    public UaaMetricsExporter(Supplier<UaaRequestMetrics> requestMetrics,
+                              Supplier<AuditMetrics> auditMetrics,
+                              StatsdDatagramWriter statsd) {
+        this.requestMetrics = requestMetrics;
+        this.auditMetrics = auditMetrics;
+        this.statsd = statsd;
+    }
+
+    /**
+     * @return true if the request metrics can be read directly, the emitter polls JMX otherwise
+     */
+    public boolean isInProcess() {
+        return requestMetrics.get() != null;
+    }
+
+    @Scheduled(fixedRate = 5000, initialDelay = 1000)
+    public void push() {
+        if (!isInProcess()) {
+            return;
+        }
+        synchronized (statsd) {
+            export(statsd);
+            statsd.flush();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (statsd) {
+            statsd.close();
+        }
+    }
+
+    /**
+     * @return the current values in the text format of {@link MetricsTextWriter}
+     */
+    public String scrape() {
+        MetricsTextWriter writer = new MetricsTextWriter("uaa", new StringBuilder(8192));
+        export(writer);
+        return writer.toString();
+    }
+
+    public void export(MetricsWriter writer) {
+        AuditMetrics audit = auditMetrics.get();
+        if (audit != null) {
+            exportAudit(audit, writer);
+        }
+        UaaRequestMetrics requests = requestMetrics.get();
+        if (requests != null) {
+            exportRequests(requests, writer);
+        }
+        exportVmVitals(writer);
+        exportJvmVitals(writer);
+    }
+
+    private void exportAudit(AuditMetrics audit, MetricsWriter writer) {
+        writer.gauge("audit_service.user_authentication_count", audit.getUserAuthenticationCount());
+        writer.gauge("audit_service.user_authentication_failure_count", audit.getUserAuthenticationFailureCount());
+        writer.gauge("audit_service.user_not_found_count", audit.getUserNotFoundCount());
+        writer.gauge("audit_service.client_authentication_count", audit.getClientAuthenticationCount());
+        writer.gauge("audit_service.client_authentication_failure_count", audit.getClientAuthenticationFailureCount());
+        writer.gauge("audit_service.principal_authentication_failure_count", audit.getPrincipalAuthenticationFailureCount());
+        writer.gauge("audit_service.principal_not_found_count", audit.getPrincipalNotFoundCount());
+        writer.gauge("audit_service.user_password_changes", audit.getUserPasswordChanges());
+        writer.gauge("audit_service.user_password_failures", audit.getUserPasswordFailures());
+    }
+
+    private void exportRequests(UaaRequestMetrics metrics, MetricsWriter writer) {
+        writer.gauge("server.inflight.count", metrics.getInflightCount());
+        writer.gauge("server.up.time", metrics.getUpTime());
+        writer.gauge("server.idle.time", metrics.getIdleTime());
+        for (Map.Entry<String, MetricsQueue> entry : metrics.getMetricsQueues().entrySet()) {
+            RequestMetricSummary totals = entry.getValue().getTotals();
+            if (MetricsUtil.GLOBAL_GROUP.equals(entry.getKey())) {
+                exportGlobals(entry.getValue(), totals, writer);
+            }
+            LatencyNames names = urlGroups.computeIfAbsent(entry.getKey(), UaaMetricsExporter::getUrlGroupNames);
+            writer.gauge(names.count, totals.getCount());
+            writer.gauge(names.time, (long) totals.getAverageTime());
+            exportLatencyPercentiles(names, totals, writer);
+        }
+    }
+
+    private void exportGlobals(MetricsQueue globals, RequestMetricSummary totals, MetricsWriter writer) {
+        writer.gauge("requests.global.completed.time", (long) totals.getAverageTime());
+        writer.counter("requests.global.completed.count", totals.getCount());
+        writer.counter("requests.global.unhealthy.count", totals.getIntolerableCount());
+        writer.gauge("requests.global.unhealthy.time", (long) totals.getAverageIntolerableTime());
+        exportLatencyPercentiles(GLOBAL_REQUESTS, totals, writer);
+        for (StatusCodeGroup family : StatusCodeGroup.values()) {
+            RequestMetricSummary summary = globals.getDetailed().get(family);
+            writer.counter(STATUS_COUNTS[family.ordinal()], summary == null ? 0 : summary.getCount());
+        }
+        writer.gauge("database.global.completed.time", (long) totals.getAverageDatabaseQueryTime());
+        writer.counter("database.global.completed.count", totals.getDatabaseQueryCount());
+        writer.counter("database.global.unhealthy.count", totals.getDatabaseIntolerableQueryCount());
+        writer.gauge("database.global.unhealthy.time", (long) totals.getAverageDatabaseIntolerableQueryTime());
+    }
+
+    private static void exportLatencyPercentiles(LatencyNames names, RequestMetricSummary summary, MetricsWriter writer) {
+        writer.gauge(names.p50, summary.getMedianTime());
+        writer.gauge(names.p95, summary.getP95Time());
+        writer.gauge(names.p99, summary.getP99Time());
+        writer.gauge(names.max, summary.getMaxTime());
+    }
+
+    private static void exportVmVitals(MetricsWriter writer) {
+        OperatingSystemMXBean mbean = (OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean();
+        writer.gauge("vitals.vm.cpu.count", mbean.getAvailableProcessors());
+        writer.gauge("vitals.vm.cpu.load", (long) (mbean.getSystemLoadAverage() * 100));
+        writer.gauge("vitals.vm.memory.total", mbean.getTotalPhysicalMemorySize());
+        writer.gauge("vitals.vm.memory.committed", mbean.getCommittedVirtualMemorySize());
+        writer.gauge("vitals.vm.memory.free", mbean.getFreePhysicalMemorySize());
+    }
+
+    private static void exportJvmVitals(MetricsWriter writer) {
+        OperatingSystemMXBean osBean = (OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean();
+        writer.gauge("vitals.jvm.cpu.load", (long) (osBean.getProcessCpuLoad() * 100));
+        writer.gauge("vitals.jvm.thread.count", ManagementFactory.getThreadMXBean().getThreadCount());
+        MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        writer.gauge("vitals.jvm.heap.init", heap.getInit());
+        writer.gauge("vitals.jvm.heap.committed", heap.getCommitted());
+        writer.gauge("vitals.jvm.heap.used", heap.getUsed());
+        writer.gauge("vitals.jvm.heap.max", heap.getMax());
+        MemoryUsage nonHeap = ManagementFactory.getMemoryMXBean().getNonHeapMemoryUsage();
+        writer.gauge("vitals.jvm.non-heap.init", nonHeap.getInit());
+        writer.gauge("vitals.jvm.non-heap.committed", nonHeap.getCommitted());
+        writer.gauge("vitals.jvm.non-heap.used", nonHeap.getUsed());
+        writer.gauge("vitals.jvm.non-heap.max", nonHeap.getMax());
+    }
+
+    private static LatencyNames getUrlGroupNames(String urlGroup) {
+        return new LatencyNames("requests." + (urlGroup.startsWith("/") ? urlGroup.substring(1) : urlGroup) + ".");
+    }
+
+    /**
+     * The names of the metrics of a URL group, built once instead of on every export.
+     */
+    private static final class LatencyNames {
+        private final String count;
+        private final String time;
+        private final String p50;
+        private final String p95;
+        private final String p99;
+        private final String max;
+
+        private LatencyNames(String prefix) {
+            count = prefix + "completed.count";
+            time = prefix + "completed.time";
+            p50 = time + ".p50";
+            p95 = time + ".p95";
+            p99 = time + ".p99";
+            max = time + ".max";
+        }
+    }
+}
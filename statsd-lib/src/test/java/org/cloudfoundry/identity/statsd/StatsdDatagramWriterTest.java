@@ -0,0 +1,104 @@
+package org.cloudfoundry.identity.statsd;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class StatsdDatagramWriterTest {
+
+    private static final int MAX_PACKET_SIZE = 512;
+
+    private DatagramSocket sink;
+    private StatsdDatagramWriter writer;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        sink = new DatagramSocket(0, InetAddress.getLoopbackAddress());
+        sink.setSoTimeout(2000);
+        writer = new StatsdDatagramWriter("uaa", "127.0.0.1", sink.getLocalPort(), MAX_PACKET_SIZE);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        writer.close();
+        sink.close();
+    }
+
+    @Test
+    void batchesLinesIntoDatagrams() throws IOException {
+        for (int i = 0; i < 100; i++) {
+            writer.gauge("requests.group" + i + ".completed.count", i);
+        }
+        writer.flush();
+
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < writer.getDatagramCount(); i++) {
+            String datagram = receive();
+            assertThat(datagram.length(), lessThanOrEqualTo(MAX_PACKET_SIZE));
+            lines.addAll(Arrays.asList(datagram.split("\n")));
+        }
+
+        assertThat(writer.getDatagramCount(), greaterThan(1L));
+        assertThat(writer.getDatagramCount(), lessThanOrEqualTo(10L));
+        assertEquals(100, lines.size());
+        for (int i = 0; i < 100; i++) {
+            assertEquals("uaa.requests.group" + i + ".completed.count:" + i + "|g", lines.get(i));
+        }
+    }
+
+    @Test
+    void countersSendTheIncrementSinceTheLastWrite() throws IOException {
+        writer.counter("requests.global.completed.count", 5);
+        writer.counter("requests.global.completed.count", 5);
+        writer.counter("requests.global.completed.count", 8);
+        writer.flush();
+
+        assertThat(Arrays.asList(receive().split("\n")), contains(
+                "uaa.requests.global.completed.count:5|c",
+                "uaa.requests.global.completed.count:0|c",
+                "uaa.requests.global.completed.count:3|c"));
+    }
+
+    @Test
+    void negativeGaugesAreResetFirst() throws IOException {
+        writer.gauge("vitals.jvm.heap.max", -1);
+        writer.gauge("min", Long.MIN_VALUE);
+        writer.gauge("name with:reserved|chars@", 1);
+        writer.flush();
+
+        assertThat(Arrays.asList(receive().split("\n")), contains(
+                "uaa.vitals.jvm.heap.max:0|g",
+                "uaa.vitals.jvm.heap.max:-1|g",
+                "uaa.min:0|g",
+                "uaa.min:-9223372036854775808|g",
+                "uaa.name_with_reserved_chars_:1|g"));
+    }
+
+    @Test
+    void flushWithoutMetricsSendsNothing() {
+        writer.flush();
+
+        assertEquals(0, writer.getDatagramCount());
+    }
+
+    private String receive() throws IOException {
+        DatagramPacket packet = new DatagramPacket(new byte[65535], 65535);
+        sink.receive(packet);
+        return new String(packet.getData(), 0, packet.getLength(), US_ASCII);
+    }
+}
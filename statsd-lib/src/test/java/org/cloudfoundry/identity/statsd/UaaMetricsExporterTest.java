@@ -0,0 +1,170 @@
+package org.cloudfoundry.identity.statsd;
+
+import org.cloudfoundry.identity.uaa.metrics.AuditMetrics;
+import org.cloudfoundry.identity.uaa.metrics.MetricsQueue;
+import org.cloudfoundry.identity.uaa.metrics.MetricsUtil;
+import org.cloudfoundry.identity.uaa.metrics.RequestMetric;
+import org.cloudfoundry.identity.uaa.metrics.UaaRequestMetrics;
+import org.cloudfoundry.identity.uaa.metrics.UrlGroup;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.hasItem;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class UaaMetricsExporterTest {
+
+    private DatagramSocket sink;
+    private StatsdDatagramWriter statsd;
+    private UaaRequestMetrics requestMetrics;
+    private AuditMetrics auditMetrics;
+    private UaaMetricsExporter exporter;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        sink = new DatagramSocket(0, InetAddress.getLoopbackAddress());
+        sink.setSoTimeout(2000);
+        statsd = new StatsdDatagramWriter("uaa", "127.0.0.1", sink.getLocalPort(), StatsdDatagramWriter.DEFAULT_MAX_PACKET_SIZE);
+
+        UrlGroup ui = new UrlGroup().setGroup("/ui").setPattern("/login").setLimit(1000).setCategory("ui");
+        MetricsQueue global = new MetricsQueue();
+        MetricsQueue uiQueue = new MetricsQueue();
+        for (int status : Arrays.asList(200, 200, 302, 500)) {
+            RequestMetric metric = RequestMetric.start("/uaa/login", ui, 1000);
+            metric.stop(status, 1000 + (status == 500 ? 2000 : 20));
+            global.offer(metric);
+            uiQueue.offer(metric);
+        }
+        Map<String, MetricsQueue> queues = new LinkedHashMap<>();
+        queues.put(MetricsUtil.GLOBAL_GROUP, global);
+        queues.put("/ui", uiQueue);
+
+        requestMetrics = mock(UaaRequestMetrics.class);
+        when(requestMetrics.getMetricsQueues()).thenReturn(queues);
+        when(requestMetrics.getInflightCount()).thenReturn(3L);
+        when(requestMetrics.getUpTime()).thenReturn(12349843L);
+        when(requestMetrics.getIdleTime()).thenReturn(12349L);
+
+        auditMetrics = mock(AuditMetrics.class);
+        when(auditMetrics.getUserAuthenticationCount()).thenReturn(3);
+        when(auditMetrics.getClientAuthenticationFailureCount()).thenReturn(42);
+
+        exporter = new UaaMetricsExporter(() -> requestMetrics, () -> auditMetrics, statsd);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        exporter.close();
+        sink.close();
+    }
+
+    @Test
+    void exportsTheMetricsOfTheEmitter() {
+        Map<String, Long> gauges = new HashMap<>();
+        Map<String, Long> counters = new HashMap<>();
+        exporter.export(new MetricsWriter() {
+            @Override
+            public void gauge(String name, long value) {
+                gauges.put(name, value);
+            }
+
+            @Override
+            public void counter(String name, long total) {
+                counters.put(name, total);
+            }
+        });
+
+        assertEquals(3L, gauges.get("audit_service.user_authentication_count"));
+        assertEquals(42L, gauges.get("audit_service.client_authentication_failure_count"));
+        assertEquals(3L, gauges.get("server.inflight.count"));
+        assertEquals(12349843L, gauges.get("server.up.time"));
+        assertEquals(4L, counters.get("requests.global.completed.count"));
+        assertEquals(1L, counters.get("requests.global.unhealthy.count"));
+        assertEquals(2000L, gauges.get("requests.global.unhealthy.time"));
+        assertEquals(0L, counters.get("requests.global.status_1xx.count"));
+        assertEquals(2L, counters.get("requests.global.status_2xx.count"));
+        assertEquals(1L, counters.get("requests.global.status_3xx.count"));
+        assertEquals(1L, counters.get("requests.global.status_5xx.count"));
+        assertEquals(4L, gauges.get("requests.ui.completed.count"));
+        assertEquals(515L, gauges.get("requests.ui.completed.time"));
+        assertTrue(gauges.get("requests.ui.completed.time.max") >= 2000L);
+        assertTrue(gauges.containsKey("vitals.vm.cpu.count"));
+        assertTrue(gauges.containsKey("vitals.jvm.non-heap.used"));
+    }
+
+    @Test
+    void pushSendsBatchedDatagrams() throws IOException {
+        exporter.push();
+
+        long datagrams = statsd.getDatagramCount();
+        assertTrue(datagrams > 0);
+        StringBuilder lines = new StringBuilder();
+        for (int i = 0; i < datagrams; i++) {
+            DatagramPacket packet = new DatagramPacket(new byte[65535], 65535);
+            sink.receive(packet);
+            lines.append(new String(packet.getData(), 0, packet.getLength(), US_ASCII)).append('\n');
+        }
+        List<String> metrics = Arrays.asList(lines.toString().split("\n"));
+        assertTrue(datagrams < metrics.size());
+        assertThat(metrics, hasItem("uaa.requests.global.completed.count:4|c"));
+        assertThat(metrics, hasItem("uaa.audit_service.user_authentication_count:3|g"));
+        assertThat(metrics, hasItem("uaa.server.inflight.count:3|g"));
+    }
+
+    @Test
+    void pushIsLeftToTheEmitterWithoutRequestMetrics() {
+        exporter = new UaaMetricsExporter(() -> null, () -> null, statsd);
+
+        exporter.push();
+
+        assertFalse(exporter.isInProcess());
+        assertEquals(0, statsd.getDatagramCount());
+    }
+
+    @Test
+    void scrapeRendersTheTextFormat() {
+        String text = exporter.scrape();
+
+        assertThat(text, containsString("# TYPE uaa_requests_global_completed_count counter\nuaa_requests_global_completed_count 4\n"));
+        assertThat(text, containsString("# TYPE uaa_server_inflight_count gauge\nuaa_server_inflight_count 3\n"));
+        assertThat(text, containsString("\nuaa_vitals_jvm_non_heap_used "));
+    }
+
+    @Test
+    void expositionServerServesTheScrape() throws Exception {
+        MetricsExpositionServer server = new MetricsExpositionServer(exporter, "127.0.0.1", 0);
+        server.afterPropertiesSet();
+        try {
+            HttpURLConnection connection = (HttpURLConnection) new URL("http://127.0.0.1:" + server.getPort() + MetricsExpositionServer.PATH).openConnection();
+            assertEquals(200, connection.getResponseCode());
+            assertEquals(MetricsTextWriter.CONTENT_TYPE, connection.getContentType());
+            try (InputStream in = connection.getInputStream()) {
+                assertThat(new String(in.readAllBytes(), UTF_8), containsString("uaa_requests_ui_completed_count 4\n"));
+            }
+        } finally {
+            server.destroy();
+        }
+    }
+}
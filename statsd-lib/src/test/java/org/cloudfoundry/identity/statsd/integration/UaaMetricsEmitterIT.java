@@ -122,12 +122,14 @@ class UaaMetricsEmitterIT {
             receivePacket.setData(receiveData);
             try {
                 serverSocket.receive(receivePacket);
-                String message = new String(receivePacket.getData()).trim();
-                fragments.forEach(fragment -> {
-                    if (message.startsWith(fragment)) {
-                        results.put(fragment, message);
-                    }
-                });
+                String datagram = new String(receivePacket.getData(), 0, receivePacket.getLength());
+                for (String message : datagram.split("\n")) {
+                    fragments.forEach(fragment -> {
+                        if (message.startsWith(fragment)) {
+                            results.put(fragment, message);
+                        }
+                    });
+                }
             } catch (SocketTimeoutException e) {
                 //expected so that we keep looping
             }
@@ -1,5 +1,6 @@
 package org.cloudfoundry.identity.uaa.authentication.manager;
 
+import org.cloudfoundry.identity.uaa.audit.event.EntityDeletedEvent;
 import org.cloudfoundry.identity.uaa.authentication.AccountNotVerifiedException;
 import org.cloudfoundry.identity.uaa.authentication.AuthenticationPolicyRejectionException;
 import org.cloudfoundry.identity.uaa.authentication.UaaAuthenticationDetails;
@@ -257,6 +258,24 @@ class DynamicZoneAwareAuthenticationManagerTest {
         assertEquals(manager.getLdapAuthenticationManager(ZONE, ldapActive), chainedAuthenticationManager.getDelegates()[0].getAuthenticationManager());
     }
 
+    @Test
+    void testLdapManagerIsClosedWhenZoneOrProviderIsDeleted() {
+        DynamicZoneAwareAuthenticationManager manager = getDynamicZoneAwareAuthenticationManager();
+        DynamicLdapAuthenticationManager ldapManager = manager.getLdapAuthenticationManager(ZONE, ldapActive);
+        assertSame(ldapManager, manager.getLdapAuthenticationManager(ZONE, ldapActive));
+        assertEquals(1, manager.getLdapConnectionPoolCount());
+
+        manager.onApplicationEvent(new EntityDeletedEvent<>(ZONE, mock(Authentication.class), ZONE.getId()));
+        assertEquals(0, manager.getLdapConnectionPoolCount());
+        assertNotSame(ldapManager, manager.getLdapAuthenticationManager(ZONE, ldapActive));
+
+        IdentityProvider<LdapIdentityProviderDefinition> deleted = new IdentityProvider<>();
+        deleted.setOriginKey(OriginKeys.LDAP);
+        deleted.setIdentityZoneId(ZONE.getId());
+        manager.onApplicationEvent(new EntityDeletedEvent<>(deleted, mock(Authentication.class), ZONE.getId()));
+        assertEquals(0, manager.getLdapConnectionPoolCount());
+    }
+
     DynamicZoneAwareAuthenticationManager getDynamicZoneAwareAuthenticationManager() {
         return getDynamicZoneAwareAuthenticationManager(false);
     }
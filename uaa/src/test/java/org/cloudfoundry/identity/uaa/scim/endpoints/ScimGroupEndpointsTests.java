@@ -7,6 +7,7 @@ import org.cloudfoundry.identity.uaa.scim.ScimGroup;
 import org.cloudfoundry.identity.uaa.scim.ScimGroupExternalMember;
 import org.cloudfoundry.identity.uaa.scim.ScimGroupMember;
 import org.cloudfoundry.identity.uaa.scim.ScimGroupMembershipManager;
+import org.cloudfoundry.identity.uaa.scim.ScimGroupProvisioning;
 import org.cloudfoundry.identity.uaa.scim.ScimUser;
 import org.cloudfoundry.identity.uaa.scim.bootstrap.ScimExternalGroupBootstrap;
 import org.cloudfoundry.identity.uaa.scim.exception.InvalidScimResourceException;
@@ -62,6 +63,8 @@ import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.anyBoolean;
+import static org.mockito.Mockito.anyInt;
 import static org.mockito.Mockito.anyString;
 import static org.mockito.Mockito.atLeastOnce;
 import static org.mockito.Mockito.eq;
@@ -239,6 +242,62 @@ class ScimGroupEndpointsTests {
         verify(memberManager, atLeastOnce()).getMembers(anyString(), any(Boolean.class), anyString());
     }
 
+    @Test
+    void listGroupsWithCursor() {
+        Set<String> ids = new HashSet<>();
+        String cursor = "";
+        int pages = 0;
+        do {
+            SearchResults<?> results = scimGroupEndpoints.listGroups(null, "id pr", "displayName", "ascending", 1, 4, cursor, false);
+            for (Object group : results.getResources()) {
+                assertTrue(ids.add(((ScimGroup) group).getId()));
+            }
+            cursor = results.getNextCursor();
+            pages++;
+        } while (cursor != null);
+
+        assertEquals(11, ids.size());
+        assertEquals(3, pages);
+    }
+
+    @Test
+    void listGroupsWithCursorCountsTotalOnRequest() {
+        SearchResults<?> results = scimGroupEndpoints.listGroups("id,displayName", "id pr", "id", "ascending", 1, 4, "", true);
+        validateSearchResults(results, 4);
+        assertEquals(11, results.getTotalResults());
+        assertNotNull(results.getNextCursor());
+
+        results = scimGroupEndpoints.listGroups("id,displayName", "id pr", "id", "ascending", 1, 4, "", false);
+        assertEquals(5, results.getTotalResults());
+    }
+
+    @Test
+    void listGroupsWithInvalidCursor() {
+        ScimException e = assertThrows(ScimException.class,
+                () -> scimGroupEndpoints.listGroups(null, "id pr", "displayName", "ascending", 1, 4, "not-a-cursor", false));
+        assertEquals(HttpStatus.BAD_REQUEST, e.getStatus());
+        e = assertThrows(ScimException.class,
+                () -> scimGroupEndpoints.listGroups(null, "id pr", "description", "ascending", 1, 4, "", false));
+        assertEquals(HttpStatus.BAD_REQUEST, e.getStatus());
+    }
+
+    @Test
+    void listGroupsWithCursorIsRejectedWhenNotSupported() {
+        ScimGroupProvisioning provisioning = mock(ScimGroupProvisioning.class);
+        when(provisioning.queryPage(any(), any(), anyBoolean(), any(), anyInt(), anyBoolean(), any())).thenCallRealMethod();
+        scimGroupEndpoints = new ScimGroupEndpoints(
+                provisioning,
+                jdbcScimGroupMembershipManager,
+                identityZoneManager,
+                20,
+                exceptionToStatusMap,
+                jdbcScimGroupExternalMembershipManager);
+
+        assertThrowsWithMessageThat(ScimException.class,
+                () -> scimGroupEndpoints.listGroups(null, "id pr", "created", "ascending", 1, 4, "", false),
+                is("Cursor pagination is not supported"));
+    }
+
     @Test
     void whenSettingAnInvalidGroupsMaxCount_ScimGroupsEndpointShouldThrowAnException() {
         assertThrowsWithMessageThat(IllegalArgumentException.class,
@@ -627,6 +627,30 @@ class ScimUserEndpointsTests {
         assertEquals(0, results.getResources().size());
     }
 
+    @Test
+    void findUsersWithCursor() {
+        SearchResults<?> results = scimUserEndpoints.findUsers(null, "id pr", "userName", "ascending", 1, 1, "", false);
+        assertEquals(1, results.getResources().size());
+        assertEquals(joel.getId(), ((ScimUser) results.getResources().get(0)).getId());
+        assertEquals(2, results.getTotalResults());
+        assertNotNull(results.getNextCursor());
+
+        results = scimUserEndpoints.findUsers(null, "id pr", "userName", "ascending", 1, 1, results.getNextCursor(), true);
+        assertEquals(1, results.getResources().size());
+        assertEquals(dale.getId(), ((ScimUser) results.getResources().get(0)).getId());
+        assertEquals(2, results.getTotalResults());
+        assertNull(results.getNextCursor());
+    }
+
+    @Test
+    void findUsersWithCursorForAnotherSortOrder() {
+        String cursor = scimUserEndpoints.findUsers("id", "id pr", "userName", "ascending", 1, 1, "", false).getNextCursor();
+
+        ScimException e = assertThrows(ScimException.class,
+                () -> scimUserEndpoints.findUsers("id", "id pr", "created", "ascending", 1, 1, cursor, false));
+        assertEquals(HttpStatus.BAD_REQUEST, e.getStatus());
+    }
+
     @Test
     void findAllNames() {
         SearchResults<?> results = scimUserEndpoints.findUsers("userName", "id pr", null, "ascending", 1, 100);